@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.mesh.utils.CipherContext;
+
+/**
+ * Cost of the network layer crypto of one PDU, i.e. one AES-CCM encryption of the network payload followed by one
+ * AES-ECB operation to create the PECB, with ciphers created for every PDU against reused {@link CipherContext}s.
+ * Uses the Mesh Profile sample data, message #1.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CipherContextBenchmark {
+
+    private static final int NET_MIC_LENGTH = 8;
+
+    private byte[] encryptionKey;
+    private byte[] privacyKey;
+    private byte[] nonce;
+    private byte[] payload;
+    private byte[] pecbInput;
+    private CipherContext encryptionCipher;
+    private CipherContext privacyCipher;
+
+    @Setup
+    public void setup() {
+        encryptionKey = Hex.toByteArray("0953fa93e7caac9638f58820220a398e");
+        privacyKey = Hex.toByteArray("8b84eedec100067d670971dd2aa700cf");
+        nonce = Hex.toByteArray("00800000011201000012345678");
+        payload = Hex.toByteArray("fffd034b50057e400000010000");
+        pecbInput = Hex.toByteArray("0000000000123456782c4e5a6b7d8e9f");
+        encryptionCipher = new CipherContext(encryptionKey);
+        privacyCipher = new CipherContext(privacyKey);
+    }
+
+    @Benchmark
+    public void newCiphersPerPdu(final Blackhole blackhole) {
+        blackhole.consume(new CipherContext(encryptionKey).encryptCCM(payload, nonce, NET_MIC_LENGTH));
+        blackhole.consume(new CipherContext(privacyKey).encryptWithAES(pecbInput));
+    }
+
+    @Benchmark
+    public void reusedCiphers(final Blackhole blackhole) {
+        blackhole.consume(encryptionCipher.encryptCCM(payload, nonce, NET_MIC_LENGTH));
+        blackhole.consume(privacyCipher.encryptWithAES(pecbInput));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.spongycastle.crypto.InvalidCipherTextException;
+
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.mesh.core.NetworkCrypto;
+import no.nordicsemi.android.mesh.utils.CipherContext;
+
+/**
+ * Per PDU cost of the network layer, i.e. nonce creation, AES-CCM of the network payload and header obfuscation when
+ * sending, and the reverse when receiving. Uses the Mesh Profile sample data, message #1.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NetworkPduBenchmark {
+
+    private static final int IV_INDEX = 0x12345678;
+    private static final int CTL_TTL = 0x80;
+    private static final int SEQUENCE_NUMBER = 0x000001;
+    private static final int SRC = 0x1201;
+    private static final int NET_MIC_LENGTH = 8;
+
+    private CipherContext encryptionCipher;
+    private CipherContext privacyCipher;
+    private byte[] payload;
+    private byte[] pdu;
+
+    @Setup
+    public void setup() {
+        encryptionCipher = new CipherContext(Hex.toByteArray("0953fa93e7caac9638f58820220a398e"));
+        privacyCipher = new CipherContext(Hex.toByteArray("8b84eedec100067d670971dd2aa700cf"));
+        payload = Hex.toByteArray("fffd034b50057e400000010000");
+        pdu = Hex.toByteArray("0068eca487516765b5e5bfdacbaf6cb7fb6bff871f035444ce83a670df");
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        final byte[] nonce = NetworkCrypto.createNetworkNonce(CTL_TTL, SEQUENCE_NUMBER, SRC, IV_INDEX);
+        final byte[] encryptedPayload = encryptionCipher.encryptCCM(payload, nonce, NET_MIC_LENGTH);
+        final byte[] header = NetworkCrypto.obfuscateNetworkHeader(CTL_TTL, SEQUENCE_NUMBER, SRC, IV_INDEX, encryptedPayload, privacyCipher);
+        final byte[] networkPdu = new byte[2 + header.length + encryptedPayload.length];
+        System.arraycopy(header, 0, networkPdu, 2, header.length);
+        System.arraycopy(encryptedPayload, 0, networkPdu, 2 + header.length, encryptedPayload.length);
+        return networkPdu;
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws InvalidCipherTextException {
+        final byte[] header = NetworkCrypto.deObfuscateNetworkHeader(pdu, IV_INDEX, privacyCipher);
+        final int sequenceNumber = ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+        final int src = ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+        final byte[] nonce = NetworkCrypto.createNetworkNonce(header[0], sequenceNumber, src, IV_INDEX);
+        final int offset = 2 + NetworkCrypto.NETWORK_HEADER_LENGTH;
+        return encryptionCipher.decryptCCM(pdu, offset, pdu.length - offset, nonce, null, NET_MIC_LENGTH);
+    }
+}
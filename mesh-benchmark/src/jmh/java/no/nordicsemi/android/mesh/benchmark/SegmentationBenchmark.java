@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.mesh.core.Segmentation;
+
+/**
+ * Segmentation of upper transport access pdus in to lower transport pdus and reassembly of the received segments.
+ * The largest length is the maximum upper transport pdu, i.e. 32 segments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SegmentationBenchmark {
+
+    private static final int SEQ_ZERO = 0x9ab;
+
+    @Param({"24", "96", "384"})
+    public int length;
+
+    private byte[] upperTransportPdu;
+    private byte[][] segments;
+
+    @Setup
+    public void setup() {
+        upperTransportPdu = new byte[length];
+        for (int i = 0; i < length; i++) {
+            upperTransportPdu[i] = (byte) i;
+        }
+        segments = Segmentation.segment(upperTransportPdu, 0, 0, SEQ_ZERO, Segmentation.MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH);
+    }
+
+    @Benchmark
+    public byte[][] segment() {
+        return Segmentation.segment(upperTransportPdu, 0, 0, SEQ_ZERO, Segmentation.MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH);
+    }
+
+    @Benchmark
+    public byte[] reassemble() {
+        return Segmentation.reassemble(segments);
+    }
+}
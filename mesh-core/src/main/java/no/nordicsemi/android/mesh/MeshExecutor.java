@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Serial executor on which the mesh stack runs.
+ * <p>
+ * Received pdus are decrypted and parsed, messages are encrypted and all transport timers run on this executor, one task
+ * at a time in the order they were submitted. On Android the MeshManagerApi by default uses a LooperMeshExecutor
+ * running on a dedicated mesh thread, so that neither heavy traffic blocks the UI nor a busy UI delays the timers.
+ * </p>
+ */
+public interface MeshExecutor extends Executor {
+
+    /**
+     * Runs the task on the mesh executor as soon as possible.
+     *
+     * @param task Task to run
+     */
+    @Override
+    void execute(@NonNull final Runnable task);
+
+    /**
+     * Runs the task on the mesh executor after the given delay.
+     *
+     * @param task  Task to run
+     * @param delay Delay in milliseconds
+     */
+    void schedule(@NonNull final Runnable task, final long delay);
+
+    /**
+     * Cancels all pending runs of a task that has not run yet.
+     *
+     * @param task Task to cancel
+     */
+    void cancel(@NonNull final Runnable task);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.core;
+
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.macs.CMac;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.nio.charset.Charset;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Mesh security key derivation functions s1, k2 and k4 as per the mesh profile specification.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class KeyDerivation {
+
+    private static final byte[] ZERO_KEY = new byte[16];
+    private static final byte[] SMK2 = "smk2".getBytes(Charset.forName("US-ASCII"));
+    private static final byte[] SMK4 = "smk4".getBytes(Charset.forName("US-ASCII"));
+    private static final byte[] ID6 = "id6".getBytes(Charset.forName("US-ASCII"));
+
+    /**
+     * Output of the k2 function, i.e. the NID, encryption key and privacy key of a network key
+     */
+    public static final class K2 {
+        public final int nid;
+        public final byte[] encryptionKey;
+        public final byte[] privacyKey;
+
+        K2(final int nid, @NonNull final byte[] encryptionKey, @NonNull final byte[] privacyKey) {
+            this.nid = nid;
+            this.encryptionKey = encryptionKey;
+            this.privacyKey = privacyKey;
+        }
+    }
+
+    private KeyDerivation() {
+    }
+
+    /**
+     * Calculates the AES-CMAC of the given data
+     *
+     * @param data data
+     * @param key  16-byte key
+     */
+    public static byte[] cmac(@NonNull final byte[] data, @NonNull final byte[] key) {
+        final byte[] cmac = new byte[16];
+        final CMac mac = new CMac(new AESEngine());
+        mac.init(new KeyParameter(key));
+        mac.update(data, 0, data.length);
+        mac.doFinal(cmac, 0);
+        return cmac;
+    }
+
+    /**
+     * Calculates the salt s1
+     *
+     * @param m input
+     */
+    public static byte[] s1(@NonNull final byte[] m) {
+        return cmac(m, ZERO_KEY);
+    }
+
+    /**
+     * Calculates k2
+     *
+     * @param n network key
+     * @param p master or friendship input
+     */
+    public static K2 k2(@NonNull final byte[] n, @NonNull final byte[] p) {
+        final byte[] t = cmac(n, s1(SMK2));
+        // T0 is empty
+        final byte[] t1 = cmac(input(new byte[0], p, 0x01), t);
+        final byte[] encryptionKey = cmac(input(t1, p, 0x02), t);
+        final byte[] privacyKey = cmac(input(encryptionKey, p, 0x03), t);
+        return new K2(t1[15] & 0x7F, encryptionKey, privacyKey);
+    }
+
+    /**
+     * Calculates k4, i.e. the AID of an application key
+     *
+     * @param n application key
+     */
+    public static int k4(@NonNull final byte[] n) {
+        if (n.length != 16)
+            throw new IllegalArgumentException("Key cannot be empty and must be 16-bytes long.");
+        final byte[] t = cmac(n, s1(SMK4));
+        //Only the least significant 6 bits are returned
+        return cmac(input(ID6, new byte[0], 0x01), t)[15] & 0x3F;
+    }
+
+    /**
+     * Returns the CMAC input T(n-1) || P || n
+     */
+    private static byte[] input(@NonNull final byte[] previous, @NonNull final byte[] p, final int counter) {
+        final byte[] input = new byte[previous.length + p.length + 1];
+        System.arraycopy(previous, 0, input, 0, previous.length);
+        System.arraycopy(p, 0, input, previous.length, p.length);
+        input[input.length - 1] = (byte) counter;
+        return input;
+    }
+}
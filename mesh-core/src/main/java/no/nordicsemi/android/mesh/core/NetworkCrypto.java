@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import no.nordicsemi.android.mesh.utils.CipherContext;
+
+/**
+ * Network layer nonce creation and network header obfuscation as per the mesh profile specification.
+ * <p>
+ * Header fields are passed as ints and the results are written directly in to the returned arrays, so that the only
+ * allocation per call is the output itself.
+ * </p>
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class NetworkCrypto {
+
+    public static final int NONCE_LENGTH = 13;
+    public static final int NETWORK_HEADER_LENGTH = 6;
+    private static final int NONCE_TYPE_NETWORK = 0x00;
+    private static final int NONCE_TYPE_PROXY = 0x03;
+    private static final int PAD = 0x00;
+    private static final int PRIVACY_RANDOM_LENGTH = 7;
+    // Privacy random of a received pdu starts after the pdu type, IVI/NID and the obfuscated network header
+    private static final int PRIVACY_RANDOM_OFFSET = 2 + NETWORK_HEADER_LENGTH;
+
+    private NetworkCrypto() {
+    }
+
+    /**
+     * Creates the network nonce
+     *
+     * @param ctlTtl         Combined ctl and ttl value
+     * @param sequenceNumber Sequence number of the message
+     * @param src            Source address
+     * @param ivIndex        IV Index of the message
+     * @return Network nonce
+     */
+    public static byte[] createNetworkNonce(final int ctlTtl, final int sequenceNumber, final int src, final int ivIndex) {
+        final byte[] nonce = new byte[NONCE_LENGTH];
+        nonce[0] = NONCE_TYPE_NETWORK;
+        nonce[1] = (byte) ctlTtl;
+        putNonceFields(nonce, sequenceNumber, src, ivIndex);
+        return nonce;
+    }
+
+    /**
+     * Creates the proxy nonce
+     *
+     * @param sequenceNumber Sequence number of the message
+     * @param src            Source address
+     * @param ivIndex        IV Index of the message
+     * @return Proxy nonce
+     */
+    public static byte[] createProxyNonce(final int sequenceNumber, final int src, final int ivIndex) {
+        final byte[] nonce = new byte[NONCE_LENGTH];
+        nonce[0] = NONCE_TYPE_PROXY;
+        nonce[1] = PAD;
+        putNonceFields(nonce, sequenceNumber, src, ivIndex);
+        return nonce;
+    }
+
+    /**
+     * Obfuscates the network header of a pdu to be sent
+     *
+     * @param ctlTtl           Combined ctl and ttl value
+     * @param sequenceNumber   Sequence number of the message
+     * @param src              Source address
+     * @param ivIndex          IV Index of the message
+     * @param encryptedPayload Encrypted destination address and transport pdu followed by the net mic
+     * @param privacyCipher    Cipher keyed with the privacy key of the subnet
+     * @return Obfuscated network header
+     */
+    public static byte[] obfuscateNetworkHeader(final int ctlTtl,
+                                                final int sequenceNumber,
+                                                final int src,
+                                                final int ivIndex,
+                                                @NonNull final byte[] encryptedPayload,
+                                                @NonNull final CipherContext privacyCipher) {
+        final byte[] pecb = createPECB(ivIndex, encryptedPayload, 0, privacyCipher);
+        final byte[] header = new byte[NETWORK_HEADER_LENGTH];
+        header[0] = (byte) (ctlTtl ^ pecb[0]);
+        header[1] = (byte) ((sequenceNumber >> 16) ^ pecb[1]);
+        header[2] = (byte) ((sequenceNumber >> 8) ^ pecb[2]);
+        header[3] = (byte) (sequenceNumber ^ pecb[3]);
+        header[4] = (byte) ((src >> 8) ^ pecb[4]);
+        header[5] = (byte) (src ^ pecb[5]);
+        return header;
+    }
+
+    /**
+     * De-obfuscates the network header of a received pdu
+     * <p>
+     * The PECB block is built directly from the received PDU and encrypted in place with the pre-keyed privacy cipher,
+     * so that the 16-byte PECB and the 6-byte header are the only allocations per attempt. The PECB is not shared, as
+     * the method may be called from several threads.
+     * </p>
+     *
+     * @param pdu           Received pdu starting with the pdu type
+     * @param ivIndex       IV Index used to obfuscate the header
+     * @param privacyCipher Cipher keyed with the privacy key of the subnet
+     * @return De-obfuscated network header
+     */
+    public static byte[] deObfuscateNetworkHeader(@NonNull final byte[] pdu,
+                                                  final int ivIndex,
+                                                  @NonNull final CipherContext privacyCipher) {
+        final byte[] pecb = createPECB(ivIndex, pdu, PRIVACY_RANDOM_OFFSET, privacyCipher);
+        final byte[] header = new byte[NETWORK_HEADER_LENGTH];
+        for (int i = 0; i < NETWORK_HEADER_LENGTH; i++)
+            header[i] = (byte) (pdu[2 + i] ^ pecb[i]);
+        return header;
+    }
+
+    /**
+     * PECB = e(PrivacyKey, 0x0000000000 || IV Index || Privacy Random)
+     */
+    private static byte[] createPECB(final int ivIndex,
+                                     @NonNull final byte[] privacyRandom,
+                                     final int offset,
+                                     @NonNull final CipherContext privacyCipher) {
+        final byte[] pecb = new byte[16];
+        pecb[5] = (byte) (ivIndex >>> 24);
+        pecb[6] = (byte) (ivIndex >>> 16);
+        pecb[7] = (byte) (ivIndex >>> 8);
+        pecb[8] = (byte) ivIndex;
+        System.arraycopy(privacyRandom, offset, pecb, 9, PRIVACY_RANDOM_LENGTH);
+        privacyCipher.encryptBlock(pecb, 0, pecb, 0);
+        return pecb;
+    }
+
+    private static void putNonceFields(@NonNull final byte[] nonce, final int sequenceNumber, final int src, final int ivIndex) {
+        nonce[2] = (byte) (sequenceNumber >> 16);
+        nonce[3] = (byte) (sequenceNumber >> 8);
+        nonce[4] = (byte) sequenceNumber;
+        nonce[5] = (byte) (src >> 8);
+        nonce[6] = (byte) src;
+        nonce[7] = PAD;
+        nonce[8] = PAD;
+        nonce[9] = (byte) (ivIndex >>> 24);
+        nonce[10] = (byte) (ivIndex >>> 16);
+        nonce[11] = (byte) (ivIndex >>> 8);
+        nonce[12] = (byte) ivIndex;
+    }
+}
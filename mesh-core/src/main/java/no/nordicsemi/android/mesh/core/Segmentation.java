@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Segmentation and reassembly of lower transport pdus as per the mesh profile specification.
+ * <p>
+ * A segmented lower transport pdu starts with a 4-octet header containing SEG, AKF/AID or the control opcode, SZMIC or RFU,
+ * SeqZero, SegO and SegN, followed by at most 12 octets of an upper transport access pdu or 8 octets of a transport
+ * control pdu.
+ * </p>
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class Segmentation {
+
+    public static final int SEGMENTED_HEADER_LENGTH = 4;
+    public static final int MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH = 12;
+    public static final int MAX_SEGMENTED_CONTROL_PAYLOAD_LENGTH = 8;
+    private static final int SEG = 1;
+
+    private Segmentation() {
+    }
+
+    /**
+     * Returns the number of segments required to send a pdu of the given length
+     *
+     * @param length            Length of the upper transport pdu
+     * @param maxSegmentPayload Maximum payload length of a single segment
+     */
+    public static int getSegmentCount(final int length, final int maxSegmentPayload) {
+        return (length + (maxSegmentPayload - 1)) / maxSegmentPayload;
+    }
+
+    /**
+     * Splits an upper transport pdu in to segmented lower transport pdus
+     *
+     * @param pdu               Upper transport access pdu or transport control pdu
+     * @param header            7-bit AKF and AID of an access message or the opcode of a control message
+     * @param szmic             SZMIC of an access message, 0 for control messages
+     * @param seqZero           Least significant 13-bits of the sequence number of the first segment
+     * @param maxSegmentPayload Maximum payload length of a single segment
+     * @return Segments indexed by SegO
+     */
+    public static byte[][] segment(@NonNull final byte[] pdu,
+                                   final int header,
+                                   final int szmic,
+                                   final int seqZero,
+                                   final int maxSegmentPayload) {
+        final int numberOfSegments = getSegmentCount(pdu.length, maxSegmentPayload);
+        final int segN = numberOfSegments - 1; //Zero based segN
+        final byte[][] segments = new byte[numberOfSegments][];
+        int offset = 0;
+        for (int segO = 0; segO < numberOfSegments; segO++) {
+            final int length = Math.min(pdu.length - offset, maxSegmentPayload);
+            final byte[] segment = new byte[SEGMENTED_HEADER_LENGTH + length];
+            segment[0] = (byte) ((SEG << 7) | (header & 0x7F));
+            segment[1] = (byte) ((szmic << 7) | ((seqZero >> 6) & 0x7F));
+            segment[2] = (byte) (((seqZero << 2) & 0xFC) | ((segO >> 3) & 0x03));
+            segment[3] = (byte) (((segO << 5) & 0xE0) | (segN & 0x1F));
+            System.arraycopy(pdu, offset, segment, SEGMENTED_HEADER_LENGTH, length);
+            offset += length;
+            segments[segO] = segment;
+        }
+        return segments;
+    }
+
+    /**
+     * Concatenates the payload of received segments in to the upper transport pdu
+     *
+     * @param segments Segmented lower transport pdus including the segment header, ordered by SegO
+     * @return Upper transport pdu
+     */
+    public static byte[] reassemble(@NonNull final byte[][] segments) {
+        int length = 0;
+        for (byte[] segment : segments) {
+            length += segment.length - SEGMENTED_HEADER_LENGTH;
+        }
+        final byte[] pdu = new byte[length];
+        int offset = 0;
+        for (byte[] segment : segments) {
+            final int payloadLength = segment.length - SEGMENTED_HEADER_LENGTH;
+            System.arraycopy(segment, SEGMENTED_HEADER_LENGTH, pdu, offset, payloadLength);
+            offset += payloadLength;
+        }
+        return pdu;
+    }
+
+    /**
+     * Returns the SZMIC of a segment
+     *
+     * @param pdu    Buffer containing the segment
+     * @param offset Offset of the lower transport pdu within the buffer
+     */
+    public static int getSzmic(@NonNull final byte[] pdu, final int offset) {
+        return (pdu[offset + 1] >> 7) & 0x01;
+    }
+
+    /**
+     * Returns the SeqZero of a segment
+     *
+     * @param pdu    Buffer containing the segment
+     * @param offset Offset of the lower transport pdu within the buffer
+     */
+    public static int getSeqZero(@NonNull final byte[] pdu, final int offset) {
+        return ((pdu[offset + 1] & 0x7F) << 6) | ((pdu[offset + 2] & 0xFC) >> 2);
+    }
+
+    /**
+     * Returns the SegO of a segment
+     *
+     * @param pdu    Buffer containing the segment
+     * @param offset Offset of the lower transport pdu within the buffer
+     */
+    public static int getSegO(@NonNull final byte[] pdu, final int offset) {
+        return ((pdu[offset + 2] & 0x03) << 3) | ((pdu[offset + 3] & 0xE0) >> 5);
+    }
+
+    /**
+     * Returns the SegN of a segment
+     *
+     * @param pdu    Buffer containing the segment
+     * @param offset Offset of the lower transport pdu within the buffer
+     */
+    public static int getSegN(@NonNull final byte[] pdu, final int offset) {
+        return pdu[offset + 3] & 0x1F;
+    }
+}
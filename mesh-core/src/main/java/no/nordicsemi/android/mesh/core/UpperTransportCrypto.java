@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.core;
+
+import androidx.annotation.RestrictTo;
+
+/**
+ * Upper transport layer nonce creation as per the mesh profile specification.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class UpperTransportCrypto {
+
+    public static final int NONCE_LENGTH = 13;
+    public static final int TRANS_MIC_LENGTH_32 = 4;
+    public static final int TRANS_MIC_LENGTH_64 = 8;
+    private static final int NONCE_TYPE_APPLICATION = 0x01;
+    private static final int NONCE_TYPE_DEVICE = 0x02;
+
+    private UpperTransportCrypto() {
+    }
+
+    /**
+     * Creates the application nonce
+     *
+     * @param aszmic         aszmic (szmic if a segmented access message)
+     * @param sequenceNumber sequence number of the message
+     * @param src            source address
+     * @param dst            destination address
+     * @param ivIndex        IV Index of the message
+     * @return Application nonce
+     */
+    public static byte[] createApplicationNonce(final int aszmic, final int sequenceNumber, final int src, final int dst, final int ivIndex) {
+        return createNonce(NONCE_TYPE_APPLICATION, aszmic, sequenceNumber, src, dst, ivIndex);
+    }
+
+    /**
+     * Creates the device nonce
+     *
+     * @param aszmic         aszmic (szmic if a segmented access message)
+     * @param sequenceNumber sequence number of the message
+     * @param src            source address
+     * @param dst            destination address
+     * @param ivIndex        IV Index of the message
+     * @return Device nonce
+     */
+    public static byte[] createDeviceNonce(final int aszmic, final int sequenceNumber, final int src, final int dst, final int ivIndex) {
+        return createNonce(NONCE_TYPE_DEVICE, aszmic, sequenceNumber, src, dst, ivIndex);
+    }
+
+    /**
+     * Returns the length of the TransMIC
+     *
+     * @param aszmic aszmic (szmic if a segmented access message)
+     */
+    public static int getTransMicLength(final int aszmic) {
+        return aszmic == 1 ? TRANS_MIC_LENGTH_64 : TRANS_MIC_LENGTH_32;
+    }
+
+    private static byte[] createNonce(final int type, final int aszmic, final int sequenceNumber, final int src, final int dst, final int ivIndex) {
+        final byte[] nonce = new byte[NONCE_LENGTH];
+        nonce[0] = (byte) type;
+        nonce[1] = (byte) (aszmic << 7); //ASZMIC and PAD
+        nonce[2] = (byte) (sequenceNumber >> 16);
+        nonce[3] = (byte) (sequenceNumber >> 8);
+        nonce[4] = (byte) sequenceNumber;
+        nonce[5] = (byte) (src >> 8);
+        nonce[6] = (byte) src;
+        nonce[7] = (byte) (dst >> 8);
+        nonce[8] = (byte) dst;
+        nonce[9] = (byte) (ivIndex >>> 24);
+        nonce[10] = (byte) (ivIndex >>> 16);
+        nonce[11] = (byte) (ivIndex >>> 8);
+        nonce[12] = (byte) ivIndex;
+        return nonce;
+    }
+}
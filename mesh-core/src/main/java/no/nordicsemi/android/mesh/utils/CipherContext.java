@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.utils;
+
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * AES cipher context bound to a single 128-bit key.
+ * <p>
+ * The AES key schedule is expanded once when the context is created and is reused for every block processed afterwards,
+ * so that the network, upper transport and header obfuscation steps performed for every PDU do not allocate a new cipher
+ * and re-expand the key each time. AES-CCM (RFC 3610) is implemented on top of the block cipher using the scratch
+ * buffers held by the context, which means the only allocation per operation is the returned output array.
+ * </p>
+ * <p>
+ * A context is safe to be shared between threads, operations on the same context are serialized.
+ * </p>
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CipherContext {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final int MIN_NONCE_LENGTH = 7;
+    private static final int MAX_NONCE_LENGTH = 13;
+
+    private final AESEngine engine = new AESEngine();
+    private final byte[] counter = new byte[BLOCK_SIZE];
+    private final byte[] keyStream = new byte[BLOCK_SIZE];
+    private final byte[] mac = new byte[BLOCK_SIZE];
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private int macOffset;
+
+    /**
+     * Constructs a cipher context for the given key.
+     *
+     * @param key 16-byte AES key
+     * @throws IllegalArgumentException if the key is not 16-bytes long
+     */
+    public CipherContext(@NonNull final byte[] key) {
+        if (key.length != BLOCK_SIZE)
+            throw new IllegalArgumentException("Key must be 16-bytes");
+        engine.init(true, new KeyParameter(key));
+    }
+
+    /**
+     * Encrypts a single 16-byte block using AES-ECB.
+     *
+     * @param data 16-byte block to encrypt
+     * @return encrypted block
+     */
+    public byte[] encryptWithAES(@NonNull final byte[] data) {
+        final byte[] encrypted = new byte[BLOCK_SIZE];
+        encryptBlock(data, 0, encrypted, 0);
+        return encrypted;
+    }
+
+    /**
+     * Encrypts a single 16-byte block using AES-ECB in to a given output buffer.
+     *
+     * @param in     input buffer
+     * @param inOff  offset of the block in the input buffer
+     * @param out    output buffer
+     * @param outOff offset in the output buffer where the encrypted block is written to
+     */
+    public synchronized void encryptBlock(@NonNull final byte[] in, final int inOff, @NonNull final byte[] out, final int outOff) {
+        engine.processBlock(in, inOff, out, outOff);
+    }
+
+    /**
+     * Encrypts data using AES-CCM.
+     *
+     * @param data    data to encrypt
+     * @param nonce   nonce
+     * @param micSize length of the message integrity check in bytes
+     * @return encrypted data followed by the message integrity check
+     */
+    public byte[] encryptCCM(@NonNull final byte[] data, @NonNull final byte[] nonce, final int micSize) {
+        return encryptCCM(data, nonce, null, micSize);
+    }
+
+    /**
+     * Encrypts data using AES-CCM.
+     *
+     * @param data           data to encrypt
+     * @param nonce          nonce
+     * @param additionalData additional authenticated data, i.e. the label uuid of a virtual address
+     * @param micSize        length of the message integrity check in bytes
+     * @return encrypted data followed by the message integrity check
+     */
+    public synchronized byte[] encryptCCM(@NonNull final byte[] data,
+                                          @NonNull final byte[] nonce,
+                                          @Nullable final byte[] additionalData,
+                                          final int micSize) {
+        validate(nonce, micSize);
+        final byte[] ccm = new byte[data.length + micSize];
+        calculateMac(data, 0, data.length, nonce, additionalData, micSize);
+        processCounter(data, 0, data.length, nonce, ccm, 0);
+        //S0 is used to encrypt the MIC
+        setCounter(nonce, 0);
+        engine.processBlock(counter, 0, keyStream, 0);
+        for (int i = 0; i < micSize; i++) {
+            ccm[data.length + i] = (byte) (mac[i] ^ keyStream[i]);
+        }
+        return ccm;
+    }
+
+    /**
+     * Decrypts data using AES-CCM.
+     *
+     * @param data    encrypted data followed by the message integrity check
+     * @param nonce   nonce
+     * @param micSize length of the message integrity check in bytes
+     * @return decrypted data
+     * @throws InvalidCipherTextException if the message integrity check fails
+     */
+    public byte[] decryptCCM(@NonNull final byte[] data, @NonNull final byte[] nonce, final int micSize) throws InvalidCipherTextException {
+        return decryptCCM(data, 0, data.length, nonce, null, micSize);
+    }
+
+    /**
+     * Decrypts data using AES-CCM.
+     *
+     * @param data           encrypted data followed by the message integrity check
+     * @param nonce          nonce
+     * @param additionalData additional authenticated data, i.e. the label uuid of a virtual address
+     * @param micSize        length of the message integrity check in bytes
+     * @return decrypted data
+     * @throws InvalidCipherTextException if the message integrity check fails
+     */
+    public byte[] decryptCCM(@NonNull final byte[] data,
+                             @NonNull final byte[] nonce,
+                             @Nullable final byte[] additionalData,
+                             final int micSize) throws InvalidCipherTextException {
+        return decryptCCM(data, 0, data.length, nonce, additionalData, micSize);
+    }
+
+    /**
+     * Decrypts a region of a buffer using AES-CCM.
+     *
+     * @param data           buffer containing the encrypted data followed by the message integrity check
+     * @param offset         offset of the encrypted data within the buffer
+     * @param length         length of the encrypted data including the message integrity check
+     * @param nonce          nonce
+     * @param additionalData additional authenticated data, i.e. the label uuid of a virtual address
+     * @param micSize        length of the message integrity check in bytes
+     * @return decrypted data
+     * @throws InvalidCipherTextException if the message integrity check fails
+     */
+    public synchronized byte[] decryptCCM(@NonNull final byte[] data,
+                                          final int offset,
+                                          final int length,
+                                          @NonNull final byte[] nonce,
+                                          @Nullable final byte[] additionalData,
+                                          final int micSize) throws InvalidCipherTextException {
+        validate(nonce, micSize);
+        if (length < micSize)
+            throw new InvalidCipherTextException("data too short");
+        final int payloadLength = length - micSize;
+        final byte[] plainText = new byte[payloadLength];
+        processCounter(data, offset, payloadLength, nonce, plainText, 0);
+        calculateMac(plainText, 0, payloadLength, nonce, additionalData, micSize);
+        setCounter(nonce, 0);
+        engine.processBlock(counter, 0, keyStream, 0);
+        int difference = 0;
+        for (int i = 0; i < micSize; i++) {
+            difference |= (mac[i] ^ keyStream[i]) ^ data[offset + payloadLength + i];
+        }
+        if (difference != 0) {
+            Arrays.fill(plainText, (byte) 0);
+            throw new InvalidCipherTextException("mac check in CCM failed");
+        }
+        return plainText;
+    }
+
+    private static void validate(@NonNull final byte[] nonce, final int micSize) {
+        if (nonce.length < MIN_NONCE_LENGTH || nonce.length > MAX_NONCE_LENGTH)
+            throw new IllegalArgumentException("Nonce must have length from 7 to 13 octets");
+        if (micSize < 4 || micSize > BLOCK_SIZE || (micSize & 1) != 0)
+            throw new IllegalArgumentException("Invalid value for MIC size: " + micSize);
+    }
+
+    /**
+     * Encrypts or decrypts the data with the CTR key stream starting at counter 1.
+     */
+    private void processCounter(@NonNull final byte[] in, final int inOff, final int length,
+                                @NonNull final byte[] nonce, @NonNull final byte[] out, final int outOff) {
+        int index = 1;
+        for (int position = 0; position < length; position += BLOCK_SIZE) {
+            setCounter(nonce, index++);
+            engine.processBlock(counter, 0, keyStream, 0);
+            final int blockLength = Math.min(BLOCK_SIZE, length - position);
+            for (int i = 0; i < blockLength; i++) {
+                out[outOff + position + i] = (byte) (in[inOff + position + i] ^ keyStream[i]);
+            }
+        }
+    }
+
+    private void setCounter(@NonNull final byte[] nonce, final int index) {
+        final int lengthFieldSize = BLOCK_SIZE - 1 - nonce.length;
+        counter[0] = (byte) (lengthFieldSize - 1);
+        System.arraycopy(nonce, 0, counter, 1, nonce.length);
+        putLength(counter, lengthFieldSize, index);
+    }
+
+    /**
+     * Calculates the CBC-MAC of the plain text, the result is stored in {@link #mac}.
+     */
+    private void calculateMac(@NonNull final byte[] data, final int offset, final int length,
+                              @NonNull final byte[] nonce, @Nullable final byte[] additionalData, final int micSize) {
+        final boolean hasAdditionalData = additionalData != null && additionalData.length > 0;
+        final int lengthFieldSize = BLOCK_SIZE - 1 - nonce.length;
+        // B0
+        header[0] = (byte) ((hasAdditionalData ? 0x40 : 0x00) | (((micSize - 2) / 2) << 3) | (lengthFieldSize - 1));
+        System.arraycopy(nonce, 0, header, 1, nonce.length);
+        putLength(header, lengthFieldSize, length);
+        engine.processBlock(header, 0, mac, 0);
+        macOffset = 0;
+
+        if (hasAdditionalData) {
+            final int headerLength;
+            if (additionalData.length < 0xFF00) {
+                header[0] = (byte) (additionalData.length >> 8);
+                header[1] = (byte) additionalData.length;
+                headerLength = 2;
+            } else {
+                header[0] = (byte) 0xFF;
+                header[1] = (byte) 0xFE;
+                header[2] = (byte) (additionalData.length >> 24);
+                header[3] = (byte) (additionalData.length >> 16);
+                header[4] = (byte) (additionalData.length >> 8);
+                header[5] = (byte) additionalData.length;
+                headerLength = 6;
+            }
+            updateMac(header, 0, headerLength);
+            updateMac(additionalData, 0, additionalData.length);
+            finishMacBlock();
+        }
+        updateMac(data, offset, length);
+        finishMacBlock();
+    }
+
+    private void updateMac(@NonNull final byte[] data, final int offset, final int length) {
+        for (int i = 0; i < length; i++) {
+            mac[macOffset++] ^= data[offset + i];
+            if (macOffset == BLOCK_SIZE) {
+                engine.processBlock(mac, 0, mac, 0);
+                macOffset = 0;
+            }
+        }
+    }
+
+    /**
+     * Pads the current CBC-MAC block with zeros, which leaves the running xor unchanged, and encrypts it.
+     */
+    private void finishMacBlock() {
+        if (macOffset != 0) {
+            engine.processBlock(mac, 0, mac, 0);
+            macOffset = 0;
+        }
+    }
+
+    private static void putLength(@NonNull final byte[] block, final int size, final int value) {
+        for (int i = 0; i < size; i++) {
+            block[BLOCK_SIZE - 1 - i] = i < 4 ? (byte) (value >>> (8 * i)) : 0;
+        }
+    }
+}
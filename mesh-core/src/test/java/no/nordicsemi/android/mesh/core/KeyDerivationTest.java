@@ -0,0 +1,37 @@
+package no.nordicsemi.android.mesh.core;
+
+import org.junit.Test;
+
+import static no.nordicsemi.android.mesh.core.NetworkCryptoTest.toByteArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Mesh Profile sample data of the key derivation functions
+ */
+public class KeyDerivationTest {
+
+    @Test
+    public void s1_isCorrect() {
+        assertArrayEquals(toByteArray("b73cefbd641ef2ea598c2b6efb62f79c"), KeyDerivation.s1("test".getBytes()));
+    }
+
+    @Test
+    public void k2_isCorrect() {
+        final KeyDerivation.K2 k2 = KeyDerivation.k2(toByteArray("7dd7364cd842ad18c17c2b820c84c3d6"), new byte[]{0x00});
+        assertEquals(0x68, k2.nid);
+        assertArrayEquals(toByteArray("0953fa93e7caac9638f58820220a398e"), k2.encryptionKey);
+        assertArrayEquals(toByteArray("8b84eedec100067d670971dd2aa700cf"), k2.privacyKey);
+    }
+
+    @Test
+    public void k4_isCorrect() {
+        assertEquals(0x38, KeyDerivation.k4(toByteArray("3216d1509884b533248541792b877f98")));
+        assertEquals(0x26, KeyDerivation.k4(toByteArray("63964771734fbd76e3b40519d1d94a48")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void k4_rejectsInvalidKey() {
+        KeyDerivation.k4(new byte[8]);
+    }
+}
@@ -0,0 +1,58 @@
+package no.nordicsemi.android.mesh.core;
+
+import org.junit.Test;
+
+import no.nordicsemi.android.mesh.utils.CipherContext;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Mesh Profile sample data, message #1
+ */
+public class NetworkCryptoTest {
+
+    private static final byte[] ENCRYPTION_KEY = toByteArray("0953fa93e7caac9638f58820220a398e");
+    private static final byte[] PRIVACY_KEY = toByteArray("8b84eedec100067d670971dd2aa700cf");
+    private static final int IV_INDEX = 0x12345678;
+    private static final int CTL_TTL = 0x80;
+    private static final int SEQUENCE_NUMBER = 0x000001;
+    private static final int SRC = 0x1201;
+
+    @Test
+    public void createNetworkNonce_isCorrect() {
+        assertArrayEquals(toByteArray("00800000011201000012345678"),
+                NetworkCrypto.createNetworkNonce(CTL_TTL, SEQUENCE_NUMBER, SRC, IV_INDEX));
+    }
+
+    @Test
+    public void createProxyNonce_isCorrect() {
+        assertArrayEquals(toByteArray("03000000011201000012345678"),
+                NetworkCrypto.createProxyNonce(SEQUENCE_NUMBER, SRC, IV_INDEX));
+    }
+
+    @Test
+    public void networkPdu_isCorrect() {
+        final byte[] nonce = NetworkCrypto.createNetworkNonce(CTL_TTL, SEQUENCE_NUMBER, SRC, IV_INDEX);
+        final byte[] encryptedPayload = new CipherContext(ENCRYPTION_KEY).encryptCCM(toByteArray("fffd034b50057e400000010000"), nonce, 8);
+        assertArrayEquals(toByteArray("b5e5bfdacbaf6cb7fb6bff871f035444ce83a670df"), encryptedPayload);
+
+        final byte[] header = NetworkCrypto.obfuscateNetworkHeader(CTL_TTL, SEQUENCE_NUMBER, SRC, IV_INDEX,
+                encryptedPayload, new CipherContext(PRIVACY_KEY));
+        assertArrayEquals(toByteArray("eca487516765"), header);
+    }
+
+    @Test
+    public void deObfuscateNetworkHeader_isCorrect() {
+        final byte[] pdu = toByteArray("0068eca487516765b5e5bfdacbaf6cb7fb6bff871f035444ce83a670df");
+        assertArrayEquals(toByteArray("800000011201"),
+                NetworkCrypto.deObfuscateNetworkHeader(pdu, IV_INDEX, new CipherContext(PRIVACY_KEY)));
+    }
+
+    static byte[] toByteArray(final String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
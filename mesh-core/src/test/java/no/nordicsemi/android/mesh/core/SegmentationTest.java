@@ -0,0 +1,57 @@
+package no.nordicsemi.android.mesh.core;
+
+import org.junit.Test;
+
+import static no.nordicsemi.android.mesh.core.NetworkCryptoTest.toByteArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Mesh Profile sample data, message #6
+ */
+public class SegmentationTest {
+
+    private static final byte[] UPPER_TRANSPORT_PDU = toByteArray("ee9dddfd2169326d23f3afdfcfdc18c52fdef772e0e17308");
+    private static final byte[] SEGMENT_0 = toByteArray("8026ac01ee9dddfd2169326d23f3afdf");
+    private static final byte[] SEGMENT_1 = toByteArray("8026ac21cfdc18c52fdef772e0e17308");
+    private static final int SEQ_ZERO = 0x9ab;
+
+    @Test
+    public void segment_isCorrect() {
+        final byte[][] segments = Segmentation.segment(UPPER_TRANSPORT_PDU, 0, 0, SEQ_ZERO,
+                Segmentation.MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH);
+        assertEquals(2, segments.length);
+        assertArrayEquals(SEGMENT_0, segments[0]);
+        assertArrayEquals(SEGMENT_1, segments[1]);
+    }
+
+    @Test
+    public void segmentHeader_isParsed() {
+        final byte[] pdu = new byte[10 + SEGMENT_1.length];
+        System.arraycopy(SEGMENT_1, 0, pdu, 10, SEGMENT_1.length);
+        assertEquals(0, Segmentation.getSzmic(pdu, 10));
+        assertEquals(SEQ_ZERO, Segmentation.getSeqZero(pdu, 10));
+        assertEquals(1, Segmentation.getSegO(pdu, 10));
+        assertEquals(1, Segmentation.getSegN(pdu, 10));
+    }
+
+    @Test
+    public void reassemble_isCorrect() {
+        assertArrayEquals(UPPER_TRANSPORT_PDU, Segmentation.reassemble(new byte[][]{SEGMENT_0, SEGMENT_1}));
+    }
+
+    @Test
+    public void segmentAndReassemble_maximumLength() {
+        final byte[] pdu = new byte[32 * Segmentation.MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH];
+        for (int i = 0; i < pdu.length; i++) {
+            pdu[i] = (byte) i;
+        }
+        final byte[][] segments = Segmentation.segment(pdu, 0x45, 1, 0x1fff, Segmentation.MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH);
+        assertEquals(32, segments.length);
+        assertEquals(31, Segmentation.getSegO(segments[31], 0));
+        assertEquals(31, Segmentation.getSegN(segments[0], 0));
+        assertEquals(0x1fff, Segmentation.getSeqZero(segments[17], 0));
+        assertEquals(1, Segmentation.getSzmic(segments[5], 0));
+        assertArrayEquals(pdu, Segmentation.reassemble(segments));
+    }
+}
@@ -0,0 +1,36 @@
+package no.nordicsemi.android.mesh.core;
+
+import org.junit.Test;
+
+import static no.nordicsemi.android.mesh.core.NetworkCryptoTest.toByteArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Mesh Profile sample data, message #6
+ */
+public class UpperTransportCryptoTest {
+
+    private static final int IV_INDEX = 0x12345678;
+    private static final int SEQUENCE_NUMBER = 0x3129ab;
+    private static final int SRC = 0x0003;
+    private static final int DST = 0x1201;
+
+    @Test
+    public void createDeviceNonce_isCorrect() {
+        assertArrayEquals(toByteArray("02003129ab0003120112345678"),
+                UpperTransportCrypto.createDeviceNonce(0, SEQUENCE_NUMBER, SRC, DST, IV_INDEX));
+    }
+
+    @Test
+    public void createApplicationNonce_isCorrect() {
+        assertArrayEquals(toByteArray("01803129ab0003120112345678"),
+                UpperTransportCrypto.createApplicationNonce(1, SEQUENCE_NUMBER, SRC, DST, IV_INDEX));
+    }
+
+    @Test
+    public void getTransMicLength_isCorrect() {
+        assertEquals(4, UpperTransportCrypto.getTransMicLength(0));
+        assertEquals(8, UpperTransportCrypto.getTransMicLength(1));
+    }
+}
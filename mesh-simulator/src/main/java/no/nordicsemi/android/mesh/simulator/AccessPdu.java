@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Encoding of the opcode and parameters of access messages.
+ */
+final class AccessPdu {
+
+    private AccessPdu() {
+    }
+
+    /**
+     * Returns the length of the opcode starting with the given byte
+     */
+    static int getOpCodeLength(final byte firstByte) {
+        if ((firstByte & 0x80) == 0)
+            return 1;
+        return (firstByte & 0x40) == 0 ? 2 : 3;
+    }
+
+    static int getOpCode(@NonNull final byte[] pdu) {
+        final int length = getOpCodeLength(pdu[0]);
+        int opCode = 0;
+        for (int i = 0; i < length; i++) {
+            opCode = (opCode << 8) | (pdu[i] & 0xFF);
+        }
+        return opCode;
+    }
+
+    static byte[] getParameters(@NonNull final byte[] pdu) {
+        final int length = getOpCodeLength(pdu[0]);
+        final byte[] parameters = new byte[pdu.length - length];
+        System.arraycopy(pdu, length, parameters, 0, parameters.length);
+        return parameters;
+    }
+
+    static byte[] encode(final int opCode, @NonNull final byte[] parameters) {
+        final int length = opCode > 0xFFFF ? 3 : opCode > 0x7F ? 2 : 1;
+        final byte[] pdu = new byte[length + parameters.length];
+        for (int i = 0; i < length; i++) {
+            pdu[i] = (byte) (opCode >> (8 * (length - 1 - i)));
+        }
+        System.arraycopy(parameters, 0, pdu, length, parameters.length);
+        return pdu;
+    }
+}
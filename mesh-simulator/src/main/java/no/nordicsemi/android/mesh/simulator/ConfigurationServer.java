@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Simulated Configuration Server hosted by the primary element of every {@link SimulatedNode}.
+ * <p>
+ * Supports reading the composition data and default ttl, adding application keys, binding them to models and
+ * subscribing models to groups, which is what provisioners typically send to newly provisioned nodes.
+ * </p>
+ */
+final class ConfigurationServer extends SimulatedModel {
+
+    static final int MODEL_ID = 0x0000;
+    static final int CONFIG_APPKEY_ADD = 0x00;
+    static final int CONFIG_COMPOSITION_DATA_STATUS = 0x02;
+    static final int CONFIG_APPKEY_STATUS = 0x8003;
+    static final int CONFIG_COMPOSITION_DATA_GET = 0x8008;
+    static final int CONFIG_DEFAULT_TTL_GET = 0x800C;
+    static final int CONFIG_DEFAULT_TTL_SET = 0x800D;
+    static final int CONFIG_DEFAULT_TTL_STATUS = 0x800E;
+    static final int CONFIG_MODEL_SUBSCRIPTION_ADD = 0x801B;
+    static final int CONFIG_MODEL_SUBSCRIPTION_STATUS = 0x801F;
+    static final int CONFIG_MODEL_APP_BIND = 0x803D;
+    static final int CONFIG_MODEL_APP_STATUS = 0x803E;
+
+    private static final int SUCCESS = 0x00;
+    private static final int INVALID_ADDRESS = 0x01;
+    private static final int INVALID_MODEL = 0x02;
+    private static final int INVALID_APPKEY_INDEX = 0x03;
+    private static final int KEY_INDEX_ALREADY_STORED = 0x06;
+
+    private static final int COMPANY_IDENTIFIER = 0x0059;
+    private static final int REPLAY_PROTECTION_LIST_SIZE = 0x0020;
+    private static final int FEATURE_PROXY = 0x0002;
+
+    private final SimulatedNode mNode;
+
+    ConfigurationServer(@NonNull final SimulatedNode node) {
+        super(MODEL_ID);
+        mNode = node;
+    }
+
+    @Override
+    boolean usesDeviceKey() {
+        return true;
+    }
+
+    @Override
+    protected boolean onMessage(@NonNull final Request request) {
+        final byte[] parameters = request.getParameters();
+        switch (request.getOpCode()) {
+            case CONFIG_COMPOSITION_DATA_GET:
+                request.respond(CONFIG_COMPOSITION_DATA_STATUS, createCompositionData());
+                return true;
+            case CONFIG_DEFAULT_TTL_SET:
+                if (parameters.length < 1 || parameters[0] == 0x01 || (parameters[0] & 0xFF) > 0x7F)
+                    return true;
+                mNode.setDefaultTtl(parameters[0]);
+                // fall through
+            case CONFIG_DEFAULT_TTL_GET:
+                request.respond(CONFIG_DEFAULT_TTL_STATUS, new byte[]{(byte) mNode.getDefaultTtl()});
+                return true;
+            case CONFIG_APPKEY_ADD:
+                if (parameters.length == 19)
+                    request.respond(CONFIG_APPKEY_STATUS, prependStatus(addAppKey(parameters), parameters, 3));
+                return true;
+            case CONFIG_MODEL_APP_BIND:
+                if (parameters.length == 6 || parameters.length == 8)
+                    request.respond(CONFIG_MODEL_APP_STATUS, prependStatus(bindAppKey(parameters), parameters, parameters.length));
+                return true;
+            case CONFIG_MODEL_SUBSCRIPTION_ADD:
+                if (parameters.length == 6 || parameters.length == 8)
+                    request.respond(CONFIG_MODEL_SUBSCRIPTION_STATUS, prependStatus(addSubscription(parameters), parameters, parameters.length));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private int addAppKey(@NonNull final byte[] parameters) {
+        final int appKeyIndex = ((parameters[1] & 0xF0) >> 4) | ((parameters[2] & 0xFF) << 4);
+        final byte[] key = new byte[16];
+        System.arraycopy(parameters, 3, key, 0, key.length);
+        return mNode.addAppKey(appKeyIndex, key) ? SUCCESS : KEY_INDEX_ALREADY_STORED;
+    }
+
+    private int bindAppKey(@NonNull final byte[] parameters) {
+        final SimulatedModel model = findModel(parameters, 4);
+        if (model == null)
+            return getFindModelError(parameters);
+        final int appKeyIndex = readUint16(parameters, 2) & 0x0FFF;
+        if (!mNode.hasAppKey(appKeyIndex))
+            return INVALID_APPKEY_INDEX;
+        model.bindAppKey(appKeyIndex);
+        return SUCCESS;
+    }
+
+    private int addSubscription(@NonNull final byte[] parameters) {
+        final SimulatedModel model = findModel(parameters, 4);
+        if (model == null)
+            return getFindModelError(parameters);
+        model.subscribe(readUint16(parameters, 2));
+        return SUCCESS;
+    }
+
+    @Nullable
+    private SimulatedModel findModel(@NonNull final byte[] parameters, final int modelIdOffset) {
+        final List<SimulatedModel> models = mNode.getModels(readUint16(parameters, 0));
+        if (models == null)
+            return null;
+        final int modelId = readModelId(parameters, modelIdOffset);
+        for (SimulatedModel model : models) {
+            if (model.getModelId() == modelId)
+                return model;
+        }
+        return null;
+    }
+
+    private int getFindModelError(@NonNull final byte[] parameters) {
+        return mNode.getModels(readUint16(parameters, 0)) == null ? INVALID_ADDRESS : INVALID_MODEL;
+    }
+
+    /**
+     * Composition data page 0 with all models of the node
+     */
+    private byte[] createCompositionData() {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(0x00);
+        writeUint16(data, COMPANY_IDENTIFIER);
+        writeUint16(data, 0x0000);
+        writeUint16(data, 0x0000);
+        writeUint16(data, REPLAY_PROTECTION_LIST_SIZE);
+        writeUint16(data, FEATURE_PROXY);
+        for (int i = 0; i < mNode.getElementCount(); i++) {
+            final List<SimulatedModel> sigModels = new ArrayList<>();
+            final List<SimulatedModel> vendorModels = new ArrayList<>();
+            for (SimulatedModel model : mNode.getModels(mNode.getUnicastAddress() + i)) {
+                (model.isSigModel() ? sigModels : vendorModels).add(model);
+            }
+            writeUint16(data, 0x0000);
+            data.write(sigModels.size());
+            data.write(vendorModels.size());
+            for (SimulatedModel model : sigModels) {
+                writeUint16(data, model.getModelId());
+            }
+            for (SimulatedModel model : vendorModels) {
+                writeUint16(data, model.getModelId() >>> 16);
+                writeUint16(data, model.getModelId());
+            }
+        }
+        return data.toByteArray();
+    }
+
+    /**
+     * Reads a SIG model id or a vendor model id, which is the company identifier followed by the model identifier
+     */
+    private static int readModelId(@NonNull final byte[] parameters, final int offset) {
+        if (parameters.length - offset == 4)
+            return (readUint16(parameters, offset) << 16) | readUint16(parameters, offset + 2);
+        return readUint16(parameters, offset);
+    }
+
+    private static int readUint16(@NonNull final byte[] data, final int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+
+    private static void writeUint16(@NonNull final ByteArrayOutputStream data, final int value) {
+        data.write(value);
+        data.write(value >> 8);
+    }
+
+    private static byte[] prependStatus(final int status, @NonNull final byte[] parameters, final int length) {
+        final byte[] result = new byte[1 + length];
+        result[0] = (byte) status;
+        System.arraycopy(parameters, 0, result, 1, length);
+        return result;
+    }
+}
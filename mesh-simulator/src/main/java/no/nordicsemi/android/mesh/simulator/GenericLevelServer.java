@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Simulated Generic Level Server. Transitions complete immediately.
+ */
+public final class GenericLevelServer extends SimulatedModel {
+
+    public static final int MODEL_ID = 0x1002;
+    static final int GENERIC_LEVEL_GET = 0x8205;
+    static final int GENERIC_LEVEL_SET = 0x8206;
+    static final int GENERIC_LEVEL_SET_UNACKNOWLEDGED = 0x8207;
+    static final int GENERIC_LEVEL_STATUS = 0x8208;
+
+    private short mLevel;
+
+    public GenericLevelServer() {
+        super(MODEL_ID);
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public void setLevel(final int level) {
+        mLevel = (short) level;
+    }
+
+    @Override
+    protected boolean onMessage(@NonNull final Request request) {
+        switch (request.getOpCode()) {
+            case GENERIC_LEVEL_GET:
+                break;
+            case GENERIC_LEVEL_SET:
+            case GENERIC_LEVEL_SET_UNACKNOWLEDGED:
+                final byte[] parameters = request.getParameters();
+                if (parameters.length < 3)
+                    return true;
+                mLevel = (short) ((parameters[0] & 0xFF) | (parameters[1] << 8));
+                if (request.getOpCode() == GENERIC_LEVEL_SET_UNACKNOWLEDGED)
+                    return true;
+                break;
+            default:
+                return false;
+        }
+        request.respond(GENERIC_LEVEL_STATUS, new byte[]{(byte) mLevel, (byte) (mLevel >> 8)});
+        return true;
+    }
+}
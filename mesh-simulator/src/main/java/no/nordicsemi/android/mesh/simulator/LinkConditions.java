@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+/**
+ * Conditions of the simulated radio link between the proxy and the nodes of a {@link SimulatedNetwork}.
+ * <p>
+ * Every network pdu is dropped with the given loss probability and otherwise delivered after the latency plus a
+ * random jitter. A jitter larger than the interval between two pdus reorders them.
+ * </p>
+ */
+public final class LinkConditions {
+
+    /**
+     * Lossless link delivering pdus immediately and in order
+     */
+    public static final LinkConditions PERFECT = new LinkConditions(0, 0, 0);
+
+    private final double loss;
+    private final long latency;
+    private final long jitter;
+
+    /**
+     * Constructs the link conditions
+     *
+     * @param loss    Probability of a pdu being lost, from 0 to 1
+     * @param latency Delivery latency in milliseconds
+     * @param jitter  Maximum random delay in milliseconds added to the latency of each pdu
+     */
+    public LinkConditions(final double loss, final long latency, final long jitter) {
+        if (loss < 0 || loss > 1)
+            throw new IllegalArgumentException("Loss must be between 0 and 1");
+        if (latency < 0 || jitter < 0)
+            throw new IllegalArgumentException("Latency and jitter cannot be negative");
+        this.loss = loss;
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    public double getLoss() {
+        return loss;
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    public long getJitter() {
+        return jitter;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * In-memory bearer connecting the mesh stack to a {@link SimulatedNetwork} in place of a GATT proxy connection.
+ * <p>
+ * Pass the pdus given to {@code MeshManagerCallbacks#onMeshPduCreated} to {@link #send(byte[])}, and the notifications
+ * to {@code MeshManagerApi#handleNotifications} with the same MTU:
+ * </p>
+ * <pre>
+ * bearer.setNotificationListener(pdu -&gt; meshManagerApi.handleNotifications(bearer.getMtu(), pdu));
+ * </pre>
+ * Only network pdus are forwarded to the nodes; proxy configuration messages and beacons are counted and ignored.
+ */
+public final class LoopbackBearer {
+
+    /**
+     * Receives the notifications sent by the proxy, one chunk of at most MTU bytes at a time
+     */
+    public interface NotificationListener {
+        void onNotification(@NonNull final byte[] pdu);
+    }
+
+    private final SimulatedNetwork mNetwork;
+    private final int mMtu;
+    private NotificationListener mListener;
+    private long mSentPduCount;
+    private long mIgnoredPduCount;
+    private long mNotificationCount;
+
+    /**
+     * Constructs the bearer and connects it to the network
+     *
+     * @param network Network reached through the bearer
+     * @param mtu     Maximum length of a GATT write or notification, which is the ATT MTU minus 3
+     */
+    public LoopbackBearer(@NonNull final SimulatedNetwork network, final int mtu) {
+        if (mtu < 20)
+            throw new IllegalArgumentException("MTU must be at least 20 bytes");
+        mNetwork = network;
+        mMtu = mtu;
+        network.attach(this);
+    }
+
+    public int getMtu() {
+        return mMtu;
+    }
+
+    public void setNotificationListener(@Nullable final NotificationListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sends a pdu created by the mesh stack to the proxy
+     *
+     * @param data Proxy pdu, segmented into chunks of MTU bytes if longer than the MTU
+     */
+    public void send(@NonNull final byte[] data) {
+        final byte[] pdu = ProxySar.reassemble(mMtu, data);
+        if ((pdu[0] & 0x3F) == NetworkCodec.PROXY_PDU_TYPE_NETWORK) {
+            mSentPduCount++;
+            mNetwork.sendToNodes(pdu);
+        } else {
+            mIgnoredPduCount++;
+        }
+    }
+
+    /**
+     * Returns the number of network pdus sent to the proxy
+     */
+    public long getSentPduCount() {
+        return mSentPduCount;
+    }
+
+    /**
+     * Returns the number of pdus sent to the proxy that are not network pdus
+     */
+    public long getIgnoredPduCount() {
+        return mIgnoredPduCount;
+    }
+
+    /**
+     * Returns the number of notifications sent by the proxy
+     */
+    public long getNotificationCount() {
+        return mNotificationCount;
+    }
+
+    void onNetworkPdu(@NonNull final byte[] pdu) {
+        final NotificationListener listener = mListener;
+        if (listener == null)
+            return;
+        for (final byte[] chunk : ProxySar.segment(mMtu, pdu)) {
+            mNotificationCount++;
+            listener.onNotification(chunk);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import org.spongycastle.crypto.InvalidCipherTextException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.core.KeyDerivation;
+import no.nordicsemi.android.mesh.core.NetworkCrypto;
+import no.nordicsemi.android.mesh.utils.CipherContext;
+
+/**
+ * Encrypts and decrypts network pdus of a single subnet, as sent over the proxy bearer with the pdu type prefixed.
+ */
+final class NetworkCodec {
+
+    static final int PROXY_PDU_TYPE_NETWORK = 0x00;
+    private static final int HEADER_OFFSET = 2;
+    private static final int PAYLOAD_OFFSET = HEADER_OFFSET + NetworkCrypto.NETWORK_HEADER_LENGTH;
+    private static final int ACCESS_NET_MIC_LENGTH = 4;
+    private static final int CONTROL_NET_MIC_LENGTH = 8;
+
+    /**
+     * Decoded network pdu
+     */
+    static final class Pdu {
+        final int ctl;
+        final int ttl;
+        final int sequenceNumber;
+        final int src;
+        final int dst;
+        final byte[] lowerTransportPdu;
+
+        Pdu(final int ctl, final int ttl, final int sequenceNumber, final int src, final int dst, @NonNull final byte[] lowerTransportPdu) {
+            this.ctl = ctl;
+            this.ttl = ttl;
+            this.sequenceNumber = sequenceNumber;
+            this.src = src;
+            this.dst = dst;
+            this.lowerTransportPdu = lowerTransportPdu;
+        }
+    }
+
+    private final int nid;
+    private final int ivIndex;
+    private final CipherContext encryptionCipher;
+    private final CipherContext privacyCipher;
+
+    NetworkCodec(@NonNull final byte[] networkKey, final int ivIndex) {
+        final KeyDerivation.K2 k2 = KeyDerivation.k2(networkKey, new byte[]{0x00});
+        this.nid = k2.nid;
+        this.ivIndex = ivIndex;
+        this.encryptionCipher = new CipherContext(k2.encryptionKey);
+        this.privacyCipher = new CipherContext(k2.privacyKey);
+    }
+
+    int getIvIndex() {
+        return ivIndex;
+    }
+
+    /**
+     * Encrypts and obfuscates a network pdu
+     *
+     * @return network pdu prefixed with the proxy pdu type
+     */
+    byte[] encode(final int ctl, final int ttl, final int sequenceNumber, final int src, final int dst, @NonNull final byte[] lowerTransportPdu) {
+        final int ctlTtl = (ctl << 7) | (ttl & 0x7F);
+        final byte[] payload = new byte[2 + lowerTransportPdu.length];
+        payload[0] = (byte) (dst >> 8);
+        payload[1] = (byte) dst;
+        System.arraycopy(lowerTransportPdu, 0, payload, 2, lowerTransportPdu.length);
+        final byte[] nonce = NetworkCrypto.createNetworkNonce(ctlTtl, sequenceNumber, src, ivIndex);
+        final byte[] encrypted = encryptionCipher.encryptCCM(payload, nonce, getNetMicLength(ctl));
+        final byte[] header = NetworkCrypto.obfuscateNetworkHeader(ctlTtl, sequenceNumber, src, ivIndex, encrypted, privacyCipher);
+
+        final byte[] pdu = new byte[PAYLOAD_OFFSET + encrypted.length];
+        pdu[0] = PROXY_PDU_TYPE_NETWORK;
+        pdu[1] = (byte) (((ivIndex & 0x01) << 7) | nid);
+        System.arraycopy(header, 0, pdu, HEADER_OFFSET, header.length);
+        System.arraycopy(encrypted, 0, pdu, PAYLOAD_OFFSET, encrypted.length);
+        return pdu;
+    }
+
+    /**
+     * De-obfuscates and decrypts a network pdu
+     *
+     * @param pdu network pdu prefixed with the proxy pdu type
+     * @return decoded pdu or null if it does not belong to this subnet or fails authentication
+     */
+    @Nullable
+    Pdu decode(@NonNull final byte[] pdu) {
+        if (pdu.length < PAYLOAD_OFFSET + 2 + ACCESS_NET_MIC_LENGTH || pdu[0] != PROXY_PDU_TYPE_NETWORK)
+            return null;
+        if ((pdu[1] & 0x7F) != nid || ((pdu[1] >> 7) & 0x01) != (ivIndex & 0x01))
+            return null;
+        final byte[] header = NetworkCrypto.deObfuscateNetworkHeader(pdu, ivIndex, privacyCipher);
+        final int ctlTtl = header[0] & 0xFF;
+        final int ctl = ctlTtl >> 7;
+        final int sequenceNumber = ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+        final int src = ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+        final byte[] nonce = NetworkCrypto.createNetworkNonce(ctlTtl, sequenceNumber, src, ivIndex);
+        final byte[] payload;
+        try {
+            payload = encryptionCipher.decryptCCM(pdu, PAYLOAD_OFFSET, pdu.length - PAYLOAD_OFFSET, nonce, null, getNetMicLength(ctl));
+        } catch (InvalidCipherTextException ex) {
+            return null;
+        }
+        final int dst = ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF);
+        final byte[] lowerTransportPdu = new byte[payload.length - 2];
+        System.arraycopy(payload, 2, lowerTransportPdu, 0, lowerTransportPdu.length);
+        return new Pdu(ctl, ctlTtl & 0x7F, sequenceNumber, src, dst, lowerTransportPdu);
+    }
+
+    private static int getNetMicLength(final int ctl) {
+        return ctl == 1 ? CONTROL_NET_MIC_LENGTH : ACCESS_NET_MIC_LENGTH;
+    }
+}
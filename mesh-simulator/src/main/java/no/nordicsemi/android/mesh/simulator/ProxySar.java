@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Segmentation and reassembly of proxy pdus exchanged over a GATT bearer with a limited MTU.
+ */
+final class ProxySar {
+
+    private static final int SAR_START = 0b01;
+    private static final int SAR_CONTINUATION = 0b10;
+    private static final int SAR_END = 0b11;
+    private static final int PDU_TYPE_MASK = 0x3F;
+
+    private ProxySar() {
+    }
+
+    /**
+     * Splits a proxy pdu into chunks of at most mtu bytes, each starting with the SAR field and the pdu type
+     *
+     * @param mtu Maximum length of a chunk
+     * @param pdu Proxy pdu starting with the pdu type
+     */
+    static byte[][] segment(final int mtu, @NonNull final byte[] pdu) {
+        if (pdu.length <= mtu)
+            return new byte[][]{pdu};
+
+        final int chunkPayload = mtu - 1;
+        final int payloadLength = pdu.length - 1;
+        final int count = (payloadLength + chunkPayload - 1) / chunkPayload;
+        final int pduType = pdu[0] & PDU_TYPE_MASK;
+        final byte[][] chunks = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            final int offset = i * chunkPayload;
+            final int length = Math.min(chunkPayload, payloadLength - offset);
+            final int sar = i == 0 ? SAR_START : i == count - 1 ? SAR_END : SAR_CONTINUATION;
+            final byte[] chunk = new byte[1 + length];
+            chunk[0] = (byte) ((sar << 6) | pduType);
+            System.arraycopy(pdu, 1 + offset, chunk, 1, length);
+            chunks[i] = chunk;
+        }
+        return chunks;
+    }
+
+    /**
+     * Removes the SAR fields from a buffer of chunks of mtu bytes written back to back, as created by the mesh stack
+     *
+     * @param mtu  Length of each chunk but the last
+     * @param data Concatenated chunks
+     * @return Proxy pdu starting with the pdu type
+     */
+    static byte[] reassemble(final int mtu, @NonNull final byte[] data) {
+        final int count = (data.length + mtu - 1) / mtu;
+        if (count <= 1)
+            return data;
+
+        final byte[] pdu = new byte[data.length - (count - 1)];
+        pdu[0] = (byte) (data[0] & PDU_TYPE_MASK);
+        int dstOffset = 1;
+        for (int i = 0; i < count; i++) {
+            final int srcOffset = i * mtu + 1;
+            final int length = Math.min(mtu, data.length - i * mtu) - 1;
+            System.arraycopy(data, srcOffset, pdu, dstOffset, length);
+            dstOffset += length;
+        }
+        return pdu;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Simulated Sensor Server reporting raw values set by the test.
+ */
+public final class SensorServer extends SimulatedModel {
+
+    public static final int MODEL_ID = 0x1100;
+    static final int SENSOR_GET = 0x8231;
+    static final int SENSOR_STATUS = 0x52;
+
+    private final Map<Integer, byte[]> mValues = new TreeMap<>();
+
+    public SensorServer() {
+        super(MODEL_ID);
+    }
+
+    /**
+     * Sets the raw value of a sensor property
+     *
+     * @param propertyId Device property identifier
+     * @param value      Raw value, up to 127 bytes
+     */
+    public void setValue(final int propertyId, @NonNull final byte[] value) {
+        if (value.length == 0 || value.length > 127)
+            throw new IllegalArgumentException("Sensor value must be 1 to 127 bytes long");
+        mValues.put(propertyId & 0xFFFF, value.clone());
+    }
+
+    @Override
+    protected boolean onMessage(@NonNull final Request request) {
+        if (request.getOpCode() != SENSOR_GET)
+            return false;
+
+        final ByteArrayOutputStream status = new ByteArrayOutputStream();
+        final byte[] parameters = request.getParameters();
+        if (parameters.length >= 2) {
+            final int propertyId = (parameters[0] & 0xFF) | ((parameters[1] & 0xFF) << 8);
+            marshal(status, propertyId, mValues.get(propertyId));
+        } else {
+            for (Map.Entry<Integer, byte[]> entry : mValues.entrySet()) {
+                marshal(status, entry.getKey(), entry.getValue());
+            }
+        }
+        request.respond(SENSOR_STATUS, status.toByteArray());
+        return true;
+    }
+
+    /**
+     * Writes the marshalled sensor data of a property, using Format A when the length and property id fit and Format B
+     * otherwise. Unknown properties are reported with a zero length.
+     */
+    private static void marshal(@NonNull final ByteArrayOutputStream status, final int propertyId, final byte[] value) {
+        if (value != null && value.length <= 16 && propertyId < 0x0800) {
+            final int header = (propertyId << 5) | ((value.length - 1) << 1);
+            status.write(header);
+            status.write(header >> 8);
+        } else {
+            final int length = value == null ? 0x7F : value.length - 1;
+            status.write((length << 1) | 0x01);
+            status.write(propertyId);
+            status.write(propertyId >> 8);
+        }
+        if (value != null) {
+            status.write(value, 0, value.length);
+        }
+    }
+}
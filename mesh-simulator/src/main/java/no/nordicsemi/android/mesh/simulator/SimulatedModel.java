@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Server model hosted by an element of a {@link SimulatedNode}.
+ * <p>
+ * Models receive the access messages sent to their element, to the all-nodes address or to a group they are subscribed
+ * to, provided they are bound to the application key the message was encrypted with.
+ * </p>
+ */
+public abstract class SimulatedModel {
+
+    /**
+     * Sends the response to a request from the element hosting the model
+     */
+    interface Responder {
+        void respond(final int opCode, @NonNull final byte[] parameters);
+    }
+
+    /**
+     * Access message received by a model
+     */
+    public static final class Request {
+        private final int mOpCode;
+        private final byte[] mParameters;
+        private final int mSrc;
+        private final int mDst;
+        private final Responder mResponder;
+
+        Request(final int opCode, @NonNull final byte[] parameters, final int src, final int dst, @NonNull final Responder responder) {
+            mOpCode = opCode;
+            mParameters = parameters;
+            mSrc = src;
+            mDst = dst;
+            mResponder = responder;
+        }
+
+        public int getOpCode() {
+            return mOpCode;
+        }
+
+        @NonNull
+        public byte[] getParameters() {
+            return mParameters;
+        }
+
+        public int getSrc() {
+            return mSrc;
+        }
+
+        public int getDst() {
+            return mDst;
+        }
+
+        /**
+         * Sends a response to the source of the request with the same key
+         *
+         * @param opCode     Opcode of the response
+         * @param parameters Parameters of the response
+         */
+        public void respond(final int opCode, @NonNull final byte[] parameters) {
+            mResponder.respond(opCode, parameters);
+        }
+    }
+
+    private final int mModelId;
+    private final Set<Integer> mBoundAppKeyIndexes = new HashSet<>();
+    private final Set<Integer> mSubscriptions = new HashSet<>();
+
+    /**
+     * Constructs the model
+     *
+     * @param modelId 16-bit SIG model identifier or 32-bit vendor model identifier including the company identifier
+     */
+    protected SimulatedModel(final int modelId) {
+        mModelId = modelId;
+    }
+
+    public final int getModelId() {
+        return mModelId;
+    }
+
+    public final boolean isSigModel() {
+        return (mModelId & 0xFFFF0000) == 0;
+    }
+
+    /**
+     * Binds an application key to the model
+     *
+     * @param appKeyIndex Index of the application key
+     */
+    public final void bindAppKey(final int appKeyIndex) {
+        mBoundAppKeyIndexes.add(appKeyIndex);
+    }
+
+    public final boolean isBoundTo(final int appKeyIndex) {
+        return mBoundAppKeyIndexes.contains(appKeyIndex);
+    }
+
+    /**
+     * Subscribes the model to a group address
+     *
+     * @param address Group address
+     */
+    public final void subscribe(final int address) {
+        mSubscriptions.add(address);
+    }
+
+    public final boolean isSubscribedTo(final int address) {
+        return mSubscriptions.contains(address);
+    }
+
+    /**
+     * Returns true if the model only accepts messages encrypted with the device key
+     */
+    boolean usesDeviceKey() {
+        return false;
+    }
+
+    /**
+     * Handles an access message
+     *
+     * @param request Received message
+     * @return true if the opcode is supported by the model
+     */
+    protected abstract boolean onMessage(@NonNull final Request request);
+}
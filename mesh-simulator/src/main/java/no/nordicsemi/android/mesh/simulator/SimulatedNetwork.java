@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.MeshExecutor;
+
+/**
+ * Simulated subnet of mesh nodes reached through a single proxy.
+ * <p>
+ * Network pdus sent through the {@link LoopbackBearer} are delivered to every node, and the pdus sent by the nodes are
+ * returned through the bearer, subject to the {@link LinkConditions}. The GATT link itself is reliable, so loss, latency
+ * and reordering apply to the mesh side of the proxy, where the segmentation and reassembly of the transport layers must
+ * recover from them. All deliveries and node timers are scheduled on the given executor and a seeded random, so that a
+ * simulation run on a {@link VirtualTimeExecutor} is reproducible.
+ * </p>
+ */
+public final class SimulatedNetwork {
+
+    private final MeshExecutor mExecutor;
+    private final NetworkCodec mCodec;
+    private final LinkConditions mConditions;
+    private final Random mRandom;
+    private final List<SimulatedNode> mNodes = new ArrayList<>();
+    private LoopbackBearer mBearer;
+    private long mDeliveredPduCount;
+    private long mDroppedPduCount;
+
+    /**
+     * Constructs a simulated network
+     *
+     * @param executor   Executor used to deliver pdus and run the node timers
+     * @param networkKey Network key shared by the nodes
+     * @param ivIndex    Current IV Index
+     * @param conditions Conditions of the link
+     * @param seed       Seed of the random deciding on loss and jitter
+     */
+    public SimulatedNetwork(@NonNull final MeshExecutor executor,
+                            @NonNull final byte[] networkKey,
+                            final int ivIndex,
+                            @NonNull final LinkConditions conditions,
+                            final long seed) {
+        mExecutor = executor;
+        mCodec = new NetworkCodec(networkKey, ivIndex);
+        mConditions = conditions;
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Adds a node to the network
+     *
+     * @param node Node to be added
+     * @throws IllegalArgumentException if the node already belongs to a network
+     */
+    public void addNode(@NonNull final SimulatedNode node) {
+        node.attach(this);
+        mNodes.add(node);
+    }
+
+    @NonNull
+    public List<SimulatedNode> getNodes() {
+        return Collections.unmodifiableList(mNodes);
+    }
+
+    /**
+     * Returns the number of network pdus delivered so far in either direction
+     */
+    public long getDeliveredPduCount() {
+        return mDeliveredPduCount;
+    }
+
+    /**
+     * Returns the number of network pdus lost so far in either direction
+     */
+    public long getDroppedPduCount() {
+        return mDroppedPduCount;
+    }
+
+    @NonNull
+    MeshExecutor getExecutor() {
+        return mExecutor;
+    }
+
+    @NonNull
+    NetworkCodec getCodec() {
+        return mCodec;
+    }
+
+    void attach(@NonNull final LoopbackBearer bearer) {
+        mBearer = bearer;
+    }
+
+    /**
+     * Sends a network pdu received from the proxy client to the nodes
+     */
+    void sendToNodes(@NonNull final byte[] pdu) {
+        for (final SimulatedNode node : mNodes) {
+            deliver(() -> node.onNetworkPdu(pdu));
+        }
+    }
+
+    /**
+     * Sends a network pdu from a node to the proxy client
+     */
+    void sendToProxy(@NonNull final byte[] pdu) {
+        final LoopbackBearer bearer = mBearer;
+        if (bearer != null) {
+            deliver(() -> bearer.onNetworkPdu(pdu));
+        }
+    }
+
+    private void deliver(@NonNull final Runnable delivery) {
+        if (mConditions.getLoss() > 0 && mRandom.nextDouble() < mConditions.getLoss()) {
+            mDroppedPduCount++;
+            return;
+        }
+        mDeliveredPduCount++;
+        long delay = mConditions.getLatency();
+        if (mConditions.getJitter() > 0) {
+            delay += (long) (mRandom.nextDouble() * (mConditions.getJitter() + 1));
+        }
+        mExecutor.schedule(delivery, delay);
+    }
+}
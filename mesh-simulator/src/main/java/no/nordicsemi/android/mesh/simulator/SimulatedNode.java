@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import org.spongycastle.crypto.InvalidCipherTextException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.core.KeyDerivation;
+import no.nordicsemi.android.mesh.core.Segmentation;
+import no.nordicsemi.android.mesh.core.UpperTransportCrypto;
+import no.nordicsemi.android.mesh.utils.CipherContext;
+
+/**
+ * Simulated mesh node implementing the network, lower and upper transport layers with the cryptography of mesh-core.
+ * <p>
+ * The primary element hosts a Configuration Server, further models are added with {@link #addModel(int, SimulatedModel)}.
+ * Segmented messages are reassembled and acknowledged, and segmented responses are retransmitted until acknowledged, so
+ * that the segmentation and reassembly of the mesh stack can be exercised under lossy {@link LinkConditions}. Relaying,
+ * friendship, heartbeats and virtual addresses are not simulated.
+ * </p>
+ */
+public final class SimulatedNode {
+
+    private static final int DEVICE_KEY_INDEX = -1;
+    private static final int ALL_NODES_ADDRESS = 0xFFFF;
+    private static final int MAX_UNSEGMENTED_ACCESS_PAYLOAD_LENGTH = 15;
+    private static final int SEQ_ZERO_MASK = 0x1FFF;
+    private static final int BLOCK_ACK_OPCODE = 0x00;
+    private static final long INCOMPLETE_TIMEOUT = 10 * 1000;
+    private static final int SEGMENT_RETRANSMISSIONS = 3;
+    private static final int NETWORK_MESSAGE_CACHE_SIZE = 256;
+
+    private static final class AppKey {
+        private final byte[] key;
+        private final int aid;
+        private final CipherContext cipher;
+
+        private AppKey(@NonNull final byte[] key) {
+            this.key = key;
+            this.aid = KeyDerivation.k4(key);
+            this.cipher = new CipherContext(key);
+        }
+    }
+
+    /**
+     * Segmented message being received
+     */
+    private final class IncomingTransfer {
+        private final int src;
+        private final int dst;
+        private final int seqZero;
+        private final byte[][] segments;
+        private final Runnable ackTimer = this::onAckTimerExpired;
+        private final Runnable incompleteTimer = this::onIncompleteTimerExpired;
+        private int blockAck;
+        private int ttl;
+        private boolean completed;
+
+        private IncomingTransfer(final int src, final int dst, final int seqZero, final int segN) {
+            this.src = src;
+            this.dst = dst;
+            this.seqZero = seqZero;
+            this.segments = new byte[segN + 1][];
+        }
+
+        private boolean isComplete() {
+            for (byte[] segment : segments) {
+                if (segment == null)
+                    return false;
+            }
+            return true;
+        }
+
+        private void onAckTimerExpired() {
+            if (!completed) {
+                sendBlockAck(this);
+                mNetwork.getExecutor().schedule(ackTimer, getAckTimeout(ttl));
+            }
+        }
+
+        private void onIncompleteTimerExpired() {
+            mNetwork.getExecutor().cancel(ackTimer);
+            mIncomingTransfers.remove(src);
+        }
+    }
+
+    /**
+     * Segmented message being sent
+     */
+    private final class OutgoingTransfer {
+        private final int src;
+        private final int dst;
+        private final byte[][] segments;
+        private final Runnable retransmissionTimer = this::onRetransmissionTimerExpired;
+        private int acknowledged;
+        private int retransmissions;
+
+        private OutgoingTransfer(final int src, final int dst, @NonNull final byte[][] segments) {
+            this.src = src;
+            this.dst = dst;
+            this.segments = segments;
+        }
+
+        private void onRetransmissionTimerExpired() {
+            if (retransmissions++ < SEGMENT_RETRANSMISSIONS) {
+                sendUnacknowledgedSegments(this);
+            } else {
+                mOutgoingTransfers.remove(Segmentation.getSeqZero(segments[0], 0));
+            }
+        }
+    }
+
+    private final int mUnicastAddress;
+    private final CipherContext mDeviceCipher;
+    private final List<List<SimulatedModel>> mElements = new ArrayList<>();
+    private final Map<Integer, AppKey> mAppKeys = new HashMap<>();
+    private final Map<Integer, Integer> mReplayProtectionList = new HashMap<>();
+    private final Map<Long, Boolean> mNetworkMessageCache = new LinkedHashMap<Long, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+            return size() > NETWORK_MESSAGE_CACHE_SIZE;
+        }
+    };
+    private final Map<Integer, IncomingTransfer> mIncomingTransfers = new HashMap<>();
+    private final Map<Integer, OutgoingTransfer> mOutgoingTransfers = new HashMap<>();
+    private SimulatedNetwork mNetwork;
+    private int mSequenceNumber;
+    private int mDefaultTtl = 5;
+    private long mReceivedMessageCount;
+    private long mSentMessageCount;
+
+    /**
+     * Constructs a provisioned node with a Configuration Server on the primary element
+     *
+     * @param unicastAddress Unicast address of the primary element
+     * @param deviceKey      Device key of the node
+     */
+    public SimulatedNode(final int unicastAddress, @NonNull final byte[] deviceKey) {
+        if (unicastAddress <= 0 || unicastAddress > 0x7FFF)
+            throw new IllegalArgumentException("Invalid unicast address");
+        mUnicastAddress = unicastAddress;
+        mDeviceCipher = new CipherContext(deviceKey);
+        addElement();
+        mElements.get(0).add(new ConfigurationServer(this));
+    }
+
+    public int getUnicastAddress() {
+        return mUnicastAddress;
+    }
+
+    public int getElementCount() {
+        return mElements.size();
+    }
+
+    /**
+     * Adds an element to the node
+     *
+     * @return index of the element
+     */
+    public int addElement() {
+        mElements.add(new ArrayList<>());
+        return mElements.size() - 1;
+    }
+
+    /**
+     * Adds a model to an element of the node
+     *
+     * @param elementIndex Index of the element, 0 for the primary element
+     * @param model        Model to be added
+     */
+    public void addModel(final int elementIndex, @NonNull final SimulatedModel model) {
+        mElements.get(elementIndex).add(model);
+    }
+
+    /**
+     * Adds an application key to the node, as the Config AppKey Add message does
+     *
+     * @param appKeyIndex Index of the application key
+     * @param key         Application key
+     * @return false if a different key is already stored at the index
+     */
+    public boolean addAppKey(final int appKeyIndex, @NonNull final byte[] key) {
+        final AppKey appKey = mAppKeys.get(appKeyIndex);
+        if (appKey != null)
+            return Arrays.equals(appKey.key, key);
+        mAppKeys.put(appKeyIndex, new AppKey(key.clone()));
+        return true;
+    }
+
+    public boolean hasAppKey(final int appKeyIndex) {
+        return mAppKeys.containsKey(appKeyIndex);
+    }
+
+    public int getDefaultTtl() {
+        return mDefaultTtl;
+    }
+
+    public void setDefaultTtl(final int defaultTtl) {
+        mDefaultTtl = defaultTtl;
+    }
+
+    /**
+     * Returns the number of access messages received and authenticated by the node
+     */
+    public long getReceivedMessageCount() {
+        return mReceivedMessageCount;
+    }
+
+    /**
+     * Returns the number of access messages sent by the node
+     */
+    public long getSentMessageCount() {
+        return mSentMessageCount;
+    }
+
+    /**
+     * Returns the models of the element with the given address or null if the address does not belong to the node
+     */
+    @Nullable
+    List<SimulatedModel> getModels(final int elementAddress) {
+        final int index = elementAddress - mUnicastAddress;
+        if (index < 0 || index >= mElements.size())
+            return null;
+        return Collections.unmodifiableList(mElements.get(index));
+    }
+
+    void attach(@NonNull final SimulatedNetwork network) {
+        if (mNetwork != null)
+            throw new IllegalArgumentException("Node already belongs to a network");
+        mNetwork = network;
+    }
+
+    void onNetworkPdu(@NonNull final byte[] pdu) {
+        final NetworkCodec.Pdu networkPdu = mNetwork.getCodec().decode(pdu);
+        if (networkPdu == null || !isAddressedTo(networkPdu.dst) || isUnicast(networkPdu.src) && isOwnAddress(networkPdu.src))
+            return;
+
+        if (mNetworkMessageCache.put(((long) networkPdu.src << 24) | networkPdu.sequenceNumber, Boolean.TRUE) != null)
+            return;
+
+        final byte[] lowerTransportPdu = networkPdu.lowerTransportPdu;
+        if (networkPdu.ctl == 1) {
+            if ((lowerTransportPdu[0] & 0xFF) == BLOCK_ACK_OPCODE && isUnicast(networkPdu.dst))
+                onBlockAck(lowerTransportPdu);
+        } else if ((lowerTransportPdu[0] & 0x80) == 0) {
+            if (!checkReplayProtection(networkPdu.src, networkPdu.sequenceNumber))
+                return;
+            final byte[] upperTransportPdu = Arrays.copyOfRange(lowerTransportPdu, 1, lowerTransportPdu.length);
+            onUpperTransportPdu(networkPdu.src, networkPdu.dst, networkPdu.sequenceNumber, lowerTransportPdu[0], 0, upperTransportPdu);
+        } else {
+            onSegment(networkPdu);
+        }
+    }
+
+    private void onSegment(@NonNull final NetworkCodec.Pdu networkPdu) {
+        final byte[] segment = networkPdu.lowerTransportPdu;
+        final int seqZero = Segmentation.getSeqZero(segment, 0);
+        final int segO = Segmentation.getSegO(segment, 0);
+        final int segN = Segmentation.getSegN(segment, 0);
+        if (segO > segN)
+            return;
+
+        final int seqAuth = getSeqAuth(networkPdu.sequenceNumber, seqZero);
+        IncomingTransfer transfer = mIncomingTransfers.get(networkPdu.src);
+        if (transfer == null || transfer.seqZero != seqZero) {
+            final Integer lastSeqAuth = mReplayProtectionList.get(networkPdu.src);
+            if (lastSeqAuth != null && seqAuth <= lastSeqAuth)
+                return;
+            if (transfer != null) {
+                mNetwork.getExecutor().cancel(transfer.ackTimer);
+                mNetwork.getExecutor().cancel(transfer.incompleteTimer);
+            }
+            transfer = new IncomingTransfer(networkPdu.src, networkPdu.dst, seqZero, segN);
+            mIncomingTransfers.put(networkPdu.src, transfer);
+            if (isUnicast(networkPdu.dst)) {
+                mNetwork.getExecutor().schedule(transfer.ackTimer, getAckTimeout(networkPdu.ttl));
+            }
+        } else if (transfer.completed) {
+            // The block ack got lost, acknowledge the retransmitted segment again
+            if (isUnicast(transfer.dst))
+                sendBlockAck(transfer);
+            return;
+        }
+        transfer.ttl = networkPdu.ttl;
+        mNetwork.getExecutor().cancel(transfer.incompleteTimer);
+        mNetwork.getExecutor().schedule(transfer.incompleteTimer, INCOMPLETE_TIMEOUT);
+
+        if (segN + 1 != transfer.segments.length || transfer.segments[segO] != null)
+            return;
+        transfer.segments[segO] = segment;
+        transfer.blockAck |= 1 << segO;
+        if (!transfer.isComplete())
+            return;
+
+        transfer.completed = true;
+        mNetwork.getExecutor().cancel(transfer.ackTimer);
+        if (isUnicast(transfer.dst))
+            sendBlockAck(transfer);
+        if (!checkReplayProtection(transfer.src, seqAuth))
+            return;
+        onUpperTransportPdu(transfer.src, transfer.dst, seqAuth, segment[0], Segmentation.getSzmic(segment, 0),
+                Segmentation.reassemble(transfer.segments));
+    }
+
+    /**
+     * Checks the sequence number of an unsegmented message or the SeqAuth of a reassembled one against the replay
+     * protection list and updates the list if the message is new
+     */
+    private boolean checkReplayProtection(final int src, final int seqAuth) {
+        final Integer lastSeqAuth = mReplayProtectionList.get(src);
+        if (lastSeqAuth != null && seqAuth <= lastSeqAuth)
+            return false;
+        mReplayProtectionList.put(src, seqAuth);
+        return true;
+    }
+
+    private void onBlockAck(@NonNull final byte[] pdu) {
+        if (pdu.length < 7)
+            return;
+        final int seqZero = ((pdu[1] & 0x7F) << 6) | ((pdu[2] & 0xFC) >> 2);
+        final OutgoingTransfer transfer = mOutgoingTransfers.get(seqZero);
+        if (transfer == null)
+            return;
+        transfer.acknowledged |= ((pdu[3] & 0xFF) << 24) | ((pdu[4] & 0xFF) << 16) | ((pdu[5] & 0xFF) << 8) | (pdu[6] & 0xFF);
+        mNetwork.getExecutor().cancel(transfer.retransmissionTimer);
+        if (transfer.acknowledged == 0) {
+            // Acknowledgement with no segments received means the destination is busy and cancels the transfer
+            mOutgoingTransfers.remove(seqZero);
+        } else if (Integer.bitCount(transfer.acknowledged) == transfer.segments.length) {
+            mOutgoingTransfers.remove(seqZero);
+        } else {
+            sendUnacknowledgedSegments(transfer);
+        }
+    }
+
+    private void onUpperTransportPdu(final int src,
+                                     final int dst,
+                                     final int sequenceNumber,
+                                     final byte header,
+                                     final int szmic,
+                                     @NonNull final byte[] upperTransportPdu) {
+        final int akf = (header >> 6) & 0x01;
+        final int aid = header & 0x3F;
+        final int micLength = UpperTransportCrypto.getTransMicLength(szmic);
+        final int ivIndex = mNetwork.getCodec().getIvIndex();
+        if (akf == 0) {
+            if (!isOwnAddress(dst))
+                return;
+            final byte[] nonce = UpperTransportCrypto.createDeviceNonce(szmic, sequenceNumber, src, dst, ivIndex);
+            final byte[] accessPdu = decrypt(mDeviceCipher, upperTransportPdu, nonce, micLength);
+            if (accessPdu != null)
+                onAccessPdu(src, dst, DEVICE_KEY_INDEX, accessPdu);
+            return;
+        }
+        final byte[] nonce = UpperTransportCrypto.createApplicationNonce(szmic, sequenceNumber, src, dst, ivIndex);
+        for (Map.Entry<Integer, AppKey> entry : mAppKeys.entrySet()) {
+            if (entry.getValue().aid != aid)
+                continue;
+            final byte[] accessPdu = decrypt(entry.getValue().cipher, upperTransportPdu, nonce, micLength);
+            if (accessPdu != null) {
+                onAccessPdu(src, dst, entry.getKey(), accessPdu);
+                return;
+            }
+        }
+    }
+
+    private void onAccessPdu(final int src, final int dst, final int appKeyIndex, @NonNull final byte[] accessPdu) {
+        if (accessPdu.length == 0 || accessPdu.length < AccessPdu.getOpCodeLength(accessPdu[0]))
+            return;
+        mReceivedMessageCount++;
+        final int opCode = AccessPdu.getOpCode(accessPdu);
+        final byte[] parameters = AccessPdu.getParameters(accessPdu);
+        for (int i = 0; i < mElements.size(); i++) {
+            final int elementAddress = mUnicastAddress + i;
+            if (isUnicast(dst) && dst != elementAddress)
+                continue;
+            for (SimulatedModel model : mElements.get(i)) {
+                if (appKeyIndex == DEVICE_KEY_INDEX ? !model.usesDeviceKey() : model.usesDeviceKey() || !model.isBoundTo(appKeyIndex))
+                    continue;
+                if (!isUnicast(dst) && dst != ALL_NODES_ADDRESS && !model.isSubscribedTo(dst))
+                    continue;
+                final SimulatedModel.Request request = new SimulatedModel.Request(opCode, parameters, src, dst,
+                        (responseOpCode, responseParameters) ->
+                                sendAccessMessage(elementAddress, src, appKeyIndex, AccessPdu.encode(responseOpCode, responseParameters)));
+                if (model.onMessage(request) && isUnicast(dst))
+                    return;
+            }
+        }
+    }
+
+    private void sendAccessMessage(final int src, final int dst, final int appKeyIndex, @NonNull final byte[] accessPdu) {
+        final int ivIndex = mNetwork.getCodec().getIvIndex();
+        final int sequenceNumber = nextSequenceNumber();
+        final byte[] upperTransportPdu;
+        final int header;
+        if (appKeyIndex == DEVICE_KEY_INDEX) {
+            final byte[] nonce = UpperTransportCrypto.createDeviceNonce(0, sequenceNumber, src, dst, ivIndex);
+            upperTransportPdu = mDeviceCipher.encryptCCM(accessPdu, nonce, UpperTransportCrypto.TRANS_MIC_LENGTH_32);
+            header = 0;
+        } else {
+            final AppKey appKey = mAppKeys.get(appKeyIndex);
+            final byte[] nonce = UpperTransportCrypto.createApplicationNonce(0, sequenceNumber, src, dst, ivIndex);
+            upperTransportPdu = appKey.cipher.encryptCCM(accessPdu, nonce, UpperTransportCrypto.TRANS_MIC_LENGTH_32);
+            header = (1 << 6) | appKey.aid;
+        }
+        mSentMessageCount++;
+
+        if (upperTransportPdu.length <= MAX_UNSEGMENTED_ACCESS_PAYLOAD_LENGTH) {
+            final byte[] lowerTransportPdu = new byte[1 + upperTransportPdu.length];
+            lowerTransportPdu[0] = (byte) header;
+            System.arraycopy(upperTransportPdu, 0, lowerTransportPdu, 1, upperTransportPdu.length);
+            transmit(0, src, dst, sequenceNumber, lowerTransportPdu);
+            return;
+        }
+
+        final int seqZero = sequenceNumber & SEQ_ZERO_MASK;
+        final byte[][] segments = Segmentation.segment(upperTransportPdu, header, 0, seqZero,
+                Segmentation.MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH);
+        final OutgoingTransfer transfer = new OutgoingTransfer(src, dst, segments);
+        if (isUnicast(dst))
+            mOutgoingTransfers.put(seqZero, transfer);
+        transmit(0, src, dst, sequenceNumber, segments[0]);
+        for (int segO = 1; segO < segments.length; segO++) {
+            transmit(0, src, dst, nextSequenceNumber(), segments[segO]);
+        }
+        if (isUnicast(dst))
+            mNetwork.getExecutor().schedule(transfer.retransmissionTimer, getRetransmissionTimeout());
+    }
+
+    private void sendUnacknowledgedSegments(@NonNull final OutgoingTransfer transfer) {
+        for (int segO = 0; segO < transfer.segments.length; segO++) {
+            if ((transfer.acknowledged & (1 << segO)) == 0)
+                transmit(0, transfer.src, transfer.dst, nextSequenceNumber(), transfer.segments[segO]);
+        }
+        mNetwork.getExecutor().schedule(transfer.retransmissionTimer, getRetransmissionTimeout());
+    }
+
+    private void sendBlockAck(@NonNull final IncomingTransfer transfer) {
+        final byte[] pdu = new byte[7];
+        pdu[0] = BLOCK_ACK_OPCODE;
+        pdu[1] = (byte) ((transfer.seqZero >> 6) & 0x7F);
+        pdu[2] = (byte) ((transfer.seqZero << 2) & 0xFC);
+        pdu[3] = (byte) (transfer.blockAck >>> 24);
+        pdu[4] = (byte) (transfer.blockAck >>> 16);
+        pdu[5] = (byte) (transfer.blockAck >>> 8);
+        pdu[6] = (byte) transfer.blockAck;
+        transmit(1, transfer.dst, transfer.src, nextSequenceNumber(), pdu);
+    }
+
+    private void transmit(final int ctl, final int src, final int dst, final int sequenceNumber, @NonNull final byte[] lowerTransportPdu) {
+        mNetwork.sendToProxy(mNetwork.getCodec().encode(ctl, mDefaultTtl, sequenceNumber, src, dst, lowerTransportPdu));
+    }
+
+    private int nextSequenceNumber() {
+        return mSequenceNumber++;
+    }
+
+    private long getRetransmissionTimeout() {
+        return 200 + 50L * mDefaultTtl;
+    }
+
+    private static long getAckTimeout(final int ttl) {
+        return 150 + 50L * ttl;
+    }
+
+    /**
+     * Returns the sequence number of the first segment, from which the upper transport nonce is built
+     */
+    private static int getSeqAuth(final int sequenceNumber, final int seqZero) {
+        int seqAuth = (sequenceNumber & ~SEQ_ZERO_MASK) | seqZero;
+        if (seqAuth > sequenceNumber)
+            seqAuth -= SEQ_ZERO_MASK + 1;
+        return seqAuth;
+    }
+
+    @Nullable
+    private static byte[] decrypt(@NonNull final CipherContext cipher,
+                                  @NonNull final byte[] upperTransportPdu,
+                                  @NonNull final byte[] nonce,
+                                  final int micLength) {
+        try {
+            return cipher.decryptCCM(upperTransportPdu, nonce, micLength);
+        } catch (InvalidCipherTextException ex) {
+            return null;
+        }
+    }
+
+    private boolean isAddressedTo(final int dst) {
+        if (isUnicast(dst))
+            return isOwnAddress(dst);
+        if (dst == ALL_NODES_ADDRESS)
+            return true;
+        for (List<SimulatedModel> element : mElements) {
+            for (SimulatedModel model : element) {
+                if (model.isSubscribedTo(dst))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOwnAddress(final int address) {
+        return address >= mUnicastAddress && address < mUnicastAddress + mElements.size();
+    }
+
+    private static boolean isUnicast(final int address) {
+        return address > 0 && address <= 0x7FFF;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.simulator;
+
+import java.util.PriorityQueue;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.MeshExecutor;
+
+/**
+ * {@link MeshExecutor} running on a virtual clock.
+ * <p>
+ * Tasks only run when the clock is advanced, so that timers of several seconds, such as the incomplete timer or
+ * acknowledged message timeouts, can be simulated without waiting. Use the same executor for the mesh stack and the
+ * {@link SimulatedNetwork} to load test the library deterministically. Tasks may be posted from any thread, such as the
+ * database thread of the mesh stack, but only run on the thread advancing the clock.
+ * </p>
+ */
+public final class VirtualTimeExecutor implements MeshExecutor {
+
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+        private final Runnable task;
+        private final long time;
+        private final long order;
+
+        private ScheduledTask(final Runnable task, final long time, final long order) {
+            this.task = task;
+            this.time = time;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(final ScheduledTask other) {
+            if (time != other.time)
+                return time < other.time ? -1 : 1;
+            return Long.compare(order, other.order);
+        }
+    }
+
+    private final PriorityQueue<ScheduledTask> mTasks = new PriorityQueue<>();
+    private long mTime;
+    private long mOrder;
+
+    @Override
+    public void execute(@NonNull final Runnable task) {
+        schedule(task, 0);
+    }
+
+    @Override
+    public synchronized void schedule(@NonNull final Runnable task, final long delay) {
+        mTasks.add(new ScheduledTask(task, mTime + Math.max(0, delay), mOrder++));
+    }
+
+    @Override
+    public synchronized void cancel(@NonNull final Runnable task) {
+        mTasks.removeIf(scheduledTask -> scheduledTask.task == task);
+    }
+
+    /**
+     * Returns the current time of the virtual clock in milliseconds
+     */
+    public synchronized long currentTimeMillis() {
+        return mTime;
+    }
+
+    /**
+     * Returns true if there are no pending tasks
+     */
+    public synchronized boolean isIdle() {
+        return mTasks.isEmpty();
+    }
+
+    /**
+     * Advances the clock by the given time running all tasks due until then in order
+     *
+     * @param time Time in milliseconds
+     * @return number of tasks run
+     */
+    public int advanceTimeBy(final long time) {
+        final long end;
+        synchronized (this) {
+            end = mTime + time;
+        }
+        int count = 0;
+        Runnable task;
+        while ((task = poll(end)) != null) {
+            task.run();
+            count++;
+        }
+        synchronized (this) {
+            mTime = end;
+        }
+        return count;
+    }
+
+    /**
+     * Runs tasks in order, advancing the clock to each of them, until there are no pending tasks left
+     *
+     * @return number of tasks run
+     */
+    public int runUntilIdle() {
+        int count = 0;
+        Runnable task;
+        while ((task = poll(Long.MAX_VALUE)) != null) {
+            task.run();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Removes the next task due until the given time and advances the clock to it. Tasks are run outside of the lock,
+     * so that they can schedule further tasks.
+     */
+    private synchronized Runnable poll(final long end) {
+        final ScheduledTask task = mTasks.peek();
+        if (task == null || task.time > end)
+            return null;
+        mTasks.poll();
+        mTime = task.time;
+        return task.task;
+    }
+}
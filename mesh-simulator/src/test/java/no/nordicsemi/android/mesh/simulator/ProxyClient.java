@@ -0,0 +1,156 @@
+package no.nordicsemi.android.mesh.simulator;
+
+import org.spongycastle.crypto.InvalidCipherTextException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.nordicsemi.android.mesh.core.KeyDerivation;
+import no.nordicsemi.android.mesh.core.Segmentation;
+import no.nordicsemi.android.mesh.core.UpperTransportCrypto;
+import no.nordicsemi.android.mesh.utils.CipherContext;
+
+/**
+ * Minimal provisioner sending access messages through a {@link LoopbackBearer} in place of the mesh stack
+ */
+final class ProxyClient {
+
+    static final class Message {
+        final int src;
+        final int opCode;
+        final byte[] parameters;
+        final long time;
+
+        Message(final int src, final int opCode, final byte[] parameters, final long time) {
+            this.src = src;
+            this.opCode = opCode;
+            this.parameters = parameters;
+            this.time = time;
+        }
+    }
+
+    final List<Message> messages = new ArrayList<>();
+    final List<byte[]> blockAcks = new ArrayList<>();
+    int receivedSegments;
+
+    private final VirtualTimeExecutor executor;
+    private final LoopbackBearer bearer;
+    private final NetworkCodec codec;
+    private final int address;
+    private final byte[] deviceKey;
+    private final byte[] appKey;
+    private final Map<Integer, byte[][]> incomingSegments = new HashMap<>();
+    private ByteArrayOutputStream gattBuffer;
+    private int sequenceNumber;
+
+    ProxyClient(final VirtualTimeExecutor executor,
+                final SimulatedNetwork network,
+                final byte[] networkKey,
+                final int ivIndex,
+                final int address,
+                final byte[] deviceKey,
+                final byte[] appKey) {
+        this.executor = executor;
+        this.deviceKey = deviceKey;
+        this.appKey = appKey;
+        this.bearer = new LoopbackBearer(network, 20);
+        this.codec = new NetworkCodec(networkKey, ivIndex);
+        this.address = address;
+        bearer.setNotificationListener(this::onNotification);
+    }
+
+    LoopbackBearer getBearer() {
+        return bearer;
+    }
+
+    void send(final int dst, final byte[] key, final boolean deviceKey, final int opCode, final byte[] parameters) {
+        final int seq = sequenceNumber++;
+        final byte[] nonce = deviceKey
+                ? UpperTransportCrypto.createDeviceNonce(0, seq, address, dst, codec.getIvIndex())
+                : UpperTransportCrypto.createApplicationNonce(0, seq, address, dst, codec.getIvIndex());
+        final byte[] upper = new CipherContext(key).encryptCCM(AccessPdu.encode(opCode, parameters), nonce, 4);
+        final int header = deviceKey ? 0 : (1 << 6) | KeyDerivation.k4(key);
+        if (upper.length <= 15) {
+            final byte[] lower = new byte[1 + upper.length];
+            lower[0] = (byte) header;
+            System.arraycopy(upper, 0, lower, 1, upper.length);
+            write(codec.encode(0, 5, seq, address, dst, lower));
+            return;
+        }
+        final byte[][] segments = Segmentation.segment(upper, header, 0, seq & 0x1FFF, 12);
+        write(codec.encode(0, 5, seq, address, dst, segments[0]));
+        for (int i = 1; i < segments.length; i++) {
+            write(codec.encode(0, 5, sequenceNumber++, address, dst, segments[i]));
+        }
+    }
+
+    /**
+     * Writes a pdu the way the mesh stack does, with the chunks of the proxy SAR written back to back
+     */
+    private void write(final byte[] pdu) {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (byte[] chunk : ProxySar.segment(bearer.getMtu(), pdu)) {
+            data.write(chunk, 0, chunk.length);
+        }
+        bearer.send(data.toByteArray());
+    }
+
+    private void onNotification(final byte[] chunk) {
+        final int sar = (chunk[0] & 0xFF) >> 6;
+        if (sar == 0b00 || sar == 0b01) {
+            gattBuffer = new ByteArrayOutputStream();
+            gattBuffer.write(chunk[0] & 0x3F);
+        }
+        gattBuffer.write(chunk, 1, chunk.length - 1);
+        if (sar == 0b00 || sar == 0b11) {
+            onNetworkPdu(gattBuffer.toByteArray());
+        }
+    }
+
+    private void onNetworkPdu(final byte[] pdu) {
+        final NetworkCodec.Pdu networkPdu = codec.decode(pdu);
+        if (networkPdu == null)
+            return;
+        final byte[] lower = networkPdu.lowerTransportPdu;
+        if (networkPdu.ctl == 1) {
+            blockAcks.add(lower);
+        } else if ((lower[0] & 0x80) == 0) {
+            onUpperTransportPdu(networkPdu.src, networkPdu.sequenceNumber, lower[0], Arrays.copyOfRange(lower, 1, lower.length));
+        } else {
+            receivedSegments++;
+            final int seqZero = Segmentation.getSeqZero(lower, 0);
+            byte[][] segments = incomingSegments.get(seqZero);
+            if (segments == null) {
+                segments = new byte[Segmentation.getSegN(lower, 0) + 1][];
+                incomingSegments.put(seqZero, segments);
+            }
+            if (segments.length == 0)
+                return;
+            segments[Segmentation.getSegO(lower, 0)] = lower;
+            for (byte[] segment : segments) {
+                if (segment == null)
+                    return;
+            }
+            incomingSegments.put(seqZero, new byte[0][]);
+            final int seqAuth = (networkPdu.sequenceNumber & ~0x1FFF) | seqZero;
+            onUpperTransportPdu(networkPdu.src, seqAuth, lower[0], Segmentation.reassemble(segments));
+        }
+    }
+
+    private void onUpperTransportPdu(final int src, final int seq, final byte header, final byte[] upper) {
+        final boolean akf = (header & 0x40) != 0;
+        final byte[] nonce = akf
+                ? UpperTransportCrypto.createApplicationNonce(0, seq, src, address, codec.getIvIndex())
+                : UpperTransportCrypto.createDeviceNonce(0, seq, src, address, codec.getIvIndex());
+        try {
+            final byte[] access = new CipherContext(akf ? appKey : deviceKey).decryptCCM(upper, nonce, 4);
+            messages.add(new Message(src, AccessPdu.getOpCode(access), AccessPdu.getParameters(access), executor.currentTimeMillis()));
+        } catch (InvalidCipherTextException ex) {
+            throw new AssertionError("Failed to decrypt response", ex);
+        }
+    }
+}
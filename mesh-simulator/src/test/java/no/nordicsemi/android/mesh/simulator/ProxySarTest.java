@@ -0,0 +1,42 @@
+package no.nordicsemi.android.mesh.simulator;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProxySarTest {
+
+    private static final int MTU = 20;
+
+    @Test
+    public void testShortPduIsNotSegmented() {
+        final byte[] pdu = new byte[MTU];
+        assertSame(pdu, ProxySar.segment(MTU, pdu)[0]);
+        assertSame(pdu, ProxySar.reassemble(MTU, pdu));
+    }
+
+    @Test
+    public void testSegmentAndReassemble() {
+        final byte[] pdu = new byte[50];
+        for (int i = 1; i < pdu.length; i++) {
+            pdu[i] = (byte) i;
+        }
+        final byte[][] chunks = ProxySar.segment(MTU, pdu);
+        assertEquals(3, chunks.length);
+        assertEquals(0x40, chunks[0][0]);
+        assertEquals((byte) 0x80, chunks[1][0]);
+        assertEquals((byte) 0xC0, chunks[2][0]);
+
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            assertTrue(chunk.length <= MTU);
+            data.write(chunk, 0, chunk.length);
+        }
+        assertArrayEquals(pdu, ProxySar.reassemble(MTU, data.toByteArray()));
+    }
+}
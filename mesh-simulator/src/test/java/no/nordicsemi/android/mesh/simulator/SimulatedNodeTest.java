@@ -0,0 +1,147 @@
+package no.nordicsemi.android.mesh.simulator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimulatedNodeTest {
+
+    private static final byte[] NETWORK_KEY = toByteArray("7dd7364cd842ad18c17c2b820c84c3d6");
+    private static final byte[] DEVICE_KEY = toByteArray("9d6dd0e96eb25dc19a40ed9914f8f03f");
+    private static final byte[] APP_KEY = toByteArray("63964771734fbd76e3b40519d1d94a48");
+    private static final int IV_INDEX = 0x12345678;
+    private static final int PROVISIONER_ADDRESS = 0x0001;
+    private static final int NODE_ADDRESS = 0x0002;
+
+    private final VirtualTimeExecutor executor = new VirtualTimeExecutor();
+    private final GenericOnOffServer onOffServer = new GenericOnOffServer();
+    private final SensorServer sensorServer = new SensorServer();
+    private SimulatedNetwork network;
+    private SimulatedNode node;
+    private ProxyClient client;
+
+    private void setUp(final LinkConditions conditions) {
+        network = new SimulatedNetwork(executor, NETWORK_KEY, IV_INDEX, conditions, 1);
+        node = new SimulatedNode(NODE_ADDRESS, DEVICE_KEY);
+        node.addModel(0, onOffServer);
+        node.addModel(0, new GenericLevelServer());
+        node.addModel(node.addElement(), sensorServer);
+        network.addNode(node);
+        client = new ProxyClient(executor, network, NETWORK_KEY, IV_INDEX, PROVISIONER_ADDRESS, DEVICE_KEY, APP_KEY);
+    }
+
+    @Test
+    public void testSegmentedCompositionData() {
+        setUp(LinkConditions.PERFECT);
+        client.send(NODE_ADDRESS, DEVICE_KEY, true, ConfigurationServer.CONFIG_COMPOSITION_DATA_GET, new byte[]{0x00});
+        executor.runUntilIdle();
+
+        assertEquals(1, client.messages.size());
+        final ProxyClient.Message status = client.messages.get(0);
+        assertEquals(NODE_ADDRESS, status.src);
+        assertEquals(ConfigurationServer.CONFIG_COMPOSITION_DATA_STATUS, status.opCode);
+        assertArrayEquals(toByteArray("005900000000002000020000000300000000100210000001000011"), status.parameters);
+        // The client never acknowledges, so the node retransmits all segments until it gives up
+        assertTrue(client.receivedSegments > 3);
+    }
+
+    @Test
+    public void testSegmentedAppKeyAddIsAcknowledged() {
+        setUp(LinkConditions.PERFECT);
+        addAppKey();
+        executor.runUntilIdle();
+
+        assertTrue(node.hasAppKey(0));
+        assertEquals(1, client.blockAcks.size());
+        final byte[] blockAck = client.blockAcks.get(0);
+        assertEquals(0x00, blockAck[0]);
+        assertEquals(0x03, blockAck[6]);
+        assertEquals(ConfigurationServer.CONFIG_APPKEY_STATUS, client.messages.get(0).opCode);
+        assertEquals(0x00, client.messages.get(0).parameters[0]);
+    }
+
+    @Test
+    public void testReorderedSegmentsAreReassembled() {
+        setUp(new LinkConditions(0, 10, 100));
+        addAppKey();
+        executor.runUntilIdle();
+
+        assertTrue(node.hasAppKey(0));
+        assertEquals(1, client.messages.size());
+    }
+
+    @Test
+    public void testGenericOnOffRequiresBinding() {
+        setUp(LinkConditions.PERFECT);
+        node.addAppKey(0, APP_KEY);
+        client.send(NODE_ADDRESS, APP_KEY, false, GenericOnOffServer.GENERIC_ON_OFF_SET, new byte[]{0x01, 0x00});
+        executor.runUntilIdle();
+        assertTrue(client.messages.isEmpty());
+
+        client.send(NODE_ADDRESS, DEVICE_KEY, true, ConfigurationServer.CONFIG_MODEL_APP_BIND, new byte[]{0x02, 0x00, 0x00, 0x00, 0x00, 0x10});
+        client.send(NODE_ADDRESS, APP_KEY, false, GenericOnOffServer.GENERIC_ON_OFF_SET, new byte[]{0x01, 0x01});
+        executor.runUntilIdle();
+
+        assertEquals(2, client.messages.size());
+        assertEquals(ConfigurationServer.CONFIG_MODEL_APP_STATUS, client.messages.get(0).opCode);
+        assertEquals(0x00, client.messages.get(0).parameters[0]);
+        assertEquals(GenericOnOffServer.GENERIC_ON_OFF_STATUS, client.messages.get(1).opCode);
+        assertArrayEquals(new byte[]{0x01}, client.messages.get(1).parameters);
+        assertTrue(onOffServer.getState());
+    }
+
+    @Test
+    public void testSensorStatus() {
+        setUp(LinkConditions.PERFECT);
+        node.addAppKey(0, APP_KEY);
+        sensorServer.bindAppKey(0);
+        sensorServer.setValue(0x004D, new byte[]{0x2A});
+        client.send(NODE_ADDRESS + 1, APP_KEY, false, SensorServer.SENSOR_GET, new byte[0]);
+        executor.runUntilIdle();
+
+        assertEquals(1, client.messages.size());
+        assertEquals(NODE_ADDRESS + 1, client.messages.get(0).src);
+        assertEquals(SensorServer.SENSOR_STATUS, client.messages.get(0).opCode);
+        assertArrayEquals(new byte[]{(byte) 0xA0, 0x09, 0x2A}, client.messages.get(0).parameters);
+    }
+
+    @Test
+    public void testLatency() {
+        setUp(new LinkConditions(0, 50, 0));
+        node.addAppKey(0, APP_KEY);
+        onOffServer.bindAppKey(0);
+        client.send(NODE_ADDRESS, APP_KEY, false, GenericOnOffServer.GENERIC_ON_OFF_GET, new byte[0]);
+        executor.runUntilIdle();
+
+        assertEquals(1, client.messages.size());
+        assertEquals(100, client.messages.get(0).time);
+    }
+
+    @Test
+    public void testLoss() {
+        setUp(new LinkConditions(1, 0, 0));
+        client.send(NODE_ADDRESS, DEVICE_KEY, true, ConfigurationServer.CONFIG_DEFAULT_TTL_GET, new byte[0]);
+        executor.runUntilIdle();
+
+        assertTrue(client.messages.isEmpty());
+        assertEquals(0, network.getDeliveredPduCount());
+        assertEquals(1, network.getDroppedPduCount());
+        assertEquals(1, client.getBearer().getSentPduCount());
+    }
+
+    private void addAppKey() {
+        final byte[] parameters = new byte[19];
+        System.arraycopy(APP_KEY, 0, parameters, 3, APP_KEY.length);
+        client.send(NODE_ADDRESS, DEVICE_KEY, true, ConfigurationServer.CONFIG_APPKEY_ADD, parameters);
+    }
+
+    private static byte[] toByteArray(final String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
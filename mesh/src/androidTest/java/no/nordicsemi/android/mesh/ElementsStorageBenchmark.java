@@ -0,0 +1,135 @@
+package no.nordicsemi.android.mesh;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import no.nordicsemi.android.mesh.transport.Element;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.SyntheticNodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks the storage of a synthetic network of 1000 nodes with two elements and four models each.
+ * <p>
+ * Load is the time to read all nodes of the network from the database, as when the network is loaded, and update is
+ * the time to write a single node, as every node update re-encodes its elements. The elements are also decoded from
+ * the binary encoding stored since database version 14 and from the json encoding it replaced. The size of the
+ * database file is logged once all nodes have been written.
+ * </p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class ElementsStorageBenchmark {
+
+    private static final String TAG = ElementsStorageBenchmark.class.getSimpleName();
+    private static final String DATABASE_NAME = "elements_benchmark.db";
+    private static final int NODES = 1000;
+
+    @Rule
+    public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private MeshNetworkDb database;
+    private String meshUuid;
+    private List<ProvisionedMeshNode> nodes;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        database = Room.databaseBuilder(context, MeshNetworkDb.class, DATABASE_NAME).build();
+        meshUuid = UUID.randomUUID().toString().toUpperCase(Locale.US);
+        database.meshNetworkDao().insert(new MeshNetwork(meshUuid));
+        nodes = SyntheticNodes.create(meshUuid, NODES);
+        database.provisionedMeshNodesDao().insert(nodes);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void loadNodes() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            assertEquals(NODES, database.provisionedMeshNodesDao().getNodes(meshUuid).size());
+        }
+    }
+
+    @Test
+    public void updateNode() {
+        final ProvisionedMeshNode node = nodes.get(NODES / 2);
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            database.provisionedMeshNodeDao().update(node);
+        }
+    }
+
+    @Test
+    public void decodeBinaryElements() {
+        final List<byte[]> encoded = new ArrayList<>(NODES);
+        for (ProvisionedMeshNode node : nodes) {
+            encoded.add(MeshTypeConverters.elementsToBytes(node.getElements()));
+        }
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (byte[] elements : encoded) {
+                MeshTypeConverters.fromBytesToElements(elements);
+            }
+        }
+    }
+
+    @Test
+    public void decodeJsonElements() {
+        final List<String> encoded = new ArrayList<>(NODES);
+        for (ProvisionedMeshNode node : nodes) {
+            encoded.add(MeshTypeConverters.elementsToJson(node.getElements()));
+        }
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (String elements : encoded) {
+                MeshTypeConverters.fromJsonToElements(elements);
+            }
+        }
+    }
+
+    @Test
+    public void databaseSize() {
+        // Moves the pages in the write-ahead log in to the database file before measuring it
+        final Cursor cursor = database.getOpenHelper().getWritableDatabase().query("PRAGMA wal_checkpoint(TRUNCATE)");
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+        long elementsSize = 0;
+        for (ProvisionedMeshNode node : nodes) {
+            final Map<Integer, Element> elements = node.getElements();
+            elementsSize += MeshTypeConverters.elementsToBytes(elements).length;
+        }
+        final long size = context.getDatabasePath(DATABASE_NAME).length();
+        assertTrue(size > elementsSize);
+        Log.i(TAG, "Database size of " + NODES + " nodes: " + size + " B, elements: " + elementsSize + " B");
+    }
+}
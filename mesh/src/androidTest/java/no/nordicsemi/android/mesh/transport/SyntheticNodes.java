@@ -0,0 +1,77 @@
+package no.nordicsemi.android.mesh.transport;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.Features;
+import no.nordicsemi.android.mesh.models.ConfigurationServerModel;
+import no.nordicsemi.android.mesh.models.SigModelParser;
+import no.nordicsemi.android.mesh.models.VendorModel;
+import no.nordicsemi.android.mesh.utils.HeartbeatPublication;
+
+/**
+ * Builds a synthetic network of configured nodes for the instrumented benchmarks.
+ */
+public final class SyntheticNodes {
+
+    private SyntheticNodes() {
+    }
+
+    /**
+     * Creates nodes with two elements and four models each, a Configuration Server with a heartbeat publication, a
+     * bound, subscribed and publishing Generic OnOff Server and a Scene Server on the primary element and a vendor
+     * model on the secondary element.
+     *
+     * @param meshUuid UUID of the network the nodes belong to
+     * @param count    Number of nodes
+     */
+    public static List<ProvisionedMeshNode> create(final String meshUuid, final int count) {
+        final List<ProvisionedMeshNode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int unicastAddress = 1 + i * 2;
+            final ProvisionedMeshNode node = new ProvisionedMeshNode();
+            node.setUuid(UUID.randomUUID().toString().toUpperCase(Locale.US));
+            node.setMeshUuid(meshUuid);
+            node.setNodeName("Node " + unicastAddress);
+            node.setUnicastAddress(unicastAddress);
+            node.setDeviceKey(new byte[16]);
+            node.setElements(createElements(unicastAddress));
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private static Map<Integer, Element> createElements(final int unicastAddress) {
+        final ConfigurationServerModel configurationServer = new ConfigurationServerModel(0x0000);
+        configurationServer.setHeartbeatPublication(new HeartbeatPublication(0xC001, (byte) 0x11, (byte) 0x05, 127,
+                new Features(Features.ENABLED, Features.UNSUPPORTED, Features.DISABLED, Features.ENABLED), 0));
+
+        final MeshModel onOffServer = SigModelParser.getSigModel(0x1000);
+        onOffServer.mBoundAppKeyIndexes.add(0);
+        onOffServer.subscriptionAddresses.add(0xC000);
+        onOffServer.mPublicationSettings = new PublicationSettings(0xC001, null, 0, false, 5, 1, 1, 0, 0);
+
+        final MeshModel sceneServer = SigModelParser.getSigModel(0x1203);
+        sceneServer.mBoundAppKeyIndexes.add(0);
+        sceneServer.sceneNumbers.add(1);
+
+        final Map<Integer, MeshModel> primaryModels = new LinkedHashMap<>();
+        primaryModels.put(configurationServer.getModelId(), configurationServer);
+        primaryModels.put(onOffServer.getModelId(), onOffServer);
+        primaryModels.put(sceneServer.getModelId(), sceneServer);
+
+        final VendorModel vendorModel = new VendorModel(0x00590001);
+        vendorModel.mBoundAppKeyIndexes.add(0);
+        final Map<Integer, MeshModel> secondaryModels = new LinkedHashMap<>();
+        secondaryModels.put(vendorModel.getModelId(), vendorModel);
+
+        final Map<Integer, Element> elements = new LinkedHashMap<>();
+        elements.put(unicastAddress, new Element(unicastAddress, 0x0100, primaryModels, "Primary"));
+        elements.put(unicastAddress + 1, new Element(unicastAddress + 1, 0, secondaryModels, "Secondary"));
+        return elements;
+    }
+}
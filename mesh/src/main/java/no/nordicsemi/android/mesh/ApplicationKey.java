@@ -5,12 +5,14 @@ import android.os.Parcel;
 import com.google.gson.annotations.Expose;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Ignore;
 import androidx.room.Index;
+import no.nordicsemi.android.mesh.utils.CipherContext;
 import no.nordicsemi.android.mesh.utils.SecureUtils;
 
 import static androidx.room.ForeignKey.CASCADE;
@@ -34,6 +36,10 @@ public final class ApplicationKey extends MeshKey {
     private int aid;
     @Ignore
     private int oldAid;
+    @Ignore
+    private CipherContext cipher;
+    @Ignore
+    private CipherContext oldCipher;
 
     /**
      * Constructs a ApplicationKey object with a given key index and network key
@@ -112,6 +118,7 @@ public final class ApplicationKey extends MeshKey {
     public void setKey(@NonNull final byte[] key) {
         super.setKey(key);
         aid = SecureUtils.calculateK4(key);
+        cipher = null;
     }
 
     @Override
@@ -119,6 +126,7 @@ public final class ApplicationKey extends MeshKey {
         super.setOldKey(oldKey);
         if (oldKey != null)
             oldAid = SecureUtils.calculateK4(oldKey);
+        oldCipher = null;
     }
 
     public int getAid() {
@@ -129,6 +137,29 @@ public final class ApplicationKey extends MeshKey {
         return oldAid;
     }
 
+    /**
+     * Returns a {@link CipherContext} keyed with the application key that can be reused across messages.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public CipherContext getCipher() {
+        if (cipher == null) {
+            cipher = new CipherContext(key);
+        }
+        return cipher;
+    }
+
+    /**
+     * Returns a {@link CipherContext} keyed with the old application key or null if there is no old key.
+     */
+    @Nullable
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public CipherContext getOldCipher() {
+        if (oldCipher == null && oldKey != null) {
+            oldCipher = new CipherContext(oldKey);
+        }
+        return oldCipher;
+    }
+
     @NonNull
     @Override
     public ApplicationKey clone() throws CloneNotSupportedException {
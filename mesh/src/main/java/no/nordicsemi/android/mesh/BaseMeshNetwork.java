@@ -15,8 +15,10 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import androidx.annotation.IntDef;
@@ -31,6 +33,7 @@ import no.nordicsemi.android.mesh.transport.ConfigAppKeyUpdate;
 import no.nordicsemi.android.mesh.transport.ConfigKeyRefreshPhaseSet;
 import no.nordicsemi.android.mesh.transport.ConfigNetKeyUpdate;
 import no.nordicsemi.android.mesh.transport.Element;
+import no.nordicsemi.android.mesh.transport.MeshModel;
 import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
 import no.nordicsemi.android.mesh.utils.MeshAddress;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
@@ -118,6 +121,11 @@ abstract class BaseMeshNetwork {
     @ColumnInfo(name = "network_exclusions", defaultValue = "{}")
     @Expose
     protected Map<Integer, List<Integer>> networkExclusions = new HashMap<>();
+    @TypeConverters(MeshTypeConverters.class)
+    @NonNull
+    @ColumnInfo(name = "replay_protection_list", defaultValue = "{}")
+    @Expose(serialize = false, deserialize = false)
+    ReplayProtectionList replayProtectionList = new ReplayProtectionList();
     //Library related attributes
     @Ignore
     @ColumnInfo(name = "unicast_address")
@@ -133,6 +141,27 @@ abstract class BaseMeshNetwork {
     @Expose(serialize = false, deserialize = false)
     private ProxyFilter proxyFilter;
     @Ignore
+    private MeshNetworkChanges pendingChanges;
+    @Ignore
+    private NodeIndex nodeIndex;
+    @Ignore
+    private SubscriptionIndex subscriptionIndex;
+    @Ignore
+    private SubnetRoutingTable subnetRoutingTable;
+    @Ignore
+    private IntervalSet groupAddresses;
+    @Ignore
+    private IntervalSet sceneNumbers;
+    @Ignore
+    private IntervalSet excludedAddresses;
+    @Ignore
+    private int excludedAddressesIvIndex;
+    @Ignore
+    private final IntervalSet reservedAddresses = new IntervalSet();
+    // UUIDs of nodes deleted while the nodes are being loaded in the background, null once all nodes are loaded
+    @Ignore
+    private Set<String> nodesDeletedWhileLoading;
+    @Ignore
     protected final Comparator<ProvisionedMeshNode> nodeComparator = (node1, node2) ->
             Integer.compare(node1.getUnicastAddress(), node2.getUnicastAddress());
     @Ignore
@@ -188,6 +217,7 @@ abstract class BaseMeshNetwork {
         } else {
             newNetKey.setMeshUuid(meshUUID);
             netKeys.add(newNetKey);
+            invalidateSubnetRoutingTable();
             notifyNetKeyAdded(newNetKey);
         }
         return true;
@@ -231,6 +261,7 @@ abstract class BaseMeshNetwork {
                 //This will return true only if the key index and the key are the same
                 if (netKey.equals(networkKey)) {
                     netKey.setKey(key);
+                    invalidateSubnetRoutingTable();
                     return updateMeshKey(netKey);
                 } else {
                     return false;
@@ -310,6 +341,7 @@ abstract class BaseMeshNetwork {
             final NetworkKey netKey = getNetKey(keyIndex);
             if (netKey.equals(networkKey)) {
                 if (netKey.distributeKey(newNetKey)) {
+                    invalidateSubnetRoutingTable();
                     updateNodeKeyStatus(netKey);
                     if (updateMeshKey(netKey)) {
                         return netKey;
@@ -363,7 +395,12 @@ abstract class BaseMeshNetwork {
         if (!netKeys.contains(networkKey)) {
             throw new IllegalArgumentException("Network Key not distributed");
         }
-        return networkKey.switchToNewKey();
+        if (networkKey.switchToNewKey()) {
+            invalidateSubnetRoutingTable();
+            notifyNetKeyUpdated(networkKey);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -371,15 +408,24 @@ abstract class BaseMeshNetwork {
      * <p>
      * This initiates {@link KeyRefreshPhase#REVOKE_OLD_KEYS} of the Key Refresh Procedure in which user must send {@link ConfigKeyRefreshPhaseSet}
      * message with transition set to {@link KeyRefreshPhaseTransition#REVOKE_OLD_KEYS} to the other nodes going through the Key Refresh Procedure.
-     * The library at this point will set the given Network Key's Phase to {@link KeyRefreshPhase#NORMAL_OPERATION}.
+     * The library at this point will set the given Network Key's Phase to {@link KeyRefreshPhase#NORMAL_OPERATION} and
+     * discard the old keys of the Application Keys bound to it.
      * </p>
      *
      * @param networkKey Network key that was distributed
      * @return true if success or false otherwise
      */
     public boolean revokeOldKey(@NonNull final NetworkKey networkKey) {
-        if (netKeys.contains(networkKey)) {
-            return networkKey.revokeOldKey();
+        if (netKeys.contains(networkKey) && networkKey.revokeOldKey()) {
+            invalidateSubnetRoutingTable();
+            for (ApplicationKey appKey : appKeys) {
+                if (appKey.getBoundNetKeyIndex() == networkKey.getKeyIndex() && appKey.getOldKey() != null) {
+                    appKey.setOldKey(null);
+                    notifyAppKeyUpdated(appKey);
+                }
+            }
+            notifyNetKeyUpdated(networkKey);
+            return true;
         }
         return false;
     }
@@ -394,6 +440,7 @@ abstract class BaseMeshNetwork {
     public boolean removeNetKey(@NonNull final NetworkKey networkKey) throws IllegalArgumentException {
         if (!isKeyInUse(networkKey)) {
             if (netKeys.remove(networkKey)) {
+                invalidateSubnetRoutingTable();
                 notifyNetKeyDeleted(networkKey);
                 return true;
             } else {
@@ -637,6 +684,7 @@ abstract class BaseMeshNetwork {
                 if (tempKey.getKeyIndex() == key.getKeyIndex()) {
                     netKey = (NetworkKey) key;
                     netKeys.set(i, netKey);
+                    invalidateSubnetRoutingTable();
                     break;
                 }
             }
@@ -864,6 +912,7 @@ abstract class BaseMeshNetwork {
         if (provisioner.getProvisionerAddress() != null) {
             final ProvisionedMeshNode node = new ProvisionedMeshNode(provisioner, netKeys, appKeys);
             nodes.add(node);
+            indexNode(node);
             notifyNodeAdded(node);
         }
         return true;
@@ -929,6 +978,7 @@ abstract class BaseMeshNetwork {
                 if (node == null) {
                     node = new ProvisionedMeshNode(provisioner, netKeys, appKeys);
                     nodes.add(node);
+                    indexNode(node);
                     notifyNodeAdded(node);
                 } else {
                     for (int i = 0; i < nodes.size(); i++) {
@@ -943,6 +993,8 @@ abstract class BaseMeshNetwork {
                             node = new ProvisionedMeshNode(provisioner, netKeys, appKeys);
                             node.setSequenceNumber(sequenceNumber);
                             nodes.set(i, node);
+                            unindexNode(meshNode);
+                            indexNode(node);
                             notifyNodeUpdated(node);
                             break;
                         }
@@ -970,6 +1022,7 @@ abstract class BaseMeshNetwork {
         if (node == null)
             return true;
         else if (nodes.remove(node)) {
+            unindexNode(node);
             provisioner.assignProvisionerAddress(null);
             notifyNodeDeleted(node);
             return true;
@@ -1070,6 +1123,215 @@ abstract class BaseMeshNetwork {
      */
     void setNodes(@NonNull List<ProvisionedMeshNode> nodes) {
         this.nodes = nodes;
+        invalidateNodeIndex();
+    }
+
+    /**
+     * Returns the index of nodes by unicast address and UUID, building it if required.
+     */
+    private synchronized NodeIndex getNodeIndex() {
+        if (nodeIndex == null) {
+            nodeIndex = new NodeIndex(nodes);
+        }
+        return nodeIndex;
+    }
+
+    /**
+     * Returns the index of models by subscription address, building it if required.
+     */
+    private synchronized SubscriptionIndex getSubscriptionIndex() {
+        if (subscriptionIndex == null) {
+            subscriptionIndex = new SubscriptionIndex(nodes);
+        }
+        return subscriptionIndex;
+    }
+
+    private synchronized void indexNode(@NonNull final ProvisionedMeshNode node) {
+        getNodeIndex().add(node);
+        getSubscriptionIndex().add(node);
+    }
+
+    private synchronized void unindexNode(@NonNull final ProvisionedMeshNode node) {
+        getNodeIndex().remove(node);
+        getSubscriptionIndex().remove(node);
+    }
+
+    /**
+     * Adds a node or replaces the node with the same UUID, updating the indexes without rebuilding them.
+     *
+     * @param meshNode Node to be added or replaced
+     */
+    synchronized void putNode(@NonNull final ProvisionedMeshNode meshNode) {
+        final ProvisionedMeshNode node = getNodeIndex().get(meshNode.getUuid());
+        if (node != null) {
+            nodes.set(nodes.indexOf(node), meshNode);
+            unindexNode(node);
+        } else {
+            nodes.add(meshNode);
+        }
+        indexNode(meshNode);
+    }
+
+    /**
+     * Discards the node and subscription indexes, which will be rebuilt on the next lookup. This must be called after
+     * modifying {@link #nodes} directly instead of through {@link #addNode(ProvisionedMeshNode)} or {@link #deleteNode(ProvisionedMeshNode)}.
+     */
+    synchronized void invalidateNodeIndex() {
+        nodeIndex = null;
+        subscriptionIndex = null;
+    }
+
+    /**
+     * Re-indexes the subscriptions and publications of a node. This must be called after the elements of the node, or
+     * the subscription or publication settings of its models have been updated.
+     *
+     * @param node Node whose configuration has changed
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public synchronized void updateSubscriptionIndex(@NonNull final ProvisionedMeshNode node) {
+        if (subscriptionIndex != null && getNodeIndex().get(node.getUnicastAddress()) == node) {
+            subscriptionIndex.add(node);
+        }
+    }
+
+    /**
+     * Returns the elements with at least one model subscribed to the given address.
+     */
+    synchronized List<Element> getSubscribedElements(final int address) {
+        return getSubscriptionIndex().getElements(address);
+    }
+
+    /**
+     * Returns the models subscribed to the given address.
+     */
+    synchronized List<MeshModel> getSubscribedModels(final int address) {
+        return getSubscriptionIndex().getModels(address);
+    }
+
+    /**
+     * Returns the Label UUID of a virtual address known from the subscriptions or publications of the models.
+     */
+    synchronized UUID getVirtualLabel(final int address) {
+        return getSubscriptionIndex().getLabelUuid(address);
+    }
+
+    /**
+     * Returns the last element address of the node using an address between low and high, or low - 1 if none of
+     * these addresses are in use by a node.
+     */
+    synchronized int lastUsedUnicastAddress(final int low, final int high) {
+        if (nodesDeletedWhileLoading != null)
+            throw new IllegalStateException("Unicast addresses cannot be allocated until all nodes have been loaded");
+        return getNodeIndex().lastUsed(low, high);
+    }
+
+    /**
+     * Returns the set of group addresses in use, building it if required.
+     */
+    synchronized IntervalSet getGroupAddresses() {
+        if (groupAddresses == null) {
+            groupAddresses = new IntervalSet();
+            for (Group group : groups) {
+                groupAddresses.add(group.getAddress());
+            }
+        }
+        return groupAddresses;
+    }
+
+    /**
+     * Discards the set of group addresses in use, which will be rebuilt on the next lookup. This must be called after
+     * replacing {@link #groups}.
+     */
+    synchronized void invalidateGroupAddresses() {
+        groupAddresses = null;
+    }
+
+    /**
+     * Returns the set of scene numbers in use, building it if required.
+     */
+    synchronized IntervalSet getSceneNumbers() {
+        if (sceneNumbers == null) {
+            sceneNumbers = new IntervalSet();
+            for (Scene scene : scenes) {
+                sceneNumbers.add(scene.getNumber());
+            }
+        }
+        return sceneNumbers;
+    }
+
+    /**
+     * Discards the set of scene numbers in use, which will be rebuilt on the next lookup. This must be called after
+     * replacing {@link #scenes}.
+     */
+    synchronized void invalidateSceneNumbers() {
+        sceneNumbers = null;
+    }
+
+    /**
+     * Returns the set of unicast addresses excluded with the current IV Index and the current IV Index - 1, which must
+     * be considered as addresses in use. The set is rebuilt if required or if the IV Index has changed.
+     */
+    synchronized IntervalSet getExcludedAddresses() {
+        if (excludedAddresses == null || excludedAddressesIvIndex != ivIndex.getIvIndex()) {
+            excludedAddresses = new IntervalSet();
+            excludedAddressesIvIndex = ivIndex.getIvIndex();
+            addExcludedAddresses(networkExclusions.get(excludedAddressesIvIndex));
+            addExcludedAddresses(networkExclusions.get(excludedAddressesIvIndex - 1));
+        }
+        return excludedAddresses;
+    }
+
+    private void addExcludedAddresses(@Nullable final List<Integer> addresses) {
+        if (addresses != null) {
+            for (Integer address : addresses) {
+                excludedAddresses.add(address);
+            }
+        }
+    }
+
+    /**
+     * Returns the set of unicast addresses reserved for nodes that are being provisioned.
+     */
+    synchronized IntervalSet getReservedAddresses() {
+        return reservedAddresses;
+    }
+
+    /**
+     * Releases unicast addresses reserved for a node that is being provisioned, see
+     * {@link MeshNetwork#reserveUnicastAddress(int, Provisioner)}.
+     *
+     * @param address      Unicast address of the primary element
+     * @param elementCount Number of elements
+     */
+    synchronized void releaseUnicastAddresses(final int address, final int elementCount) {
+        reservedAddresses.remove(address, address + elementCount - 1);
+    }
+
+    /**
+     * Discards the set of excluded unicast addresses, which will be rebuilt on the next lookup. This must be called
+     * after modifying {@link #networkExclusions}.
+     */
+    synchronized void invalidateExcludedAddresses() {
+        excludedAddresses = null;
+    }
+
+    /**
+     * Returns the table used to look up the Network Keys matching the NID of a received Network PDU.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public synchronized SubnetRoutingTable getSubnetRoutingTable() {
+        if (subnetRoutingTable == null) {
+            subnetRoutingTable = new SubnetRoutingTable(netKeys);
+        }
+        return subnetRoutingTable;
+    }
+
+    /**
+     * Discards the subnet routing table, which will be rebuilt when the next Network PDU is received. This must be
+     * called whenever {@link #netKeys} are modified or a Network Key changes its Key Refresh phase.
+     */
+    synchronized void invalidateSubnetRoutingTable() {
+        subnetRoutingTable = null;
     }
 
     /**
@@ -1095,12 +1357,7 @@ abstract class BaseMeshNetwork {
      * @param unicastAddress unicast address of the node
      */
     public ProvisionedMeshNode getNode(@NonNull final byte[] unicastAddress) {
-        for (ProvisionedMeshNode node : nodes) {
-            if (node.hasUnicastAddress(MeshAddress.addressBytesToInt(unicastAddress))) {
-                return node;
-            }
-        }
-        return null;
+        return getNodeIndex().get(MeshAddress.addressBytesToInt(unicastAddress));
     }
 
     /**
@@ -1111,12 +1368,7 @@ abstract class BaseMeshNetwork {
     public ProvisionedMeshNode getNode(final Integer unicastAddress) {
         if(unicastAddress == null)
             return null;
-        for (ProvisionedMeshNode node : nodes) {
-            if (node.hasUnicastAddress(unicastAddress)) {
-                return node;
-            }
-        }
-        return null;
+        return getNodeIndex().get(unicastAddress.intValue());
     }
 
     /**
@@ -1125,12 +1377,7 @@ abstract class BaseMeshNetwork {
      * @param uuid unicast address of the node
      */
     public ProvisionedMeshNode getNode(final String uuid) {
-        for (ProvisionedMeshNode node : nodes) {
-            if (node.getUuid().equalsIgnoreCase(uuid)) {
-                return node;
-            }
-        }
-        return null;
+        return getNodeIndex().get(uuid);
     }
 
     /**
@@ -1191,16 +1438,16 @@ abstract class BaseMeshNetwork {
             throw new IllegalStateException("Application key added to the node is not a part of the mesh network");
         }
 
-        int index = 0;
-        for (ProvisionedMeshNode node : nodes) {
-            if (node.getUuid().equalsIgnoreCase(meshNode.getUuid())) {
-                nodes.set(index, meshNode); //replace a node if uuid matches
-                notifyNodeUpdated(meshNode);
-                return true;
-            }
-            index++;
+        final ProvisionedMeshNode node = getNode(meshNode.getUuid());
+        if (node != null) {
+            nodes.set(nodes.indexOf(node), meshNode); //replace a node if uuid matches
+            unindexNode(node);
+            indexNode(meshNode);
+            notifyNodeUpdated(meshNode);
+            return true;
         }
         if (nodes.add(meshNode)) {
+            indexNode(meshNode);
             notifyNodeAdded(meshNode);
             return true;
         }
@@ -1236,6 +1483,8 @@ abstract class BaseMeshNetwork {
             if(node != null){
                 excludeNode(node);
                 if(nodes.remove(node)){
+                    unindexNode(node);
+                    onNodeRemovedWhileLoading(node);
                     notifyNodeDeleted(node);
                 }
             } else {
@@ -1245,6 +1494,8 @@ abstract class BaseMeshNetwork {
             return true;
         }
         if(node != null && nodes.remove(node)) {
+            unindexNode(node);
+            onNodeRemovedWhileLoading(node);
             excludeNode(node);
             if(provisioner != null){
                 if(provisioners.remove(provisioner)){
@@ -1345,6 +1596,52 @@ abstract class BaseMeshNetwork {
         return sequenceNumbers.get(address, 0);
     }
 
+    /**
+     * Returns true if all nodes of the network have been loaded. When the network is loaded with
+     * {@link MeshManagerApi#loadMeshNetwork(NetworkReadyCallbacks)} only the provisioner nodes are available until
+     * {@link MeshManagerCallbacks#onNetworkLoaded(MeshNetwork)} is called.
+     */
+    public synchronized boolean areNodesLoaded() {
+        return nodesDeletedWhileLoading == null;
+    }
+
+    /**
+     * Marks the nodes of the network as being loaded in the background. Until {@link #onNodesLoaded(List)} is called
+     * unicast addresses cannot be allocated, as the addresses used by the nodes that are not yet loaded are unknown.
+     */
+    synchronized void setNodesLoading() {
+        nodesDeletedWhileLoading = new HashSet<>();
+    }
+
+    /**
+     * Adds the nodes loaded in the background to the network. Nodes that are already part of the network, i.e. the
+     * provisioner nodes or nodes added after the network was ready, are kept as they are and the nodes deleted in the
+     * meantime are not restored.
+     *
+     * @param loadedNodes all nodes of the network as stored in the database
+     */
+    synchronized void onNodesLoaded(@NonNull final List<ProvisionedMeshNode> loadedNodes) {
+        if (nodesDeletedWhileLoading == null)
+            return;
+        final List<ProvisionedMeshNode> allNodes = new ArrayList<>(nodes);
+        for (ProvisionedMeshNode node : loadedNodes) {
+            if (nodesDeletedWhileLoading.contains(node.getUuid()) || getNode(node.getUuid()) != null)
+                continue;
+            allNodes.add(node);
+            // The sequence number may have been updated from a message received since the network was ready
+            final int sequenceNumber = sequenceNumbers.get(node.getUnicastAddress(), 0);
+            sequenceNumbers.put(node.getUnicastAddress(), Math.max(sequenceNumber, node.getSequenceNumber()));
+        }
+        nodesDeletedWhileLoading = null;
+        setNodes(allNodes);
+    }
+
+    private synchronized void onNodeRemovedWhileLoading(@NonNull final ProvisionedMeshNode node) {
+        if (nodesDeletedWhileLoading != null) {
+            nodesDeletedWhileLoading.add(node.getUuid());
+        }
+    }
+
     /**
      * Loads the sequence numbers known to the network
      */
@@ -1367,6 +1664,23 @@ abstract class BaseMeshNetwork {
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public void setNetworkExclusions(@NonNull final Map<Integer, List<Integer>> networkExclusions) {
         this.networkExclusions = networkExclusions;
+        invalidateExcludedAddresses();
+    }
+
+    /**
+     * Returns the {@link ReplayProtectionList} of the network
+     */
+    @NonNull
+    public ReplayProtectionList getReplayProtectionList() {
+        return replayProtectionList;
+    }
+
+    /**
+     * Setter required by room db and is restricted for internal use.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void setReplayProtectionList(@NonNull final ReplayProtectionList replayProtectionList) {
+        this.replayProtectionList = replayProtectionList;
     }
 
 
@@ -1389,6 +1703,51 @@ abstract class BaseMeshNetwork {
         this.proxyFilter = proxyFilter;
     }
 
+    /**
+     * Returns the changes made to this network that are yet to be written to the database.
+     */
+    synchronized MeshNetworkChanges getPendingChanges() {
+        if (pendingChanges == null) {
+            pendingChanges = new MeshNetworkChanges();
+        }
+        return pendingChanges;
+    }
+
+    /**
+     * Removes an address from the scenes in the network and marks the affected scenes as changed.
+     *
+     * @param address Address to be removed.
+     * @return true if there were no pending changes before this call and a scene was changed
+     */
+    boolean removeSceneAddress(final int address) {
+        boolean firstChange = false;
+        for (Scene scene : scenes) {
+            if (scene.addresses.remove((Integer) address)) {
+                MeshLogger.debug(TAG, "Node removed from {}", scene.getName());
+                firstChange |= getPendingChanges().markSceneChanged(scene);
+            }
+        }
+        return firstChange;
+    }
+
+    /**
+     * Marks all network keys added to the given node as insecure and marks them as changed.
+     *
+     * @param node Provisioned mesh node that was provisioned insecurely.
+     * @return true if there were no pending changes before this call and a key was changed
+     */
+    boolean markNetKeysInsecure(@NonNull final ProvisionedMeshNode node) {
+        boolean firstChange = false;
+        for (NodeKey nodeKey : node.getAddedNetKeys()) {
+            final NetworkKey key = getNetKey(nodeKey.getIndex());
+            if (key != null) {
+                key.markAsInsecure();
+                firstChange |= getPendingChanges().markNetKeyChanged(key);
+            }
+        }
+        return firstChange;
+    }
+
     /**
      * Excludes a node from the mesh network.
      * The given node will marked as excluded and added to the exclusion list and the node will be removed once
@@ -1415,6 +1774,7 @@ abstract class BaseMeshNetwork {
         }
 
         networkExclusions.put(ivIndex.getIvIndex(), addresses);
+        invalidateExcludedAddresses();
         //notifyNetworkUpdated();
     }
 
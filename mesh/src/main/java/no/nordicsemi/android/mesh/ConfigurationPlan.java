@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyAdd;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyStatus;
+import no.nordicsemi.android.mesh.transport.ConfigCompositionDataGet;
+import no.nordicsemi.android.mesh.transport.ConfigCompositionDataStatus;
+import no.nordicsemi.android.mesh.transport.ConfigModelAppBind;
+import no.nordicsemi.android.mesh.transport.ConfigModelAppStatus;
+import no.nordicsemi.android.mesh.transport.ConfigModelPublicationSet;
+import no.nordicsemi.android.mesh.transport.ConfigModelPublicationStatus;
+import no.nordicsemi.android.mesh.transport.ConfigModelPublicationVirtualAddressSet;
+import no.nordicsemi.android.mesh.transport.ConfigModelSubscriptionAdd;
+import no.nordicsemi.android.mesh.transport.ConfigModelSubscriptionStatus;
+import no.nordicsemi.android.mesh.transport.ConfigModelSubscriptionVirtualAddressAdd;
+import no.nordicsemi.android.mesh.transport.Element;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+import no.nordicsemi.android.mesh.transport.MeshModel;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.PublicationSettings;
+import no.nordicsemi.android.mesh.utils.MeshAddress;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+/**
+ * Describes the desired configuration of the models of a node, independent of the composition of the node.
+ * <p>
+ * Models are matched by their SIG or vendor model identifier on every element of the node. Each matching model is
+ * bound to the given application keys, subscribed to the given addresses and set to publish as given, and the
+ * application keys are added to the node first. Rules given more than once for the same model are merged. Steps whose
+ * desired state already matches the state known for the node are skipped, so applying a plan again only sends the
+ * messages needed to bring the nodes up to date.
+ * </p>
+ * Apply a plan to many nodes using
+ * {@link MeshManagerApi#applyConfigurationPlan(ConfigurationPlan, List, int, ConfigurationPlanCallbacks)}.
+ */
+@SuppressWarnings("UnusedReturnValue")
+public final class ConfigurationPlan {
+
+    private final Map<Integer, ModelTemplate> templates = new LinkedHashMap<>();
+
+    public ConfigurationPlan() {
+    }
+
+    ConfigurationPlan(@NonNull final ConfigurationPlan plan) {
+        for (Map.Entry<Integer, ModelTemplate> entry : plan.templates.entrySet()) {
+            templates.put(entry.getKey(), new ModelTemplate(entry.getValue()));
+        }
+    }
+
+    /**
+     * Binds an application key to the models with the given model identifier.
+     *
+     * @param modelId SIG or vendor model identifier
+     * @param appKey  Application key to be bound
+     * @return this plan
+     */
+    public ConfigurationPlan bindAppKey(final int modelId, @NonNull final ApplicationKey appKey) {
+        getTemplate(modelId).appKeys.put(appKey.getKeyIndex(), appKey);
+        return this;
+    }
+
+    /**
+     * Subscribes the models with the given model identifier to a group address.
+     *
+     * @param modelId SIG or vendor model identifier
+     * @param address Group address
+     * @return this plan
+     * @throws IllegalArgumentException if the address is not a group address, use {@link #subscribe(int, Group)} for
+     *                                  virtual addresses.
+     */
+    public ConfigurationPlan subscribe(final int modelId, final int address) {
+        if (!MeshAddress.isValidGroupAddress(address))
+            throw new IllegalArgumentException("Invalid group address");
+        getTemplate(modelId).subscriptions.put(address, null);
+        return this;
+    }
+
+    /**
+     * Subscribes the models with the given model identifier to a group.
+     *
+     * @param modelId SIG or vendor model identifier
+     * @param group   Group, which may use a virtual address
+     * @return this plan
+     */
+    public ConfigurationPlan subscribe(final int modelId, @NonNull final Group group) {
+        getTemplate(modelId).subscriptions.put(group.getAddress(), group.getAddressLabel());
+        return this;
+    }
+
+    /**
+     * Sets the publication of the models with the given model identifier.
+     *
+     * @param modelId                 SIG or vendor model identifier
+     * @param publishAddress          Address to which the models publish
+     * @param appKey                  Application key used for publishing, which is also bound to the models
+     * @param publishTtl              Publication ttl
+     * @param publicationSteps        Publication steps for the publication period
+     * @param publicationResolution   Publication resolution of the publication period
+     * @param retransmitCount         Number of publication retransmits
+     * @param retransmitIntervalSteps Publish retransmit interval steps
+     * @return this plan
+     * @throws IllegalArgumentException if the address is a virtual address, use
+     *                                  {@link #publish(int, Group, ApplicationKey, int, int, int, int, int)} instead.
+     */
+    public ConfigurationPlan publish(final int modelId,
+                                     final int publishAddress,
+                                     @NonNull final ApplicationKey appKey,
+                                     final int publishTtl,
+                                     final int publicationSteps,
+                                     final int publicationResolution,
+                                     final int retransmitCount,
+                                     final int retransmitIntervalSteps) {
+        if (MeshAddress.isValidVirtualAddress(publishAddress))
+            throw new IllegalArgumentException("Virtual addresses require a group with a label UUID");
+        return setPublication(modelId, new Publication(publishAddress, null, appKey, publishTtl,
+                publicationSteps, publicationResolution, retransmitCount, retransmitIntervalSteps));
+    }
+
+    /**
+     * Sets the publication of the models with the given model identifier to a group.
+     *
+     * @param modelId                 SIG or vendor model identifier
+     * @param group                   Group to which the models publish, which may use a virtual address
+     * @param appKey                  Application key used for publishing, which is also bound to the models
+     * @param publishTtl              Publication ttl
+     * @param publicationSteps        Publication steps for the publication period
+     * @param publicationResolution   Publication resolution of the publication period
+     * @param retransmitCount         Number of publication retransmits
+     * @param retransmitIntervalSteps Publish retransmit interval steps
+     * @return this plan
+     */
+    public ConfigurationPlan publish(final int modelId,
+                                     @NonNull final Group group,
+                                     @NonNull final ApplicationKey appKey,
+                                     final int publishTtl,
+                                     final int publicationSteps,
+                                     final int publicationResolution,
+                                     final int retransmitCount,
+                                     final int retransmitIntervalSteps) {
+        return setPublication(modelId, new Publication(group.getAddress(), group.getAddressLabel(), appKey, publishTtl,
+                publicationSteps, publicationResolution, retransmitCount, retransmitIntervalSteps));
+    }
+
+    private ConfigurationPlan setPublication(final int modelId, @NonNull final Publication publication) {
+        final ModelTemplate template = getTemplate(modelId);
+        template.appKeys.put(publication.appKey.getKeyIndex(), publication.appKey);
+        template.publication = publication;
+        return this;
+    }
+
+    private ModelTemplate getTemplate(final int modelId) {
+        ModelTemplate template = templates.get(modelId);
+        if (template == null) {
+            template = new ModelTemplate();
+            templates.put(modelId, template);
+        }
+        return template;
+    }
+
+    /**
+     * Returns the application keys used by the plan.
+     */
+    List<ApplicationKey> getAppKeys() {
+        final Map<Integer, ApplicationKey> appKeys = new LinkedHashMap<>();
+        for (ModelTemplate template : templates.values()) {
+            appKeys.putAll(template.appKeys);
+        }
+        return new ArrayList<>(appKeys.values());
+    }
+
+    /**
+     * Returns the step reading the composition data of a node whose elements are not known yet.
+     */
+    static Step createCompositionDataStep() {
+        return new Step(new ConfigCompositionDataGet(), MeshAddress.UNASSIGNED_ADDRESS, 0);
+    }
+
+    /**
+     * Compiles the plan in to the messages required to configure a node, based on the composition and the state of
+     * the node known to the network.
+     *
+     * @param network Mesh network
+     * @param node    Node to be configured
+     * @param steps   List the steps are added to, application keys are added first
+     * @return number of steps skipped because the node is already configured accordingly
+     */
+    int compile(@NonNull final MeshNetwork network, @NonNull final ProvisionedMeshNode node, @NonNull final List<Step> steps) {
+        final Map<Integer, ApplicationKey> requiredAppKeys = new LinkedHashMap<>();
+        final List<Step> modelSteps = new ArrayList<>();
+        int skipped = 0;
+        for (Element element : node.getElements().values()) {
+            final int elementAddress = element.getElementAddress();
+            for (MeshModel model : element.getMeshModels().values()) {
+                final ModelTemplate template = templates.get(model.getModelId());
+                if (template == null)
+                    continue;
+                final int modelId = model.getModelId();
+                for (ApplicationKey appKey : template.appKeys.values()) {
+                    requiredAppKeys.put(appKey.getKeyIndex(), appKey);
+                    if (model.getBoundAppKeyIndexes().contains(appKey.getKeyIndex())) {
+                        skipped++;
+                    } else {
+                        modelSteps.add(new Step(new ConfigModelAppBind(elementAddress, modelId, appKey.getKeyIndex()),
+                                elementAddress, modelId));
+                    }
+                }
+                for (Map.Entry<Integer, UUID> subscription : template.subscriptions.entrySet()) {
+                    if (model.getSubscribedAddresses().contains(subscription.getKey())) {
+                        skipped++;
+                    } else if (subscription.getValue() != null) {
+                        modelSteps.add(new Step(new ConfigModelSubscriptionVirtualAddressAdd(elementAddress,
+                                subscription.getValue(), modelId), elementAddress, modelId));
+                    } else {
+                        modelSteps.add(new Step(new ConfigModelSubscriptionAdd(elementAddress,
+                                subscription.getKey(), modelId), elementAddress, modelId));
+                    }
+                }
+                final Publication publication = template.publication;
+                if (publication != null) {
+                    if (publication.matches(model.getPublicationSettings())) {
+                        skipped++;
+                    } else {
+                        modelSteps.add(new Step(publication.createMessage(elementAddress, modelId), elementAddress, modelId));
+                    }
+                }
+            }
+        }
+        for (ApplicationKey appKey : requiredAppKeys.values()) {
+            if (MeshParserUtils.getNodeKey(node.getAddedAppKeys(), appKey.getKeyIndex()) != null) {
+                skipped++;
+            } else {
+                final NetworkKey networkKey = network.getNetKey(appKey.getBoundNetKeyIndex());
+                steps.add(new Step(new ConfigAppKeyAdd(networkKey, appKey), MeshAddress.UNASSIGNED_ADDRESS, appKey.getKeyIndex()));
+            }
+        }
+        steps.addAll(modelSteps);
+        return skipped;
+    }
+
+    /**
+     * Desired configuration of the models with the same model identifier.
+     */
+    private static final class ModelTemplate {
+        final Map<Integer, ApplicationKey> appKeys = new LinkedHashMap<>();
+        final Map<Integer, UUID> subscriptions = new LinkedHashMap<>();
+        Publication publication;
+
+        ModelTemplate() {
+        }
+
+        ModelTemplate(@NonNull final ModelTemplate template) {
+            appKeys.putAll(template.appKeys);
+            subscriptions.putAll(template.subscriptions);
+            publication = template.publication;
+        }
+    }
+
+    private static final class Publication {
+        final int publishAddress;
+        final UUID labelUuid;
+        final ApplicationKey appKey;
+        final int publishTtl;
+        final int publicationSteps;
+        final int publicationResolution;
+        final int retransmitCount;
+        final int retransmitIntervalSteps;
+
+        Publication(final int publishAddress,
+                    @Nullable final UUID labelUuid,
+                    @NonNull final ApplicationKey appKey,
+                    final int publishTtl,
+                    final int publicationSteps,
+                    final int publicationResolution,
+                    final int retransmitCount,
+                    final int retransmitIntervalSteps) {
+            this.publishAddress = publishAddress;
+            this.labelUuid = labelUuid;
+            this.appKey = appKey;
+            this.publishTtl = publishTtl;
+            this.publicationSteps = publicationSteps;
+            this.publicationResolution = publicationResolution;
+            this.retransmitCount = retransmitCount;
+            this.retransmitIntervalSteps = retransmitIntervalSteps;
+        }
+
+        boolean matches(@Nullable final PublicationSettings settings) {
+            return settings != null
+                    && settings.getPublishAddress() == publishAddress
+                    && (labelUuid == null || labelUuid.equals(settings.getLabelUUID()))
+                    && settings.getAppKeyIndex() == appKey.getKeyIndex()
+                    && !settings.getCredentialFlag()
+                    && settings.getPublishTtl() == publishTtl
+                    && settings.getPublicationSteps() == publicationSteps
+                    && settings.getPublicationResolution() == publicationResolution
+                    && settings.getPublishRetransmitCount() == retransmitCount
+                    && settings.getPublishRetransmitIntervalSteps() == retransmitIntervalSteps;
+        }
+
+        MeshMessage createMessage(final int elementAddress, final int modelId) {
+            if (labelUuid != null) {
+                return new ConfigModelPublicationVirtualAddressSet(elementAddress, labelUuid, appKey.getKeyIndex(), false,
+                        publishTtl, publicationSteps, publicationResolution, retransmitCount, retransmitIntervalSteps, modelId);
+            }
+            return new ConfigModelPublicationSet(elementAddress, publishAddress, appKey.getKeyIndex(), false,
+                    publishTtl, publicationSteps, publicationResolution, retransmitCount, retransmitIntervalSteps, modelId);
+        }
+    }
+
+    /**
+     * A message sent to a node and the status acknowledging it.
+     */
+    static final class Step {
+        final MeshMessage message;
+        private final int elementAddress;
+        private final int id;
+
+        /**
+         * @param message        Message to send
+         * @param elementAddress Element address of the model configured, or unassigned for node wide messages
+         * @param id             Model identifier, or the application key index for node wide messages
+         */
+        Step(@NonNull final MeshMessage message, final int elementAddress, final int id) {
+            this.message = message;
+            this.elementAddress = elementAddress;
+            this.id = id;
+        }
+
+        /**
+         * Returns if the given status acknowledges the message successfully, or null if the status does not
+         * acknowledge the message.
+         */
+        @Nullable
+        Boolean getResult(@NonNull final MeshMessage status) {
+            if (message instanceof ConfigCompositionDataGet) {
+                return status instanceof ConfigCompositionDataStatus ? Boolean.TRUE : null;
+            } else if (message instanceof ConfigAppKeyAdd) {
+                if (status instanceof ConfigAppKeyStatus && ((ConfigAppKeyStatus) status).getAppKeyIndex() == id)
+                    return ((ConfigAppKeyStatus) status).isSuccessful();
+            } else if (message instanceof ConfigModelAppBind) {
+                if (status instanceof ConfigModelAppStatus) {
+                    final ConfigModelAppStatus appStatus = (ConfigModelAppStatus) status;
+                    if (appStatus.getElementAddress() == elementAddress && appStatus.getModelIdentifier() == id)
+                        return appStatus.isSuccessful();
+                }
+            } else if (message instanceof ConfigModelSubscriptionAdd || message instanceof ConfigModelSubscriptionVirtualAddressAdd) {
+                if (status instanceof ConfigModelSubscriptionStatus) {
+                    final ConfigModelSubscriptionStatus subscriptionStatus = (ConfigModelSubscriptionStatus) status;
+                    if (subscriptionStatus.getElementAddress() == elementAddress && subscriptionStatus.getModelIdentifier() == id)
+                        return subscriptionStatus.isSuccessful();
+                }
+            } else if (status instanceof ConfigModelPublicationStatus) {
+                final ConfigModelPublicationStatus publicationStatus = (ConfigModelPublicationStatus) status;
+                if (publicationStatus.getElementAddress() == elementAddress && publicationStatus.getModelIdentifier() == id)
+                    return publicationStatus.isSuccessful();
+            }
+            return null;
+        }
+    }
+}
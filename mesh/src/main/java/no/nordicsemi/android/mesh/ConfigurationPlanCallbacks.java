@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+/**
+ * Callbacks to notify the progress of a {@link ConfigurationPlan} applied with
+ * {@link MeshManagerApi#applyConfigurationPlan(ConfigurationPlan, List, int, ConfigurationPlanCallbacks)}.
+ */
+public interface ConfigurationPlanCallbacks {
+
+    /**
+     * Notifies when a node has been configured according to the plan.
+     *
+     * @param node         Node that was configured
+     * @param messageCount Number of messages sent to the node
+     * @param skippedCount Number of steps skipped as the node was already configured accordingly
+     */
+    void onNodeConfigured(@NonNull final ProvisionedMeshNode node, final int messageCount, final int skippedCount);
+
+    /**
+     * Notifies when a node did not acknowledge a message or responded with an error. No further messages of the plan
+     * are sent to the node.
+     *
+     * @param node    Node that failed
+     * @param message Message that failed
+     */
+    void onNodeConfigurationFailed(@NonNull final ProvisionedMeshNode node, @NonNull final MeshMessage message);
+
+    /**
+     * Notifies when the plan has been applied to all nodes.
+     *
+     * @param configuredNodes Nodes configured according to the plan
+     * @param failedNodes     Nodes that failed
+     */
+    void onConfigurationCompleted(@NonNull final List<ProvisionedMeshNode> configuredNodes, @NonNull final List<ProvisionedMeshNode> failedNodes);
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.logger.MeshLogger;
+import no.nordicsemi.android.mesh.transport.ConfigCompositionDataGet;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+/**
+ * Applies a {@link ConfigurationPlan} to many nodes.
+ * <p>
+ * Up to a given number of nodes are configured at the same time, each with one message at a time. Nodes whose
+ * composition is not known yet are sent a {@link ConfigCompositionDataGet} first. The plan is compiled for a node right
+ * before the node is configured, so that steps already applied, for example by a previous run, are skipped.
+ * </p>
+ */
+final class ConfigurationPlanProcedure implements MeshProcedure {
+
+    private static final String TAG = ConfigurationPlanProcedure.class.getSimpleName();
+
+    private final MeshNetwork network;
+    private final ConfigurationPlan plan;
+    private final ConfigurationPlan compiledPlan;
+    private final MessageSender sender;
+    private final ConfigurationPlanCallbacks callbacks;
+    private final int maxNodesInFlight;
+    private final Queue<ProvisionedMeshNode> pendingNodes = new LinkedList<>();
+    private final Map<Integer, NodeTask> activeNodes = new HashMap<>();
+    private final List<ProvisionedMeshNode> configuredNodes = new ArrayList<>();
+    private final List<ProvisionedMeshNode> failedNodes = new ArrayList<>();
+    private boolean finished;
+
+    /**
+     * Constructs the procedure.
+     *
+     * @param network          Mesh network
+     * @param plan             Configuration plan the procedure is cancelled with
+     * @param compiledPlan     Copy of the plan taken when it was applied, so that the plan may be changed meanwhile
+     * @param nodes            Nodes to configure, a node listed more than once is configured once
+     * @param maxNodesInFlight Maximum number of nodes configured at the same time
+     * @param sender           Sends the messages
+     * @param callbacks        Callbacks notifying the progress
+     */
+    ConfigurationPlanProcedure(@NonNull final MeshNetwork network,
+                               @NonNull final ConfigurationPlan plan,
+                               @NonNull final ConfigurationPlan compiledPlan,
+                               @NonNull final List<ProvisionedMeshNode> nodes,
+                               final int maxNodesInFlight,
+                               @NonNull final MessageSender sender,
+                               @NonNull final ConfigurationPlanCallbacks callbacks) {
+        if (maxNodesInFlight <= 0)
+            throw new IllegalArgumentException("Number of nodes in flight must be positive");
+        this.network = network;
+        this.plan = plan;
+        this.compiledPlan = compiledPlan;
+        this.maxNodesInFlight = maxNodesInFlight;
+        this.sender = sender;
+        this.callbacks = callbacks;
+        final Map<Integer, ProvisionedMeshNode> uniqueNodes = new LinkedHashMap<>();
+        for (ProvisionedMeshNode node : nodes) {
+            uniqueNodes.put(node.getUnicastAddress(), node);
+        }
+        pendingNodes.addAll(uniqueNodes.values());
+    }
+
+    ConfigurationPlan getPlan() {
+        return plan;
+    }
+
+    void start() {
+        MeshLogger.debug(TAG, "Applying configuration plan to {} nodes", pendingNodes.size());
+        next();
+    }
+
+    @Override
+    public void cancel() {
+        finished = true;
+        pendingNodes.clear();
+        activeNodes.clear();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public void onMeshMessageReceived(final int src, @NonNull final MeshMessage meshMessage) {
+        if (finished)
+            return;
+        final NodeTask task = activeNodes.get(src);
+        if (task == null)
+            return;
+        final Boolean successful = task.current.getResult(meshMessage);
+        if (successful == null)
+            return;
+        if (!successful) {
+            onNodeFailed(task);
+            return;
+        }
+        if (task.current.message instanceof ConfigCompositionDataGet) {
+            // The elements of the node have just been stored
+            task.compile();
+        }
+        if (!task.sendNext()) {
+            onNodeConfigured(task);
+        }
+    }
+
+    @Override
+    public void onTransactionFailed(final int dst) {
+        if (finished)
+            return;
+        final NodeTask task = activeNodes.get(dst);
+        if (task != null) {
+            onNodeFailed(task);
+        }
+    }
+
+    private void onNodeConfigured(@NonNull final NodeTask task) {
+        activeNodes.remove(task.node.getUnicastAddress());
+        configuredNodes.add(task.node);
+        callbacks.onNodeConfigured(task.node, task.sent, task.skipped);
+        next();
+    }
+
+    private void onNodeFailed(@NonNull final NodeTask task) {
+        activeNodes.remove(task.node.getUnicastAddress());
+        failedNodes.add(task.node);
+        MeshLogger.warn(TAG, "Configuring node 0x" + Integer.toHexString(task.node.getUnicastAddress()) + " failed");
+        callbacks.onNodeConfigurationFailed(task.node, task.current.message);
+        next();
+    }
+
+    /**
+     * Starts configuring the next nodes and completes the procedure once all nodes are done.
+     */
+    private void next() {
+        while (activeNodes.size() < maxNodesInFlight && !pendingNodes.isEmpty()) {
+            final NodeTask task = new NodeTask(pendingNodes.poll());
+            if (task.node.getElements().isEmpty()) {
+                task.steps.add(ConfigurationPlan.createCompositionDataStep());
+            } else {
+                task.compile();
+            }
+            if (task.steps.isEmpty()) {
+                configuredNodes.add(task.node);
+                callbacks.onNodeConfigured(task.node, 0, task.skipped);
+            } else {
+                activeNodes.put(task.node.getUnicastAddress(), task);
+                task.sendNext();
+            }
+        }
+        if (!finished && activeNodes.isEmpty()) {
+            finished = true;
+            MeshLogger.debug(TAG, "Configuration plan applied, {} nodes configured, {} failed", configuredNodes.size(), failedNodes.size());
+            callbacks.onConfigurationCompleted(new ArrayList<>(configuredNodes), new ArrayList<>(failedNodes));
+        }
+    }
+
+    /**
+     * Steps left to apply to a node.
+     */
+    private final class NodeTask {
+        final ProvisionedMeshNode node;
+        final Queue<ConfigurationPlan.Step> steps = new LinkedList<>();
+        ConfigurationPlan.Step current;
+        int sent;
+        int skipped;
+
+        NodeTask(@NonNull final ProvisionedMeshNode node) {
+            this.node = node;
+        }
+
+        void compile() {
+            final List<ConfigurationPlan.Step> compiledSteps = new ArrayList<>();
+            skipped += compiledPlan.compile(network, node, compiledSteps);
+            steps.addAll(compiledSteps);
+        }
+
+        /**
+         * Sends the next step to the node.
+         *
+         * @return false if there are no more steps to send
+         */
+        boolean sendNext() {
+            final ConfigurationPlan.Step step = steps.poll();
+            if (step == null)
+                return false;
+            current = step;
+            sent++;
+            sender.send(node.getUnicastAddress(), step.message);
+            return true;
+        }
+    }
+}
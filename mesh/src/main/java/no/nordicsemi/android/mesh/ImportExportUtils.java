@@ -1,46 +1,84 @@
 package no.nordicsemi.android.mesh;
 
-import android.content.ContentResolver;
-import android.net.Uri;
-import no.nordicsemi.android.mesh.logger.MeshLogger;
-
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import no.nordicsemi.android.mesh.logger.MeshLogger;
 import no.nordicsemi.android.mesh.transport.Element;
 import no.nordicsemi.android.mesh.transport.InternalElementListDeserializer;
 import no.nordicsemi.android.mesh.transport.MeshModel;
 import no.nordicsemi.android.mesh.transport.MeshModelListDeserializer;
 import no.nordicsemi.android.mesh.transport.NodeDeserializer;
 import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.utils.MeshAddress;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 
 import static no.nordicsemi.android.mesh.utils.MeshAddress.isValidGroupAddress;
 
 /**
  * Utility class to handle network imports and exports
+ * <p>
+ * Networks are read and written as a stream, one node at a time, so that the memory required does not grow with the
+ * size of the exported file. A partial export is filtered while it is written and does not modify the network.
+ * </p>
  */
 class ImportExportUtils {
 
     private static final String TAG = ImportExportUtils.class.getSimpleName();
+    private final MeshNetworkDeserializer mNetworkSerializer = new MeshNetworkDeserializer();
+    private final Type mNodeListType = new TypeToken<List<ProvisionedMeshNode>>() {
+    }.getType();
     private final Gson mGson;
+    private final JsonSerializationContext mSerializationContext = new JsonSerializationContext() {
+        @Override
+        public JsonElement serialize(final Object src) {
+            return mGson.toJsonTree(src);
+        }
+
+        @Override
+        public JsonElement serialize(final Object src, final Type typeOfSrc) {
+            return mGson.toJsonTree(src, typeOfSrc);
+        }
+    };
 
     ImportExportUtils() {
         mGson = initGson();
     }
 
+    /**
+     * Returns the Gson that serializes the whole network in one go, as the network was exported before it was streamed.
+     */
+    @VisibleForTesting
+    Gson getGson() {
+        return mGson;
+    }
+
     /**
      * Initializes the Gson based on the network export type.
      */
@@ -55,8 +93,6 @@ class ImportExportUtils {
         }.getType();
         Type allocatedSceneRange = new TypeToken<List<AllocatedSceneRange>>() {
         }.getType();
-        Type nodeList = new TypeToken<List<ProvisionedMeshNode>>() {
-        }.getType();
         Type meshModelList = new TypeToken<List<MeshModel>>() {
         }.getType();
         Type elementList = new TypeToken<List<Element>>() {
@@ -66,43 +102,76 @@ class ImportExportUtils {
                 .registerTypeAdapter(allocatedUnicastRange, new AllocatedUnicastRangeDeserializer())
                 .registerTypeAdapter(allocatedGroupRange, new AllocatedGroupRangeDeserializer())
                 .registerTypeAdapter(allocatedSceneRange, new AllocatedSceneRangeDeserializer())
-                .registerTypeAdapter(nodeList, new NodeDeserializer())
+                .registerTypeAdapter(mNodeListType, new NodeDeserializer())
                 .registerTypeAdapter(elementList, new InternalElementListDeserializer())
                 .registerTypeAdapter(meshModelList, new MeshModelListDeserializer())
-                .registerTypeAdapter(MeshNetwork.class, new MeshNetworkDeserializer())
+                .registerTypeAdapter(MeshNetwork.class, mNetworkSerializer)
                 .serializeNulls()
                 .setPrettyPrinting()
                 .create();
     }
 
     /**
-     * Imports the network from the Mesh Provisioning/Configuration Database json file
-     */
-    protected MeshNetwork importNetwork(@NonNull final String networkJson) throws JsonSyntaxException {
-        return mGson.fromJson(networkJson, MeshNetwork.class);
-    }
-
-    /**
-     * Reads and returns the json string from URI.
+     * Imports the network from the Mesh Provisioning/Configuration Database json read from a stream.
+     * <p>
+     * The nodes are deserialized one at a time as they are read, while the remaining properties of the network, which
+     * are small, are collected and deserialized once the whole document has been read.
+     * </p>
      *
-     * @param contentResolver ContentResolver
-     * @param uri             URI
-     * @throws IOException in case of failure
+     * @param reader    Reader providing the json
+     * @param callbacks Callbacks notified as the nodes are imported
+     * @throws IOException        if reading fails
+     * @throws JsonParseException if the json is not a valid Mesh Provisioning/Configuration Database
      */
-    protected String readJsonStringFromUri(@NonNull final ContentResolver contentResolver, @NonNull final Uri uri) throws IOException {
-        final StringBuilder stringBuilder = new StringBuilder();
-        final InputStream inputStream = contentResolver.openInputStream(uri);
-        if (inputStream != null) {
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    inputStream));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                stringBuilder.append(line);
+    protected MeshNetwork importNetwork(@NonNull final Reader reader,
+                                        @Nullable final NetworkImportCallbacks callbacks) throws IOException, JsonParseException {
+        final JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        final JsonObject jsonNetwork = new JsonObject();
+        final List<ProvisionedMeshNode> nodes = new ArrayList<>();
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                final String name = jsonReader.nextName();
+                if (name.equals("nodes")) {
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        nodes.add(deserializeNode(JsonParser.parseReader(jsonReader)));
+                        if (callbacks != null) {
+                            callbacks.onNodesImported(nodes.size());
+                        }
+                    }
+                    jsonReader.endArray();
+                    // The nodes have been deserialized above
+                    jsonNetwork.add(name, new JsonArray());
+                } else {
+                    jsonNetwork.add(name, JsonParser.parseReader(jsonReader));
+                }
             }
-            reader.close();
-            inputStream.close();
+            jsonReader.endObject();
+        } catch (IllegalStateException ex) {
+            throw new JsonSyntaxException(ex);
+        }
+
+        final MeshNetwork network = mGson.fromJson(jsonNetwork, MeshNetwork.class);
+        for (ProvisionedMeshNode node : nodes) {
+            node.setMeshUuid(network.getMeshUUID());
         }
-        return stringBuilder.toString();
+        network.setNodes(nodes);
+        MeshNetworkDeserializer.assignProvisionerAddresses(network);
+        return network;
+    }
+
+    private ProvisionedMeshNode deserializeNode(@NonNull final JsonElement json) {
+        final JsonArray array = new JsonArray();
+        array.add(json);
+        final List<ProvisionedMeshNode> nodes = mGson.fromJson(array, mNodeListType);
+        return nodes.get(0);
+    }
+
+    private JsonObject serializeNode(@NonNull final ProvisionedMeshNode node) {
+        return mGson.toJsonTree(Collections.singletonList(node), mNodeListType)
+                .getAsJsonArray().get(0).getAsJsonObject();
     }
 
     /**
@@ -114,11 +183,9 @@ class ImportExportUtils {
     @Nullable
     protected String export(@NonNull final MeshNetwork network, final boolean partial) {
         try {
-            network.setPartial(partial);
-            return mGson.toJson(network);
-        } catch (final com.google.gson.JsonSyntaxException ex) {
-            MeshLogger.error(TAG, "Error: " + ex.getMessage());
-            return null;
+            final StringWriter writer = new StringWriter();
+            export(network, partial, writer);
+            return writer.toString();
         } catch (final Exception e) {
             MeshLogger.error(TAG, "Error: " + e.getMessage());
             return null;
@@ -133,14 +200,63 @@ class ImportExportUtils {
                             @NonNull final ProvisionersConfig provisionersConfig,
                             @NonNull final GroupsConfig groupsConfig,
                             @NonNull final ScenesConfig scenesConfig) {
-        //Let's use Gson to make a temporary copy of the network and apply the export configurations.
-        final MeshNetwork temp = mGson.fromJson(mGson.toJson(network), MeshNetwork.class);
-        return export(prepareNetwork(temp, networkKeysConfig, applicationKeysConfig, nodesConfig,
-                provisionersConfig, groupsConfig, scenesConfig), true);
+        try {
+            final StringWriter writer = new StringWriter();
+            export(network, networkKeysConfig, applicationKeysConfig, nodesConfig,
+                    provisionersConfig, groupsConfig, scenesConfig, writer);
+            return writer.toString();
+        } catch (final Exception e) {
+            MeshLogger.error(TAG, "Error: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Configures and returns a network with the export configuration provided.
+     * Writes the mesh network to a stream
+     *
+     * @param network Mesh network to be exported
+     * @param partial True if the network is to be exported as partial.
+     * @param writer  Writer the json is written to
+     * @throws IOException if writing fails
+     */
+    protected void export(@NonNull final MeshNetwork network,
+                          final boolean partial,
+                          @NonNull final Writer writer) throws IOException {
+        final List<ExportedNode> nodes = new ArrayList<>();
+        for (ProvisionedMeshNode node : network.getNodes()) {
+            nodes.add(new ExportedNode(node, true));
+        }
+        write(network, new Export(partial, network.getNetKeys(), network.getAppKeys(), network.getProvisioners(), nodes,
+                network.getGroups(), network.getScenes()), writer);
+    }
+
+    /**
+     * Writes a partial mesh network to a stream with the export configuration provided. The network is not modified.
+     *
+     * @param network               MeshNetwork.
+     * @param networkKeysConfig     Network Keys configuration.
+     * @param applicationKeysConfig Application Keys configuration.
+     * @param nodesConfig           Nodes configuration.
+     * @param provisionersConfig    Provisioners configuration.
+     * @param groupsConfig          Groups configuration.
+     * @param scenesConfig          Scenes configuration.
+     * @param writer                Writer the json is written to
+     * @throws IOException if writing fails
+     */
+    protected void export(@NonNull final MeshNetwork network,
+                          @NonNull final NetworkKeysConfig networkKeysConfig,
+                          @NonNull final ApplicationKeysConfig applicationKeysConfig,
+                          @NonNull final NodesConfig nodesConfig,
+                          @NonNull final ProvisionersConfig provisionersConfig,
+                          @NonNull final GroupsConfig groupsConfig,
+                          @NonNull final ScenesConfig scenesConfig,
+                          @NonNull final Writer writer) throws IOException {
+        write(network, prepareExport(network, networkKeysConfig, applicationKeysConfig, nodesConfig,
+                provisionersConfig, groupsConfig, scenesConfig), writer);
+    }
+
+    /**
+     * Selects the keys, provisioners, nodes, groups and scenes to be exported with the export configuration provided.
      *
      * @param network               MeshNetwork.
      * @param networkKeysConfig     Network Keys configuration.
@@ -150,44 +266,45 @@ class ImportExportUtils {
      * @param groupsConfig          Groups configuration.
      * @param scenesConfig          Scenes configuration.
      */
-    private MeshNetwork prepareNetwork(@NonNull final MeshNetwork network,
-                                       @NonNull final NetworkKeysConfig networkKeysConfig,
-                                       @NonNull final ApplicationKeysConfig applicationKeysConfig,
-                                       @NonNull final NodesConfig nodesConfig,
-                                       @NonNull final ProvisionersConfig provisionersConfig,
-                                       @NonNull final GroupsConfig groupsConfig,
-                                       @NonNull final ScenesConfig scenesConfig) {
+    private Export prepareExport(@NonNull final MeshNetwork network,
+                                 @NonNull final NetworkKeysConfig networkKeysConfig,
+                                 @NonNull final ApplicationKeysConfig applicationKeysConfig,
+                                 @NonNull final NodesConfig nodesConfig,
+                                 @NonNull final ProvisionersConfig provisionersConfig,
+                                 @NonNull final GroupsConfig groupsConfig,
+                                 @NonNull final ScenesConfig scenesConfig) {
 
         // Initial list of nodes to export
-        if (nodesConfig.getConfig() instanceof NodesConfig.ExportWithoutDeviceKey) {
-            for (ProvisionedMeshNode node : network.nodes)
-                node.setDeviceKey(null);
-        } else if (nodesConfig.getConfig() instanceof NodesConfig.ExportSome) {
-            network.nodes.clear();
+        final List<ExportedNode> nodes = new ArrayList<>();
+        if (nodesConfig.getConfig() instanceof NodesConfig.ExportSome) {
             final List<ProvisionedMeshNode> withDeviceKey = ((NodesConfig.ExportSome) nodesConfig.getConfig()).getWithDeviceKey();
             final List<ProvisionedMeshNode> withoutDeviceKey = ((NodesConfig.ExportSome) nodesConfig.getConfig()).getWithoutDeviceKey();
+            for (ProvisionedMeshNode node : withDeviceKey)
+                nodes.add(new ExportedNode(node, true));
             for (ProvisionedMeshNode node : withoutDeviceKey)
-                node.setDeviceKey(null);
-            network.nodes.addAll(withDeviceKey);
-            network.nodes.addAll(withoutDeviceKey);
+                nodes.add(new ExportedNode(node, false));
 
             // Add any missing provisioner nodes if they were not selected when selecting nodes.
             for (Provisioner provisioner : network.provisioners) {
-                if (!isProvisionerExistsInNodes(provisioner, network.nodes)) {
-                    network.nodes.add(new ProvisionedMeshNode(provisioner, network.netKeys, network.appKeys));
+                if (!isProvisionerExistsInNodes(provisioner, nodes)) {
+                    nodes.add(new ExportedNode(new ProvisionedMeshNode(provisioner, network.netKeys, network.appKeys), true));
                 }
             }
+        } else {
+            final boolean withDeviceKey = !(nodesConfig.getConfig() instanceof NodesConfig.ExportWithoutDeviceKey);
+            for (ProvisionedMeshNode node : network.nodes)
+                nodes.add(new ExportedNode(node, withDeviceKey));
         }
 
         // Include the selected provisioners
         // List of provisioners to export
+        List<Provisioner> provisioners = network.provisioners;
         if (provisionersConfig.getConfig() instanceof ProvisionersConfig.ExportSome) {
             // First Let's exclude provisioners that are not nodes
-            final ListIterator<Provisioner> provisionerListIterator = network.provisioners.listIterator();
-            while (provisionerListIterator.hasNext()) {
-                final Provisioner provisioner = provisionerListIterator.next();
-                if (!isProvisionerExistsInNodes(provisioner, network.nodes)) {
-                    provisionerListIterator.remove();
+            provisioners = new ArrayList<>();
+            for (Provisioner provisioner : network.provisioners) {
+                if (isProvisionerExistsInNodes(provisioner, nodes)) {
+                    provisioners.add(provisioner);
                 }
             }
 
@@ -195,181 +312,235 @@ class ImportExportUtils {
             // We must go through all items to ensure there are no duplicates
             final List<Provisioner> selectedProvisioners = ((ProvisionersConfig.ExportSome) provisionersConfig.getConfig()).getProvisioners();
             for (Provisioner provisioner : selectedProvisioners) {
-                if (!network.isProvisionerUuidInUse(provisioner.getProvisionerUuid())) {
-                    network.provisioners.add(provisioner);
+                if (!isProvisionerUuidInUse(provisioner, provisioners)) {
+                    provisioners.add(provisioner);
                 }
             }
         }
 
         // List of Network Keys to export
+        List<NetworkKey> netKeys = network.getNetKeys();
         if (networkKeysConfig.getConfig() instanceof NetworkKeysConfig.ExportSome) {
-            network.setNetKeys(((NetworkKeysConfig.ExportSome) networkKeysConfig.getConfig()).getKeys());
+            netKeys = ((NetworkKeysConfig.ExportSome) networkKeysConfig.getConfig()).getKeys();
         }
 
         // List of Application Keys to export
+        List<ApplicationKey> appKeys = network.appKeys;
         if (applicationKeysConfig.getConfig() instanceof ApplicationKeysConfig.ExportSome) {
-            network.appKeys.clear();
+            appKeys = new ArrayList<>();
             // List of keys set in the configuration, but we must only export the keys that are bound to that application key.
             final List<ApplicationKey> keys = ((ApplicationKeysConfig.ExportSome) applicationKeysConfig.getConfig()).getKeys();
             for (ApplicationKey key : keys) {
-                if (isApplicationKeyBound(network.getNetKeys(), key)) {
-                    network.appKeys.add(key);
+                if (isApplicationKeyBound(netKeys, key)) {
+                    appKeys.add(key);
                 }
             }
         }
 
         // Exclude nodes unknown to network keys
         // TODO what will happen to the provisioner if the node is to excluded due to an unknown network key?
-        final ListIterator<ProvisionedMeshNode> nodeListIterator = network.nodes.listIterator();
-        while (nodeListIterator.hasNext()) {
-            final ProvisionedMeshNode node = nodeListIterator.next();
-            if (!isNetworkKeyAdded(node, network.getNetKeys())) {
-                nodeListIterator.remove();
-                continue;
+        final List<ExportedNode> knownNodes = new ArrayList<>();
+        for (ExportedNode node : nodes) {
+            if (isNetworkKeyAdded(node.node, netKeys)) {
+                knownNodes.add(node);
             }
-            excludeAppKeys(node, network.appKeys);
+        }
+
+        final Export export = new Export(true, netKeys, appKeys, provisioners, knownNodes,
+                network.getGroups(), network.getScenes());
+        export.appKeyIndexes = new HashSet<>();
+        for (ApplicationKey key : appKeys) {
+            export.appKeyIndexes.add(key.getKeyIndex());
         }
 
         if (groupsConfig.getConfig() instanceof GroupsConfig.ExportRelated) {
-            excludeNonRelatedGroups(network);
+            export.relatedGroupsOnly = true;
         } else if (groupsConfig.getConfig() instanceof GroupsConfig.ExportSome) {
-            network.groups = ((GroupsConfig.ExportSome) groupsConfig.getConfig()).getGroups();
+            export.groups = ((GroupsConfig.ExportSome) groupsConfig.getConfig()).getGroups();
             // If subscriptions/publications uses any excluded group addresses, let's remove them.
-            for (ProvisionedMeshNode node : network.getNodes()) {
-                for (Element element : node.getElements().values()) {
-                    for (MeshModel model : element.getMeshModels().values()) {
-                        for (Group group : network.groups) {
-                            if (model.getPublicationSettings() != null &&
-                                    isValidGroupAddress(model.getPublicationSettings().getPublishAddress()) &&
-                                    model.getPublicationSettings().getPublishAddress() != group.getAddress()) {
-                                model.setPublicationSettings(null);
-                            }
-                            model.getSubscribedAddresses().remove((Integer) group.getAddress());
-                        }
-                    }
-                }
+            export.groupAddresses = new HashSet<>();
+            for (Group group : export.groups) {
+                export.groupAddresses.add(group.getAddress());
             }
         }
 
         if (scenesConfig.getConfig() instanceof ScenesConfig.ExportSome) {
-            network.scenes = ((ScenesConfig.ExportSome) scenesConfig.getConfig()).getScenes();
+            export.scenes = ((ScenesConfig.ExportSome) scenesConfig.getConfig()).getScenes();
         }
-        removeExcludedNodesFromScenes(network.nodes, network.scenes);
-        return network;
+        export.nodeAddresses = new HashSet<>();
+        return export;
     }
 
     /**
-     * Check if the provisioner exists in the nodes list
-     *
-     * @param provisioner Provisioner
-     * @param nodes       List of nodes
-     * @return returns true if the provisioner exists in the selected list of nodes or false otherwise.
+     * Writes the network one node at a time. Groups and scenes follow the nodes in the document, so that the groups
+     * related to the exported nodes and the addresses of the exported nodes are known by the time they are written.
      */
-    private boolean isProvisionerExistsInNodes(@NonNull final Provisioner provisioner, @NonNull final List<ProvisionedMeshNode> nodes) {
-        if (provisioner.getProvisionerAddress() != null) {
-            for (ProvisionedMeshNode node : nodes) {
-                if (node.getUuid().equalsIgnoreCase(provisioner.getProvisionerUuid()))
-                    return true;
+    private void write(@NonNull final MeshNetwork network,
+                       @NonNull final Export export,
+                       @NonNull final Writer writer) throws IOException {
+        final JsonObject jsonNetwork = mNetworkSerializer.serialize(network, export.partial, export.netKeys,
+                export.appKeys, export.provisioners, new JsonArray(), new JsonArray(), new JsonArray(), mSerializationContext);
+        final JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.setIndent("  ");
+        jsonWriter.setSerializeNulls(true);
+        jsonWriter.beginObject();
+        for (Map.Entry<String, JsonElement> entry : jsonNetwork.entrySet()) {
+            jsonWriter.name(entry.getKey());
+            switch (entry.getKey()) {
+                case "nodes":
+                    writeNodes(export, jsonWriter);
+                    break;
+                case "groups":
+                    mGson.toJson(mNetworkSerializer.serializeGroups(getExportedGroups(export)), jsonWriter);
+                    break;
+                case "scenes":
+                    mGson.toJson(mNetworkSerializer.serializeScenes(getExportedScenes(network, export)), jsonWriter);
+                    break;
+                default:
+                    mGson.toJson(entry.getValue(), jsonWriter);
+                    break;
             }
         }
-        return false;
+        jsonWriter.endObject();
+        jsonWriter.flush();
     }
 
-    /**
-     * Excludes groups that are not related tot he list of nodes.
-     *
-     * @param network Mesh network.
-     */
-    private void excludeNonRelatedGroups(@NonNull final MeshNetwork network) {
-        final List<Group> groups = new ArrayList<>();
-        for (Group group : network.getGroups()) {
-            for (ProvisionedMeshNode node : network.getNodes()) {
-                if (isGroupInUse(node, group)) {
-                    groups.add(group);
+    private void writeNodes(@NonNull final Export export, @NonNull final JsonWriter jsonWriter) throws IOException {
+        jsonWriter.beginArray();
+        for (ExportedNode exportedNode : export.nodes) {
+            final JsonObject jsonNode = serializeNode(exportedNode.node);
+            if (!exportedNode.withDeviceKey) {
+                jsonNode.addProperty("deviceKey", MeshParserUtils.bytesToHex(null, false));
+            }
+            final JsonArray elements = jsonNode.getAsJsonArray("elements");
+            for (JsonElement element : elements) {
+                for (JsonElement model : element.getAsJsonObject().getAsJsonArray("models")) {
+                    filterModel(export, model.getAsJsonObject());
                 }
             }
+            if (export.nodeAddresses != null) {
+                export.nodeAddresses.add(exportedNode.node.getUnicastAddress());
+            }
+            mGson.toJson(jsonNode, jsonWriter);
         }
-        network.groups = groups;
+        jsonWriter.endArray();
     }
 
     /**
-     * Checks if the node has subscribed or publishes to the group.
+     * Removes the application keys and group addresses that are not exported from a serialized model, and records the
+     * group addresses used by the model.
      *
-     * @param node  Node
-     * @param group Group
-     * @return true if is in use or false otherwise.
+     * @param export Export
+     * @param model  Serialized model
      */
-    private boolean isGroupInUse(@NonNull final ProvisionedMeshNode node, @NonNull final Group group) {
-        for (final Element element : node.getElements().values()) {
-            for (final MeshModel model : element.getMeshModels().values()) {
-                if (model.getPublicationSettings().getPublishAddress() == group.getAddress() ||
-                        model.getSubscribedAddresses().contains((Integer) group.getAddress())) {
-                    return true;
+    private void filterModel(@NonNull final Export export, @NonNull final JsonObject model) {
+        final JsonObject publish = model.has("publish") ? model.getAsJsonObject("publish") : null;
+        if (export.appKeyIndexes != null) {
+            final JsonArray boundKeys = new JsonArray();
+            for (JsonElement index : model.getAsJsonArray("bind")) {
+                if (export.appKeyIndexes.contains(index.getAsInt())) {
+                    boundKeys.add(index);
+                } else if (publish != null && publish.get("index").getAsInt() == index.getAsInt()) {
+                    model.remove("publish");
                 }
             }
+            model.add("bind", boundKeys);
         }
-        return false;
+
+        final JsonArray subscriptions = new JsonArray();
+        for (JsonElement subscription : model.getAsJsonArray("subscribe")) {
+            final int address = parseAddress(subscription.getAsString());
+            if (isGroupAddressExported(export, address)) {
+                subscriptions.add(subscription);
+                export.usedAddresses.add(address);
+            }
+        }
+        model.add("subscribe", subscriptions);
+
+        if (model.has("publish")) {
+            final int address = parseAddress(publish.get("address").getAsString());
+            if (isGroupAddressExported(export, address)) {
+                export.usedAddresses.add(address);
+            } else {
+                model.remove("publish");
+            }
+        }
+    }
+
+    private boolean isGroupAddressExported(@NonNull final Export export, final int address) {
+        return export.groupAddresses == null || !isValidGroupAddress(address) || export.groupAddresses.contains(address);
+    }
+
+    private int parseAddress(@NonNull final String address) {
+        if (MeshParserUtils.isUuidPattern(address)) {
+            return MeshAddress.generateVirtualAddress(UUID.fromString(MeshParserUtils.formatUuid(address)));
+        }
+        return Integer.parseInt(address, 16);
     }
 
     /**
-     * Removes excluded node from a scene addresses.
-     *
-     * @param nodes  List of nodes in the network.
-     * @param scenes List of scenes in the network.
+     * Returns the groups to be exported. This must be called after the nodes have been written.
      */
-    private void removeExcludedNodesFromScenes(@NonNull List<ProvisionedMeshNode> nodes, @NonNull List<Scene> scenes) {
-        ListIterator<Integer> addresses;
-        Integer address;
-        for (Scene scene : scenes) {
-            addresses = scene.getAddresses().listIterator();
-            while (addresses.hasNext()) {
-                address = addresses.next();
-                if (!isNodeAddressExistsInScene(nodes, address)) {
-                    addresses.remove();
-                }
+    private List<Group> getExportedGroups(@NonNull final Export export) {
+        if (!export.relatedGroupsOnly)
+            return export.groups;
+
+        // Excludes groups that are not related to the list of nodes.
+        final List<Group> groups = new ArrayList<>();
+        for (Group group : export.groups) {
+            if (export.usedAddresses.contains(group.getAddress())) {
+                groups.add(group);
             }
         }
+        return groups;
     }
 
     /**
-     * Checks if a scene address exists exists in the list of nodes in the network.
-     *
-     * @param nodes   List of nodes in the network.
-     * @param address Scene address.
-     * @return true if node address is included in scene.
+     * Returns the scenes to be exported without the addresses of nodes that are not exported. This must be called after
+     * the nodes have been written.
      */
-    private boolean isNodeAddressExistsInScene(@NonNull final List<ProvisionedMeshNode> nodes, @NonNull final Integer address) {
-        for (ProvisionedMeshNode node : nodes) {
-            if (address == node.getUnicastAddress()) {
-                return true;
+    private List<Scene> getExportedScenes(@NonNull final MeshNetwork network, @NonNull final Export export) {
+        if (export.nodeAddresses == null)
+            return export.scenes;
+
+        final List<Scene> scenes = new ArrayList<>();
+        for (Scene scene : export.scenes) {
+            final List<Integer> addresses = new ArrayList<>();
+            for (Integer address : scene.getAddresses()) {
+                if (export.nodeAddresses.contains(address)) {
+                    addresses.add(address);
+                }
             }
+            final Scene exportedScene = new Scene(scene.getNumber(), addresses, network.getMeshUUID());
+            exportedScene.setName(scene.getName());
+            scenes.add(exportedScene);
         }
-        return false;
+        return scenes;
     }
 
     /**
-     * Exclude application keys that may be bound or used for publication by the models in the node that are not in the list.
+     * Check if the provisioner exists in the nodes list
      *
-     * @param node            Mesh node.
-     * @param applicationKeys Selected Application keys.
+     * @param provisioner Provisioner
+     * @param nodes       List of nodes
+     * @return returns true if the provisioner exists in the selected list of nodes or false otherwise.
      */
-    private void excludeAppKeys(@NonNull final ProvisionedMeshNode node, @NonNull final List<ApplicationKey> applicationKeys) {
-        int index;
-        for (Element element : node.getElements().values()) {
-            for (MeshModel model : element.getMeshModels().values()) {
-                final ListIterator<Integer> boundKeyIndexes = model.getBoundAppKeyIndexes().listIterator();
-                while (boundKeyIndexes.hasNext()) {
-                    index = boundKeyIndexes.next();
-                    if (!isApplicationKeyBound(index, applicationKeys)) {
-                        boundKeyIndexes.remove();
-                        if (model.getPublicationSettings() != null && model.getPublicationSettings().getAppKeyIndex() == index) {
-                            model.setPublicationSettings(null);
-                        }
-                    }
-
-                }
+    private boolean isProvisionerExistsInNodes(@NonNull final Provisioner provisioner, @NonNull final List<ExportedNode> nodes) {
+        if (provisioner.getProvisionerAddress() != null) {
+            for (ExportedNode node : nodes) {
+                if (node.node.getUuid().equalsIgnoreCase(provisioner.getProvisionerUuid()))
+                    return true;
             }
         }
+        return false;
+    }
+
+    private boolean isProvisionerUuidInUse(@NonNull final Provisioner provisioner, @NonNull final List<Provisioner> provisioners) {
+        for (Provisioner p : provisioners) {
+            if (p.getProvisionerUuid().equalsIgnoreCase(provisioner.getProvisionerUuid()))
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -386,14 +557,6 @@ class ImportExportUtils {
         return false;
     }
 
-    private boolean isApplicationKeyBound(@NonNull final Integer index, @NonNull final List<ApplicationKey> keys) {
-        for (ApplicationKey key : keys) {
-            if (index == key.getKeyIndex())
-                return true;
-        }
-        return false;
-    }
-
     /**
      * Checks if at least one Network Key is added to a node.
      *
@@ -409,4 +572,55 @@ class ImportExportUtils {
         }
         return false;
     }
+
+    /**
+     * A node selected for export
+     */
+    private static final class ExportedNode {
+        final ProvisionedMeshNode node;
+        final boolean withDeviceKey;
+
+        ExportedNode(@NonNull final ProvisionedMeshNode node, final boolean withDeviceKey) {
+            this.node = node;
+            this.withDeviceKey = withDeviceKey;
+        }
+    }
+
+    /**
+     * The parts of a network selected for export. Filters that are null are not applied.
+     */
+    private static final class Export {
+        final boolean partial;
+        final List<NetworkKey> netKeys;
+        final List<ApplicationKey> appKeys;
+        final List<Provisioner> provisioners;
+        final List<ExportedNode> nodes;
+        List<Group> groups;
+        List<Scene> scenes;
+        boolean relatedGroupsOnly;
+        // Application key indexes models may be bound to
+        Set<Integer> appKeyIndexes;
+        // Group addresses models may publish or subscribe to
+        Set<Integer> groupAddresses;
+        // Addresses of the exported nodes, collected while the nodes are written
+        Set<Integer> nodeAddresses;
+        // Addresses models publish or subscribe to, collected while the nodes are written
+        final Set<Integer> usedAddresses = new HashSet<>();
+
+        Export(final boolean partial,
+               @NonNull final List<NetworkKey> netKeys,
+               @NonNull final List<ApplicationKey> appKeys,
+               @NonNull final List<Provisioner> provisioners,
+               @NonNull final List<ExportedNode> nodes,
+               @NonNull final List<Group> groups,
+               @NonNull final List<Scene> scenes) {
+            this.partial = partial;
+            this.netKeys = netKeys;
+            this.appKeys = appKeys;
+            this.provisioners = provisioners;
+            this.nodes = nodes;
+            this.groups = groups;
+            this.scenes = scenes;
+        }
+    }
 }
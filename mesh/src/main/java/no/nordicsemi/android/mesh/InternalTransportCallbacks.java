@@ -92,6 +92,12 @@ public interface InternalTransportCallbacks {
      */
     void onMeshNodeReset(final ProvisionedMeshNode meshNode);
 
+    /**
+     * This callback is invoked when the replay protection list of the network has been updated, once per complete
+     * access message received
+     */
+    void onReplayProtectionListUpdated();
+
     /**
      * Returns the mesh network
      */
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Set of integers stored as disjoint, non-adjacent closed intervals.
+ * <p>
+ * Used to track the addresses and scene numbers that are in use in a mesh network. Adding and removing values merges or
+ * splits the neighbouring intervals, and finding the first free block in a range skips a whole interval of used values
+ * at a time, so each operation costs O(log n) per interval skipped rather than a scan over the used values.
+ * </p>
+ */
+final class IntervalSet {
+
+    // Start of each interval mapped to its inclusive end.
+    private final TreeMap<Integer, Integer> intervals = new TreeMap<>();
+
+    /**
+     * Adds the values from low to high, inclusive.
+     */
+    void add(final int low, final int high) {
+        if (low > high)
+            return;
+
+        int start = low;
+        int end = high;
+        final Map.Entry<Integer, Integer> floor = intervals.floorEntry(low);
+        if (floor != null && floor.getValue() >= low - 1) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        Map.Entry<Integer, Integer> next = intervals.ceilingEntry(start);
+        while (next != null && next.getKey() <= end + 1) {
+            end = Math.max(end, next.getValue());
+            intervals.remove(next.getKey());
+            next = intervals.higherEntry(next.getKey());
+        }
+        intervals.put(start, end);
+    }
+
+    /**
+     * Adds a single value.
+     */
+    void add(final int value) {
+        add(value, value);
+    }
+
+    /**
+     * Removes the values from low to high, inclusive.
+     */
+    void remove(final int low, final int high) {
+        if (low > high)
+            return;
+
+        final Map.Entry<Integer, Integer> floor = intervals.floorEntry(low);
+        if (floor != null && floor.getValue() >= low) {
+            intervals.put(floor.getKey(), low - 1);
+            if (floor.getKey() == low) {
+                intervals.remove(low);
+            }
+            if (floor.getValue() > high) {
+                intervals.put(high + 1, floor.getValue());
+                return;
+            }
+        }
+        Map.Entry<Integer, Integer> next = intervals.ceilingEntry(low);
+        while (next != null && next.getKey() <= high) {
+            intervals.remove(next.getKey());
+            if (next.getValue() > high) {
+                intervals.put(high + 1, next.getValue());
+                return;
+            }
+            next = intervals.higherEntry(next.getKey());
+        }
+    }
+
+    /**
+     * Removes a single value.
+     */
+    void remove(final int value) {
+        remove(value, value);
+    }
+
+    /**
+     * Returns true if the set contains the given value.
+     */
+    boolean contains(final int value) {
+        final Map.Entry<Integer, Integer> floor = intervals.floorEntry(value);
+        return floor != null && floor.getValue() >= value;
+    }
+
+    /**
+     * Returns the greatest value of the interval overlapping the values from low to high, or low - 1 if none of the
+     * values are in the set. The returned value may be greater than high.
+     */
+    int lastUsed(final int low, final int high) {
+        final Map.Entry<Integer, Integer> floor = intervals.floorEntry(high);
+        if (floor != null && floor.getValue() >= low) {
+            return floor.getValue();
+        }
+        return low - 1;
+    }
+
+    /**
+     * Returns the first value of a block of consecutive values that are not in the set.
+     *
+     * @param low   Lowest value of the block
+     * @param high  Highest value of the block
+     * @param count Number of values in the block
+     * @return the first value of the block or -1 if there is no such block between low and high
+     */
+    int nextFree(final int low, final int high, final int count) {
+        int start = low;
+        while (start + count - 1 <= high) {
+            final int last = lastUsed(start, start + count - 1);
+            if (last < start)
+                return start;
+            start = last + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of intervals in the set.
+     */
+    int getIntervalCount() {
+        return intervals.size();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+/**
+ * Callbacks to notify the progress of a Key Refresh Procedure started with
+ * {@link MeshManagerApi#startKeyRefresh(NetworkKey, int, KeyRefreshCallbacks)}.
+ * <p>
+ * The phases reported are {@link NetworkKey#KEY_DISTRIBUTION}, {@link NetworkKey#USING_NEW_KEYS} and
+ * {@link NetworkKey#REVOKE_OLD_KEYS}, in that order.
+ * </p>
+ */
+public interface KeyRefreshCallbacks {
+
+    /**
+     * Notifies when the nodes start being moved to the given phase.
+     *
+     * @param networkKey Network key being refreshed
+     * @param phase      Key refresh phase
+     * @param nodeCount  Number of nodes that take part in the phase
+     */
+    void onKeyRefreshPhaseStarted(@NonNull final NetworkKey networkKey, final int phase, final int nodeCount);
+
+    /**
+     * Notifies each time a node has completed or failed the current phase.
+     *
+     * @param networkKey Network key being refreshed
+     * @param phase      Key refresh phase
+     * @param completed  Number of nodes that completed the phase
+     * @param failed     Number of nodes that failed the phase
+     * @param total      Number of nodes that take part in the phase
+     */
+    void onKeyRefreshProgress(@NonNull final NetworkKey networkKey, final int phase, final int completed, final int failed, final int total);
+
+    /**
+     * Notifies when a node did not acknowledge a message of the current phase or responded with an error. The node
+     * does not take part in the following phases.
+     *
+     * @param networkKey Network key being refreshed
+     * @param node       Node that failed
+     * @param phase      Key refresh phase
+     */
+    void onNodeKeyRefreshFailed(@NonNull final NetworkKey networkKey, @NonNull final ProvisionedMeshNode node, final int phase);
+
+    /**
+     * Notifies when all phases have completed and the old keys have been revoked.
+     *
+     * @param networkKey       Network key that was refreshed
+     * @param unreachableNodes Nodes that failed one of the phases and must be refreshed again or removed from the network.
+     *                         This includes the nodes that received the new keys but did not switch to them, which can
+     *                         no longer be reached now that the old keys have been revoked.
+     */
+    void onKeyRefreshCompleted(@NonNull final NetworkKey networkKey, @NonNull final List<ProvisionedMeshNode> unreachableNodes);
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+/**
+ * Delivers the {@link KeyRefreshCallbacks} on the callback executor chosen by the user.
+ */
+final class KeyRefreshCallbacksDispatcher implements KeyRefreshCallbacks {
+
+    private final KeyRefreshCallbacks callbacks;
+    private final Executor executor;
+
+    KeyRefreshCallbacksDispatcher(@NonNull final KeyRefreshCallbacks callbacks, @NonNull final Executor executor) {
+        this.callbacks = callbacks;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onKeyRefreshPhaseStarted(@NonNull final NetworkKey networkKey, final int phase, final int nodeCount) {
+        executor.execute(() -> callbacks.onKeyRefreshPhaseStarted(networkKey, phase, nodeCount));
+    }
+
+    @Override
+    public void onKeyRefreshProgress(@NonNull final NetworkKey networkKey, final int phase, final int completed, final int failed, final int total) {
+        executor.execute(() -> callbacks.onKeyRefreshProgress(networkKey, phase, completed, failed, total));
+    }
+
+    @Override
+    public void onNodeKeyRefreshFailed(@NonNull final NetworkKey networkKey, @NonNull final ProvisionedMeshNode node, final int phase) {
+        executor.execute(() -> callbacks.onNodeKeyRefreshFailed(networkKey, node, phase));
+    }
+
+    @Override
+    public void onKeyRefreshCompleted(@NonNull final NetworkKey networkKey, @NonNull final List<ProvisionedMeshNode> unreachableNodes) {
+        executor.execute(() -> callbacks.onKeyRefreshCompleted(networkKey, unreachableNodes));
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.logger.MeshLogger;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyStatus;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyUpdate;
+import no.nordicsemi.android.mesh.transport.ConfigKeyRefreshPhaseSet;
+import no.nordicsemi.android.mesh.transport.ConfigKeyRefreshPhaseStatus;
+import no.nordicsemi.android.mesh.transport.ConfigNetKeyStatus;
+import no.nordicsemi.android.mesh.transport.ConfigNetKeyUpdate;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+/**
+ * Drives the nodes of a network through the phases of a Key Refresh Procedure.
+ * <p>
+ * Up to a given number of nodes are configured at the same time, each with one message at a time. The network moves to
+ * the next phase once every node taking part in the current phase has acknowledged it or failed. The progress of each
+ * node is kept in its {@link NodeKey}s, which are persisted with the node, so that a procedure interrupted by an app
+ * restart resumes from the phase and the nodes it stopped at. All methods must be called on the mesh executor.
+ * </p>
+ */
+final class KeyRefreshProcedure implements MeshProcedure {
+
+    private static final String TAG = KeyRefreshProcedure.class.getSimpleName();
+
+    private final MeshNetwork network;
+    private final NetworkKey networkKey;
+    private final MessageSender sender;
+    private final KeyRefreshCallbacks callbacks;
+    private final int maxNodesInFlight;
+    private final Queue<NodeTask> pendingNodes = new LinkedList<>();
+    private final Map<Integer, NodeTask> activeNodes = new HashMap<>();
+    private final List<ProvisionedMeshNode> failedNodes = new ArrayList<>();
+    private int phase;
+    private int total;
+    private int completed;
+    private int failed;
+    private boolean finished;
+
+    KeyRefreshProcedure(@NonNull final MeshNetwork network,
+                        @NonNull final NetworkKey networkKey,
+                        final int maxNodesInFlight,
+                        @NonNull final MessageSender sender,
+                        @NonNull final KeyRefreshCallbacks callbacks) {
+        if (maxNodesInFlight <= 0)
+            throw new IllegalArgumentException("Number of nodes in flight must be positive");
+        this.network = network;
+        this.networkKey = networkKey;
+        this.maxNodesInFlight = maxNodesInFlight;
+        this.sender = sender;
+        this.callbacks = callbacks;
+    }
+
+    /**
+     * Returns the phase a key refresh procedure for the given key continues with, or
+     * {@link NetworkKey#NORMAL_OPERATION} if no key refresh procedure is in progress.
+     *
+     * @param network    Mesh network
+     * @param networkKey Network key
+     */
+    static int getResumePhase(@NonNull final MeshNetwork network, @NonNull final NetworkKey networkKey) {
+        switch (networkKey.getPhase()) {
+            case NetworkKey.KEY_DISTRIBUTION:
+                return NetworkKey.KEY_DISTRIBUTION;
+            case NetworkKey.USING_NEW_KEYS:
+                return NetworkKey.USING_NEW_KEYS;
+            default:
+                // The old keys were revoked locally but not all nodes were told so yet
+                for (ProvisionedMeshNode node : network.getNodes(networkKey)) {
+                    final NodeKey nodeKey = MeshParserUtils.getNodeKey(node.getAddedNetKeys(), networkKey.getKeyIndex());
+                    if (takesPart(network, node) && nodeKey != null && nodeKey.getPhase() == NetworkKey.USING_NEW_KEYS)
+                        return NetworkKey.REVOKE_OLD_KEYS;
+                }
+                return NetworkKey.NORMAL_OPERATION;
+        }
+    }
+
+    /**
+     * Starts or resumes the procedure. The procedure completes right away if no key refresh procedure is in progress.
+     */
+    void start() {
+        final int phase = getResumePhase(network, networkKey);
+        if (phase == NetworkKey.NORMAL_OPERATION) {
+            finished = true;
+            callbacks.onKeyRefreshCompleted(networkKey, new ArrayList<>(failedNodes));
+            return;
+        }
+        startPhase(phase);
+    }
+
+    NetworkKey getNetworkKey() {
+        return networkKey;
+    }
+
+    @Override
+    public void cancel() {
+        finished = true;
+        pendingNodes.clear();
+        activeNodes.clear();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public void onMeshMessageReceived(final int src, @NonNull final MeshMessage meshMessage) {
+        if (finished)
+            return;
+        final NodeTask task = activeNodes.get(src);
+        if (task == null)
+            return;
+        final Boolean successful = task.getResult(meshMessage);
+        if (successful == null)
+            return;
+        if (!successful) {
+            onNodeFailed(task);
+        } else if (!task.sendNext()) {
+            onNodeCompleted(task);
+        }
+    }
+
+    @Override
+    public void onTransactionFailed(final int dst) {
+        if (finished)
+            return;
+        final NodeTask task = activeNodes.get(dst);
+        if (task != null) {
+            onNodeFailed(task);
+        }
+    }
+
+    private void startPhase(final int phase) {
+        this.phase = phase;
+        total = 0;
+        completed = 0;
+        failed = 0;
+        for (ProvisionedMeshNode node : network.getNodes(networkKey)) {
+            final NodeKey nodeKey = MeshParserUtils.getNodeKey(node.getAddedNetKeys(), networkKey.getKeyIndex());
+            if (nodeKey == null || !takesPart(network, node))
+                continue;
+            final NodeTask task = new NodeTask(node);
+            switch (phase) {
+                case NetworkKey.KEY_DISTRIBUTION:
+                    addDistributionMessages(task, nodeKey);
+                    break;
+                case NetworkKey.USING_NEW_KEYS:
+                    if (!nodeKey.isUpdated()) {
+                        // The node never received the new keys and can no longer be reached
+                        if (!failedNodes.contains(node)) {
+                            failedNodes.add(node);
+                        }
+                        continue;
+                    }
+                    if (nodeKey.getPhase() != NetworkKey.USING_NEW_KEYS) {
+                        task.messages.add(new ConfigKeyRefreshPhaseSet(networkKey, NetworkKey.USE_NEW_KEYS));
+                    }
+                    break;
+                default:
+                    if (nodeKey.getPhase() == NetworkKey.KEY_DISTRIBUTION && !failedNodes.contains(node)) {
+                        // The node has the new keys but never switched to them and is stranded once the old keys are revoked
+                        failedNodes.add(node);
+                    }
+                    if (nodeKey.getPhase() != NetworkKey.USING_NEW_KEYS)
+                        continue;
+                    task.messages.add(new ConfigKeyRefreshPhaseSet(networkKey, NetworkKey.REVOKE_OLD_KEYS));
+                    break;
+            }
+            total++;
+            if (task.messages.isEmpty()) {
+                completed++;
+            } else {
+                pendingNodes.add(task);
+            }
+        }
+        MeshLogger.debug(TAG, "Key refresh phase {} started for {} nodes", phase, total);
+        callbacks.onKeyRefreshPhaseStarted(networkKey, phase, total);
+        next();
+    }
+
+    private void addDistributionMessages(@NonNull final NodeTask task, @NonNull final NodeKey nodeKey) {
+        if (!nodeKey.isUpdated()) {
+            task.messages.add(new ConfigNetKeyUpdate(networkKey));
+        }
+        for (ApplicationKey appKey : network.getAppKeys(networkKey.getKeyIndex())) {
+            if (appKey.getOldKey() == null)
+                continue;
+            final NodeKey appNodeKey = MeshParserUtils.getNodeKey(task.node.getAddedAppKeys(), appKey.getKeyIndex());
+            if (appNodeKey != null && !appNodeKey.isUpdated()) {
+                task.messages.add(new ConfigAppKeyUpdate(appKey));
+            }
+        }
+    }
+
+    private void onNodeCompleted(@NonNull final NodeTask task) {
+        activeNodes.remove(task.node.getUnicastAddress());
+        completed++;
+        callbacks.onKeyRefreshProgress(networkKey, phase, completed, failed, total);
+        next();
+    }
+
+    private void onNodeFailed(@NonNull final NodeTask task) {
+        activeNodes.remove(task.node.getUnicastAddress());
+        failed++;
+        failedNodes.add(task.node);
+        MeshLogger.warn(TAG, "Node 0x" + Integer.toHexString(task.node.getUnicastAddress()) + " failed key refresh phase " + phase);
+        callbacks.onNodeKeyRefreshFailed(networkKey, task.node, phase);
+        callbacks.onKeyRefreshProgress(networkKey, phase, completed, failed, total);
+        next();
+    }
+
+    /**
+     * Starts configuring the next nodes or moves to the next phase once all nodes are done.
+     */
+    private void next() {
+        while (activeNodes.size() < maxNodesInFlight && !pendingNodes.isEmpty()) {
+            final NodeTask task = pendingNodes.poll();
+            activeNodes.put(task.node.getUnicastAddress(), task);
+            task.sendNext();
+        }
+        if (!activeNodes.isEmpty())
+            return;
+        switch (phase) {
+            case NetworkKey.KEY_DISTRIBUTION:
+                network.switchToNewKey(networkKey);
+                startPhase(NetworkKey.USING_NEW_KEYS);
+                break;
+            case NetworkKey.USING_NEW_KEYS:
+                network.revokeOldKey(networkKey);
+                startPhase(NetworkKey.REVOKE_OLD_KEYS);
+                break;
+            default:
+                finished = true;
+                MeshLogger.debug(TAG, "Key refresh completed, {} nodes unreachable", failedNodes.size());
+                callbacks.onKeyRefreshCompleted(networkKey, new ArrayList<>(failedNodes));
+                break;
+        }
+    }
+
+    private static boolean takesPart(@NonNull final MeshNetwork network, @NonNull final ProvisionedMeshNode node) {
+        return !node.isExcluded() && !network.isProvisioner(node);
+    }
+
+    /**
+     * Messages left to send to a node in the current phase.
+     */
+    private final class NodeTask {
+        final ProvisionedMeshNode node;
+        final Queue<MeshMessage> messages = new LinkedList<>();
+        MeshMessage current;
+
+        NodeTask(@NonNull final ProvisionedMeshNode node) {
+            this.node = node;
+        }
+
+        /**
+         * Sends the next message to the node.
+         *
+         * @return false if there are no more messages to send
+         */
+        boolean sendNext() {
+            current = messages.poll();
+            if (current == null)
+                return false;
+            sender.send(node.getUnicastAddress(), current);
+            return true;
+        }
+
+        /**
+         * Returns if the given status acknowledges the current message successfully, or null if the status does not
+         * acknowledge the current message.
+         */
+        @Nullable
+        Boolean getResult(@NonNull final MeshMessage status) {
+            if (current instanceof ConfigNetKeyUpdate && status instanceof ConfigNetKeyStatus) {
+                final ConfigNetKeyStatus netKeyStatus = (ConfigNetKeyStatus) status;
+                if (netKeyStatus.getNetKeyIndex() == networkKey.getKeyIndex())
+                    return netKeyStatus.isSuccessful();
+            } else if (current instanceof ConfigAppKeyUpdate && status instanceof ConfigAppKeyStatus) {
+                final ConfigAppKeyStatus appKeyStatus = (ConfigAppKeyStatus) status;
+                if (appKeyStatus.getAppKeyIndex() == ((ConfigAppKeyUpdate) current).getAppKey().getKeyIndex())
+                    return appKeyStatus.isSuccessful();
+            } else if (current instanceof ConfigKeyRefreshPhaseSet && status instanceof ConfigKeyRefreshPhaseStatus) {
+                final ConfigKeyRefreshPhaseStatus phaseStatus = (ConfigKeyRefreshPhaseStatus) status;
+                if (phaseStatus.getNetKeyIndex() == networkKey.getKeyIndex())
+                    return phaseStatus.isSuccessful();
+            }
+            return null;
+        }
+    }
+}
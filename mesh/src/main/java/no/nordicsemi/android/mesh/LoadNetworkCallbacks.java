@@ -1,5 +1,9 @@
 package no.nordicsemi.android.mesh;
 
+import java.util.List;
+
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
 /**
  * Callbacks to notify importing from the Mesh Database JSON and loading a network from the local database
  */
@@ -12,6 +16,15 @@ interface LoadNetworkCallbacks {
      */
     void onNetworkLoadedFromDb(final MeshNetwork meshNetwork);
 
+    /**
+     * Notifies when all nodes of a mesh network, that was loaded from the local database with only its provisioner
+     * nodes, have been loaded
+     *
+     * @param meshNetwork {@link MeshNetwork}
+     * @param nodes       all nodes of the network
+     */
+    void onNodesLoadedFromDb(final MeshNetwork meshNetwork, final List<ProvisionedMeshNode> nodes);
+
     /**
      * Notifies when the mesh network is created after first start or resetting
      *
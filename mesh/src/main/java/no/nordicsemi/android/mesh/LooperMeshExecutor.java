@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * {@link MeshExecutor} running the tasks on a {@link Looper}.
+ * <p>
+ * All tasks and timers share a single {@link Handler}, so the whole mesh stack is driven by one message queue.
+ * </p>
+ */
+public final class LooperMeshExecutor implements MeshExecutor {
+
+    private static final String MESH_THREAD_NAME = "MeshThread";
+
+    private final Handler mHandler;
+    private final boolean ownsLooper;
+
+    /**
+     * Constructs a mesh executor running on the given looper.
+     *
+     * @param looper Looper, e.g. {@link Looper#getMainLooper()} to run the mesh stack on the main thread.
+     */
+    public LooperMeshExecutor(@NonNull final Looper looper) {
+        this(looper, false);
+    }
+
+    private LooperMeshExecutor(@NonNull final Looper looper, final boolean ownsLooper) {
+        this.mHandler = new Handler(looper);
+        this.ownsLooper = ownsLooper;
+    }
+
+    /**
+     * Creates a mesh executor running on a new dedicated thread.
+     * <p>
+     * Call {@link #quit()} to stop the thread once the executor is no longer used.
+     * </p>
+     */
+    @NonNull
+    public static LooperMeshExecutor createMeshThread() {
+        final HandlerThread thread = new HandlerThread(MESH_THREAD_NAME);
+        thread.start();
+        return new LooperMeshExecutor(thread.getLooper(), true);
+    }
+
+    /**
+     * Returns the looper the tasks run on.
+     */
+    @NonNull
+    public Looper getLooper() {
+        return mHandler.getLooper();
+    }
+
+    @Override
+    public void execute(@NonNull final Runnable task) {
+        mHandler.post(task);
+    }
+
+    @Override
+    public void schedule(@NonNull final Runnable task, final long delay) {
+        mHandler.postDelayed(task, delay);
+    }
+
+    @Override
+    public void cancel(@NonNull final Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+    /**
+     * Stops the thread created by {@link #createMeshThread()} once the tasks that are already due have run.
+     * Pending timers are discarded. This has no effect on executors running on a looper that was provided.
+     */
+    public void quit() {
+        if (ownsLooper) {
+            mHandler.getLooper().quitSafely();
+        }
+    }
+}
@@ -30,6 +30,11 @@ import android.os.Looper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.Security;
@@ -41,6 +46,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import no.nordicsemi.android.mesh.data.ApplicationKeyDao;
 import no.nordicsemi.android.mesh.data.ApplicationKeysDao;
@@ -56,7 +63,9 @@ import no.nordicsemi.android.mesh.data.ProvisionersDao;
 import no.nordicsemi.android.mesh.data.SceneDao;
 import no.nordicsemi.android.mesh.data.ScenesDao;
 import no.nordicsemi.android.mesh.logger.MeshLogger;
+import no.nordicsemi.android.mesh.provisionerstates.ProvisioningKeyPool;
 import no.nordicsemi.android.mesh.provisionerstates.UnprovisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.ControlMessage;
 import no.nordicsemi.android.mesh.transport.MeshMessage;
 import no.nordicsemi.android.mesh.transport.NetworkLayerCallbacks;
 import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
@@ -102,20 +111,27 @@ public class MeshManagerApi implements MeshMngrApi {
     private final static int ADVERTISED_RANDOM_LENGTH = 8; //Length of the hash contained in the advertisement service data
     private final static int ADVERTISED_NETWORK_ID_OFFSET = 1; //Offset of the network id contained in the advertisement service data
     private final static int ADVERTISED_NETWORK_ID_LENGTH = 8; //Length of the network id contained in the advertisement service data
+    private static final long DEFAULT_NETWORK_PERSISTENCE_INTERVAL = 500; // Window in milliseconds within which network changes are coalesced in to one write
+    private static final int DEFAULT_SEQUENCE_NUMBER_BLOCK_SIZE = 256; // Number of sequence numbers reserved ahead with a single write
 
     private final Context mContext;
-    private final Handler mHandler;
+    private final MeshExecutor mMeshExecutor;
+    private final LooperMeshExecutor mMeshThread; // Mesh thread created and quit by this instance, if any
+    private final Executor mCallbackExecutor;
     private MeshManagerCallbacks mMeshManagerCallbacks;
+    private MeshStatusCallbacks mMeshStatusCallbacks;
+    private NetworkImportCallbacks mNetworkImportCallbacks;
+    private NetworkReadyCallbacks mNetworkReadyCallbacks;
     private final MeshProvisioningHandler mMeshProvisioningHandler;
     private final MeshMessageHandler mMeshMessageHandler;
     private final ImportExportUtils mImportExportUtils;
-    private byte[] mIncomingBuffer;
-    private int mIncomingBufferOffset;
-    private byte[] mOutgoingBuffer;
-    private int mOutgoingBufferOffset;
-    private MeshNetwork mMeshNetwork;
-    private boolean ivUpdateTestModeActive = false;
-    private boolean allowIvIndexRecoveryOver42 = false;
+    private final GattSarBuffer mSarBuffer = new GattSarBuffer();
+    private final List<MeshProcedure> mProcedures = new ArrayList<>(); // Accessed on the mesh executor only
+    // Messages to nodes that are not loaded yet, sent once all nodes have been loaded. Accessed on the mesh executor only
+    private final List<Runnable> mMessagesAwaitingNodes = new ArrayList<>();
+    private volatile MeshNetwork mMeshNetwork; // Replaced on the mesh executor only
+    private volatile boolean ivUpdateTestModeActive = false;
+    private volatile boolean allowIvIndexRecoveryOver42 = false;
 
     private MeshNetworkDb mMeshNetworkDb;
     private MeshNetworkDao mMeshNetworkDao;
@@ -131,7 +147,9 @@ public class MeshManagerApi implements MeshMngrApi {
     private GroupsDao mGroupsDao;
     private SceneDao mSceneDao;
     private ScenesDao mScenesDao;
-    private boolean isNetworkImportInProgress = false;
+    private volatile boolean isNetworkImportInProgress = false;
+    private volatile long mNetworkPersistenceInterval = DEFAULT_NETWORK_PERSISTENCE_INTERVAL;
+    private volatile int mSequenceNumberBlockSize = DEFAULT_SEQUENCE_NUMBER_BLOCK_SIZE;
 
     private final Runnable mProxyProtocolTimeoutRunnable = new Runnable() {
         @Override
@@ -140,16 +158,60 @@ public class MeshManagerApi implements MeshMngrApi {
         }
     };
 
+    private final Runnable mPersistNetworkChangesRunnable = new Runnable() {
+        @Override
+        public void run() {
+            persistNetworkChanges(mMeshNetwork);
+        }
+    };
+
     /**
      * The mesh manager api constructor.
+     * <p>
+     * The mesh stack runs on a dedicated mesh thread and the callbacks are delivered on the main thread.
+     * The mesh thread is quit by {@link #close()}.
+     * </p>
      *
      * @param context context
      */
     public MeshManagerApi(@NonNull final Context context) {
+        this(context, LooperMeshExecutor.createMeshThread());
+    }
+
+    private MeshManagerApi(@NonNull final Context context, @NonNull final LooperMeshExecutor meshThread) {
+        this(context, meshThread, new Handler(Looper.getMainLooper())::post, meshThread);
+    }
+
+    /**
+     * The mesh manager api constructor.
+     * <p>
+     * Received pdus, messages being sent and all transport timers are processed serially on the mesh executor, while
+     * the {@link MeshManagerCallbacks}, {@link MeshStatusCallbacks} and {@link MeshProvisioningStatusCallbacks} are
+     * delivered on the callback executor. {@link MeshManagerCallbacks#getMtu()} is called directly from the mesh executor.
+     * The mesh executor is not shut down by {@link #close()}, as it is owned by the caller.
+     * </p>
+     *
+     * @param context          context
+     * @param meshExecutor     {@link MeshExecutor} running the mesh stack, e.g. {@link LooperMeshExecutor#createMeshThread()}
+     * @param callbackExecutor Executor on which the callbacks are delivered
+     */
+    public MeshManagerApi(@NonNull final Context context,
+                          @NonNull final MeshExecutor meshExecutor,
+                          @NonNull final Executor callbackExecutor) {
+        this(context, meshExecutor, callbackExecutor, null);
+    }
+
+    private MeshManagerApi(@NonNull final Context context,
+                           @NonNull final MeshExecutor meshExecutor,
+                           @NonNull final Executor callbackExecutor,
+                           @Nullable final LooperMeshExecutor meshThread) {
         this.mContext = context;
-        mHandler = new Handler(Looper.getMainLooper());
+        mMeshExecutor = meshExecutor;
+        mMeshThread = meshThread;
+        mCallbackExecutor = callbackExecutor;
         mMeshProvisioningHandler = new MeshProvisioningHandler(context, internalTransportCallbacks, internalMeshMgrCallbacks);
-        mMeshMessageHandler = new MeshMessageHandler(context, internalTransportCallbacks, networkLayerCallbacks, upperTransportLayerCallbacks);
+        mMeshMessageHandler = new MeshMessageHandler(context, meshExecutor, internalTransportCallbacks, networkLayerCallbacks, upperTransportLayerCallbacks);
+        mMeshMessageHandler.setMeshStatusCallbacks(statusCallbacks);
         mImportExportUtils = new ImportExportUtils();
         initBouncyCastle();
         //Init database
@@ -158,23 +220,37 @@ public class MeshManagerApi implements MeshMngrApi {
 
     @Override
     public void setMeshManagerCallbacks(@NonNull final MeshManagerCallbacks callbacks) {
-        mMeshManagerCallbacks = callbacks;
+        mMeshManagerCallbacks = new MeshManagerCallbacksDispatcher(callbacks, mCallbackExecutor);
     }
 
     @Override
     public void setProvisioningStatusCallbacks(@NonNull final MeshProvisioningStatusCallbacks callbacks) {
-        mMeshProvisioningHandler.setProvisioningCallbacks(callbacks);
+        mMeshProvisioningHandler.setProvisioningCallbacks(new MeshProvisioningStatusCallbacksDispatcher(callbacks, mCallbackExecutor));
     }
 
     @Override
     public void setMeshStatusCallbacks(@NonNull final MeshStatusCallbacks callbacks) {
-        mMeshMessageHandler.setMeshStatusCallbacks(callbacks);
+        mMeshStatusCallbacks = new MeshStatusCallbacksDispatcher(callbacks, mCallbackExecutor);
     }
 
     @Override
     public void loadMeshNetwork() {
-        mMeshNetworkDb.loadNetwork(mMeshNetworkDao, mNetworkKeysDao, mApplicationKeysDao, mProvisionersDao, mProvisionedNodesDao,
-                mGroupsDao, mScenesDao, networkLoadCallbacks);
+        mMeshExecutor.execute(() -> {
+            persistNetworkChanges(mMeshNetwork);
+            mNetworkReadyCallbacks = null;
+            mMeshNetworkDb.loadNetwork(mMeshNetworkDao, mNetworkKeysDao, mApplicationKeysDao, mProvisionersDao, mProvisionedNodesDao,
+                    mGroupsDao, mScenesDao, networkLoadCallbacks);
+        });
+    }
+
+    @Override
+    public void loadMeshNetwork(@NonNull final NetworkReadyCallbacks callbacks) {
+        mMeshExecutor.execute(() -> {
+            persistNetworkChanges(mMeshNetwork);
+            mNetworkReadyCallbacks = callbacks;
+            mMeshNetworkDb.loadNetworkLazily(mMeshNetworkDao, mNetworkKeysDao, mApplicationKeysDao, mProvisionersDao, mProvisionedNodesDao,
+                    mGroupsDao, mScenesDao, networkLoadCallbacks);
+        });
     }
 
     @Override
@@ -197,6 +273,83 @@ public class MeshManagerApi implements MeshMngrApi {
         this.allowIvIndexRecoveryOver42 = allowIvIndexRecoveryOver42;
     }
 
+    /**
+     * Sets the interval within which changes to the mesh network caused by received status messages and sent messages
+     * are coalesced in to a single database write.
+     * <p>
+     * Only the changed rows, usually a single node or the sequence number of the local node, are written.
+     * Setting the interval to 0 writes the changes immediately.
+     * </p>
+     *
+     * @param interval Interval in milliseconds, defaults to 500 ms.
+     */
+    public void setNetworkPersistenceInterval(final long interval) {
+        if (interval < 0)
+            throw new IllegalArgumentException("Interval cannot be negative.");
+        mNetworkPersistenceInterval = interval;
+    }
+
+    /**
+     * Sets the number of sequence numbers the local node reserves ahead with a single database write.
+     * <p>
+     * Instead of persisting the sequence number for every message sent, a block of sequence numbers is reserved and the
+     * end of the block is persisted. The next block is reserved once half of the current block has been used. After a
+     * restart the node resumes from the end of the last reserved block, skipping any unused sequence numbers, so a sequence
+     * number is never reused even if the app was killed.
+     * </p>
+     *
+     * @param blockSize Number of sequence numbers, defaults to 256.
+     */
+    public void setSequenceNumberBlockSize(final int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("Block size must be at least 1.");
+        mSequenceNumberBlockSize = blockSize;
+    }
+
+    /**
+     * Sets the maximum number of source addresses kept in the {@link ReplayProtectionList} of the network.
+     * <p>
+     * Messages from a new source address are discarded when the list is full. The list is persisted with the network.
+     * </p>
+     *
+     * @param size Maximum number of source addresses, defaults to {@link ReplayProtectionList#DEFAULT_SIZE}.
+     */
+    public void setReplayProtectionListSize(final int size) {
+        mMeshMessageHandler.setReplayProtectionListSize(size);
+    }
+
+    /**
+     * Sets the maximum number of acknowledged messages that are sent without waiting for their status messages.
+     * <p>
+     * Messages sent to a node are queued and sent in order. Acknowledged messages wait for a free slot, while
+     * unacknowledged messages and messages sent to group addresses are never delayed by acknowledged messages to other
+     * nodes. Nodes with queued messages take turns, which allows configuring many nodes by simply sending all messages.
+     * </p>
+     *
+     * @param perNode Maximum number of acknowledged messages in flight to a single node, defaults to 1.
+     * @param total   Maximum number of acknowledged messages in flight to all nodes, defaults to 8.
+     * @throws IllegalArgumentException if perNode is not positive or total is less than perNode.
+     */
+    public void setMaxAcknowledgedMessagesInFlight(final int perNode, final int total) {
+        mMeshMessageHandler.setMaxAcknowledgedMessagesInFlight(perNode, total);
+    }
+
+    /**
+     * Sets how long to wait for the status message acknowledging a message before the message is sent again.
+     * <p>
+     * A message that is sent again uses a new sequence number and the timeout is doubled after each retry. If no status
+     * message is received after the last retry, {@link MeshStatusCallbacks#onTransactionFailed(int, boolean)} is invoked
+     * and the next queued message to the node is sent.
+     * </p>
+     *
+     * @param timeout    Time to wait for the first status message in milliseconds, defaults to 5000.
+     * @param retryCount Number of times a message is sent again, defaults to 2.
+     * @throws IllegalArgumentException if timeout is not positive or retryCount is negative.
+     */
+    public void setAcknowledgedMessageTimeout(final long timeout, final int retryCount) {
+        mMeshMessageHandler.setAcknowledgedMessageTimeout(timeout, retryCount);
+    }
+
     private void initBouncyCastle() {
         Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
     }
@@ -236,11 +389,26 @@ public class MeshManagerApi implements MeshMngrApi {
 
     @Override
     public final void handleNotifications(final int mtuSize, @NonNull final byte[] data) {
+        mMeshExecutor.execute(() -> processNotification(mtuSize, data));
+    }
+
+    @Override
+    public final void handleNotifications(@NonNull final UUID deviceUuid, final int mtuSize, @NonNull final byte[] data) {
+        mMeshExecutor.execute(() -> processNotification(deviceUuid, mtuSize, data));
+    }
+
+    /**
+     * Reassembles and parses a notification on the mesh executor.
+     *
+     * @param mtuSize MTU size
+     * @param data    pdu received
+     */
+    private void processNotification(final int mtuSize, @NonNull final byte[] data) {
         byte[] unsegmentedPdu;
         if (!isGattSegmented(data)) {
             unsegmentedPdu = data;
         } else {
-            final byte[] combinedPdu = appendPdu(mtuSize, data);
+            final byte[] combinedPdu = mSarBuffer.appendPdu(mtuSize, data);
             if (combinedPdu == null) {
                 //Start the timer
                 toggleProxyProtocolSarTimeOut(data);
@@ -253,6 +421,36 @@ public class MeshManagerApi implements MeshMngrApi {
         parseNotifications(unsegmentedPdu);
     }
 
+    /**
+     * Reassembles and parses a notification from a device being provisioned on the mesh executor.
+     *
+     * @param deviceUuid device uuid of the node the notification was received from
+     * @param mtuSize    MTU size
+     * @param data       pdu received
+     */
+    private void processNotification(@NonNull final UUID deviceUuid, final int mtuSize, @NonNull final byte[] data) {
+        final ProvisioningSession session = mMeshProvisioningHandler.getSession(deviceUuid);
+        if (session == null) {
+            processNotification(mtuSize, data);
+            return;
+        }
+        byte[] unsegmentedPdu;
+        if (!isGattSegmented(data)) {
+            unsegmentedPdu = data;
+        } else {
+            final byte[] combinedPdu = session.getSarBuffer().appendPdu(mtuSize, data);
+            if (combinedPdu == null)
+                return;
+            unsegmentedPdu = removeSegmentation(mtuSize, combinedPdu);
+        }
+        if (unsegmentedPdu[0] == PDU_TYPE_PROVISIONING) {
+            MeshLogger.verbose(TAG, "Received provisioning message: {}", MeshLogger.hex(unsegmentedPdu, true));
+            mMeshProvisioningHandler.parseProvisioningNotifications(deviceUuid, unsegmentedPdu);
+        } else {
+            parseNotifications(unsegmentedPdu);
+        }
+    }
+
     /**
      * Toggles the Segmentation and Reassembly timeout for proxy configuration messages received via proxy protocol
      *
@@ -261,9 +459,9 @@ public class MeshManagerApi implements MeshMngrApi {
     private void toggleProxyProtocolSarTimeOut(final byte[] data) {
         final int pduType = MeshParserUtils.unsignedByteToInt(data[0]);
         if (pduType == ((GATT_SAR_START << SAR_BIT_OFFSET) | MeshManagerApi.PDU_TYPE_PROXY_CONFIGURATION)) {
-            mHandler.postDelayed(mProxyProtocolTimeoutRunnable, PROXY_SAR_TRANSFER_TIME_OUT);
+            mMeshExecutor.schedule(mProxyProtocolTimeoutRunnable, PROXY_SAR_TRANSFER_TIME_OUT);
         } else if (pduType == ((GATT_SAR_END << SAR_BIT_OFFSET) | MeshManagerApi.PDU_TYPE_PROXY_CONFIGURATION)) {
-            mHandler.removeCallbacks(mProxyProtocolTimeoutRunnable);
+            mMeshExecutor.cancel(mProxyProtocolTimeoutRunnable);
         }
     }
 
@@ -277,114 +475,107 @@ public class MeshManagerApi implements MeshMngrApi {
             switch (unsegmentedPdu[0]) {
                 case PDU_TYPE_NETWORK:
                     //MeshNetwork PDU
-                    MeshLogger.verbose(TAG, "Received network pdu: " + MeshParserUtils.bytesToHex(unsegmentedPdu, true));
+                    MeshLogger.verbose(TAG, "Received network pdu: {}", MeshLogger.hex(unsegmentedPdu, true));
                     mMeshMessageHandler.parseMeshPduNotifications(unsegmentedPdu, mMeshNetwork);
                     break;
                 case PDU_TYPE_MESH_BEACON:
-                    //Validate SNBs against all network keys
-                    NetworkKey networkKey;
-                    for (int i = 0; i < mMeshNetwork.getNetKeys().size(); i++) {
-                        networkKey = mMeshNetwork.getNetKeys().get(i);
-                        final byte[] receivedBeaconData = new byte[unsegmentedPdu.length - 1];
-                        System.arraycopy(unsegmentedPdu, 1, receivedBeaconData, 0, receivedBeaconData.length);
-                        final SecureNetworkBeacon receivedBeacon = new SecureNetworkBeacon(receivedBeaconData);
-
-                        final byte[] n = networkKey.getTxNetworkKey();
-                        final int flags = receivedBeacon.getFlags();
-                        final byte[] networkId = SecureUtils.calculateK3(n);
-                        final int ivIndex = receivedBeacon.getIvIndex().getIvIndex();
-                        MeshLogger.debug(TAG, "Received mesh beacon: " + receivedBeacon);
-
-                        final SecureNetworkBeacon localSecureNetworkBeacon = SecureUtils.createSecureNetworkBeacon(n, flags, networkId, ivIndex);
-                        //Check the the beacon received is a valid by matching the authentication values
-                        if (Arrays.equals(receivedBeacon.getAuthenticationValue(), localSecureNetworkBeacon.getAuthenticationValue())) {
-                            MeshLogger.debug(TAG, "Secure Network Beacon authenticated.");
-
-                            //  The library does not retransmit Secure Network Beacon.
-                            //  If this node is a member of a primary subnet and receives a Secure Network
-                            //  beacon on a secondary subnet, it will disregard it.
-                            if (mMeshNetwork.getPrimaryNetworkKey() != null && networkKey.keyIndex != 0) {
-                                MeshLogger.debug(TAG, "Discarding beacon for secondary subnet with network key index: " + networkKey.keyIndex);
-                                return;
-                            }
+                    final byte[] receivedBeaconData = new byte[unsegmentedPdu.length - 1];
+                    System.arraycopy(unsegmentedPdu, 1, receivedBeaconData, 0, receivedBeaconData.length);
+                    final SecureNetworkBeacon receivedBeacon = new SecureNetworkBeacon(receivedBeaconData);
+                    MeshLogger.debug(TAG, "Received mesh beacon: {}", receivedBeacon);
+
+                    //Validate the SNB against the network key matching its network id
+                    final SubnetRoutingTable.Subnet subnet = mMeshNetwork.getSubnetRoutingTable().authenticate(receivedBeacon);
+                    if (subnet != null) {
+                        final NetworkKey networkKey = subnet.getNetworkKey();
+                        MeshLogger.debug(TAG, "Secure Network Beacon authenticated.");
+
+                        //  The library does not retransmit Secure Network Beacon.
+                        //  If this node is a member of a primary subnet and receives a Secure Network
+                        //  beacon on a secondary subnet, it will disregard it.
+                        if (mMeshNetwork.getPrimaryNetworkKey() != null && networkKey.keyIndex != 0) {
+                            MeshLogger.debug(TAG, "Discarding beacon for secondary subnet with network key index: {}", networkKey.keyIndex);
+                            return;
+                        }
 
-                            // Get the last IV Index.
-                            /// The last used IV Index for this mesh network.
-                            final IvIndex lastIvIndex = mMeshNetwork.getIvIndex();
-                            MeshLogger.debug(TAG, "Last IV Index: " + lastIvIndex.getIvIndex());
-                            /// The date of the last change of IV Index or IV Update Flag.
-                            final Calendar lastTransitionDate = lastIvIndex.getTransitionDate();
-                            /// A flag whether the IV has recently been updated using IV Recovery procedure.
-                            /// The at-least-96h requirement for the duration of the current state will not apply.
-                            /// The node shall not execute more than one IV Index Recovery within a period of 192 hours.
-                            final boolean isIvRecoveryActive = lastIvIndex.getIvRecoveryFlag();
-                            /// The test mode disables the 96h rule, leaving all other behavior unchanged.
-                            final boolean isIvTestModeActive = ivUpdateTestModeActive;
-
-                            final boolean flag = allowIvIndexRecoveryOver42;
-                            if (!receivedBeacon.canOverwrite(lastIvIndex, lastTransitionDate, isIvRecoveryActive, isIvTestModeActive, flag)) {
-                                String numberOfHoursSinceDate = ((Calendar.getInstance().getTimeInMillis() -
-                                        (lastTransitionDate != null ? lastTransitionDate.getTimeInMillis() : 0)) / (3600 * 1000)) + "h";
-                                MeshLogger.warn(TAG, "Discarding beacon " + receivedBeacon.getIvIndex() +
-                                        ", last " + lastIvIndex.getIvIndex() + ", changed: "
-                                        + numberOfHoursSinceDate + " ago, test mode: " + ivUpdateTestModeActive);
-                                return;
-                            }
+                        // Get the last IV Index.
+                        /// The last used IV Index for this mesh network.
+                        final IvIndex lastIvIndex = mMeshNetwork.getIvIndex();
+                        MeshLogger.debug(TAG, "Last IV Index: {}", lastIvIndex.getIvIndex());
+                        /// The date of the last change of IV Index or IV Update Flag.
+                        final Calendar lastTransitionDate = lastIvIndex.getTransitionDate();
+                        /// A flag whether the IV has recently been updated using IV Recovery procedure.
+                        /// The at-least-96h requirement for the duration of the current state will not apply.
+                        /// The node shall not execute more than one IV Index Recovery within a period of 192 hours.
+                        final boolean isIvRecoveryActive = lastIvIndex.getIvRecoveryFlag();
+                        /// The test mode disables the 96h rule, leaving all other behavior unchanged.
+                        final boolean isIvTestModeActive = ivUpdateTestModeActive;
+
+                        final boolean flag = allowIvIndexRecoveryOver42;
+                        if (!receivedBeacon.canOverwrite(lastIvIndex, lastTransitionDate, isIvRecoveryActive, isIvTestModeActive, flag)) {
+                            String numberOfHoursSinceDate = ((Calendar.getInstance().getTimeInMillis() -
+                                    (lastTransitionDate != null ? lastTransitionDate.getTimeInMillis() : 0)) / (3600 * 1000)) + "h";
+                            MeshLogger.warn(TAG, "Discarding beacon " + receivedBeacon.getIvIndex() +
+                                    ", last " + lastIvIndex.getIvIndex() + ", changed: "
+                                    + numberOfHoursSinceDate + " ago, test mode: " + ivUpdateTestModeActive);
+                            return;
+                        }
 
-                            final IvIndex receivedIvIndex = receivedBeacon.getIvIndex();
-                            if (receivedIvIndex.getIvIndex() > lastIvIndex.getIvIndex()) {
-                                mMeshNetwork.ivIndex = receivedIvIndex;
-                                MeshLogger.info(TAG, "Applying: " + mMeshNetwork.ivIndex.getIvIndex());
-                            } else {
-                                // This will leave the IV update active state intact or will switch from false to true.
-                                // canOverwrite() ensures this by discarding the secureNetworkBeacon received.
-                                mMeshNetwork.ivIndex.setIvUpdateActive(receivedIvIndex.isIvUpdateActive());
-                                MeshLogger.info(TAG, "Setting IV Update Active to: " + receivedIvIndex.isIvUpdateActive());
-                            }
+                        final IvIndex receivedIvIndex = receivedBeacon.getIvIndex();
+                        if (receivedIvIndex.getIvIndex() > lastIvIndex.getIvIndex()) {
+                            mMeshNetwork.ivIndex = receivedIvIndex;
+                            MeshLogger.info(TAG, "Applying: {}", mMeshNetwork.ivIndex.getIvIndex());
+                        } else {
+                            // This will leave the IV update active state intact or will switch from false to true.
+                            // canOverwrite() ensures this by discarding the secureNetworkBeacon received.
+                            mMeshNetwork.ivIndex.setIvUpdateActive(receivedIvIndex.isIvUpdateActive());
+                            MeshLogger.info(TAG, "Setting IV Update Active to: {}", receivedIvIndex.isIvUpdateActive());
+                        }
 
-                            // If the IV Index used for transmitting messages effectively increased,
-                            // the Node shall reset the sequence number to 0x000000.
-                            if (mMeshNetwork.ivIndex.getTransmitIvIndex() > lastIvIndex.getTransmitIvIndex()) {
-                                MeshLogger.info(TAG, "Resetting local sequence numbers to 0");
-                                final Provisioner provisioner = mMeshNetwork.getSelectedProvisioner();
-                                final ProvisionedMeshNode node = mMeshNetwork.getNode(provisioner.getProvisionerUuid());
-                                node.setSequenceNumber(0);
-                            }
+                        // If the IV Index used for transmitting messages effectively increased,
+                        // the Node shall reset the sequence number to 0x000000.
+                        if (mMeshNetwork.ivIndex.getTransmitIvIndex() > lastIvIndex.getTransmitIvIndex()) {
+                            MeshLogger.info(TAG, "Resetting local sequence numbers to 0");
+                            final Provisioner provisioner = mMeshNetwork.getSelectedProvisioner();
+                            final ProvisionedMeshNode node = mMeshNetwork.getNode(provisioner.getProvisionerUuid());
+                            node.setSequenceNumber(0);
+                            scheduleNetworkPersistence(mMeshNetwork.getPendingChanges().markNodeChanged(node));
+                        }
 
-                            //Updating the iv recovery flag
-                            if (lastIvIndex != mMeshNetwork.ivIndex) {
-                                final boolean ivRecovery = mMeshNetwork.getIvIndex().getIvIndex() > lastIvIndex.getIvIndex() + 1
-                                        && !receivedBeacon.getIvIndex().isIvUpdateActive();
-                                mMeshNetwork.getIvIndex().setIvRecoveryFlag(ivRecovery);
-                            }
+                        //Updating the iv recovery flag
+                        if (lastIvIndex != mMeshNetwork.ivIndex) {
+                            final boolean ivRecovery = mMeshNetwork.getIvIndex().getIvIndex() > lastIvIndex.getIvIndex() + 1
+                                    && !receivedBeacon.getIvIndex().isIvUpdateActive();
+                            mMeshNetwork.getIvIndex().setIvRecoveryFlag(ivRecovery);
+                        }
 
-                            if (!mMeshNetwork.ivIndex.getIvRecoveryFlag()) {
-                                final Iterator<Entry<Integer, List<Integer>>> iterator = mMeshNetwork.networkExclusions.entrySet().iterator();
-                                while (iterator.hasNext()) {
-                                    final Entry<Integer, List<Integer>> exclusions = iterator.next();
-                                    final int expectedIncrement = exclusions.getKey() + 2;
-                                    if (mMeshNetwork.ivIndex.getIvIndex() >= expectedIncrement) {
-                                        // Clear the last known sequence number of addresses that are to be removed from the exclusion list.
-                                        // Decided to retain the last known sequence number as the IV Indexes increment the sequence number
-                                        // will be greater than the last known anyways
-                                        //for (Integer address : mMeshNetwork.networkExclusions.get(expectedIncrement)) {
-                                        //    mMeshNetwork.sequenceNumbers.removeAt(address);
-                                        //}
-                                        iterator.remove();
-                                    }
+                        if (!mMeshNetwork.ivIndex.getIvRecoveryFlag()) {
+                            final Iterator<Entry<Integer, List<Integer>>> iterator = mMeshNetwork.networkExclusions.entrySet().iterator();
+                            while (iterator.hasNext()) {
+                                final Entry<Integer, List<Integer>> exclusions = iterator.next();
+                                final int expectedIncrement = exclusions.getKey() + 2;
+                                if (mMeshNetwork.ivIndex.getIvIndex() >= expectedIncrement) {
+                                    // Clear the last known sequence number of addresses that are to be removed from the exclusion list.
+                                    // Decided to retain the last known sequence number as the IV Indexes increment the sequence number
+                                    // will be greater than the last known anyways
+                                    //for (Integer address : mMeshNetwork.networkExclusions.get(expectedIncrement)) {
+                                    //    mMeshNetwork.sequenceNumbers.removeAt(address);
+                                    //}
+                                    iterator.remove();
                                 }
                             }
                         }
+                        scheduleNetworkPersistence(mMeshNetwork.getPendingChanges().markNetworkChanged());
                     }
                     break;
                 case PDU_TYPE_PROXY_CONFIGURATION:
                     //Proxy configuration
-                    MeshLogger.verbose(TAG, "Received proxy configuration message: " + MeshParserUtils.bytesToHex(unsegmentedPdu, true));
+                    MeshLogger.verbose(TAG, "Received proxy configuration message: {}", MeshLogger.hex(unsegmentedPdu, true));
                     mMeshMessageHandler.parseMeshPduNotifications(unsegmentedPdu, mMeshNetwork);
                     break;
                 case PDU_TYPE_PROVISIONING:
                     //Provisioning PDU
-                    MeshLogger.verbose(TAG, "Received provisioning message: " + MeshParserUtils.bytesToHex(unsegmentedPdu, true));
+                    MeshLogger.verbose(TAG, "Received provisioning message: {}", MeshLogger.hex(unsegmentedPdu, true));
                     mMeshProvisioningHandler.parseProvisioningNotifications(unsegmentedPdu);
                     break;
             }
@@ -397,11 +588,26 @@ public class MeshManagerApi implements MeshMngrApi {
 
     @Override
     public final void handleWriteCallbacks(final int mtuSize, @NonNull final byte[] data) {
+        mMeshExecutor.execute(() -> processWriteCallback(mtuSize, data));
+    }
+
+    @Override
+    public final void handleWriteCallbacks(@NonNull final UUID deviceUuid, final int mtuSize, @NonNull final byte[] data) {
+        mMeshExecutor.execute(() -> processWriteCallback(deviceUuid, mtuSize, data));
+    }
+
+    /**
+     * Reassembles a pdu that was written and updates the state machine on the mesh executor.
+     *
+     * @param mtuSize MTU size
+     * @param data    pdu written
+     */
+    private void processWriteCallback(final int mtuSize, @NonNull final byte[] data) {
         byte[] unsegmentedPdu;
         if (!isGattSegmented(data)) {
             unsegmentedPdu = data;
         } else {
-            final byte[] combinedPdu = appendWritePdu(mtuSize, data);
+            final byte[] combinedPdu = mSarBuffer.appendWritePdu(mtuSize, data);
             if (combinedPdu == null)
                 return;
             else {
@@ -411,6 +617,36 @@ public class MeshManagerApi implements MeshMngrApi {
         handleWriteCallbacks(unsegmentedPdu);
     }
 
+    /**
+     * Reassembles a pdu that was written to a device being provisioned and updates the state machine on the mesh executor.
+     *
+     * @param deviceUuid device uuid of the node the pdu was written to
+     * @param mtuSize    MTU size
+     * @param data       pdu written
+     */
+    private void processWriteCallback(@NonNull final UUID deviceUuid, final int mtuSize, @NonNull final byte[] data) {
+        final ProvisioningSession session = mMeshProvisioningHandler.getSession(deviceUuid);
+        if (session == null) {
+            processWriteCallback(mtuSize, data);
+            return;
+        }
+        byte[] unsegmentedPdu;
+        if (!isGattSegmented(data)) {
+            unsegmentedPdu = data;
+        } else {
+            final byte[] combinedPdu = session.getSarBuffer().appendWritePdu(mtuSize, data);
+            if (combinedPdu == null)
+                return;
+            unsegmentedPdu = removeSegmentation(mtuSize, combinedPdu);
+        }
+        if (unsegmentedPdu[0] == PDU_TYPE_PROVISIONING) {
+            MeshLogger.verbose(TAG, "Provisioning pdu sent: {}", MeshLogger.hex(unsegmentedPdu, true));
+            mMeshProvisioningHandler.handleProvisioningWriteCallbacks(deviceUuid);
+        } else {
+            handleWriteCallbacks(unsegmentedPdu);
+        }
+    }
+
     /**
      * Handles callbacks after writing to characteristics to maintain/update the state machine
      *
@@ -419,16 +655,16 @@ public class MeshManagerApi implements MeshMngrApi {
     private void handleWriteCallbacks(final byte[] data) {
         switch (data[0]) {
             case PDU_TYPE_NETWORK: // MeshNetwork PDU
-                MeshLogger.verbose(TAG, "MeshNetwork pdu sent: " + MeshParserUtils.bytesToHex(data, true));
+                MeshLogger.verbose(TAG, "MeshNetwork pdu sent: {}", MeshLogger.hex(data, true));
                 break;
             case PDU_TYPE_MESH_BEACON: // MESH BEACON
-                MeshLogger.verbose(TAG, "Mesh beacon pdu sent: " + MeshParserUtils.bytesToHex(data, true));
+                MeshLogger.verbose(TAG, "Mesh beacon pdu sent: {}", MeshLogger.hex(data, true));
                 break;
             case PDU_TYPE_PROXY_CONFIGURATION: // Proxy configuration
-                MeshLogger.verbose(TAG, "Proxy configuration pdu sent: " + MeshParserUtils.bytesToHex(data, true));
+                MeshLogger.verbose(TAG, "Proxy configuration pdu sent: {}", MeshLogger.hex(data, true));
                 break;
             case PDU_TYPE_PROVISIONING: // Provisioning PDU
-                MeshLogger.verbose(TAG, "Provisioning pdu sent: " + MeshParserUtils.bytesToHex(data, true));
+                MeshLogger.verbose(TAG, "Provisioning pdu sent: {}", MeshLogger.hex(data, true));
                 mMeshProvisioningHandler.handleProvisioningWriteCallbacks();
                 break;
         }
@@ -447,64 +683,6 @@ public class MeshManagerApi implements MeshMngrApi {
         }
     }
 
-    /**
-     * Appends the PDUs that are segmented at gatt layer.
-     *
-     * @param mtuSize mtu size supported by the device/node
-     * @param pdu     pdu received by the provisioner
-     * @return the combine pdu or returns null if not complete.
-     */
-    private byte[] appendPdu(final int mtuSize, final byte[] pdu) {
-        final int length = Math.min(pdu.length, mtuSize);
-        if (mIncomingBuffer == null) {
-            mIncomingBufferOffset = 0;
-            mIncomingBufferOffset += length;
-            mIncomingBuffer = pdu;
-        } else {
-            final byte[] buffer = new byte[mIncomingBuffer.length + length];
-            System.arraycopy(mIncomingBuffer, 0, buffer, 0, mIncomingBufferOffset);
-            System.arraycopy(pdu, 0, buffer, mIncomingBufferOffset, length);
-            mIncomingBufferOffset += length;
-            mIncomingBuffer = buffer;
-            final int sar = MeshParserUtils.unsignedByteToInt(pdu[0]) >> SAR_BIT_OFFSET;
-            if (sar == GATT_SAR_END) {
-                final byte[] packet = mIncomingBuffer;
-                mIncomingBuffer = null;
-                return packet;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Appends the PDUs that are segmented at gatt layer.
-     *
-     * @param mtuSize mtu size supported by the device/node
-     * @param pdu     pdu received by the provisioner
-     * @return the combine pdu or returns null if not complete.
-     */
-    private byte[] appendWritePdu(final int mtuSize, final byte[] pdu) {
-        if (mOutgoingBuffer == null) {
-            final int length = Math.min(pdu.length, mtuSize);
-            mOutgoingBufferOffset = 0;
-            mOutgoingBufferOffset += length;
-            mOutgoingBuffer = pdu;
-        } else {
-            final int length = Math.min(pdu.length, mtuSize);
-            final byte[] buffer = new byte[mOutgoingBuffer.length + length];
-            System.arraycopy(mOutgoingBuffer, 0, buffer, 0, mOutgoingBufferOffset);
-            System.arraycopy(pdu, 0, buffer, mOutgoingBufferOffset, length);
-            mOutgoingBufferOffset += length;
-            mOutgoingBuffer = buffer;
-            if (length < mtuSize) {
-                final byte[] packet = mOutgoingBuffer;
-                mOutgoingBuffer = null;
-                return packet;
-            }
-        }
-        return null;
-    }
-
     private byte[] applySegmentation(final int mtuSize, final byte[] pdu) {
         int srcOffset = 0;
         int dstOffset = 0;
@@ -565,53 +743,202 @@ public class MeshManagerApi implements MeshMngrApi {
     }
 
     @Override
-    public void identifyNode(@NonNull final UUID deviceUUID) throws IllegalArgumentException {
+    public void identifyNode(@NonNull final UUID deviceUUID) {
         identifyNode(deviceUUID, MeshProvisioningHandler.ATTENTION_TIMER);
     }
 
     @Override
-    public void identifyNode(@NonNull final UUID deviceUuid,
-                             final int attentionTimer) throws IllegalArgumentException {
-        final NetworkKey networkKey = mMeshNetwork.getPrimaryNetworkKey();
-        if (networkKey != null) {
-            mMeshProvisioningHandler.identify(deviceUuid, networkKey, mMeshNetwork.getProvisioningFlags(),
-                    mMeshNetwork.getIvIndex().getIvIndex(), mMeshNetwork.getGlobalTtl(), attentionTimer);
-        }
+    public void identifyNode(@NonNull final UUID deviceUuid, final int attentionTimer) {
+        mMeshExecutor.execute(() -> {
+            final MeshNetwork network = mMeshNetwork;
+            final NetworkKey networkKey = network.getPrimaryNetworkKey();
+            if (networkKey == null) {
+                MeshLogger.error(TAG, "Primary network key not found, device not identified");
+                return;
+            }
+            try {
+                mMeshProvisioningHandler.identify(deviceUuid, networkKey, network.getProvisioningFlags(),
+                        network.getIvIndex().getIvIndex(), network.getGlobalTtl(), attentionTimer);
+            } catch (IllegalArgumentException ex) {
+                MeshLogger.error(TAG, "Device not identified: " + ex.getMessage());
+            }
+        });
     }
 
     @Override
-    public void startProvisioning(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode) throws IllegalArgumentException {
-        if (isAddressValid(unprovisionedMeshNode)) {
-            mMeshProvisioningHandler.startProvisioningNoOOB(unprovisionedMeshNode);
-        }
+    public void startProvisioning(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode) {
+        startProvisioning(unprovisionedMeshNode, () -> mMeshProvisioningHandler.startProvisioningNoOOB(unprovisionedMeshNode));
     }
 
     @Override
-    public void startProvisioningWithStaticOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode) throws IllegalArgumentException {
-        if (isAddressValid(unprovisionedMeshNode)) {
-            mMeshProvisioningHandler.startProvisioningWithStaticOOB(unprovisionedMeshNode);
-        }
+    public void startProvisioningWithStaticOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode) {
+        startProvisioning(unprovisionedMeshNode, () -> mMeshProvisioningHandler.startProvisioningWithStaticOOB(unprovisionedMeshNode));
     }
 
     @Override
     public void startProvisioningWithOutputOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode,
-                                               @NonNull final OutputOOBAction oobAction) throws IllegalArgumentException {
-        if (isAddressValid(unprovisionedMeshNode)) {
-            mMeshProvisioningHandler.startProvisioningWithOutputOOB(unprovisionedMeshNode, oobAction);
-        }
+                                               @NonNull final OutputOOBAction oobAction) {
+        startProvisioning(unprovisionedMeshNode, () -> mMeshProvisioningHandler.startProvisioningWithOutputOOB(unprovisionedMeshNode, oobAction));
     }
 
     @Override
     public void startProvisioningWithInputOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode,
-                                              @NonNull final InputOOBAction oobAction) throws IllegalArgumentException {
-        if (isAddressValid(unprovisionedMeshNode)) {
-            mMeshProvisioningHandler.startProvisioningWithInputOOB(unprovisionedMeshNode, oobAction);
-        }
+                                              @NonNull final InputOOBAction oobAction) {
+        startProvisioning(unprovisionedMeshNode, () -> mMeshProvisioningHandler.startProvisioningWithInputOOB(unprovisionedMeshNode, oobAction));
+    }
+
+    /**
+     * Assigns the unicast address of a node and starts provisioning it on the mesh executor, where the nodes of the
+     * network are added. Failures are reported to {@link MeshProvisioningStatusCallbacks#onProvisioningFailed}.
+     *
+     * @param node  Identified unprovisioned node
+     * @param start Sends the provisioning start pdu
+     */
+    private void startProvisioning(@NonNull final UnprovisionedMeshNode node, @NonNull final Runnable start) {
+        mMeshExecutor.execute(() -> {
+            try {
+                if (isAddressValid(node)) {
+                    start.run();
+                }
+            } catch (IllegalArgumentException ex) {
+                MeshLogger.error(TAG, "Provisioning not started: " + ex.getMessage());
+                mMeshProvisioningHandler.onProvisioningNotStarted(node);
+            }
+        });
     }
 
     @Override
     public void setProvisioningAuthentication(@NonNull final String authentication) {
-        mMeshProvisioningHandler.sendProvisioningConfirmation(authentication);
+        mMeshExecutor.execute(() -> mMeshProvisioningHandler.sendProvisioningConfirmation(authentication));
+    }
+
+    @Override
+    public void setProvisioningAuthentication(@NonNull final UUID deviceUuid, @NonNull final String authentication) {
+        mMeshExecutor.execute(() -> mMeshProvisioningHandler.sendProvisioningConfirmation(deviceUuid, authentication));
+    }
+
+    @Override
+    public void setProvisioningKeyPoolSize(final int poolSize) {
+        if (poolSize < 0)
+            throw new IllegalArgumentException("Pool size cannot be negative");
+        mMeshProvisioningHandler.setKeyPool(poolSize == 0 ? null : new ProvisioningKeyPool(poolSize, mMeshExecutor));
+    }
+
+    @Override
+    public void close() {
+        // Runs after the pending pdus and timers, so that their changes are written too
+        mMeshExecutor.execute(() -> {
+            persistNetworkChanges(mMeshNetwork);
+            mMeshProvisioningHandler.setKeyPool(null);
+            if (mMeshThread != null) {
+                mMeshThread.quit();
+            }
+        });
+    }
+
+    @Override
+    public void cancelProvisioning(@NonNull final UUID deviceUuid) {
+        mMeshExecutor.execute(() -> mMeshProvisioningHandler.cancel(deviceUuid));
+    }
+
+    @Override
+    public void startKeyRefresh(@NonNull final NetworkKey networkKey, final int maxNodesInFlight, @NonNull final KeyRefreshCallbacks callbacks) {
+        final MeshNetwork network = mMeshNetwork;
+        final Provisioner provisioner = network.getSelectedProvisioner();
+        if (provisioner == null || provisioner.getProvisionerAddress() == null) {
+            throw new IllegalArgumentException("Provisioner address not set, please assign an address to the provisioner.");
+        }
+        if (network.getNetKey(networkKey.getKeyIndex()) != networkKey) {
+            throw new IllegalArgumentException("Network Key not distributed");
+        }
+        if (KeyRefreshProcedure.getResumePhase(network, networkKey) == NetworkKey.NORMAL_OPERATION) {
+            throw new IllegalArgumentException("Key refresh not in progress, distribute the network key first");
+        }
+        final int src = provisioner.getProvisionerAddress();
+        final KeyRefreshProcedure procedure = new KeyRefreshProcedure(network, networkKey, maxNodesInFlight,
+                (dst, meshMessage) -> mMeshMessageHandler.createMeshMessage(src, dst, null, meshMessage),
+                new KeyRefreshCallbacksDispatcher(callbacks, mCallbackExecutor));
+        mMeshExecutor.execute(() -> {
+            cancelKeyRefreshProcedure(networkKey);
+            mProcedures.add(procedure);
+            procedure.start();
+            removeFinishedProcedures();
+        });
+    }
+
+    @Override
+    public void cancelKeyRefresh(@NonNull final NetworkKey networkKey) {
+        mMeshExecutor.execute(() -> cancelKeyRefreshProcedure(networkKey));
+    }
+
+    private void cancelKeyRefreshProcedure(@NonNull final NetworkKey networkKey) {
+        for (MeshProcedure procedure : mProcedures) {
+            if (procedure instanceof KeyRefreshProcedure &&
+                    ((KeyRefreshProcedure) procedure).getNetworkKey().getKeyIndex() == networkKey.getKeyIndex()) {
+                procedure.cancel();
+            }
+        }
+        removeFinishedProcedures();
+    }
+
+    @Override
+    public void applyConfigurationPlan(@NonNull final ConfigurationPlan plan,
+                                       @NonNull final List<ProvisionedMeshNode> nodes,
+                                       final int maxNodesInFlight,
+                                       @NonNull final ConfigurationPlanCallbacks callbacks) {
+        if (maxNodesInFlight <= 0)
+            throw new IllegalArgumentException("Number of nodes in flight must be positive");
+        final Provisioner selectedProvisioner = mMeshNetwork.getSelectedProvisioner();
+        if (selectedProvisioner == null || selectedProvisioner.getProvisionerAddress() == null) {
+            throw new IllegalArgumentException("Provisioner address not set, please assign an address to the provisioner.");
+        }
+        for (ApplicationKey appKey : plan.getAppKeys()) {
+            if (mMeshNetwork.getNetKey(appKey.getBoundNetKeyIndex()) == null) {
+                throw new IllegalArgumentException("Network key bound to " + appKey.getName() + " not found");
+            }
+        }
+        // The plan may be changed once this method returns
+        final ConfigurationPlan compiledPlan = new ConfigurationPlan(plan);
+        final List<ProvisionedMeshNode> nodeList = new ArrayList<>(nodes);
+        final ConfigurationPlanCallbacks dispatcher = new ConfigurationPlanCallbacksDispatcher(callbacks, mCallbackExecutor);
+        mMeshExecutor.execute(() -> {
+            // The network is replaced and the provisioner selected on the mesh executor
+            final MeshNetwork network = mMeshNetwork;
+            final Provisioner provisioner = network.getSelectedProvisioner();
+            if (provisioner == null || provisioner.getProvisionerAddress() == null) {
+                MeshLogger.error(TAG, "Provisioner address not set, configuration plan not applied");
+                dispatcher.onConfigurationCompleted(new ArrayList<>(), nodeList);
+                return;
+            }
+            final int src = provisioner.getProvisionerAddress();
+            final ConfigurationPlanProcedure procedure = new ConfigurationPlanProcedure(network, plan, compiledPlan,
+                    nodeList, maxNodesInFlight,
+                    (dst, meshMessage) -> mMeshMessageHandler.createMeshMessage(src, dst, null, meshMessage), dispatcher);
+            mProcedures.add(procedure);
+            procedure.start();
+            removeFinishedProcedures();
+        });
+    }
+
+    @Override
+    public void cancelConfigurationPlan(@NonNull final ConfigurationPlan plan) {
+        mMeshExecutor.execute(() -> {
+            for (MeshProcedure procedure : mProcedures) {
+                if (procedure instanceof ConfigurationPlanProcedure && ((ConfigurationPlanProcedure) procedure).getPlan() == plan) {
+                    procedure.cancel();
+                }
+            }
+            removeFinishedProcedures();
+        });
+    }
+
+    private void removeFinishedProcedures() {
+        final Iterator<MeshProcedure> iterator = mProcedures.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+            }
+        }
     }
 
     @NonNull
@@ -791,14 +1118,19 @@ public class MeshManagerApi implements MeshMngrApi {
      * </p>
      */
     public final void resetMeshNetwork() {
-        //We delete the existing network as the user has already given the
-        ivUpdateTestModeActive = false;
-        allowIvIndexRecoveryOver42 = false;
-        final MeshNetwork meshNet = mMeshNetwork;
-        deleteMeshNetworkFromDb(meshNet);
-        final MeshNetwork newMeshNetwork = generateMeshNetwork();
-        newMeshNetwork.setCallbacks(callbacks);
-        insertNetwork(newMeshNetwork);
+        mMeshExecutor.execute(() -> {
+            //We delete the existing network as the user has already given the
+            ivUpdateTestModeActive = false;
+            allowIvIndexRecoveryOver42 = false;
+            final MeshNetwork meshNet = mMeshNetwork;
+            // Pending changes are discarded as the network is being deleted
+            mMeshExecutor.cancel(mPersistNetworkChangesRunnable);
+            meshNet.getPendingChanges().drain();
+            deleteMeshNetworkFromDb(meshNet);
+            final MeshNetwork newMeshNetwork = generateMeshNetwork();
+            newMeshNetwork.setCallbacks(callbacks);
+            insertNetwork(newMeshNetwork);
+        });
     }
 
     /**
@@ -808,13 +1140,17 @@ public class MeshManagerApi implements MeshMngrApi {
      * </p>
      */
     public final void createMeshNetwork() {
-        ivUpdateTestModeActive = false;
-        allowIvIndexRecoveryOver42 = false;
-        final MeshNetwork newMeshNetwork = generateMeshNetwork();
-        newMeshNetwork.setCallbacks(callbacks);
-        insertNetwork(newMeshNetwork);
-        mMeshNetwork = newMeshNetwork;
-        mMeshManagerCallbacks.onNetworkLoaded(newMeshNetwork);
+        mMeshExecutor.execute(() -> {
+            persistNetworkChanges(mMeshNetwork);
+            ivUpdateTestModeActive = false;
+            allowIvIndexRecoveryOver42 = false;
+            final MeshNetwork newMeshNetwork = generateMeshNetwork();
+            newMeshNetwork.setCallbacks(callbacks);
+            insertNetwork(newMeshNetwork);
+            discardMessagesAwaitingNodes();
+            mMeshNetwork = newMeshNetwork;
+            mMeshManagerCallbacks.onNetworkLoaded(newMeshNetwork);
+        });
     }
 
     private MeshNetwork generateMeshNetwork() {
@@ -877,19 +1213,56 @@ public class MeshManagerApi implements MeshMngrApi {
         if (!MeshAddress.isAddressInRange(dst)) {
             throw new IllegalArgumentException("Invalid address, destination address must be a valid 16-bit value.");
         }
-        final Provisioner provisioner = mMeshNetwork.getSelectedProvisioner();
-        if (provisioner != null && provisioner.getProvisionerAddress() != null) {
-            UUID label = null;
-            if (MeshAddress.isValidVirtualAddress(dst)) {
-                label = mMeshNetwork.getLabelUuid(dst);
-                if (label == null) {
-                    throw new IllegalArgumentException("Label UUID unavailable for the virtual address provided");
-                }
-            }
-            mMeshMessageHandler.createMeshMessage(provisioner.getProvisionerAddress(), dst, label, meshMessage);
-        } else {
+        final Provisioner selectedProvisioner = mMeshNetwork.getSelectedProvisioner();
+        if (selectedProvisioner == null || selectedProvisioner.getProvisionerAddress() == null) {
             throw new IllegalArgumentException("Provisioner address not set, please assign an address to the provisioner.");
         }
+        if (MeshAddress.isValidVirtualAddress(dst) && mMeshNetwork.getLabelUuid(dst) == null) {
+            throw new IllegalArgumentException("Label UUID unavailable for the virtual address provided");
+        }
+        mMeshExecutor.execute(() -> sendMeshPdu(dst, meshMessage));
+    }
+
+    /**
+     * Sends a mesh message, to be called on the mesh executor.
+     * <p>
+     * While the nodes of a network loaded with {@link #loadMeshNetwork(NetworkReadyCallbacks)} are being loaded, a
+     * message to a unicast address that does not belong to a loaded node is held back and sent once all nodes have
+     * been loaded.
+     * </p>
+     */
+    private void sendMeshPdu(final int dst, @NonNull final MeshMessage meshMessage) {
+        // The network is replaced and the provisioner selected on the mesh executor
+        final MeshNetwork network = mMeshNetwork;
+        final Provisioner provisioner = network.getSelectedProvisioner();
+        if (provisioner == null || provisioner.getProvisionerAddress() == null) {
+            MeshLogger.error(TAG, "Provisioner address not set, message to " + MeshAddress.formatAddress(dst, true) + " not sent");
+            return;
+        }
+        UUID label = null;
+        if (MeshAddress.isValidVirtualAddress(dst)) {
+            label = network.getLabelUuid(dst);
+            if (label == null) {
+                MeshLogger.error(TAG, "Label UUID unavailable, message to " + MeshAddress.formatAddress(dst, true) + " not sent");
+                return;
+            }
+        } else if (MeshAddress.isValidUnicastAddress(dst) && !network.areNodesLoaded() && network.getNode(dst) == null) {
+            MeshLogger.verbose(TAG, "Node " + MeshAddress.formatAddress(dst, true) + " not loaded yet, message sent once all nodes are loaded");
+            mMessagesAwaitingNodes.add(() -> sendMeshPdu(dst, meshMessage));
+            return;
+        }
+        mMeshMessageHandler.createMeshMessage(provisioner.getProvisionerAddress(), dst, label, meshMessage);
+    }
+
+    /**
+     * Discards the messages waiting for the nodes of the previous network to be loaded, to be called on the mesh
+     * executor when the network is replaced.
+     */
+    private void discardMessagesAwaitingNodes() {
+        if (!mMessagesAwaitingNodes.isEmpty()) {
+            MeshLogger.warn(TAG, mMessagesAwaitingNodes.size() + " messages waiting for nodes to be loaded discarded");
+            mMessagesAwaitingNodes.clear();
+        }
     }
 
     @Override
@@ -920,49 +1293,175 @@ public class MeshManagerApi implements MeshMngrApi {
         return null;
     }
 
+    @Override
+    public void exportMeshNetwork(@NonNull final Writer writer) throws IOException {
+        mImportExportUtils.export(mMeshNetwork, false, writer);
+    }
+
+    @Override
+    public void exportMeshNetwork(@NonNull final NetworkKeysConfig networkKeysConfig,
+                                  @NonNull final ApplicationKeysConfig applicationKeysConfig,
+                                  @NonNull final NodesConfig nodesConfig,
+                                  @NonNull final ProvisionersConfig provisionersConfig,
+                                  @NonNull final GroupsConfig groupsConfig,
+                                  @NonNull final ScenesConfig scenesConfig,
+                                  @NonNull final Writer writer) throws IOException {
+        mImportExportUtils.export(mMeshNetwork, networkKeysConfig, applicationKeysConfig,
+                nodesConfig, provisionersConfig, groupsConfig, scenesConfig, writer);
+    }
+
+    @Override
+    public void setNetworkImportCallbacks(@Nullable final NetworkImportCallbacks callbacks) {
+        mNetworkImportCallbacks = callbacks == null ? null
+                : count -> mCallbackExecutor.execute(() -> callbacks.onNodesImported(count));
+    }
+
     @Override
     public void importMeshNetwork(@NonNull final Uri uri) {
+        final MeshNetwork importedNetwork;
         try {
-            isNetworkImportInProgress = true;
-            importMeshNetworkJson(mImportExportUtils.readJsonStringFromUri(mContext.getContentResolver(), uri));
-            isNetworkImportInProgress = false;
+            final InputStream inputStream = mContext.getContentResolver().openInputStream(uri);
+            if (inputStream == null)
+                throw new IOException("Unable to open " + uri);
+            try {
+                importedNetwork = mImportExportUtils.importNetwork(new InputStreamReader(inputStream), mNetworkImportCallbacks);
+            } finally {
+                inputStream.close();
+            }
         } catch (Exception ex) {
-            isNetworkImportInProgress = false;
             mMeshManagerCallbacks.onNetworkImportFailed(ex.getMessage());
+            return;
         }
+        mMeshExecutor.execute(() -> storeImportedNetwork(importedNetwork));
     }
 
     @Override
     public void importMeshNetworkJson(@NonNull String networkJson) {
+        final MeshNetwork importedNetwork;
+        try {
+            importedNetwork = mImportExportUtils.importNetwork(new StringReader(networkJson), mNetworkImportCallbacks);
+        } catch (Exception ex) {
+            mMeshManagerCallbacks.onNetworkImportFailed(ex.getMessage());
+            return;
+        }
+        mMeshExecutor.execute(() -> storeImportedNetwork(importedNetwork));
+    }
+
+    /**
+     * Stores the imported network, which then replaces the current network. Called on the mesh executor, as the
+     * pending changes of the current network are written first.
+     *
+     * @param importedNetwork Network parsed from the imported json
+     */
+    private void storeImportedNetwork(@NonNull final MeshNetwork importedNetwork) {
         try {
             isNetworkImportInProgress = true;
-            final MeshNetwork importedNetwork = mImportExportUtils.importNetwork(networkJson);
-            importedNetwork.setCallbacks(callbacks);
-            final MeshNetwork network = mMeshNetworkDb.getMeshNetwork(mMeshNetworkDao, importedNetwork.getMeshUUID());
-            if (network != null) {
-                final List<ProvisionedMeshNode> nodes = mMeshNetworkDb.getNodes(mProvisionedNodesDao, importedNetwork.getMeshUUID());
-                importedNetwork.unicastAddress = network.unicastAddress;
-                for (ProvisionedMeshNode meshNode : importedNetwork.getNodes()) {
-                    for (ProvisionedMeshNode node : nodes) {
-                        if (node.getUuid().equalsIgnoreCase(meshNode.getUuid())) {
-                            meshNode.setSequenceNumber(node.getSequenceNumber());
-                        }
+            mergeImportedNetwork(importedNetwork);
+        } catch (Exception ex) {
+            mMeshManagerCallbacks.onNetworkImportFailed(ex.getMessage());
+        } finally {
+            isNetworkImportInProgress = false;
+        }
+    }
+
+    private void mergeImportedNetwork(@NonNull final MeshNetwork importedNetwork) {
+        persistNetworkChanges(mMeshNetwork);
+        importedNetwork.setCallbacks(callbacks);
+        final MeshNetwork network = mMeshNetworkDb.getMeshNetwork(mMeshNetworkDao, importedNetwork.getMeshUUID());
+        if (network != null) {
+            final List<ProvisionedMeshNode> nodes = mMeshNetworkDb.getNodes(mProvisionedNodesDao, importedNetwork.getMeshUUID());
+            importedNetwork.unicastAddress = network.unicastAddress;
+            for (ProvisionedMeshNode meshNode : importedNetwork.getNodes()) {
+                for (ProvisionedMeshNode node : nodes) {
+                    if (node.getUuid().equalsIgnoreCase(meshNode.getUuid())) {
+                        meshNode.setSequenceNumber(node.getSequenceNumber());
                     }
                 }
-                importedNetwork.loadSequenceNumbers();
-                // Load the last known ivIndex.
-                // Note: The iv index will be updated based on the secure network beacon after connecting to a proxy.
-                importedNetwork.ivIndex = network.ivIndex;
             }
-            mMeshNetworkDb.update(mMeshNetworkDao, importedNetwork, false);
-            insertNetwork(importedNetwork);
-            isNetworkImportInProgress = false;
-        } catch (Exception ex) {
-            isNetworkImportInProgress = false;
-            mMeshManagerCallbacks.onNetworkImportFailed(ex.getMessage());
+            importedNetwork.loadSequenceNumbers();
+            // Load the last known ivIndex.
+            // Note: The iv index will be updated based on the secure network beacon after connecting to a proxy.
+            importedNetwork.ivIndex = network.ivIndex;
         }
+        mMeshNetworkDb.update(mMeshNetworkDao, importedNetwork, false);
+        insertNetwork(importedNetwork);
     }
 
+    /**
+     * Status callbacks of the mesh stack, invoked on the mesh executor. Statuses are first handed to the running key
+     * refresh procedures and configuration plans and then delivered to the {@link MeshStatusCallbacks} set by the user.
+     */
+    @SuppressWarnings("FieldCanBeLocal")
+    private final MeshStatusCallbacks statusCallbacks = new MeshStatusCallbacks() {
+        @Override
+        public void onTransactionFailed(final int dst, final boolean hasIncompleteTimerExpired) {
+            if (!mProcedures.isEmpty()) {
+                for (MeshProcedure procedure : new ArrayList<>(mProcedures)) {
+                    procedure.onTransactionFailed(dst);
+                }
+                removeFinishedProcedures();
+            }
+            final MeshStatusCallbacks callbacks = mMeshStatusCallbacks;
+            if (callbacks != null) {
+                callbacks.onTransactionFailed(dst, hasIncompleteTimerExpired);
+            }
+        }
+
+        @Override
+        public void onUnknownPduReceived(final int src, final byte[] accessPayload) {
+            final MeshStatusCallbacks callbacks = mMeshStatusCallbacks;
+            if (callbacks != null) {
+                callbacks.onUnknownPduReceived(src, accessPayload);
+            }
+        }
+
+        @Override
+        public void onBlockAcknowledgementProcessed(final int dst, @NonNull final ControlMessage message) {
+            final MeshStatusCallbacks callbacks = mMeshStatusCallbacks;
+            if (callbacks != null) {
+                callbacks.onBlockAcknowledgementProcessed(dst, message);
+            }
+        }
+
+        @Override
+        public void onBlockAcknowledgementReceived(final int src, @NonNull final ControlMessage message) {
+            final MeshStatusCallbacks callbacks = mMeshStatusCallbacks;
+            if (callbacks != null) {
+                callbacks.onBlockAcknowledgementReceived(src, message);
+            }
+        }
+
+        @Override
+        public void onMeshMessageProcessed(final int dst, @NonNull final MeshMessage meshMessage) {
+            final MeshStatusCallbacks callbacks = mMeshStatusCallbacks;
+            if (callbacks != null) {
+                callbacks.onMeshMessageProcessed(dst, meshMessage);
+            }
+        }
+
+        @Override
+        public void onMeshMessageReceived(final int src, @NonNull final MeshMessage meshMessage) {
+            if (!mProcedures.isEmpty()) {
+                for (MeshProcedure procedure : new ArrayList<>(mProcedures)) {
+                    procedure.onMeshMessageReceived(src, meshMessage);
+                }
+                removeFinishedProcedures();
+            }
+            final MeshStatusCallbacks callbacks = mMeshStatusCallbacks;
+            if (callbacks != null) {
+                callbacks.onMeshMessageReceived(src, meshMessage);
+            }
+        }
+
+        @Override
+        public void onMessageDecryptionFailed(final String meshLayer, final String errorMessage) {
+            final MeshStatusCallbacks callbacks = mMeshStatusCallbacks;
+            if (callbacks != null) {
+                callbacks.onMessageDecryptionFailed(meshLayer, errorMessage);
+            }
+        }
+    };
+
     @SuppressWarnings("FieldCanBeLocal")
     private final InternalTransportCallbacks internalTransportCallbacks = new InternalTransportCallbacks() {
 
@@ -989,10 +1488,12 @@ public class MeshManagerApi implements MeshMngrApi {
 
         @Override
         public void onMeshPduCreated(final int dst, final byte[] pdu) {
-            //We must save the mesh network state for every message that is being sent out.
-            //This will specifically save the sequence number for every message sent.
-            final ProvisionedMeshNode meshNode = mMeshNetwork.getNode(dst);
-            updateNetwork(meshNode);
+            //The sequence number of the local node is persisted once per reserved block instead of every message sent.
+            final Provisioner provisioner = mMeshNetwork.getSelectedProvisioner();
+            final ProvisionedMeshNode localNode = provisioner == null ? null : mMeshNetwork.getNode(provisioner.getProvisionerUuid());
+            if (localNode != null) {
+                reserveSequenceNumbers(localNode);
+            }
             final int mtu = mMeshManagerCallbacks.getMtu();
             mMeshManagerCallbacks.onMeshPduCreated(applySegmentation(mtu, pdu));
         }
@@ -1020,6 +1521,16 @@ public class MeshManagerApi implements MeshMngrApi {
             }
         }
 
+        @Override
+        public void onReplayProtectionListUpdated() {
+            // The list changes with nearly every message received, so it is always written with the coalesced changes
+            // of the network, even if the other changes are written immediately
+            if (mMeshNetwork.getPendingChanges().markNetworkChanged()) {
+                mMeshExecutor.schedule(mPersistNetworkChangesRunnable,
+                        Math.max(mNetworkPersistenceInterval, DEFAULT_NETWORK_PERSISTENCE_INTERVAL));
+            }
+        }
+
         @Override
         public MeshNetwork getMeshNetwork() {
             return mMeshNetwork;
@@ -1035,6 +1546,7 @@ public class MeshManagerApi implements MeshMngrApi {
             final Scene scene = mMeshNetwork.getScene(currentScene);
             if (scene != null && !scene.getAddresses().contains(address)) {
                 scene.addresses.add(address);
+                scheduleNetworkPersistence(mMeshNetwork.getPendingChanges().markSceneChanged(scene));
             }
         }
 
@@ -1043,36 +1555,81 @@ public class MeshManagerApi implements MeshMngrApi {
             final Scene scene = mMeshNetwork.getScene(currentScene);
             if (scene != null && scene.getAddresses().contains(address)) {
                 scene.addresses.remove((Integer) address);
+                scheduleNetworkPersistence(mMeshNetwork.getPendingChanges().markSceneChanged(scene));
             }
         }
 
         private void updateNetwork(final ProvisionedMeshNode meshNode) {
+            final MeshNetworkChanges changes = mMeshNetwork.getPendingChanges();
+            boolean schedule = changes.markNetworkChanged();
             if (meshNode != null) {
-                for (int i = 0; i < mMeshNetwork.nodes.size(); i++) {
-                    if (meshNode.getUnicastAddress() == mMeshNetwork.nodes.get(i).getUnicastAddress()) {
-                        mMeshNetwork.nodes.set(i, meshNode);
-                        break;
-                    }
-                }
+                schedule |= changes.markNodeChanged(meshNode);
             }
             mMeshNetwork.setTimestamp(System.currentTimeMillis());
-            mMeshNetworkDb.update(mMeshNetwork, mMeshNetworkDao, mNetworkKeysDao, mApplicationKeysDao, mProvisionersDao, mProvisionedNodesDao,
-                    mGroupsDao, mScenesDao);
+            scheduleNetworkPersistence(schedule);
             mMeshManagerCallbacks.onNetworkUpdated(mMeshNetwork);
         }
     };
 
+    /**
+     * Schedules writing the pending network changes to the database.
+     *
+     * @param firstChange true if the change being scheduled is the first one since the last write. Changes made within
+     *                    the persistence interval after the first one are written together.
+     */
+    private void scheduleNetworkPersistence(final boolean firstChange) {
+        if (mNetworkPersistenceInterval == 0) {
+            persistNetworkChanges(mMeshNetwork);
+        } else if (firstChange) {
+            mMeshExecutor.schedule(mPersistNetworkChangesRunnable, mNetworkPersistenceInterval);
+        }
+    }
+
+    /**
+     * Reserves the next block of sequence numbers for the local node when needed and persists the reservation.
+     * <p>
+     * If the sequence number of the pdu being sent is already beyond the persisted reservation, the reservation is written
+     * before returning so that the pdu is never sent with a sequence number that could be reused after a restart.
+     * Otherwise the next block is reserved ahead of time and written along with the other pending changes.
+     * </p>
+     *
+     * @param localNode Node of the selected provisioner
+     */
+    private void reserveSequenceNumbers(@NonNull final ProvisionedMeshNode localNode) {
+        final boolean exhausted = localNode.isSequenceNumberReservationExhausted();
+        if (!localNode.reserveSequenceNumbers(mSequenceNumberBlockSize))
+            return;
+        if (exhausted) {
+            try {
+                mMeshNetworkDb.updateSequenceNumber(mProvisionedNodeDao, localNode);
+            } catch (ExecutionException | InterruptedException ex) {
+                MeshLogger.error(TAG, "Failed to persist the sequence number reservation: " + ex.getMessage());
+            }
+        } else {
+            scheduleNetworkPersistence(mMeshNetwork.getPendingChanges().markNodeChanged(localNode));
+        }
+    }
+
+    /**
+     * Writes the pending changes of a network to the database.
+     *
+     * @param network Mesh network
+     */
+    private void persistNetworkChanges(@Nullable final MeshNetwork network) {
+        mMeshExecutor.cancel(mPersistNetworkChangesRunnable);
+        if (network != null) {
+            mMeshNetworkDb.update(network, network.getPendingChanges().drain(),
+                    mMeshNetworkDao, mProvisionedNodesDao, mNetworkKeysDao, mScenesDao);
+        }
+    }
+
     /**
      * Deletes an address from the scenes in the network. This is to be called when resetting or deleting a node from the network.
      *
      * @param address Address to be removed.
      */
     private void deleteSceneAddress(final int address) {
-        for (Scene scene : mMeshNetwork.getScenes()) {
-            if (scene.addresses.remove((Integer) address)) {
-                MeshLogger.debug(TAG, "Node removed from " + scene.getName());
-            }
-        }
+        scheduleNetworkPersistence(mMeshNetwork.removeSceneAddress(address));
     }
 
     @SuppressWarnings("FieldCanBeLocal")
@@ -1091,14 +1648,7 @@ public class MeshManagerApi implements MeshMngrApi {
         }
 
         private void updateProvisionedNodeList(final ProvisionedMeshNode meshNode) {
-            for (int i = 0; i < mMeshNetwork.nodes.size(); i++) {
-                final ProvisionedMeshNode node = mMeshNetwork.nodes.get(i);
-                if (meshNode.getUuid().equals(node.getUuid())) {
-                    mMeshNetwork.nodes.remove(i);
-                    break;
-                }
-            }
-            mMeshNetwork.nodes.add(meshNode);
+            mMeshNetwork.putNode(meshNode);
             updateNetworkKeySecurity(meshNode);
         }
     };
@@ -1111,10 +1661,7 @@ public class MeshManagerApi implements MeshMngrApi {
      */
     private void updateNetworkKeySecurity(final ProvisionedMeshNode node) {
         if (!node.isSecurelyProvisioned()) {
-            for (NodeKey nodeKey : node.getAddedNetKeys()) {
-                final NetworkKey key = mMeshNetwork.getNetKey(nodeKey.getIndex());
-                key.markAsInsecure();
-            }
+            scheduleNetworkPersistence(mMeshNetwork.markNetKeysInsecure(node));
         }
     }
 
@@ -1199,27 +1746,53 @@ public class MeshManagerApi implements MeshMngrApi {
     private final LoadNetworkCallbacks networkLoadCallbacks = new LoadNetworkCallbacks() {
         @Override
         public void onNetworkLoadedFromDb(final MeshNetwork meshNetwork) {
-            final MeshNetwork network;
-            if (meshNetwork != null) {
-                network = meshNetwork;
-                network.loadSequenceNumbers();
-                network.setCallbacks(callbacks);
+            // The network is replaced on the mesh executor, where it is updated when provisioning and receiving messages
+            mMeshExecutor.execute(() -> {
+                if (meshNetwork != null) {
+                    meshNetwork.loadSequenceNumbers();
+                    meshNetwork.setCallbacks(callbacks);
+
+                    discardMessagesAwaitingNodes();
+                    mMeshNetwork = meshNetwork;
+                    if (meshNetwork.areNodesLoaded()) {
+                        mMeshManagerCallbacks.onNetworkLoaded(meshNetwork);
+                    } else {
+                        notifyNetworkReady(meshNetwork);
+                    }
+                } else {
+                    insertNetwork(generateMeshNetwork());
+                }
+            });
+        }
 
-                mMeshNetwork = network;
-                mMeshManagerCallbacks.onNetworkLoaded(network);
-            } else {
-                insertNetwork(generateMeshNetwork());
-            }
+        @Override
+        public void onNodesLoadedFromDb(final MeshNetwork meshNetwork, final List<ProvisionedMeshNode> nodes) {
+            // Nodes are added on the mesh executor, where the network is updated when provisioning and receiving messages
+            mMeshExecutor.execute(() -> {
+                if (mMeshNetwork != meshNetwork)
+                    return;
+                meshNetwork.onNodesLoaded(nodes);
+                mMeshManagerCallbacks.onNetworkLoaded(meshNetwork);
+                final List<Runnable> messages = new ArrayList<>(mMessagesAwaitingNodes);
+                mMessagesAwaitingNodes.clear();
+                for (Runnable message : messages) {
+                    message.run();
+                }
+            });
         }
 
         @Override
         public void onNetworkCreated(MeshNetwork meshNetwork) {
             if (meshNetwork != null) {
-                meshNetwork.loadSequenceNumbers();
-                meshNetwork.setCallbacks(callbacks);
-
-                mMeshNetwork = meshNetwork;
-                mMeshManagerCallbacks.onNetworkLoaded(meshNetwork);
+                mMeshExecutor.execute(() -> {
+                    meshNetwork.loadSequenceNumbers();
+                    meshNetwork.setCallbacks(callbacks);
+
+                    discardMessagesAwaitingNodes();
+                    mMeshNetwork = meshNetwork;
+                    notifyNetworkReady(meshNetwork);
+                    mMeshManagerCallbacks.onNetworkLoaded(meshNetwork);
+                });
             }
         }
 
@@ -1229,13 +1802,23 @@ public class MeshManagerApi implements MeshMngrApi {
         }
     };
 
+    private void notifyNetworkReady(@NonNull final MeshNetwork network) {
+        final NetworkReadyCallbacks readyCallbacks = mNetworkReadyCallbacks;
+        mNetworkReadyCallbacks = null;
+        if (readyCallbacks != null) {
+            mCallbackExecutor.execute(() -> readyCallbacks.onNetworkReady(network));
+        }
+    }
+
     private void deleteNode(@NonNull final ProvisionedMeshNode meshNode) {
         deleteSceneAddress(meshNode.getUnicastAddress());
         // We should not remove the last known sequence number when resetting a node.
         // This should be kept until the current iv index has incremented by 2 and delete it when
         // clearing the exclusion lists
         // mMeshNetwork.sequenceNumbers.delete(meshNode.getUnicastAddress());
-        mMeshMessageHandler.resetState(meshNode.getUnicastAddress());
+        final int address = meshNode.getUnicastAddress();
+        mMeshExecutor.execute(() -> mMeshMessageHandler.resetState(address));
+        mMeshNetwork.getPendingChanges().discardNode(meshNode);
         mMeshNetworkDb.deleteNode(mProvisionedNodeDao, meshNode);
         mMeshNetwork.setTimestamp(System.currentTimeMillis());
         mMeshNetworkDb.update(mMeshNetworkDao, mMeshNetwork);
@@ -1323,8 +1906,10 @@ public class MeshManagerApi implements MeshMngrApi {
             // This should be kept until the current iv index has incremented by 2 and delete it when
             // clearing the exclusion lists
             // mMeshNetwork.sequenceNumbers.delete(meshNode.getUnicastAddress());
+            mMeshNetwork.getPendingChanges().discardNode(meshNode);
             mMeshNetworkDb.deleteNode(mProvisionedNodeDao, meshNode);
-            mMeshMessageHandler.resetState(meshNode.getUnicastAddress());
+            final int address = meshNode.getUnicastAddress();
+            mMeshExecutor.execute(() -> mMeshMessageHandler.resetState(address));
             // Network update is invoked independent in the case of node deletion or provisioner deletion
             // mMeshNetworkDb.update(mMeshNetworkDao, mMeshNetwork);
         }
@@ -1379,14 +1964,16 @@ public class MeshManagerApi implements MeshMngrApi {
     };
 
     private boolean isAddressValid(@NonNull final UnprovisionedMeshNode node) {
-        final int unicast = mMeshNetwork.nextAvailableUnicastAddress(node.getNumberOfElements(), mMeshNetwork.getSelectedProvisioner());
+        final Provisioner provisioner = mMeshNetwork.getSelectedProvisioner();
+        final int unicast = mMeshProvisioningHandler.reserveUnicastAddress(node, mMeshNetwork, provisioner);
         if (!MeshAddress.isValidUnicastAddress(unicast)) {
+            mMeshProvisioningHandler.releaseUnicastAddress(node);
             throw new IllegalArgumentException("Invalid address");
         }
-        if (!mMeshNetwork.getSelectedProvisioner().isAddressWithinAllocatedRange(mMeshNetwork.getUnicastAddress())) {
+        if (!provisioner.isAddressWithinAllocatedRange(unicast)) {
+            mMeshProvisioningHandler.releaseUnicastAddress(node);
             throw new IllegalArgumentException("Address assigned to node is outside of provisioner's allocated unicast range.");
         }
-        node.setUnicastAddress(mMeshNetwork.getUnicastAddress());
         return true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.provisionerstates.UnprovisionedMeshNode;
+
+/**
+ * Delivers the {@link MeshManagerCallbacks} on the callback executor chosen by the user.
+ * <p>
+ * {@link #getMtu()} returns a value to the mesh stack and is therefore called directly.
+ * </p>
+ */
+final class MeshManagerCallbacksDispatcher implements MeshManagerCallbacks {
+
+    private final MeshManagerCallbacks callbacks;
+    private final Executor executor;
+
+    MeshManagerCallbacksDispatcher(@NonNull final MeshManagerCallbacks callbacks, @NonNull final Executor executor) {
+        this.callbacks = callbacks;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onNetworkLoaded(final MeshNetwork meshNetwork) {
+        executor.execute(() -> callbacks.onNetworkLoaded(meshNetwork));
+    }
+
+    @Override
+    public void onNetworkUpdated(final MeshNetwork meshNetwork) {
+        executor.execute(() -> callbacks.onNetworkUpdated(meshNetwork));
+    }
+
+    @Override
+    public void onNetworkLoadFailed(final String error) {
+        executor.execute(() -> callbacks.onNetworkLoadFailed(error));
+    }
+
+    @Override
+    public void onNetworkImported(final MeshNetwork meshNetwork) {
+        executor.execute(() -> callbacks.onNetworkImported(meshNetwork));
+    }
+
+    @Override
+    public void onNetworkImportFailed(final String error) {
+        executor.execute(() -> callbacks.onNetworkImportFailed(error));
+    }
+
+    @Override
+    public void sendProvisioningPdu(final UnprovisionedMeshNode meshNode, final byte[] pdu) {
+        executor.execute(() -> callbacks.sendProvisioningPdu(meshNode, pdu));
+    }
+
+    @Override
+    public void onMeshPduCreated(final byte[] pdu) {
+        executor.execute(() -> callbacks.onMeshPduCreated(pdu));
+    }
+
+    @Override
+    public int getMtu() {
+        return callbacks.getMtu();
+    }
+}
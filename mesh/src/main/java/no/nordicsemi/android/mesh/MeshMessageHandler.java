@@ -39,15 +39,17 @@ final class MeshMessageHandler extends BaseMeshMessageHandler {
      * Constructs MeshMessageHandler
      *
      * @param context                      Context
+     * @param executor                     {@link MeshExecutor} running the transports and their timers
      * @param internalTransportCallbacks   {@link InternalTransportCallbacks} Callbacks
      * @param networkLayerCallbacks        {@link NetworkLayerCallbacks} network layer callbacks
      * @param upperTransportLayerCallbacks {@link UpperTransportLayerCallbacks} upper transport layer callbacks
      */
     MeshMessageHandler(@NonNull final Context context,
+                       @NonNull final MeshExecutor executor,
                        @NonNull final InternalTransportCallbacks internalTransportCallbacks,
                        @NonNull final NetworkLayerCallbacks networkLayerCallbacks,
                        @NonNull final UpperTransportLayerCallbacks upperTransportLayerCallbacks) {
-        super(context, internalTransportCallbacks, networkLayerCallbacks, upperTransportLayerCallbacks);
+        super(context, executor, internalTransportCallbacks, networkLayerCallbacks, upperTransportLayerCallbacks);
     }
 
     @Override
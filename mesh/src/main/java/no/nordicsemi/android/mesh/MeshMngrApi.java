@@ -2,6 +2,9 @@ package no.nordicsemi.android.mesh;
 
 import android.net.Uri;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
 import java.util.UUID;
 
 import androidx.annotation.NonNull;
@@ -12,6 +15,17 @@ import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
 import no.nordicsemi.android.mesh.utils.InputOOBAction;
 import no.nordicsemi.android.mesh.utils.OutputOOBAction;
 
+/**
+ * Mesh manager api.
+ * <p>
+ * The mesh network is updated on the {@link MeshExecutor}: pdus are received and sent, devices are provisioned and
+ * the network is loaded, created, reset and imported there. The methods of this api may be called from any thread,
+ * those changing the network post their work to the mesh executor and return immediately. The {@link MeshNetwork}
+ * returned by {@link #getMeshNetwork()} and passed to the callbacks must only be read or modified on the mesh
+ * executor, or on the callback executor while no messages are being sent or received, e.g. by using the same looper
+ * for both.
+ * </p>
+ */
 interface MeshMngrApi {
 
     /**
@@ -41,6 +55,10 @@ interface MeshMngrApi {
      * This method will check if the library should wait for more data in case of a gatt layer segmentation.
      * If its required the method will remove the segmentation bytes and reassemble the pdu together.
      * </p>
+     * <p>
+     * The pdu is processed asynchronously on the {@link MeshExecutor} of the mesh manager api, hence the data must not be
+     * modified after calling this method.
+     * </p>
      *
      * @param mtuSize GATT MTU size
      * @param data    PDU received by the client
@@ -55,70 +73,109 @@ interface MeshMngrApi {
      */
     void handleWriteCallbacks(final int mtuSize, @NonNull final byte[] data);
 
+    /**
+     * Handles notifications received from a device that is being provisioned over its own bearer.
+     * <p>
+     * Use this method instead of {@link #handleNotifications(int, byte[])} when provisioning several devices in parallel.
+     * GATT segmented PDUs are reassembled separately for each device.
+     * </p>
+     *
+     * @param deviceUuid Device UUID of the unprovisioned mesh node the PDU was received from
+     * @param mtuSize    GATT MTU size
+     * @param data       PDU received by the client
+     */
+    void handleNotifications(@NonNull final UUID deviceUuid, final int mtuSize, @NonNull final byte[] data);
+
+    /**
+     * Must be called to handle provisioning states of a device that is being provisioned over its own bearer.
+     * <p>
+     * Use this method instead of {@link #handleWriteCallbacks(int, byte[])} when provisioning several devices in parallel.
+     * </p>
+     *
+     * @param deviceUuid Device UUID of the unprovisioned mesh node the PDU was written to
+     * @param mtuSize    GATT MTU size
+     * @param data       PDU written to the device
+     */
+    void handleWriteCallbacks(@NonNull final UUID deviceUuid, final int mtuSize, @NonNull final byte[] data);
+
     /**
      * Identifies the node that is to be provisioned.
      * <p>
      * This method will send a provisioning invite to the connected peripheral. This will help users to identify a particular node before starting the provisioning process.
-     * This method must be invoked before calling {@link #startProvisioning(UnprovisionedMeshNode)}
+     * This method must be invoked before calling {@link #startProvisioning(UnprovisionedMeshNode)}. The invite is sent
+     * on the {@link MeshExecutor}.
      * </p
      *
      * @param deviceUUID Device uuid of the unprovisioned mesh node. This could be obtain by calling {{@link #getMeshBeacon(byte[])}}
      */
-    void identifyNode(@NonNull final UUID deviceUUID) throws IllegalArgumentException;
+    void identifyNode(@NonNull final UUID deviceUUID);
 
     /**
      * Identifies the node that is to be provisioned.
      * <p>
      * This method will send a provisioning invite to the connected peripheral. This will help users to identify a particular node before starting the provisioning process.
-     * This method must be invoked before calling {@link #startProvisioning(UnprovisionedMeshNode)}
+     * This method must be invoked before calling {@link #startProvisioning(UnprovisionedMeshNode)}. The invite is sent
+     * on the {@link MeshExecutor}.
      * </p
      *
      * @param deviceUUID     Device uuid of the unprovisioned mesh node. This could be obtain by calling {{@link #getMeshBeacon(byte[])}}
      * @param attentionTimer Attention timer in seconds
      */
-    void identifyNode(@NonNull final UUID deviceUUID, final int attentionTimer) throws IllegalArgumentException;
+    void identifyNode(@NonNull final UUID deviceUUID, final int attentionTimer);
 
     /**
      * Starts provisioning an unprovisioned mesh node
      * <p>
      * This method will continue the provisioning process that was started by invoking {@link #identifyNode(UUID, int)}.
+     * The unicast address is assigned on the {@link MeshExecutor}. If the node has not been identified or no address is
+     * available in the allocated ranges of the provisioner, {@link MeshProvisioningStatusCallbacks#onProvisioningFailed}
+     * is called.
      * </p>
      *
      * @param unprovisionedMeshNode {@link UnprovisionedMeshNode} node
      */
-    void startProvisioning(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode) throws IllegalArgumentException;
+    void startProvisioning(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode);
 
     /**
      * Starts provisioning an unprovisioned mesh node with static oob
      * <p>
      * This method will continue the provisioning process that was started by invoking {@link #identifyNode(UUID, int)}.
+     * The unicast address is assigned on the {@link MeshExecutor}. If the node has not been identified or no address is
+     * available in the allocated ranges of the provisioner, {@link MeshProvisioningStatusCallbacks#onProvisioningFailed}
+     * is called.
      * </p>
      *
      * @param unprovisionedMeshNode {@link UnprovisionedMeshNode} node
      */
-    void startProvisioningWithStaticOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode) throws IllegalArgumentException;
+    void startProvisioningWithStaticOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode);
 
     /**
      * Starts provisioning an unprovisioned mesh node output oob
      * <p>
      * This method will continue the provisioning process that was started by invoking {@link #identifyNode(UUID, int)}.
+     * The unicast address is assigned on the {@link MeshExecutor}. If the node has not been identified or no address is
+     * available in the allocated ranges of the provisioner, {@link MeshProvisioningStatusCallbacks#onProvisioningFailed}
+     * is called.
      * </p>
      *
      * @param unprovisionedMeshNode {@link UnprovisionedMeshNode} node
      * @param oobAction             selected {@link OutputOOBAction}
      */
-    void startProvisioningWithOutputOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode, final OutputOOBAction oobAction) throws IllegalArgumentException;
+    void startProvisioningWithOutputOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode, final OutputOOBAction oobAction);
 
     /**
      * Starts provisioning an unprovisioned mesh node input OOB
      * <p>
      * This method will continue the provisioning process that was started by invoking {@link #identifyNode(UUID, int)}.
+     * The unicast address is assigned on the {@link MeshExecutor}. If the node has not been identified or no address is
+     * available in the allocated ranges of the provisioner, {@link MeshProvisioningStatusCallbacks#onProvisioningFailed}
+     * is called.
      * </p>
      *
      * @param unprovisionedMeshNode {@link UnprovisionedMeshNode} node
      * @param oobAction             selected {@link InputOOBAction}
      */
-    void startProvisioningWithInputOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode, @NonNull final InputOOBAction oobAction) throws IllegalArgumentException;
+    void startProvisioningWithInputOOB(@NonNull final UnprovisionedMeshNode unprovisionedMeshNode, @NonNull final InputOOBAction oobAction);
 
     /**
      * Set the provisioning confirmation
@@ -127,6 +184,111 @@ interface MeshMngrApi {
      */
     void setProvisioningAuthentication(@NonNull final String authentication);
 
+    /**
+     * Set the provisioning confirmation of a device that is being provisioned in parallel with other devices
+     *
+     * @param deviceUuid     Device UUID of the unprovisioned mesh node
+     * @param authentication confirmation pin
+     */
+    void setProvisioningAuthentication(@NonNull final UUID deviceUuid, @NonNull final String authentication);
+
+    /**
+     * Enables pre-generating provisioner key pairs in the background.
+     * <p>
+     * When enabled, the provisioner public key is sent without waiting for the key pair to be generated and the ECDH
+     * shared secret is calculated off the main thread. Every device is still provisioned using a fresh key pair.
+     * Provisioning progress continues to be reported through {@link MeshProvisioningStatusCallbacks}.
+     * </p>
+     *
+     * @param poolSize Number of key pairs kept ready, or 0 to generate the key pair when sending the public key
+     */
+    void setProvisioningKeyPoolSize(final int poolSize);
+
+    /**
+     * Releases the background resources held by the mesh manager api, such as the provisioning key pool.
+     * <p>
+     * Pending changes to the mesh network are written before the resources are released. The mesh thread created by
+     * {@link MeshManagerApi#MeshManagerApi(android.content.Context)} is quit once the pdus and timers already queued have
+     * been processed, while a {@link MeshExecutor} passed to the constructor is left to its owner. The mesh manager api
+     * must not be used after this call.
+     * </p>
+     */
+    void close();
+
+    /**
+     * Cancels provisioning a device, for example if the connection to the device was lost.
+     * <p>
+     * The unicast addresses reserved for the device are released and may be assigned to other devices.
+     * </p>
+     *
+     * @param deviceUuid Device UUID of the unprovisioned mesh node
+     */
+    void cancelProvisioning(@NonNull final UUID deviceUuid);
+
+    /**
+     * Starts or resumes a Key Refresh Procedure for a network key on all nodes of the network.
+     * <p>
+     * A new procedure is started by distributing the new network key with
+     * {@link MeshNetwork#distributeNetKey(NetworkKey, byte[])} and the new keys of the application keys bound to it with
+     * {@link MeshNetwork#distributeAppKey(ApplicationKey, byte[])}. The new keys are then sent to up to the given number
+     * of nodes at the same time and the network moves to the next phase once every reachable node has acknowledged the
+     * current one. The progress of each node is persisted with the node, so calling this method again after the app was
+     * restarted resumes the procedure. Status messages received during the procedure are also delivered to the
+     * {@link MeshStatusCallbacks}.
+     * </p>
+     * <p>
+     * The old keys are revoked once every node that received the new keys has acknowledged switching to them or failed
+     * to. Nodes that failed are reported in {@link KeyRefreshCallbacks#onKeyRefreshCompleted(NetworkKey, List)} and
+     * may no longer be reachable, hence they must be refreshed again or removed from the network. After a restart
+     * only the nodes that failed to switch to the new keys can still be told apart from the refreshed ones, hence nodes
+     * that never received the new keys are reported by the procedure they failed in only.
+     * </p>
+     *
+     * @param networkKey       Network key to refresh
+     * @param maxNodesInFlight Maximum number of nodes configured at the same time
+     * @param callbacks        Callbacks notifying the progress of the procedure
+     * @throws IllegalArgumentException if no key refresh procedure is in progress for the network key.
+     */
+    void startKeyRefresh(@NonNull final NetworkKey networkKey, final int maxNodesInFlight, @NonNull final KeyRefreshCallbacks callbacks);
+
+    /**
+     * Stops a Key Refresh Procedure started with {@link #startKeyRefresh(NetworkKey, int, KeyRefreshCallbacks)}.
+     * The progress made so far is kept and the procedure may be resumed later.
+     *
+     * @param networkKey Network key being refreshed
+     */
+    void cancelKeyRefresh(@NonNull final NetworkKey networkKey);
+
+    /**
+     * Applies a configuration plan to the given nodes.
+     * <p>
+     * Nodes whose composition data is not known yet are sent a Config Composition Data Get first. The plan is then
+     * compiled for each node in to the Config AppKey Add, Config Model App Bind, Config Model Subscription Add and
+     * Config Model Publication Set messages required, skipping those whose desired state is already known for the
+     * node. Up to the given number of nodes are configured at the same time, one message at a time per node. Status
+     * messages received are also delivered to the {@link MeshStatusCallbacks}.
+     * </p>
+     *
+     * @param plan             Configuration plan, which may be changed or applied again once this method returns
+     * @param nodes            Nodes to configure
+     * @param maxNodesInFlight Maximum number of nodes configured at the same time
+     * @param callbacks        Callbacks notifying the progress
+     * @throws IllegalArgumentException if the provisioner address is not set or an application key is not bound to a
+     *                                  network key of the network.
+     */
+    void applyConfigurationPlan(@NonNull final ConfigurationPlan plan,
+                                @NonNull final List<ProvisionedMeshNode> nodes,
+                                final int maxNodesInFlight,
+                                @NonNull final ConfigurationPlanCallbacks callbacks);
+
+    /**
+     * Stops applying a configuration plan started with
+     * {@link #applyConfigurationPlan(ConfigurationPlan, List, int, ConfigurationPlanCallbacks)}.
+     *
+     * @param plan Configuration plan
+     */
+    void cancelConfigurationPlan(@NonNull final ConfigurationPlan plan);
+
     /**
      * Returns the device uuid of an unprovisioned node
      *
@@ -213,6 +375,10 @@ interface MeshMngrApi {
 
     /**
      * Sends the specified  mesh message specified within the {@link MeshMessage} object
+     * <p>
+     * The destination is validated immediately while the message is encrypted and sent on the {@link MeshExecutor}, with
+     * the provisioner selected at that time as the source.
+     * </p>
      *
      * @param dst         destination address
      * @param meshMessage {@link MeshMessage} Mesh message containing the message opcode and message parameters
@@ -228,8 +394,30 @@ interface MeshMngrApi {
      */
     void loadMeshNetwork();
 
+    /**
+     * Loads the mesh network from the local database without waiting for all nodes to be loaded.
+     * <p>
+     * The network, its keys, provisioners, groups, scenes and the provisioner nodes are loaded first and
+     * {@link NetworkReadyCallbacks#onNetworkReady(MeshNetwork)} is called, after which messages may be sent. The
+     * remaining nodes are then loaded in the background and {@link MeshManagerCallbacks#onNetworkLoaded(MeshNetwork)}
+     * is called once the network is complete. Unicast addresses cannot be allocated, i.e. devices cannot be
+     * provisioned, until then.
+     * </p>
+     * <p>
+     * A message sent to the unicast address of a node that has not been loaded yet is held back and sent once all
+     * nodes have been loaded. Held back messages are discarded if another network is loaded, created or imported in
+     * the meantime.
+     * </p>
+     *
+     * @param callbacks callbacks notified when the network is ready to send messages
+     */
+    void loadMeshNetwork(@NonNull final NetworkReadyCallbacks callbacks);
+
     /**
      * Returns an already loaded mesh network, make sure to call {@link #loadMeshNetwork()} before calling this
+     * <p>
+     * The network is updated on the {@link MeshExecutor}, see {@link MeshMngrApi}.
+     * </p>
      *
      * @return {@link MeshNetwork}
      */
@@ -272,6 +460,9 @@ interface MeshMngrApi {
 
     /**
      * Exports full mesh network to a json String.
+     * <p>
+     * The network is read on the calling thread, see {@link MeshMngrApi}.
+     * </p>
      */
     @Nullable
     String exportMeshNetwork();
@@ -294,8 +485,50 @@ interface MeshMngrApi {
                              @NonNull final GroupsConfig groupsConfig,
                              @NonNull final ScenesConfig scenesConfig);
 
+    /**
+     * Writes the full mesh network as json to a stream, one node at a time.
+     * <p>
+     * The network is read on the calling thread, see {@link MeshMngrApi}.
+     * </p>
+     *
+     * @param writer Writer the json is written to.
+     * @throws IOException if writing fails.
+     */
+    void exportMeshNetwork(@NonNull final Writer writer) throws IOException;
+
+    /**
+     * Writes a partial mesh network as json to a stream with the provided export configuration, one node at a time.
+     *
+     * @param networkKeysConfig     Export configuration for Network Keys.
+     * @param applicationKeysConfig Export configuration for Application Keys.
+     * @param nodesConfig           Export configuration for Nodes.
+     * @param provisionersConfig    Export configuration for Provisioners.
+     * @param groupsConfig          Export configuration for Groups.
+     * @param scenesConfig          Export configuration for scenes.
+     * @param writer                Writer the json is written to.
+     * @throws IOException if writing fails.
+     */
+    void exportMeshNetwork(@NonNull final NetworkKeysConfig networkKeysConfig,
+                           @NonNull final ApplicationKeysConfig applicationKeysConfig,
+                           @NonNull final NodesConfig nodesConfig,
+                           @NonNull final ProvisionersConfig provisionersConfig,
+                           @NonNull final GroupsConfig groupsConfig,
+                           @NonNull final ScenesConfig scenesConfig,
+                           @NonNull final Writer writer) throws IOException;
+
+    /**
+     * Sets the {@link NetworkImportCallbacks} listener notified of the progress of network imports
+     *
+     * @param callbacks callbacks or null to stop receiving progress updates
+     */
+    void setNetworkImportCallbacks(@Nullable final NetworkImportCallbacks callbacks);
+
     /**
      * Starts an asynchronous task that imports a network from the mesh configuration db json
+     * <p>
+     * The json is parsed on the calling thread, after which the network is stored and replaces the current network on
+     * the {@link MeshExecutor}.
+     * </p>
      *
      * @param uri path to the mesh configuration database json file.
      */
@@ -303,6 +536,10 @@ interface MeshMngrApi {
 
     /**
      * Starts an asynchronous task that imports a network from the mesh configuration db json
+     * <p>
+     * The json is parsed on the calling thread, after which the network is stored and replaces the current network on
+     * the {@link MeshExecutor}.
+     * </p>
      *
      * @param networkJson configuration database json.
      */
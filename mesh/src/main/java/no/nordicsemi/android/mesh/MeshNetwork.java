@@ -11,7 +11,6 @@ import androidx.room.Entity;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 import no.nordicsemi.android.mesh.transport.Element;
@@ -126,6 +125,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
 
     void setGroups(final List<Group> groups) {
         this.groups = groups;
+        invalidateGroupAddresses();
     }
 
     /**
@@ -141,59 +141,22 @@ public final class MeshNetwork extends BaseMeshNetwork {
      * @return Allocated unicast address or -1 if none
      * @throws IllegalArgumentException if there is no allocated unicast range to the provisioner
      */
-    public int nextAvailableUnicastAddress(final int elementCount, @NonNull final Provisioner provisioner) throws IllegalArgumentException {
+    public synchronized int nextAvailableUnicastAddress(final int elementCount, @NonNull final Provisioner provisioner) throws IllegalArgumentException {
         if (provisioner.getAllocatedUnicastRanges().isEmpty()) {
             throw new IllegalArgumentException("Please allocate a unicast address range to the provisioner");
         }
 
-        // Populate all addresses that are currently in use
-        final ArrayList<Integer> usedAddresses = new ArrayList<>();
-        for (ProvisionedMeshNode node : nodes) {
-            //There could be devices that are provisioned but does not have the number of elements yet so let's check for that.
-            if (node.getElements().size() > 0)
-                usedAddresses.addAll(node.getElements().keySet());
-            else
-                usedAddresses.add(node.getUnicastAddress());
-        }
-        // Excluded addresses with the current IvIndex and current IvIndex - 1 must be considered as addresses in use.
-        final List<Integer> addressesWithCurrentIvIndex = networkExclusions.get(ivIndex.getIvIndex());
-        if (addressesWithCurrentIvIndex != null)
-            usedAddresses.addAll(addressesWithCurrentIvIndex);
-        final List<Integer> addressesWithCurrentIvIndexMinusOne = networkExclusions.get(ivIndex.getIvIndex() - 1);
-        if (addressesWithCurrentIvIndexMinusOne != null)
-            usedAddresses.addAll(addressesWithCurrentIvIndexMinusOne);
-
-        Collections.sort(usedAddresses);
-        // Iterate through all nodes just once, while iterating over ranges.
-        int index = 0;
         for (AllocatedUnicastRange range : provisioner.getAllocatedUnicastRanges()) {
             // Start from the beginning of the current range.
             int address = range.getLowAddress();
 
-            // Iterate through nodes that weren't checked yet in essence the used addresses which include the excluded adresses
-            for (int usedAddress : usedAddresses) {
-
-                // Skip nodes with addresses below the range.
-                if (address > usedAddress) {
-                    continue;
-                }
-
-                // If we found a space before the current node, return the address.
-                if (usedAddress > (address + (elementCount - 1))) {
+            // Skip over the nodes, excluded and reserved addresses overlapping the candidate block until a free one is found.
+            while (address + (elementCount - 1) <= range.getHighAddress()) {
+                final int lastUsed = lastUsedUnicastAddressInBlock(address, elementCount);
+                if (lastUsed < address) {
                     return address;
                 }
-
-                // Else, move the address to the next available address.
-                address = usedAddress + 1;
-
-                // If the new address is outside of the range, go to the next one.
-                if (range.highAddress < address + (elementCount - 1)) {
-                    break;
-                }
-            }
-
-            if (range.getHighAddress() >= address + (elementCount - 1)) {
-                return address;
+                address = lastUsed + 1;
             }
         }
 
@@ -201,6 +164,35 @@ public final class MeshNetwork extends BaseMeshNetwork {
         return -1;
     }
 
+    private int lastUsedUnicastAddressInBlock(final int address, final int elementCount) {
+        final int end = address + (elementCount - 1);
+        return Math.max(lastUsedUnicastAddress(address, end),
+                Math.max(getExcludedAddresses().lastUsed(address, end), getReservedAddresses().lastUsed(address, end)));
+    }
+
+    /**
+     * Reserves unicast addresses for a node that is about to be provisioned, so that nodes provisioned in parallel are
+     * assigned different addresses. The unicast address assigned to the network is used if it is still available,
+     * otherwise the next available address of the provisioner is used. The addresses must be released using
+     * {@link #releaseUnicastAddresses(int, int)} once the node has been added to the network or provisioning failed.
+     *
+     * @param elementCount Number of elements of the node
+     * @param provisioner  provisioner
+     * @return the unicast address of the primary element or -1 if there are no more available addresses
+     */
+    synchronized int reserveUnicastAddress(final int elementCount, @NonNull final Provisioner provisioner) throws IllegalArgumentException {
+        int address = unicastAddress;
+        if (!MeshAddress.isValidUnicastAddress(address)
+                || !MeshAddress.isValidUnicastAddress(address + (elementCount - 1))
+                || lastUsedUnicastAddressInBlock(address, elementCount) >= address) {
+            address = nextAvailableUnicastAddress(elementCount, provisioner);
+        }
+        if (address != -1) {
+            getReservedAddresses().add(address, address + (elementCount - 1));
+        }
+        return address;
+    }
+
     /**
      * Returns the next unicast address for a provisioner based on the allocated range and the number of elements
      *
@@ -356,18 +348,10 @@ public final class MeshNetwork extends BaseMeshNetwork {
             throw new IllegalArgumentException("Provisioner has no group range allocated.");
         }
 
-        Collections.sort(groups, groupComparator);
         for (AllocatedGroupRange range : provisioner.getAllocatedGroupRanges()) {
-            //If the list of groups are empty we can start with the lowest address of the range
-            if (groups.isEmpty()) {
-                return range.getLowAddress();
-            }
-
-            for (int address = range.lowAddress; address < range.getHighAddress(); address++) {
-                //if the address is not in use, return it as the next available address to create a group
-                if (!isGroupAddressInUse(address)) {
-                    return address;
-                }
+            final Integer address = nextAvailableGroupAddress(range);
+            if (address != null) {
+                return address;
             }
         }
         return null;
@@ -385,30 +369,17 @@ public final class MeshNetwork extends BaseMeshNetwork {
             throw new IllegalArgumentException("Group range does not belong to provisioner.");
         }
 
-        Collections.sort(groups, groupComparator);
-        //If the list of groups are empty we can start with the lowest address of the range
-        if (groups.isEmpty()) {
-            return allocatedGroupRange.getLowAddress();
-        }
-
-        for (int address = allocatedGroupRange.lowAddress; address < allocatedGroupRange.getHighAddress(); address++) {
-            //if the address is not in use, return it as the next available address to create a group
-            if (!isGroupAddressInUse(address)) {
-                return address;
-            }
-        }
-
-        return null;
+        return nextAvailableGroupAddress(allocatedGroupRange);
     }
 
-    private boolean isGroupAddressInUse(final int address) {
-        for (Group group : groups) {
-            //if the address is not in use, return it as the next available address to create a group
-            if (group.getAddress() == address) {
-                return true;
-            }
+    @Nullable
+    private Integer nextAvailableGroupAddress(@NonNull final AllocatedGroupRange range) {
+        //If the list of groups are empty we can start with the lowest address of the range
+        if (groups.isEmpty()) {
+            return range.getLowAddress();
         }
-        return false;
+        final int address = getGroupAddresses().nextFree(range.getLowAddress(), range.getHighAddress() - 1, 1);
+        return address == -1 ? null : address;
     }
 
     /**
@@ -530,6 +501,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
     private boolean insertGroup(@NonNull final Group group) {
         if (!isGroupExist(group)) {
             this.groups.add(group);
+            getGroupAddresses().add(group.getAddress());
             notifyGroupAdded(group);
             return true;
         }
@@ -569,6 +541,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
      */
     public boolean removeGroup(@NonNull final Group group) {
         if (groups.remove(group)) {
+            getGroupAddresses().remove(group.getAddress());
             notifyGroupDeleted(group);
             return true;
         }
@@ -619,39 +592,9 @@ public final class MeshNetwork extends BaseMeshNetwork {
             throw new IllegalArgumentException("Please allocate a scene range to the provisioner!");
         }
 
-        Collections.sort(scenes, sceneComparator);
-        // Iterate through all nodes just once, while iterating over ranges.
-        int index = 0;
         for (AllocatedSceneRange sceneRange : provisioner.getAllocatedSceneRanges()) {
-            // Start from the beginning of the current range.
-            int number = sceneRange.getFirstScene();
-
-            // Iterate through nodes that weren't checked yet.
-            int currentIndex = index;
-            for (int i = currentIndex; i < scenes.size(); i++) {
-                final Scene scene = scenes.get(i);
-                index += i;
-
-                // Skip scenes with number below the range.
-                if (number > scene.getNumber()) {
-                    continue;
-                }
-
-                // If we found a space before the current scene, return the scene number.
-                if (number < scene.getNumber()) {
-                    return number;
-                }
-
-                // Else, move the address to the next available address.
-                number = scene.getNumber() + 1;
-
-                // If the new address is outside of the range, go to the next one.
-                if (number > sceneRange.getLastScene()) {
-                    break;
-                }
-            }
-            // If the range has available space, return the address.
-            if (number <= sceneRange.getLastScene()) {
+            final int number = getSceneNumbers().nextFree(sceneRange.getFirstScene(), sceneRange.getLastScene(), 1);
+            if (number != -1) {
                 return number;
             }
         }
@@ -743,6 +686,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
     private boolean insertScene(@NonNull final Scene scene) {
         if (!isSceneExist(scene)) {
             this.scenes.add(scene);
+            getSceneNumbers().add(scene.getNumber());
             notifySceneAdded(scene);
             return true;
         }
@@ -785,6 +729,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
         if (!scene.addresses.isEmpty())
             throw new IllegalArgumentException("Scene is already in use!");
         if (scenes.remove(scene)) {
+            getSceneNumbers().remove(scene.getNumber());
             notifySceneDeleted(scene);
             return true;
         }
@@ -846,25 +791,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
      * @param group group
      */
     public List<Element> getElements(final Group group) {
-        final List<Element> elements = new ArrayList<>();
-        for (final ProvisionedMeshNode node : nodes) {
-            for (Map.Entry<Integer, Element> elementEntry : node.getElements().entrySet()) {
-                final Element element = elementEntry.getValue();
-                for (Map.Entry<Integer, MeshModel> modelEntry : element.getMeshModels().entrySet()) {
-                    final MeshModel model = modelEntry.getValue();
-                    if (model != null) {
-                        final List<Integer> subscriptionAddresses = model.getSubscribedAddresses();
-                        for (Integer subscriptionAddress : subscriptionAddresses) {
-                            if (group.getAddress() == subscriptionAddress) {
-                                if (!elements.contains(element))
-                                    elements.add(element);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return elements;
+        return getSubscribedElements(group.getAddress());
     }
 
     /**
@@ -873,25 +800,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
      * @param group group
      */
     public List<MeshModel> getModels(final Group group) {
-        final List<MeshModel> models = new ArrayList<>();
-        for (final ProvisionedMeshNode node : nodes) {
-            for (Map.Entry<Integer, Element> elementEntry : node.getElements().entrySet()) {
-                final Element element = elementEntry.getValue();
-                for (Map.Entry<Integer, MeshModel> modelEntry : element.getMeshModels().entrySet()) {
-                    final MeshModel model = modelEntry.getValue();
-                    if (model != null) {
-                        final List<Integer> subscriptionAddresses = model.getSubscribedAddresses();
-                        for (Integer subscriptionAddress : subscriptionAddresses) {
-                            if (group.getAddress() == subscriptionAddress) {
-                                if (!models.contains(model))
-                                    models.add(model);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return models;
+        return getSubscribedModels(group.getAddress());
     }
 
     /**
@@ -903,6 +812,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
 
     void setScenes(List<Scene> scenes) {
         this.scenes = scenes;
+        invalidateSceneNumbers();
     }
 
     public boolean isLastSelected() {
@@ -931,6 +841,7 @@ public final class MeshNetwork extends BaseMeshNetwork {
 
     void setNetKeys(@NonNull final List<NetworkKey> netKeys) {
         this.netKeys = netKeys;
+        invalidateSubnetRoutingTable();
     }
 
     /**
@@ -970,27 +881,6 @@ public final class MeshNetwork extends BaseMeshNetwork {
             throw new IllegalArgumentException("Address type must be a virtual address ");
         }
 
-        for (ProvisionedMeshNode node : nodes) {
-            for (Map.Entry<Integer, Element> elementEntry : node.getElements().entrySet()) {
-                final Element element = elementEntry.getValue();
-                for (Map.Entry<Integer, MeshModel> modelEntry : element.getMeshModels().entrySet()) {
-                    final MeshModel model = modelEntry.getValue();
-                    if (model != null) {
-                        if (model.getPublicationSettings() != null) {
-                            if (model.getPublicationSettings().getLabelUUID() != null) {
-                                if (address == MeshAddress.generateVirtualAddress(model.getPublicationSettings().getLabelUUID())) {
-                                    return model.getPublicationSettings().getLabelUUID();
-                                }
-                            }
-                        }
-                        final UUID label = model.getLabelUUID(address);
-                        if (label != null) {
-                            return label;
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return getVirtualLabel(address);
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+/**
+ * Tracks the parts of a mesh network that have been modified since they were last written to the database.
+ * <p>
+ * Status messages usually change a single node, or only the sequence number of the local node, so instead of
+ * re-writing every key, provisioner, node, group and scene the library records what has changed and writes only
+ * those rows when the pending changes are persisted.
+ * </p>
+ */
+final class MeshNetworkChanges {
+
+    private final Map<String, ProvisionedMeshNode> nodes = new LinkedHashMap<>();
+    private final Map<Integer, Scene> scenes = new LinkedHashMap<>();
+    private final Map<Integer, NetworkKey> netKeys = new LinkedHashMap<>();
+    private boolean networkChanged;
+
+    /**
+     * Marks the network properties, i.e. timestamp, iv index, the exclusion list and the replay protection list as changed.
+     *
+     * @return true if there were no pending changes before this call
+     */
+    synchronized boolean markNetworkChanged() {
+        final boolean wasEmpty = isEmpty();
+        networkChanged = true;
+        return wasEmpty;
+    }
+
+    /**
+     * Marks a node as changed.
+     *
+     * @param node Node that has changed
+     * @return true if there were no pending changes before this call
+     */
+    synchronized boolean markNodeChanged(@NonNull final ProvisionedMeshNode node) {
+        final boolean wasEmpty = isEmpty();
+        nodes.put(node.getUuid(), node);
+        return wasEmpty;
+    }
+
+    /**
+     * Marks a scene as changed.
+     *
+     * @param scene Scene that has changed
+     * @return true if there were no pending changes before this call
+     */
+    synchronized boolean markSceneChanged(@NonNull final Scene scene) {
+        final boolean wasEmpty = isEmpty();
+        scenes.put(scene.getNumber(), scene);
+        return wasEmpty;
+    }
+
+    /**
+     * Marks a network key as changed.
+     *
+     * @param networkKey Network key that has changed
+     * @return true if there were no pending changes before this call
+     */
+    synchronized boolean markNetKeyChanged(@NonNull final NetworkKey networkKey) {
+        final boolean wasEmpty = isEmpty();
+        netKeys.put(networkKey.getKeyIndex(), networkKey);
+        return wasEmpty;
+    }
+
+    /**
+     * Removes a node from the pending changes, i.e. when the node has been deleted.
+     *
+     * @param node Node that was deleted
+     */
+    synchronized void discardNode(@NonNull final ProvisionedMeshNode node) {
+        nodes.remove(node.getUuid());
+    }
+
+    synchronized boolean isEmpty() {
+        return !networkChanged && nodes.isEmpty() && scenes.isEmpty() && netKeys.isEmpty();
+    }
+
+    /**
+     * Moves the pending changes in to a new object and clears this one.
+     *
+     * @return changes that were pending
+     */
+    synchronized MeshNetworkChanges drain() {
+        final MeshNetworkChanges changes = new MeshNetworkChanges();
+        changes.networkChanged = networkChanged;
+        changes.nodes.putAll(nodes);
+        changes.scenes.putAll(scenes);
+        changes.netKeys.putAll(netKeys);
+        networkChanged = false;
+        nodes.clear();
+        scenes.clear();
+        netKeys.clear();
+        return changes;
+    }
+
+    boolean isNetworkChanged() {
+        return networkChanged;
+    }
+
+    List<ProvisionedMeshNode> getNodes() {
+        return new ArrayList<>(nodes.values());
+    }
+
+    List<Scene> getScenes() {
+        return new ArrayList<>(scenes.values());
+    }
+
+    List<NetworkKey> getNetKeys() {
+        return new ArrayList<>(netKeys.values());
+    }
+}
@@ -39,6 +39,7 @@ import no.nordicsemi.android.mesh.data.ProvisionerDao;
 import no.nordicsemi.android.mesh.data.ProvisionersDao;
 import no.nordicsemi.android.mesh.data.SceneDao;
 import no.nordicsemi.android.mesh.data.ScenesDao;
+import no.nordicsemi.android.mesh.transport.Element;
 import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
 import no.nordicsemi.android.mesh.utils.MeshAddress;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
@@ -53,7 +54,7 @@ import no.nordicsemi.android.mesh.utils.MeshParserUtils;
         ProvisionedMeshNode.class,
         Group.class,
         Scene.class},
-        version = 12)
+        version = 14)
 abstract class MeshNetworkDb extends RoomDatabase {
 
     private static final String TAG = MeshNetworkDb.class.getSimpleName();
@@ -111,6 +112,8 @@ abstract class MeshNetworkDb extends RoomDatabase {
                             .addMigrations(MIGRATION_9_10)
                             .addMigrations(MIGRATION_10_11)
                             .addMigrations(MIGRATION_11_12)
+                            .addMigrations(MIGRATION_12_13)
+                            .addMigrations(MIGRATION_13_14)
                             .build();
                 }
 
@@ -174,17 +177,53 @@ abstract class MeshNetworkDb extends RoomDatabase {
         databaseWriteExecutor.execute(() -> {
             final MeshNetwork meshNetwork = meshNetworkDao.getMeshNetwork(true);
             if (meshNetwork != null) {
-                meshNetwork.netKeys = netKeysDao.loadNetworkKeys(meshNetwork.getMeshUUID());
+                meshNetwork.setNetKeys(netKeysDao.loadNetworkKeys(meshNetwork.getMeshUUID()));
                 meshNetwork.appKeys = appKeysDao.loadApplicationKeys(meshNetwork.getMeshUUID());
-                meshNetwork.nodes = nodesDao.getNodes(meshNetwork.getMeshUUID());
+                meshNetwork.setNodes(nodesDao.getNodes(meshNetwork.getMeshUUID()));
                 meshNetwork.provisioners = provisionersDao.getProvisioners(meshNetwork.getMeshUUID());
-                meshNetwork.groups = groupsDao.loadGroups(meshNetwork.getMeshUUID());
-                meshNetwork.scenes = scenesDao.loadScenes(meshNetwork.getMeshUUID());
+                meshNetwork.setGroups(groupsDao.loadGroups(meshNetwork.getMeshUUID()));
+                meshNetwork.setScenes(scenesDao.loadScenes(meshNetwork.getMeshUUID()));
             }
             listener.onNetworkLoadedFromDb(meshNetwork);
         });
     }
 
+    /**
+     * Loads the last selected network in two steps. The network is first loaded with its keys, provisioners, groups,
+     * scenes and only the nodes of the provisioners, which is all that is required to send messages, and then the
+     * remaining nodes are loaded with their elements.
+     */
+    void loadNetworkLazily(@NonNull final MeshNetworkDao meshNetworkDao,
+                           @NonNull final NetworkKeysDao netKeysDao,
+                           @NonNull final ApplicationKeysDao appKeysDao,
+                           @NonNull final ProvisionersDao provisionersDao,
+                           @NonNull final ProvisionedMeshNodesDao nodesDao,
+                           @NonNull final GroupsDao groupsDao,
+                           @NonNull final ScenesDao scenesDao,
+                           @NonNull final LoadNetworkCallbacks listener) {
+        databaseWriteExecutor.execute(() -> {
+            final MeshNetwork meshNetwork = meshNetworkDao.getMeshNetwork(true);
+            if (meshNetwork == null) {
+                listener.onNetworkLoadedFromDb(null);
+                return;
+            }
+            meshNetwork.setNetKeys(netKeysDao.loadNetworkKeys(meshNetwork.getMeshUUID()));
+            meshNetwork.appKeys = appKeysDao.loadApplicationKeys(meshNetwork.getMeshUUID());
+            meshNetwork.provisioners = provisionersDao.getProvisioners(meshNetwork.getMeshUUID());
+            meshNetwork.setGroups(groupsDao.loadGroups(meshNetwork.getMeshUUID()));
+            meshNetwork.setScenes(scenesDao.loadScenes(meshNetwork.getMeshUUID()));
+            final List<String> provisionerUuids = new ArrayList<>();
+            for (Provisioner provisioner : meshNetwork.provisioners) {
+                provisionerUuids.add(provisioner.getProvisionerUuid().toUpperCase(Locale.US));
+            }
+            meshNetwork.setNodes(new ArrayList<>(nodesDao.getNodes(meshNetwork.getMeshUUID(), provisionerUuids)));
+            meshNetwork.setNodesLoading();
+            listener.onNetworkLoadedFromDb(meshNetwork);
+
+            listener.onNodesLoadedFromDb(meshNetwork, nodesDao.getNodes(meshNetwork.getMeshUUID()));
+        });
+    }
+
     MeshNetwork getMeshNetwork(@NonNull final MeshNetworkDao meshNetworkDao, @NonNull final String meshUuid) throws ExecutionException, InterruptedException {
         return databaseWriteExecutor.submit(() -> meshNetworkDao.getMeshNetwork(meshUuid)).get();
     }
@@ -208,26 +247,56 @@ abstract class MeshNetworkDb extends RoomDatabase {
         databaseWriteExecutor.execute(() -> dao.update(meshNetworks));
     }
 
+    /**
+     * Writes only the changed parts of a network within a single transaction.
+     *
+     * @param network    Mesh network
+     * @param changes    Changes to be written, see {@link MeshNetworkChanges#drain()}
+     * @param networkDao Mesh network dao
+     * @param nodesDao   Nodes dao
+     * @param netKeysDao Network keys dao
+     * @param scenesDao  Scenes dao
+     */
     void update(@NonNull final MeshNetwork network,
+                @NonNull final MeshNetworkChanges changes,
                 @NonNull final MeshNetworkDao networkDao,
-                @NonNull final NetworkKeysDao netKeyDao,
-                @NonNull final ApplicationKeysDao appKeyDao,
-                @NonNull final ProvisionersDao provisionersDao,
                 @NonNull final ProvisionedMeshNodesDao nodesDao,
-                @NonNull final GroupsDao groupsDao,
-                @NonNull final ScenesDao sceneDao) {
-        databaseWriteExecutor.execute(() -> {
+                @NonNull final NetworkKeysDao netKeysDao,
+                @NonNull final ScenesDao scenesDao) {
+        if (changes.isEmpty())
+            return;
+        databaseWriteExecutor.execute(() -> runInTransaction(() ->
+                writeChanges(network, changes, networkDao, nodesDao, netKeysDao, scenesDao)));
+    }
+
+    /**
+     * Writes the changed parts of a network, to be called within a transaction.
+     */
+    static void writeChanges(@NonNull final MeshNetwork network,
+                             @NonNull final MeshNetworkChanges changes,
+                             @NonNull final MeshNetworkDao networkDao,
+                             @NonNull final ProvisionedMeshNodesDao nodesDao,
+                             @NonNull final NetworkKeysDao netKeysDao,
+                             @NonNull final ScenesDao scenesDao) {
+        if (changes.isNetworkChanged()) {
             networkDao.update(network.meshUUID, network.meshName, network.timestamp,
                     network.partial, MeshTypeConverters.ivIndexToJson(network.ivIndex),
                     network.lastSelected,
-                    MeshTypeConverters.networkExclusionsToJson(new HashMap<>(network.getNetworkExclusions())));
-            netKeyDao.update(new ArrayList<>(network.netKeys));
-            appKeyDao.update(new ArrayList<>(network.appKeys));
-            provisionersDao.update(new ArrayList<>(network.provisioners));
-            nodesDao.update(new ArrayList<>(network.nodes));
-            groupsDao.update(new ArrayList<>(network.groups));
-            sceneDao.update(new ArrayList<>(network.scenes));
-        });
+                    MeshTypeConverters.networkExclusionsToJson(new HashMap<>(network.getNetworkExclusions())),
+                    MeshTypeConverters.replayProtectionListToJson(network.getReplayProtectionList()));
+        }
+        final List<ProvisionedMeshNode> nodes = changes.getNodes();
+        if (!nodes.isEmpty()) {
+            nodesDao.update(nodes);
+        }
+        final List<NetworkKey> netKeys = changes.getNetKeys();
+        if (!netKeys.isEmpty()) {
+            netKeysDao.update(netKeys);
+        }
+        final List<Scene> scenes = changes.getScenes();
+        if (!scenes.isEmpty()) {
+            scenesDao.update(scenes);
+        }
     }
 
     void delete(@NonNull final MeshNetworkDao dao, @NonNull final MeshNetwork meshNetwork) {
@@ -286,6 +355,15 @@ abstract class MeshNetworkDb extends RoomDatabase {
         databaseWriteExecutor.execute(() -> dao.update(node));
     }
 
+    /**
+     * Writes the reserved sequence number of a node and waits until it has been stored.
+     */
+    void updateSequenceNumber(@NonNull final ProvisionedMeshNodeDao dao, @NonNull final ProvisionedMeshNode node) throws ExecutionException, InterruptedException {
+        final String uuid = node.getUuid();
+        final int sequenceNumber = node.getReservedSequenceNumber();
+        databaseWriteExecutor.submit(() -> dao.updateSequenceNumber(uuid, sequenceNumber)).get();
+    }
+
     void update(@NonNull final ProvisionedMeshNodesDao dao, @NonNull final List<ProvisionedMeshNode> nodes) {
         databaseWriteExecutor.execute(() -> dao.update(nodes));
     }
@@ -398,6 +476,20 @@ abstract class MeshNetworkDb extends RoomDatabase {
         }
     };
 
+    private static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE mesh_network ADD COLUMN replay_protection_list TEXT NOT NULL DEFAULT '{}'");
+        }
+    };
+
+    private static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            migrateNodes13_14(database);
+        }
+    };
+
     private static void migrateMeshNetwork(final SupportSQLiteDatabase database) {
         database.execSQL("CREATE TABLE `mesh_network_temp` " +
                 "(`mesh_uuid` TEXT NOT NULL, " +
@@ -1038,4 +1130,74 @@ abstract class MeshNetworkDb extends RoomDatabase {
         database.execSQL("DROP TABLE mesh_network");
         database.execSQL("ALTER TABLE mesh_network_temp RENAME TO mesh_network");
     }
+
+    /**
+     * Converts the elements of the nodes from json to the binary encoding of {@link MeshTypeConverters#elementsToBytes(Map)}.
+     * The column type changes from TEXT to BLOB which requires the table to be recreated.
+     */
+    private static void migrateNodes13_14(@NonNull final SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TABLE `nodes_temp` " +
+                "(timestamp INTEGER NOT NULL, " +
+                "netKeys TEXT, " +
+                "name TEXT, " +
+                "ttl INTEGER DEFAULT 5, " +
+                "excluded INTEGER NOT NULL, " +
+                "secureNetworkBeacon INTEGER, " +
+                "mesh_uuid TEXT, uuid TEXT NOT NULL, " +
+                "security INTEGER NOT NULL, " +
+                "unicast_address INTEGER NOT NULL DEFAULT 1, " +
+                "configured INTEGER NOT NULL, " +
+                "device_key BLOB, " +
+                "seq_number INTEGER NOT NULL, " +
+                "cid INTEGER, " +
+                "pid INTEGER, " +
+                "vid INTEGER, " +
+                "crpl INTEGER, " +
+                "elements BLOB, " +
+                "appKeys TEXT, " +
+                "networkTransmitCount INTEGER, " +
+                "networkIntervalSteps INTEGER, " +
+                "relayTransmitCount INTEGER, " +
+                "relayIntervalSteps INTEGER, " +
+                "friend INTEGER, " +
+                "lowPower INTEGER, " +
+                "proxy INTEGER, " +
+                "relay INTEGER, " +
+                "PRIMARY KEY(uuid), " +
+                "FOREIGN KEY(mesh_uuid) REFERENCES mesh_network(mesh_uuid) ON UPDATE CASCADE ON DELETE CASCADE )");
+
+        database.execSQL(
+                "INSERT INTO nodes_temp (timestamp, netKeys, name, ttl, excluded, secureNetworkBeacon, mesh_uuid, " +
+                        "security, unicast_address, configured, device_key, seq_number, cid, pid, vid, crpl, " +
+                        "appKeys, networkTransmitCount, networkIntervalSteps, relayTransmitCount, relayIntervalSteps, " +
+                        "friend, lowPower, proxy, relay, uuid) " +
+                        "SELECT timestamp, netKeys, name, ttl, excluded, secureNetworkBeacon, mesh_uuid, " +
+                        "security, unicast_address, configured, device_key, seq_number, cid, pid, vid, crpl, " +
+                        "appKeys, networkTransmitCount, networkIntervalSteps, relayTransmitCount, relayIntervalSteps, " +
+                        "friend, lowPower, proxy, relay, uuid FROM nodes");
+
+        // Nodes are converted one at a time to avoid holding the elements of the whole network in memory
+        final Cursor cursor = database.query("SELECT uuid, elements FROM nodes");
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    final String uuid = cursor.getString(cursor.getColumnIndex("uuid"));
+                    final String elementsJson = cursor.getString(cursor.getColumnIndex("elements"));
+                    if (elementsJson == null)
+                        continue;
+                    final Map<Integer, Element> elements = MeshTypeConverters.fromJsonToElements(elementsJson);
+                    if (elements == null)
+                        continue;
+                    final ContentValues values = new ContentValues();
+                    values.put("elements", MeshTypeConverters.elementsToBytes(elements));
+                    database.update("nodes_temp", SQLiteDatabase.CONFLICT_REPLACE, values, "uuid = ?", new String[]{uuid});
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        database.execSQL("DROP TABLE nodes");
+        database.execSQL("ALTER TABLE nodes_temp RENAME TO nodes");
+        database.execSQL("CREATE INDEX index_nodes_mesh_uuid ON `nodes` (mesh_uuid)");
+    }
 }
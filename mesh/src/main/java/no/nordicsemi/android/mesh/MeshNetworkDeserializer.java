@@ -82,19 +82,19 @@ public final class MeshNetworkDeserializer implements JsonSerializer<MeshNetwork
             network.partial = jsonObject.get("partial").getAsBoolean();
         }
 
-        network.netKeys = deserializeNetKeys(context,
-                jsonObject.getAsJsonArray("netKeys"), network.meshUUID);
+        network.setNetKeys(deserializeNetKeys(context,
+                jsonObject.getAsJsonArray("netKeys"), network.meshUUID));
         network.appKeys = deserializeAppKeys(context,
                 jsonObject.getAsJsonArray("appKeys"), network.meshUUID);
         network.provisioners = deserializeProvisioners(context,
                 jsonObject.getAsJsonArray("provisioners"), network.meshUUID);
 
-        network.nodes = deserializeNodes(context,
-                jsonObject.getAsJsonArray("nodes"), network.meshUUID);
+        network.setNodes(deserializeNodes(context,
+                jsonObject.getAsJsonArray("nodes"), network.meshUUID));
 
-        network.groups = deserializeGroups(jsonObject, network.meshUUID);
+        network.setGroups(deserializeGroups(jsonObject, network.meshUUID));
 
-        network.scenes = deserializeScenes(jsonObject, network.meshUUID);
+        network.setScenes(deserializeScenes(jsonObject, network.meshUUID));
         if (jsonObject.has("networkExclusions"))
             network.networkExclusions = deserializeExclusionList(jsonObject.getAsJsonArray("networkExclusions"));
 
@@ -107,6 +107,35 @@ public final class MeshNetworkDeserializer implements JsonSerializer<MeshNetwork
     public JsonElement serialize(final MeshNetwork network,
                                  final Type typeOfSrc,
                                  final JsonSerializationContext context) {
+        return serialize(network, network.partial, network.getNetKeys(), network.getAppKeys(), network.getProvisioners(),
+                serializeNodes(context, network.getNodes()), serializeGroups(network.getGroups()),
+                serializeScenes(network.getScenes()), context);
+    }
+
+    /**
+     * Serializes the network with the given keys and provisioners, which allows exporting a part of the network without
+     * modifying it. The nodes, groups and scenes are added as given, so that a streaming writer may pass placeholders
+     * and write them separately.
+     *
+     * @param network      Mesh network
+     * @param partial      True if the network is exported partially
+     * @param netKeys      Network keys to export
+     * @param appKeys      Application keys to export
+     * @param provisioners Provisioners to export
+     * @param nodes        Serialized nodes
+     * @param groups       Serialized groups
+     * @param scenes       Serialized scenes
+     * @param context      Serializer context
+     */
+    JsonObject serialize(@NonNull final MeshNetwork network,
+                         final boolean partial,
+                         @NonNull final List<NetworkKey> netKeys,
+                         @NonNull final List<ApplicationKey> appKeys,
+                         @NonNull final List<Provisioner> provisioners,
+                         @NonNull final JsonElement nodes,
+                         @NonNull final JsonElement groups,
+                         @NonNull final JsonElement scenes,
+                         @NonNull final JsonSerializationContext context) {
         final String meshUuid = network.getMeshUUID().toUpperCase(Locale.US)/*MeshParserUtils.uuidToHex(network.getMeshUUID())*/;
         final JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("$schema", network.getSchema());
@@ -115,13 +144,13 @@ public final class MeshNetworkDeserializer implements JsonSerializer<MeshNetwork
         jsonObject.addProperty("meshUUID", meshUuid);
         jsonObject.addProperty("meshName", network.getMeshName());
         jsonObject.addProperty("timestamp", formatTimeStamp(network.getTimestamp()));
-        jsonObject.addProperty("partial", network.partial);
-        jsonObject.add("netKeys", serializeNetKeys(context, network.getNetKeys()));
-        jsonObject.add("appKeys", serializeAppKeys(context, network.getAppKeys()));
-        jsonObject.add("provisioners", serializeProvisioners(context, network.getProvisioners()));
-        jsonObject.add("nodes", serializeNodes(context, network.getNodes()));
-        jsonObject.add("groups", serializeGroups(network.getGroups()));
-        jsonObject.add("scenes", serializeScenes(network.getScenes()));
+        jsonObject.addProperty("partial", partial);
+        jsonObject.add("netKeys", serializeNetKeys(context, netKeys));
+        jsonObject.add("appKeys", serializeAppKeys(context, appKeys));
+        jsonObject.add("provisioners", serializeProvisioners(context, provisioners));
+        jsonObject.add("nodes", nodes);
+        jsonObject.add("groups", groups);
+        jsonObject.add("scenes", scenes);
         jsonObject.add("networkExclusions", serializeExclusionList(network.getNetworkExclusions()));
         return jsonObject;
     }
@@ -408,7 +437,7 @@ public final class MeshNetworkDeserializer implements JsonSerializer<MeshNetwork
      * @param groups Group list
      * @return JsonElement
      */
-    private JsonElement serializeGroups(@NonNull final List<Group> groups) {
+    JsonElement serializeGroups(@NonNull final List<Group> groups) {
         JsonArray groupsArray = new JsonArray();
         for (Group group : groups) {
             JsonObject groupObj = new JsonObject();
@@ -474,7 +503,7 @@ public final class MeshNetworkDeserializer implements JsonSerializer<MeshNetwork
      * @param scenes Group list
      * @return JsonElement
      */
-    private JsonElement serializeScenes(@NonNull final List<Scene> scenes) {
+    JsonElement serializeScenes(@NonNull final List<Scene> scenes) {
         final JsonArray scenesArray = new JsonArray();
         for (Scene scene : scenes) {
             JsonObject sceneObj = new JsonObject();
@@ -598,7 +627,12 @@ public final class MeshNetworkDeserializer implements JsonSerializer<MeshNetwork
         return unicast;
     }
 
-    private void assignProvisionerAddresses(@NonNull final MeshNetwork network) {
+    /**
+     * Assigns the unicast addresses and TTL of the provisioner nodes to the provisioners
+     *
+     * @param network Mesh network
+     */
+    static void assignProvisionerAddresses(@NonNull final MeshNetwork network) {
         for (Provisioner provisioner : network.provisioners) {
             for (ProvisionedMeshNode node : network.nodes) {
                 if (provisioner.getProvisionerUuid().equalsIgnoreCase(node.getUuid())) {
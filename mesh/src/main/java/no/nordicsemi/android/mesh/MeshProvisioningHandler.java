@@ -23,24 +23,15 @@
 package no.nordicsemi.android.mesh;
 
 import android.content.Context;
-import no.nordicsemi.android.mesh.logger.MeshLogger;
 
 import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningCapabilities;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningCapabilitiesState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningCompleteState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningConfirmationState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningDataState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningFailedState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningInputCompleteState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningInviteState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningPublicKeyState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningRandomConfirmationState;
-import no.nordicsemi.android.mesh.provisionerstates.ProvisioningStartState;
+import no.nordicsemi.android.mesh.provisionerstates.ProvisioningKeyPool;
 import no.nordicsemi.android.mesh.provisionerstates.ProvisioningState;
 import no.nordicsemi.android.mesh.provisionerstates.UnprovisionedMeshNode;
 import no.nordicsemi.android.mesh.transport.MeshModel;
@@ -48,22 +39,25 @@ import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
 import no.nordicsemi.android.mesh.utils.InputOOBAction;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 import no.nordicsemi.android.mesh.utils.OutputOOBAction;
-import no.nordicsemi.android.mesh.utils.StaticOOBType;
 
-class MeshProvisioningHandler implements InternalProvisioningCallbacks {
+/**
+ * Handles the provisioning of unprovisioned devices.
+ * <p>
+ * Each device is provisioned in its own {@link ProvisioningSession} keyed by its Device UUID, so that several devices
+ * may be provisioned in parallel over separate bearers. Methods without a Device UUID apply to the session of the device
+ * that was identified last, which is the only session when devices are provisioned one at a time.
+ * </p>
+ */
+class MeshProvisioningHandler {
     private static final String TAG = MeshProvisioningHandler.class.getSimpleName();
     static final int ATTENTION_TIMER = 5; //seconds
     private final InternalTransportCallbacks mInternalTransportCallbacks;
     private final Context mContext;
     private MeshProvisioningStatusCallbacks mStatusCallbacks;
-    private UnprovisionedMeshNode mUnprovisionedMeshNode;
-    private byte attentionTimer = ATTENTION_TIMER;
-
-    private ProvisioningState provisioningState;
-    private boolean isProvisioningPublicKeySent;
-    private boolean isProvisioneePublicKeyReceived;
     private final InternalMeshManagerCallbacks mInternalMeshManagerCallbacks;
-    private byte[] confirmationInputs;
+    private final Map<UUID, ProvisioningSession> sessions = new LinkedHashMap<>();
+    private ProvisioningSession mCurrentSession;
+    private ProvisioningKeyPool mKeyPool;
 
     /**
      * Constructs the mesh provisioning handler
@@ -82,10 +76,11 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
     }
 
     /**
-     * Returns the unprovisioned mesh node
+     * Returns the unprovisioned mesh node of the device that was identified last
      */
     public UnprovisionedMeshNode getMeshNode() {
-        return mUnprovisionedMeshNode;
+        final ProvisioningSession session = mCurrentSession;
+        return session == null ? null : session.getMeshNode();
     }
 
     /**
@@ -97,109 +92,56 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
         this.mStatusCallbacks = provisioningCallbacks;
     }
 
+    /**
+     * Sets the pool of pre-generated provisioner key pairs used by sessions started after this call. The previous pool
+     * is closed.
+     *
+     * @param keyPool {@link ProvisioningKeyPool} or null to generate the key pair when the public key is sent
+     */
+    void setKeyPool(@Nullable final ProvisioningKeyPool keyPool) {
+        final ProvisioningKeyPool previous = mKeyPool;
+        mKeyPool = keyPool;
+        if (previous != null && previous != keyPool) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Returns the provisioning session of a device.
+     *
+     * @param uuid Device UUID of the unprovisioned node
+     * @return the session or null if the device is not being provisioned
+     */
+    @Nullable
+    synchronized ProvisioningSession getSession(@NonNull final UUID uuid) {
+        return sessions.get(uuid);
+    }
+
     void parseProvisioningNotifications(final byte[] data) {
-        final UnprovisionedMeshNode unprovisionedMeshNode = mUnprovisionedMeshNode;
-        try {
-            switch (provisioningState.getState()) {
-                case PROVISIONING_INVITE:
-                    break;
-                case PROVISIONING_CAPABILITIES:
-                    if (validateMessage(data)) {
-                        if (!parseProvisioningCapabilitiesMessage(unprovisionedMeshNode, data)) {
-                            parseProvisioningState(unprovisionedMeshNode, data);
-                        }
-                    } else {
-                        parseProvisioningState(unprovisionedMeshNode, data);
-                    }
-                    break;
-                case PROVISIONING_START:
-                    break;
-                case PROVISIONING_PUBLIC_KEY:
-                    if (validateMessage(data)) {
-                        parseProvisioneePublicKeyXY(unprovisionedMeshNode, data);
-                    } else {
-                        parseProvisioningState(unprovisionedMeshNode, data);
-                    }
-                    break;
-                case PROVISIONING_INPUT_COMPLETE:
-                    if (validateMessage(data)) {
-                        if (parseProvisioningInputCompleteState(data)) {
-                            sendProvisioningConfirmation(null);
-                        }
-                    } else {
-                        parseProvisioningState(unprovisionedMeshNode, data);
-                    }
-                    break;
-                case PROVISIONING_CONFIRMATION:
-                    if (validateMessage(data)) {
-                        if (parseProvisioneeConfirmation(data)) {
-                            sendRandomConfirmationPDU(unprovisionedMeshNode);
-                        }
-                    } else {
-                        parseProvisioningState(unprovisionedMeshNode, data);
-                    }
-                    break;
-                case PROVISIONING_RANDOM:
-                    if (validateMessage(data)) {
-                        if (parseProvisioneeRandom(data)) {
-                            sendProvisioningData(unprovisionedMeshNode);
-                        }
-                    } else {
-                        parseProvisioningState(unprovisionedMeshNode, data);
-                    }
-                    break;
-                case PROVISIONING_DATA:
-                case PROVISIONING_COMPLETE:
-                case PROVISIONING_FAILED:
-                    parseProvisioningState(unprovisionedMeshNode, data);
-                    break;
+        final ProvisioningSession session = mCurrentSession;
+        if (session != null) {
+            session.parseProvisioningNotifications(data);
+        }
+    }
 
-            }
-        } catch (Exception ex) {
-            MeshLogger.error(TAG, "Exception in " + provisioningState.getState().name() + " : " + ex.getMessage());
-            parseProvisioningState(unprovisionedMeshNode, data);
+    void parseProvisioningNotifications(@NonNull final UUID uuid, final byte[] data) {
+        final ProvisioningSession session = getSession(uuid);
+        if (session != null) {
+            session.parseProvisioningNotifications(data);
         }
     }
 
     void handleProvisioningWriteCallbacks() {
-        final UnprovisionedMeshNode unprovisionedMeshNode = mUnprovisionedMeshNode;
-        switch (provisioningState.getState()) {
-            case PROVISIONING_INVITE:
-                provisioningState = new ProvisioningCapabilitiesState(unprovisionedMeshNode, mStatusCallbacks);
-                break;
-            case PROVISIONING_CAPABILITIES:
-                break;
-            case PROVISIONING_START:
-            case PROVISIONING_PUBLIC_KEY:
-                //Devices with lower mtu have to send the key in multiple segments
-                sendProvisionerPublicKey(unprovisionedMeshNode);
-                break;
-            case PROVISIONING_INPUT_COMPLETE:
-                break;
-            case PROVISIONING_CONFIRMATION:
-                break;
-            case PROVISIONING_RANDOM:
-                break;
-            case PROVISIONING_DATA:
-                break;
+        final ProvisioningSession session = mCurrentSession;
+        if (session != null) {
+            session.handleProvisioningWriteCallbacks();
         }
     }
 
-    private void parseProvisioningState(final UnprovisionedMeshNode unprovisionedMeshNode, final byte[] data) {
-        isProvisioningPublicKeySent = false;
-        isProvisioneePublicKeyReceived = false;
-        if (data[1] == ProvisioningState.State.PROVISIONING_COMPLETE.getState()) {
-            provisioningState = new ProvisioningCompleteState(unprovisionedMeshNode);
-            //Generate the network id and store it in the mesh node, this is needed to reconnect to the device at a later stage.
-            final ProvisionedMeshNode provisionedMeshNode = new ProvisionedMeshNode(unprovisionedMeshNode);
-            mInternalMeshManagerCallbacks.onNodeProvisioned(provisionedMeshNode, unprovisionedMeshNode.getProvisioningCapabilities().getNumberOfElements());
-            mStatusCallbacks.onProvisioningCompleted(provisionedMeshNode, ProvisioningState.States.PROVISIONING_COMPLETE, data);
-        } else {
-            final ProvisioningFailedState provisioningFailedState = new ProvisioningFailedState();
-            provisioningState = provisioningFailedState;
-            if (provisioningFailedState.parseData(data)) {
-                mStatusCallbacks.onProvisioningFailed(unprovisionedMeshNode, ProvisioningState.States.PROVISIONING_FAILED, data);
-            }
+    void handleProvisioningWriteCallbacks(@NonNull final UUID uuid) {
+        final ProvisioningSession session = getSession(uuid);
+        if (session != null) {
+            session.handleProvisioningWriteCallbacks();
         }
     }
 
@@ -234,7 +176,6 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
             unprovisionedMeshNode.setFlags(flagBytes);
             unprovisionedMeshNode.setIvIndex(ivIndexBytes);
             unprovisionedMeshNode.setTtl(globalTtl);
-            mUnprovisionedMeshNode = unprovisionedMeshNode;
         }
         return unprovisionedMeshNode;
     }
@@ -270,7 +211,8 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
      * Identifies the node that is to be provisioned.
      * <p>
      * This method will send a provisioning invite to the connected peripheral. This will help users to identify a particular node before starting the provisioning process.
-     * This method must be invoked before calling {@link #startProvisioningNoOOB(UnprovisionedMeshNode)}
+     * This method must be invoked before calling {@link #startProvisioningNoOOB(UnprovisionedMeshNode)}. A new provisioning session is
+     * started for the device, replacing any previous session of the same device.
      * </p
      *
      * @param uuid           Device UUID of unprovisioned node
@@ -286,11 +228,19 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
                   final int ivIndex,
                   final int globalTtl,
                   final int attentionTimer) throws IllegalArgumentException {
-        confirmationInputs = null;
-        this.attentionTimer = (byte) attentionTimer;
         final UnprovisionedMeshNode unprovisionedMeshNode =
                 initializeMeshNode(uuid, networkKey, flags, ivIndex, globalTtl);
-        sendProvisioningInvite(unprovisionedMeshNode);
+        final ProvisioningSession session = new ProvisioningSession(this, mInternalTransportCallbacks,
+                mStatusCallbacks, unprovisionedMeshNode, attentionTimer, mKeyPool);
+        final ProvisioningSession previous;
+        synchronized (this) {
+            previous = sessions.put(uuid, session);
+            mCurrentSession = session;
+        }
+        if (previous != null) {
+            releaseAddresses(previous);
+        }
+        session.sendProvisioningInvite();
     }
 
     /**
@@ -303,7 +253,7 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
      */
     void startProvisioningNoOOB(@NonNull final UnprovisionedMeshNode node) throws
             IllegalArgumentException {
-        sendProvisioningStart(node);
+        requireSession(node).sendProvisioningStart();
     }
 
     /**
@@ -316,7 +266,7 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
      */
     void startProvisioningWithStaticOOB(
             @NonNull final UnprovisionedMeshNode node) throws IllegalArgumentException {
-        sendProvisioningStartWithStaticOOB(node);
+        requireSession(node).sendProvisioningStartWithStaticOOB();
     }
 
     /**
@@ -331,7 +281,7 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
     void startProvisioningWithOutputOOB(
             @NonNull final UnprovisionedMeshNode node,
             @NonNull final OutputOOBAction action) throws IllegalArgumentException {
-        sendProvisioningStartWithOutputOOB(node, action);
+        requireSession(node).sendProvisioningStartWithOutputOOB(action);
     }
 
     /**
@@ -346,227 +296,151 @@ class MeshProvisioningHandler implements InternalProvisioningCallbacks {
     void startProvisioningWithInputOOB(
             @NonNull final UnprovisionedMeshNode node,
             @NonNull final InputOOBAction action) throws IllegalArgumentException {
-        sendProvisioningStartWithInputOOB(node, action);
+        requireSession(node).sendProvisioningStartWithInputOOB(action);
     }
 
-    private void sendProvisioningInvite(final UnprovisionedMeshNode node) {
-        isProvisioningPublicKeySent = false;
-        isProvisioneePublicKeyReceived = false;
-        final ProvisioningInviteState invite = new ProvisioningInviteState(node, attentionTimer, mInternalTransportCallbacks, mStatusCallbacks);
-        provisioningState = invite;
-        invite.executeSend();
+    private ProvisioningSession requireSession(@NonNull final UnprovisionedMeshNode node) {
+        final ProvisioningSession session = getSession(node.getDeviceUuid());
+        if (session == null || session.getMeshNode() != node) {
+            throw new IllegalArgumentException("Node must be identified before starting provisioning");
+        }
+        return session;
     }
 
     /**
-     * Read provisioning capabilities of node
+     * Assigns unicast addresses to a node that is about to start provisioning.
+     * <p>
+     * The addresses are reserved in the network until the session ends, so that devices provisioned in parallel are
+     * assigned different addresses. Any addresses previously reserved for the same session are released.
+     * </p>
      *
-     * @param capabilities provisioning capabilities of the node
-     * @return true if the message is valid
+     * @param node        Identified unprovisioned node
+     * @param network     Mesh network
+     * @param provisioner Provisioner whose allocated ranges are used
+     * @return the unicast address assigned to the node or -1 if there are no more available addresses
      */
-    private boolean parseProvisioningCapabilitiesMessage(
-            final UnprovisionedMeshNode node, final byte[] capabilities) {
-        final ProvisioningCapabilitiesState provisioningCapabilitiesState = new ProvisioningCapabilitiesState(node, mStatusCallbacks);
-        provisioningState = provisioningCapabilitiesState;
-        return provisioningCapabilitiesState.parseData(capabilities);
-    }
-
-    private void sendProvisioningStart(final UnprovisionedMeshNode node) {
-        final ProvisioningCapabilitiesState capabilitiesState = (ProvisioningCapabilitiesState) provisioningState;
-        final ProvisioningCapabilities capabilities = capabilitiesState.getCapabilities();
-        final ProvisioningStartState startProvisioning = new ProvisioningStartState(node, capabilities, mInternalTransportCallbacks, mStatusCallbacks);
-        provisioningState = startProvisioning;
-        startProvisioning.executeSend();
-    }
-
-    private void sendProvisioningStartWithStaticOOB(
-            final UnprovisionedMeshNode node) {
-        final ProvisioningCapabilitiesState capabilitiesState = (ProvisioningCapabilitiesState) provisioningState;
-        final ProvisioningCapabilities capabilities = capabilitiesState.getCapabilities();
-
-        final ProvisioningStartState startProvisioning = new ProvisioningStartState(node, capabilities, mInternalTransportCallbacks, mStatusCallbacks);
-        startProvisioning.setUseStaticOOB(StaticOOBType.STATIC_OOB_AVAILABLE);
-        provisioningState = startProvisioning;
-        startProvisioning.executeSend();
-    }
-
-    private void sendProvisioningStartWithOutputOOB(
-            final UnprovisionedMeshNode node, final OutputOOBAction action) {
-        final ProvisioningCapabilitiesState capabilitiesState = (ProvisioningCapabilitiesState) provisioningState;
-        final ProvisioningCapabilities capabilities = capabilitiesState.getCapabilities();
-
-        final ProvisioningStartState startProvisioning = new ProvisioningStartState(node, capabilities, mInternalTransportCallbacks, mStatusCallbacks);
-        startProvisioning.setUseOutputOOB(action);
-        provisioningState = startProvisioning;
-        startProvisioning.executeSend();
-    }
-
-    private void sendProvisioningStartWithInputOOB(
-            final UnprovisionedMeshNode node, final InputOOBAction action) {
-        final ProvisioningCapabilitiesState capabilitiesState = (ProvisioningCapabilitiesState) provisioningState;
-        final ProvisioningCapabilities capabilities = capabilitiesState.getCapabilities();
-
-        final ProvisioningStartState startProvisioning = new ProvisioningStartState(node, capabilities, mInternalTransportCallbacks, mStatusCallbacks);
-        startProvisioning.setUseInputOOB(action);
-        provisioningState = startProvisioning;
-        startProvisioning.executeSend();
-    }
-
-
-    private void sendProvisionerPublicKey(final UnprovisionedMeshNode node) {
-        if (!isProvisioningPublicKeySent) {
-            if (provisioningState instanceof ProvisioningPublicKeyState) {
-                isProvisioningPublicKeySent = true;
-                provisioningState.executeSend();
-            } else {
-                final ProvisioningPublicKeyState provisioningPublicKeyState = new ProvisioningPublicKeyState(node, mInternalTransportCallbacks, mStatusCallbacks);
-                provisioningState = provisioningPublicKeyState;
-                isProvisioningPublicKeySent = true;
-                provisioningPublicKeyState.executeSend();
-                if (node.getProvisioningCapabilities().isPublicKeyOobSupported() && node.getProvisioneePublicKeyXY() != null) {
-                    isProvisioneePublicKeyReceived = provisioningPublicKeyState.parseData(node.getProvisioneePublicKeyXY());
-                    if (isProvisioningPublicKeySent && isProvisioneePublicKeyReceived) {
-                        handleConfirmationState(node, null);
-                    }
-                }
+    int reserveUnicastAddress(@NonNull final UnprovisionedMeshNode node,
+                              @NonNull final MeshNetwork network,
+                              @NonNull final Provisioner provisioner) throws IllegalArgumentException {
+        final ProvisioningSession session = requireSession(node);
+        synchronized (session) {
+            releaseAddresses(session);
+            final int address = network.reserveUnicastAddress(node.getNumberOfElements(), provisioner);
+            if (address != -1) {
+                node.setUnicastAddress(address);
+                session.setAddressReserved(true);
             }
+            return address;
         }
     }
 
-    private void parseProvisioneePublicKeyXY(final UnprovisionedMeshNode node, final byte[] data) {
-        if (provisioningState instanceof ProvisioningPublicKeyState) {
-            final ProvisioningPublicKeyState provisioningPublicKeyState = ((ProvisioningPublicKeyState) provisioningState);
-            if (data.length != 66) {
-                throw new IllegalArgumentException("Invalid Provisionee Public Key PDU," +
-                        " length of the Provisionee public key must be 66 bytes, but was " + data.length);
-            }
-            final ByteBuffer buffer = ByteBuffer.allocate(data.length - 2);
-            buffer.put(data, 2, buffer.limit());
-            final byte[] xy = buffer.array();
-            isProvisioneePublicKeyReceived = provisioningPublicKeyState.parseData(xy);
-            if (isProvisioningPublicKeySent && isProvisioneePublicKeyReceived) {
-                handleConfirmationState(node, data);
-            }
+    /**
+     * Releases the unicast addresses reserved for a node, see {@link #reserveUnicastAddress}.
+     *
+     * @param node Identified unprovisioned node
+     */
+    void releaseUnicastAddress(@NonNull final UnprovisionedMeshNode node) {
+        final ProvisioningSession session = getSession(node.getDeviceUuid());
+        if (session != null && session.getMeshNode() == node) {
+            releaseAddresses(session);
         }
     }
 
-    private void handleConfirmationState(final UnprovisionedMeshNode node, final byte[] data) {
-        switch (node.getAuthMethodUsed()) {
-            case STATIC_OOB_AUTHENTICATION:
-                provisioningState = new ProvisioningConfirmationState(node, this, mInternalTransportCallbacks, mStatusCallbacks);
-                mStatusCallbacks.onProvisioningStateChanged(mUnprovisionedMeshNode, ProvisioningState.States.PROVISIONING_AUTHENTICATION_STATIC_OOB_WAITING, data);
-                break;
-            case OUTPUT_OOB_AUTHENTICATION:
-                provisioningState = new ProvisioningConfirmationState(node, this, mInternalTransportCallbacks, mStatusCallbacks);
-                mStatusCallbacks.onProvisioningStateChanged(mUnprovisionedMeshNode, ProvisioningState.States.PROVISIONING_AUTHENTICATION_OUTPUT_OOB_WAITING, data);
-                break;
-            case INPUT_OOB_AUTHENTICATION:
-                provisioningState = new ProvisioningInputCompleteState(node, mInternalTransportCallbacks, mStatusCallbacks);
-                mStatusCallbacks.onProvisioningStateChanged(mUnprovisionedMeshNode, ProvisioningState.States.PROVISIONING_AUTHENTICATION_INPUT_OOB_WAITING, data);
-                break;
-            default:
-                provisioningState = new ProvisioningConfirmationState(node, this, mInternalTransportCallbacks, mStatusCallbacks);
-                sendProvisioningConfirmation("");
-                break;
+    /**
+     * Sends the provisioning confirmation of the device that was identified last
+     *
+     * @param authentication authentication value input by the user this may be nullable depending on the OOB type selected by the user
+     */
+    void sendProvisioningConfirmation(@Nullable final String authentication) {
+        final ProvisioningSession session = mCurrentSession;
+        if (session != null) {
+            session.sendProvisioningConfirmation(authentication);
         }
     }
 
     /**
      * Sends the provisioning confirmation
      *
+     * @param uuid           Device UUID of the unprovisioned node
      * @param authentication authentication value input by the user this may be nullable depending on the OOB type selected by the user
      */
-    void sendProvisioningConfirmation(@Nullable final String authentication) {
-        final ProvisioningConfirmationState provisioningConfirmationState;
-        // Check if the current provisioning state, if the user had selected InputOOBAction the state will be ProvisioningInputCompleteState
-        if (provisioningState instanceof ProvisioningInputCompleteState) {
-            provisioningConfirmationState = new ProvisioningConfirmationState(mUnprovisionedMeshNode, this, mInternalTransportCallbacks, mStatusCallbacks);
-            provisioningState = provisioningConfirmationState;
-        } else {
-            provisioningConfirmationState = (ProvisioningConfirmationState) provisioningState;
-            provisioningConfirmationState.setProvisioningAuthentication(authentication);
+    void sendProvisioningConfirmation(@NonNull final UUID uuid, @Nullable final String authentication) {
+        final ProvisioningSession session = getSession(uuid);
+        if (session != null) {
+            session.sendProvisioningConfirmation(authentication);
         }
-        provisioningConfirmationState.executeSend();
     }
 
-    private boolean parseProvisioningInputCompleteState(@NonNull final byte[] data) {
-        final ProvisioningInputCompleteState inputCompleteState = (ProvisioningInputCompleteState) provisioningState;
-        return inputCompleteState.parseData(data);
+    /**
+     * Ends the provisioning session of a device, releasing the unicast addresses reserved for it.
+     *
+     * @param uuid Device UUID of the unprovisioned node
+     */
+    void cancel(@NonNull final UUID uuid) {
+        final ProvisioningSession session = getSession(uuid);
+        if (session != null) {
+            endSession(session);
+        }
     }
 
-    private boolean parseProvisioneeConfirmation(final byte[] data) {
-        final ProvisioningConfirmationState provisioningConfirmationState = (ProvisioningConfirmationState) provisioningState;
-        return provisioningConfirmationState.parseData(data);
+    /**
+     * Called by a session once the device has been provisioned.
+     *
+     * @param session             Provisioning session
+     * @param provisionedMeshNode Provisioned node
+     */
+    void onProvisioningCompleted(@NonNull final ProvisioningSession session,
+                                 @NonNull final ProvisionedMeshNode provisionedMeshNode) {
+        // Nodes are added to the network one at a time, after which the node covers the reserved addresses
+        synchronized (this) {
+            mInternalMeshManagerCallbacks.onNodeProvisioned(provisionedMeshNode,
+                    session.getMeshNode().getProvisioningCapabilities().getNumberOfElements());
+        }
+        endSession(session);
     }
 
-    private void sendRandomConfirmationPDU(final UnprovisionedMeshNode node) {
-        final ProvisioningRandomConfirmationState provisioningRandomConfirmation = new ProvisioningRandomConfirmationState(node, this, mInternalTransportCallbacks, mStatusCallbacks);
-        provisioningState = provisioningRandomConfirmation;
-        provisioningRandomConfirmation.executeSend();
+    /**
+     * Called by a session if provisioning the device failed.
+     *
+     * @param session Provisioning session
+     */
+    void onProvisioningFailed(@NonNull final ProvisioningSession session) {
+        endSession(session);
     }
 
-    private boolean parseProvisioneeRandom(final byte[] data) {
-        final ProvisioningRandomConfirmationState provisioningRandomConfirmation = (ProvisioningRandomConfirmationState) provisioningState;
-        return provisioningRandomConfirmation.parseData(data);
+    /**
+     * Called if provisioning the device could not be started, e.g. as no unicast address is available for it.
+     *
+     * @param node Identified unprovisioned node
+     */
+    void onProvisioningNotStarted(@NonNull final UnprovisionedMeshNode node) {
+        final MeshProvisioningStatusCallbacks callbacks = mStatusCallbacks;
+        if (callbacks != null) {
+            callbacks.onProvisioningFailed(node, ProvisioningState.States.PROVISIONING_FAILED, null);
+        }
     }
 
-    private void sendProvisioningData(final UnprovisionedMeshNode node) {
-        final ProvisioningDataState provisioningDataState = new ProvisioningDataState(node, this, mInternalTransportCallbacks, mStatusCallbacks);
-        provisioningState = provisioningDataState;
-        provisioningDataState.executeSend();
+    private void endSession(@NonNull final ProvisioningSession session) {
+        synchronized (this) {
+            final UUID uuid = session.getMeshNode().getDeviceUuid();
+            if (sessions.get(uuid) == session) {
+                sessions.remove(uuid);
+            }
+        }
+        releaseAddresses(session);
     }
 
-    private boolean validateMessage(final byte[] data) {
-        final ProvisioningState state = provisioningState;
-        return data[1] == state.getState().ordinal();
-
+    private void releaseAddresses(@NonNull final ProvisioningSession session) {
+        if (session.isAddressReserved()) {
+            session.setAddressReserved(false);
+            releaseAddresses(session.getMeshNode());
+        }
     }
 
-    /**
-     * Generates the confirmation inputs for a provisionee
-     *
-     * @param provisionerKeyXY xy components of the provisioner public key
-     * @param provisioneeKeyXY xy components of the provisionee public key
-     */
-    public final byte[] generateConfirmationInputs(final byte[] provisionerKeyXY,
-                                                   final byte[] provisioneeKeyXY) {
-        //invite: 1 bytes, capabilities: 11 bytes, start: 5 bytes, provisionerKey: 64 bytes, deviceKey: 64 bytes
-        //Append all the raw data together
-        if (confirmationInputs != null) {
-            return confirmationInputs;
+    private void releaseAddresses(@NonNull final UnprovisionedMeshNode node) {
+        final MeshNetwork network = mInternalTransportCallbacks.getMeshNetwork();
+        if (network != null) {
+            network.releaseUnicastAddresses(node.getUnicastAddress(), node.getNumberOfElements());
         }
-
-        //We must remove the first two bytes which is the pdu type and the provisioning pdu type
-        final int offset = 2;
-        final int inviteLength = mUnprovisionedMeshNode.getProvisioningInvitePdu().length - offset;
-        final ByteBuffer inviteBuffer = ByteBuffer.allocate(inviteLength).
-                put(mUnprovisionedMeshNode.getProvisioningInvitePdu(), offset, inviteLength);
-        final byte[] invite = inviteBuffer.array();
-
-        //We must remove the first two bytes which is the pdu type and the provisioning pdu type
-        final int capabilitiesLength = mUnprovisionedMeshNode.getProvisioningCapabilitiesPdu().length - offset;
-        final ByteBuffer capabilitiesBuffer = ByteBuffer.allocate(capabilitiesLength)
-                .put(mUnprovisionedMeshNode.getProvisioningCapabilitiesPdu(), offset, capabilitiesLength);
-        final byte[] capabilities = capabilitiesBuffer.array();
-
-        //We must remove the first two bytes which is the pdu type and the provisioning pdu type
-        final int startDataLength = mUnprovisionedMeshNode.getProvisioningStartPdu().length - offset;
-        final ByteBuffer startDataBuffer = ByteBuffer.allocate(startDataLength).
-                put(mUnprovisionedMeshNode.getProvisioningStartPdu(), offset, startDataLength);
-        final byte[] startData = startDataBuffer.array();//get(startData, 2, startDataLength);
-
-        final int length = invite.length +
-                capabilities.length +
-                startData.length +
-                provisionerKeyXY.length +
-                provisioneeKeyXY.length;
-
-        final ByteBuffer buffer = ByteBuffer.allocate(length);
-        buffer.put(invite);
-        buffer.put(capabilities);
-        buffer.put(startData);
-        buffer.put(provisionerKeyXY);
-        buffer.put(provisioneeKeyXY);
-        confirmationInputs = buffer.array();
-        return confirmationInputs;
     }
-}
+}
\ No newline at end of file
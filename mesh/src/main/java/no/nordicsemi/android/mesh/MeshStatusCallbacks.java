@@ -35,10 +35,14 @@ public interface MeshStatusCallbacks {
     /**
      * Notifies if a transaction has failed
      * <p>
-     * As of now this is only triggered if the incomplete timer has expired for a given segmented message.
+     * This is triggered if the incomplete timer has expired for a given segmented message.
      * The incomplete timer will wait for a minimum of 10 seconds on receiving a segmented message.
      * If all segments are not received during this period, that transaction shall be considered as failed.
      * </p>
+     * <p>
+     * This is also triggered with hasIncompleteTimerExpired set to false if no status message was received for an
+     * acknowledged message after all retries, see {@link MeshManagerApi#setAcknowledgedMessageTimeout(long, int)}.
+     * </p>
      *
      * @param dst                       Unique dst address of the device
      * @param hasIncompleteTimerExpired Flag that notifies if the incomplete timer had expired
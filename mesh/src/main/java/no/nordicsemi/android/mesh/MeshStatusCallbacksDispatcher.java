@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.transport.ControlMessage;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+
+/**
+ * Delivers the {@link MeshStatusCallbacks} on the callback executor chosen by the user.
+ */
+final class MeshStatusCallbacksDispatcher implements MeshStatusCallbacks {
+
+    private final MeshStatusCallbacks callbacks;
+    private final Executor executor;
+
+    MeshStatusCallbacksDispatcher(@NonNull final MeshStatusCallbacks callbacks, @NonNull final Executor executor) {
+        this.callbacks = callbacks;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onTransactionFailed(final int dst, final boolean hasIncompleteTimerExpired) {
+        executor.execute(() -> callbacks.onTransactionFailed(dst, hasIncompleteTimerExpired));
+    }
+
+    @Override
+    public void onUnknownPduReceived(final int src, final byte[] accessPayload) {
+        executor.execute(() -> callbacks.onUnknownPduReceived(src, accessPayload));
+    }
+
+    @Override
+    public void onBlockAcknowledgementProcessed(final int dst, @NonNull final ControlMessage message) {
+        executor.execute(() -> callbacks.onBlockAcknowledgementProcessed(dst, message));
+    }
+
+    @Override
+    public void onBlockAcknowledgementReceived(final int src, @NonNull final ControlMessage message) {
+        executor.execute(() -> callbacks.onBlockAcknowledgementReceived(src, message));
+    }
+
+    @Override
+    public void onMeshMessageProcessed(final int dst, @NonNull final MeshMessage meshMessage) {
+        executor.execute(() -> callbacks.onMeshMessageProcessed(dst, meshMessage));
+    }
+
+    @Override
+    public void onMeshMessageReceived(final int src, @NonNull final MeshMessage meshMessage) {
+        executor.execute(() -> callbacks.onMeshMessageReceived(src, meshMessage));
+    }
+
+    @Override
+    public void onMessageDecryptionFailed(final String meshLayer, final String errorMessage) {
+        executor.execute(() -> callbacks.onMessageDecryptionFailed(meshLayer, errorMessage));
+    }
+}
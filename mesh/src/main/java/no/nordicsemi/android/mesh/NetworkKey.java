@@ -68,6 +68,18 @@ public final class NetworkKey extends MeshKey {
     @Ignore
     private SecureUtils.K2Output oldDerivatives;
 
+    @Ignore
+    private byte[] networkId;
+
+    @Ignore
+    private byte[] oldNetworkId;
+
+    @Ignore
+    private byte[] beaconKey;
+
+    @Ignore
+    private byte[] oldBeaconKey;
+
     /**
      * Constructs a NetworkKey object with a given key index and network key
      *
@@ -80,6 +92,8 @@ public final class NetworkKey extends MeshKey {
         name = "Network Key " + (keyIndex + 1);
         identityKey = SecureUtils.calculateIdentityKey(key);
         derivatives = SecureUtils.calculateK2(key, SecureUtils.K2_MASTER_INPUT);
+        networkId = SecureUtils.calculateK3(key);
+        beaconKey = SecureUtils.calculateBeaconKey(key);
         timestamp = System.currentTimeMillis();
     }
 
@@ -96,6 +110,10 @@ public final class NetworkKey extends MeshKey {
         derivatives = in.readParcelable(SecureUtils.K2Output.class.getClassLoader());
         oldDerivatives = in.readParcelable(SecureUtils.K2Output.class.getClassLoader());
         timestamp = in.readLong();
+        networkId = SecureUtils.calculateK3(key);
+        beaconKey = SecureUtils.calculateBeaconKey(key);
+        oldNetworkId = SecureUtils.calculateK3(oldKey);
+        oldBeaconKey = SecureUtils.calculateBeaconKey(oldKey);
     }
 
     public static final Creator<NetworkKey> CREATOR = new Creator<NetworkKey>() {
@@ -151,6 +169,8 @@ public final class NetworkKey extends MeshKey {
         super.setKey(key);
         identityKey = SecureUtils.calculateIdentityKey(key);
         derivatives = SecureUtils.calculateK2(key, SecureUtils.K2_MASTER_INPUT);
+        networkId = SecureUtils.calculateK3(key);
+        beaconKey = SecureUtils.calculateBeaconKey(key);
     }
 
     @Override
@@ -158,6 +178,8 @@ public final class NetworkKey extends MeshKey {
         super.setOldKey(oldKey);
         oldIdentityKey = SecureUtils.calculateIdentityKey(oldKey);
         oldDerivatives = SecureUtils.calculateK2(oldKey, SecureUtils.K2_MASTER_INPUT);
+        oldNetworkId = SecureUtils.calculateK3(oldKey);
+        oldBeaconKey = SecureUtils.calculateBeaconKey(oldKey);
     }
 
     /**
@@ -330,12 +352,27 @@ public final class NetworkKey extends MeshKey {
     }
 
     byte[] getNetworkId() {
-        return SecureUtils.calculateK3(key);
+        return networkId;
     }
 
     @Nullable
     byte[] getOldNetworkId() {
-        return SecureUtils.calculateK3(oldKey);
+        return oldNetworkId;
+    }
+
+    /**
+     * Returns the beacon key derived from the current key
+     */
+    byte[] getBeaconKey() {
+        return beaconKey;
+    }
+
+    /**
+     * Returns the beacon key derived from the old key
+     */
+    @Nullable
+    byte[] getOldBeaconKey() {
+        return oldBeaconKey;
     }
 
 
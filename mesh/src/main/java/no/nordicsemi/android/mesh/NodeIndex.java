@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+/**
+ * Index of the provisioned nodes in a mesh network by unicast address and by UUID.
+ * <p>
+ * Nodes are keyed by the unicast address of their primary element. As element addresses of a node are consecutive and
+ * unicast address ranges of nodes never overlap, the only node that may own a given element address is the one with the
+ * greatest primary address lower or equal to it. This keeps lookups independent of the number of elements, which may
+ * change once the composition data of a node is received, without having to re-index the node.
+ * </p>
+ */
+final class NodeIndex {
+
+    private final TreeMap<Integer, ProvisionedMeshNode> addresses = new TreeMap<>();
+    private final Map<String, ProvisionedMeshNode> uuids = new HashMap<>();
+
+    NodeIndex(@NonNull final List<ProvisionedMeshNode> nodes) {
+        for (ProvisionedMeshNode node : nodes) {
+            add(node);
+        }
+    }
+
+    /**
+     * Adds a node to the index, replacing any node with the same primary address or UUID.
+     *
+     * @param node Node to be indexed
+     */
+    synchronized void add(@NonNull final ProvisionedMeshNode node) {
+        addresses.put(node.getUnicastAddress(), node);
+        if (node.getUuid() != null) {
+            uuids.put(key(node.getUuid()), node);
+        }
+    }
+
+    /**
+     * Removes a node from the index.
+     *
+     * @param node Node to be removed
+     */
+    synchronized void remove(@NonNull final ProvisionedMeshNode node) {
+        if (addresses.get(node.getUnicastAddress()) == node) {
+            addresses.remove(node.getUnicastAddress());
+        }
+        if (node.getUuid() != null && uuids.get(key(node.getUuid())) == node) {
+            uuids.remove(key(node.getUuid()));
+        }
+    }
+
+    /**
+     * Returns the node containing an element with the given unicast address.
+     *
+     * @param address Unicast address of an element
+     * @return the node or null if no node contains an element with the given address
+     */
+    @Nullable
+    synchronized ProvisionedMeshNode get(final int address) {
+        final Map.Entry<Integer, ProvisionedMeshNode> entry = addresses.floorEntry(address);
+        if (entry != null && entry.getValue().hasUnicastAddress(address)) {
+            return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the last element address of the node using an address between low and high. As the address ranges of
+     * nodes never overlap, only the node with the greatest primary address lower or equal to high needs to be checked.
+     *
+     * @param low  Lowest unicast address
+     * @param high Highest unicast address
+     * @return the last element address of the node, which may be greater than high, or low - 1 if none of the
+     * addresses are in use
+     */
+    synchronized int lastUsed(final int low, final int high) {
+        final Map.Entry<Integer, ProvisionedMeshNode> entry = addresses.floorEntry(high);
+        if (entry != null) {
+            // Nodes without composition data yet have no elements but still use their primary address
+            final int last = Math.max(entry.getKey(), entry.getValue().getLastUnicastAddress());
+            if (last >= low)
+                return last;
+        }
+        return low - 1;
+    }
+
+    /**
+     * Returns the node with the given UUID.
+     *
+     * @param uuid UUID of the node, case insensitive
+     * @return the node or null if no node exists with the given UUID
+     */
+    @Nullable
+    synchronized ProvisionedMeshNode get(@Nullable final String uuid) {
+        if (uuid == null)
+            return null;
+        return uuids.get(key(uuid));
+    }
+
+    private static String key(@NonNull final String uuid) {
+        return uuid.toUpperCase(Locale.US);
+    }
+}
@@ -19,6 +19,9 @@ public class NodeKey implements Parcelable {
     @Expose
     @SerializedName("updated")
     private boolean updated;
+    // Key Refresh Phase last reported by the node for a network key, stored locally to resume a Key Refresh Procedure
+    @SerializedName("phase")
+    private int phase;
 
     /**
      * Constructs a NodeKey
@@ -45,6 +48,7 @@ public class NodeKey implements Parcelable {
     private NodeKey(Parcel in) {
         index = in.readInt();
         updated = in.readByte() != 0;
+        phase = in.readInt();
     }
 
     public static final Creator<NodeKey> CREATOR = new Creator<NodeKey>() {
@@ -68,6 +72,7 @@ public class NodeKey implements Parcelable {
     public void writeToParcel(final Parcel dest, final int flags) {
         dest.writeInt(index);
         dest.writeByte((byte) (updated ? 1 : 0));
+        dest.writeInt(phase);
     }
 
     /**
@@ -93,4 +98,22 @@ public class NodeKey implements Parcelable {
     public void setUpdated(final boolean updated) {
         this.updated = updated;
     }
+
+    /**
+     * Returns the Key Refresh Phase of a network key on the node, as last reported by the node
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Sets the Key Refresh Phase of a network key on the node
+     *
+     * @param phase Key Refresh Phase
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void setPhase(final int phase) {
+        this.phase = phase;
+    }
 }
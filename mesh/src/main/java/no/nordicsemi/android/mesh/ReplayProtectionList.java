@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Replay Protection List, see Mesh Profile specification section 3.8.8.
+ * <p>
+ * The list contains the last SeqAuth, i.e. the IV Index and the sequence number, of every source address a message was
+ * received from. The sequence number of a segmented message is the one of its first segment, so the list is checked
+ * and updated by the lower transport layer once the message is complete. A message is a replay if its SeqAuth is not
+ * greater than the last one received from the same source.
+ * The list is persisted together with the network so that messages received before restarting can not be replayed.
+ * </p>
+ */
+public final class ReplayProtectionList {
+
+    /**
+     * Default maximum number of source addresses in the list.
+     */
+    public static final int DEFAULT_SIZE = 2048;
+
+    private final Map<Integer, Long> seqAuths;
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public ReplayProtectionList() {
+        this(new HashMap<>());
+    }
+
+    /**
+     * Constructs the list from a map of source addresses and their last SeqAuth values.
+     *
+     * @param seqAuths Last SeqAuth values keyed by source address
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public ReplayProtectionList(@NonNull final Map<Integer, Long> seqAuths) {
+        this.seqAuths = new HashMap<>(seqAuths);
+    }
+
+    private static long seqAuth(final int ivIndex, final int sequenceNumber) {
+        return ((ivIndex & 0xFFFFFFFFL) << 24) | (sequenceNumber & 0xFFFFFF);
+    }
+
+    /**
+     * Returns true if a message with the given sequence number and IV Index has already been received from the source.
+     *
+     * @param src            Source address
+     * @param sequenceNumber Sequence number of the message
+     * @param ivIndex        IV Index used to secure the message
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public synchronized boolean isReplayed(final int src, final int sequenceNumber, final int ivIndex) {
+        final Long last = seqAuths.get(src);
+        return last != null && seqAuth(ivIndex, sequenceNumber) <= last;
+    }
+
+    /**
+     * Records the SeqAuth of a message that was successfully authenticated.
+     * <p>
+     * When the list is full, entries with an IV Index older than the previous IV Index are removed first as any new message
+     * from those sources is newer by definition. If the list is still full, the message must be discarded.
+     * </p>
+     *
+     * @param src            Source address
+     * @param sequenceNumber Sequence number of the message
+     * @param ivIndex        IV Index used to secure the message
+     * @param maxSize        Maximum number of source addresses in the list
+     * @return true if recorded or false if the list is full and the message must be discarded
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public synchronized boolean update(final int src, final int sequenceNumber, final int ivIndex, final int maxSize) {
+        if (!seqAuths.containsKey(src) && seqAuths.size() >= maxSize) {
+            removeEntriesOlderThan(ivIndex - 1);
+            if (seqAuths.size() >= maxSize)
+                return false;
+        }
+        seqAuths.put(src, seqAuth(ivIndex, sequenceNumber));
+        return true;
+    }
+
+    private void removeEntriesOlderThan(final int ivIndex) {
+        final Iterator<Long> iterator = seqAuths.values().iterator();
+        while (iterator.hasNext()) {
+            if ((iterator.next() >>> 24) < (ivIndex & 0xFFFFFFFFL)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of source addresses in the list.
+     */
+    public synchronized int size() {
+        return seqAuths.size();
+    }
+
+    /**
+     * Returns a copy of the last SeqAuth values keyed by source address.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public synchronized Map<Integer, Long> getSeqAuths() {
+        return new HashMap<>(seqAuths);
+    }
+}
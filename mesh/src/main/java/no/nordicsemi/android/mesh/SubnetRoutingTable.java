@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import no.nordicsemi.android.mesh.utils.SecureUtils;
+
+/**
+ * Maps the 7-bit NID of a received Network PDU to the subnets that may have been used to encrypt it.
+ * <p>
+ * A Network Key contributes its current derivatives and, during a Key Refresh Procedure, the derivatives of the old key.
+ * Candidates of each NID are ordered so that the derivatives used for transmitting are tried first. The table is rebuilt
+ * by the network whenever a Network Key is added, updated, removed or moves to a different Key Refresh phase.
+ * </p>
+ * <p>
+ * Received Secure Network Beacons are routed to their subnet by the Network ID. Proxy nodes send the same beacon every
+ * few seconds, so the most recently authenticated beacons are cached and a repeated beacon is authenticated by comparing
+ * its bytes only.
+ * </p>
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class SubnetRoutingTable {
+
+    private static final int NID_COUNT = 0x80;
+    private static final int AUTHENTICATED_BEACON_CACHE_SIZE = 8;
+
+    private final List<List<Subnet>> subnets = new ArrayList<>(NID_COUNT);
+    private final List<Subnet> allSubnets = new ArrayList<>();
+    private final Map<ByteBuffer, Subnet> authenticatedBeacons =
+            new LinkedHashMap<ByteBuffer, Subnet>(AUTHENTICATED_BEACON_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, Subnet> eldest) {
+                    return size() > AUTHENTICATED_BEACON_CACHE_SIZE;
+                }
+            };
+
+    SubnetRoutingTable(@NonNull final List<NetworkKey> networkKeys) {
+        for (int i = 0; i < NID_COUNT; i++) {
+            subnets.add(Collections.emptyList());
+        }
+        for (NetworkKey networkKey : networkKeys) {
+            final boolean usesOldKey = networkKey.getTxDerivatives() != networkKey.getDerivatives();
+            add(createSubnet(networkKey, usesOldKey));
+            if (networkKey.getPhase() != NetworkKey.NORMAL_OPERATION) {
+                final Subnet subnet = createSubnet(networkKey, !usesOldKey);
+                if (subnet != null) {
+                    add(subnet);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static Subnet createSubnet(@NonNull final NetworkKey networkKey, final boolean oldKey) {
+        if (oldKey) {
+            if (networkKey.getOldDerivatives() == null)
+                return null;
+            return new Subnet(networkKey, networkKey.getOldDerivatives(), networkKey.getOldNetworkId(), networkKey.getOldBeaconKey());
+        }
+        return new Subnet(networkKey, networkKey.getDerivatives(), networkKey.getNetworkId(), networkKey.getBeaconKey());
+    }
+
+    private void add(@Nullable final Subnet subnet) {
+        if (subnet == null)
+            return;
+        allSubnets.add(subnet);
+        final int nid = subnet.getDerivatives().getNid() & 0x7F;
+        List<Subnet> list = subnets.get(nid);
+        if (list.isEmpty()) {
+            list = new ArrayList<>(1);
+            subnets.set(nid, list);
+        }
+        list.add(subnet);
+    }
+
+    /**
+     * Returns the subnets matching the given NID, or an empty list if the NID is unknown to the network.
+     *
+     * @param nid NID of the received Network PDU
+     */
+    @NonNull
+    public List<Subnet> getSubnets(final int nid) {
+        return subnets.get(nid & 0x7F);
+    }
+
+    /**
+     * Authenticates a received Secure Network Beacon and returns the subnet it belongs to.
+     *
+     * @param beacon Received Secure Network Beacon
+     * @return the subnet whose Network ID and beacon key match the beacon, or null if the beacon could not be authenticated
+     */
+    @Nullable
+    public synchronized Subnet authenticate(@NonNull final SecureNetworkBeacon beacon) {
+        final ByteBuffer beaconData = ByteBuffer.wrap(beacon.beaconData);
+        final Subnet cachedSubnet = authenticatedBeacons.get(beaconData);
+        if (cachedSubnet != null)
+            return cachedSubnet;
+
+        for (Subnet subnet : allSubnets) {
+            if (subnet.networkId == null || subnet.beaconKey == null || !Arrays.equals(subnet.networkId, beacon.getNetworkId()))
+                continue;
+
+            final byte[] authenticationValue = SecureUtils.calculateAuthValueSecureNetBeaconWithBeaconKey(subnet.beaconKey,
+                    beacon.getFlags(), subnet.networkId, beacon.getIvIndex().getIvIndex());
+            if (Arrays.equals(beacon.getAuthenticationValue(), Arrays.copyOf(authenticationValue, 8))) {
+                authenticatedBeacons.put(beaconData, subnet);
+                return subnet;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A Network Key together with the derivatives matching a given NID.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static final class Subnet {
+
+        private final NetworkKey networkKey;
+        private final SecureUtils.K2Output derivatives;
+        private final byte[] networkId;
+        private final byte[] beaconKey;
+
+        Subnet(@NonNull final NetworkKey networkKey,
+               @NonNull final SecureUtils.K2Output derivatives,
+               @Nullable final byte[] networkId,
+               @Nullable final byte[] beaconKey) {
+            this.networkKey = networkKey;
+            this.derivatives = derivatives;
+            this.networkId = networkId;
+            this.beaconKey = beaconKey;
+        }
+
+        /**
+         * Returns the Network Key
+         */
+        @NonNull
+        public NetworkKey getNetworkKey() {
+            return networkKey;
+        }
+
+        /**
+         * Returns the derivatives, either of the current or the old key, matching the NID
+         */
+        @NonNull
+        public SecureUtils.K2Output getDerivatives() {
+            return derivatives;
+        }
+    }
+}
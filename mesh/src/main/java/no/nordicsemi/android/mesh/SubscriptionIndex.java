@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.transport.Element;
+import no.nordicsemi.android.mesh.transport.MeshModel;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.PublicationSettings;
+import no.nordicsemi.android.mesh.utils.MeshAddress;
+
+/**
+ * Index of the models of the provisioned nodes by subscription address and by virtual publication address.
+ * <p>
+ * Each node is indexed as a whole and re-indexed when its configuration changes, so that looking up the members of a
+ * group only costs the number of members instead of a walk over every model of every node in the network.
+ * </p>
+ */
+final class SubscriptionIndex {
+
+    private final Map<Integer, List<Entry>> subscribers = new HashMap<>();
+    private final Map<Integer, List<Entry>> virtualPublishers = new HashMap<>();
+    private final Map<ProvisionedMeshNode, List<Integer>> subscribedAddresses = new IdentityHashMap<>();
+    private final Map<ProvisionedMeshNode, List<Integer>> publishedAddresses = new IdentityHashMap<>();
+
+    SubscriptionIndex(@NonNull final List<ProvisionedMeshNode> nodes) {
+        for (ProvisionedMeshNode node : nodes) {
+            add(node);
+        }
+    }
+
+    /**
+     * Adds the models of a node to the index, or re-indexes them if the node has already been indexed and its
+     * elements, subscriptions or publications have changed since.
+     *
+     * @param node Node to be indexed
+     */
+    synchronized void add(@NonNull final ProvisionedMeshNode node) {
+        remove(node);
+        final List<Integer> subscribed = new ArrayList<>();
+        final List<Integer> published = new ArrayList<>();
+        for (Element element : node.getElements().values()) {
+            for (MeshModel model : element.getMeshModels().values()) {
+                if (model == null)
+                    continue;
+                for (Integer address : model.getSubscribedAddresses()) {
+                    put(subscribers, address, new Entry(node, element, model));
+                    subscribed.add(address);
+                }
+                final PublicationSettings publicationSettings = model.getPublicationSettings();
+                if (publicationSettings != null && publicationSettings.getLabelUUID() != null) {
+                    final int address = MeshAddress.generateVirtualAddress(publicationSettings.getLabelUUID());
+                    put(virtualPublishers, address, new Entry(node, element, model));
+                    published.add(address);
+                }
+            }
+        }
+        subscribedAddresses.put(node, subscribed);
+        publishedAddresses.put(node, published);
+    }
+
+    /**
+     * Removes the models of a node from the index.
+     *
+     * @param node Node to be removed
+     */
+    synchronized void remove(@NonNull final ProvisionedMeshNode node) {
+        remove(subscribers, subscribedAddresses.remove(node), node);
+        remove(virtualPublishers, publishedAddresses.remove(node), node);
+    }
+
+    /**
+     * Returns the elements with at least one model subscribed to the given address.
+     *
+     * @param address Subscription address
+     */
+    @NonNull
+    synchronized List<Element> getElements(final int address) {
+        final List<Entry> list = subscribers.get(address);
+        if (list == null)
+            return new ArrayList<>();
+        final Set<Element> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Element> elements = new ArrayList<>();
+        for (Entry entry : list) {
+            if (added.add(entry.element)) {
+                elements.add(entry.element);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the models subscribed to the given address.
+     *
+     * @param address Subscription address
+     */
+    @NonNull
+    synchronized List<MeshModel> getModels(final int address) {
+        final List<Entry> list = subscribers.get(address);
+        if (list == null)
+            return new ArrayList<>();
+        final Set<MeshModel> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<MeshModel> models = new ArrayList<>();
+        for (Entry entry : list) {
+            if (added.add(entry.model)) {
+                models.add(entry.model);
+            }
+        }
+        return models;
+    }
+
+    /**
+     * Returns the Label UUID of a virtual address a model publishes or is subscribed to.
+     *
+     * @param address Virtual address
+     * @return the Label UUID or null if no model uses the given virtual address
+     */
+    @Nullable
+    synchronized UUID getLabelUuid(final int address) {
+        final List<Entry> publishers = virtualPublishers.get(address);
+        if (publishers != null) {
+            for (Entry entry : publishers) {
+                final PublicationSettings publicationSettings = entry.model.getPublicationSettings();
+                if (publicationSettings != null && publicationSettings.getLabelUUID() != null) {
+                    return publicationSettings.getLabelUUID();
+                }
+            }
+        }
+        final List<Entry> list = subscribers.get(address);
+        if (list != null) {
+            for (Entry entry : list) {
+                final UUID label = entry.model.getLabelUUID(address);
+                if (label != null) {
+                    return label;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static <T> void put(@NonNull final Map<Integer, List<T>> map, final int address, @NonNull final T value) {
+        List<T> list = map.get(address);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(address, list);
+        }
+        list.add(value);
+    }
+
+    private static void remove(@NonNull final Map<Integer, List<Entry>> map,
+                               @Nullable final List<Integer> addresses,
+                               @NonNull final ProvisionedMeshNode node) {
+        if (addresses == null)
+            return;
+        for (Integer address : addresses) {
+            final List<Entry> list = map.get(address);
+            if (list == null)
+                continue;
+            for (int i = list.size() - 1; i >= 0; i--) {
+                if (list.get(i).node == node) {
+                    list.remove(i);
+                }
+            }
+            if (list.isEmpty()) {
+                map.remove(address);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final ProvisionedMeshNode node;
+        final Element element;
+        final MeshModel model;
+
+        Entry(@NonNull final ProvisionedMeshNode node, @NonNull final Element element, @NonNull final MeshModel model) {
+            this.node = node;
+            this.element = element;
+            this.model = model;
+        }
+    }
+}
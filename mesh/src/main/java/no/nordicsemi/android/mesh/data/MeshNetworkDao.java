@@ -29,9 +29,11 @@ public interface MeshNetworkDao {
     void update(List<MeshNetwork> networks);
 
     @Query("UPDATE mesh_network SET mesh_name = :meshName, timestamp = :timestamp, partial =:partial, " +
-            "iv_index =:ivIndex, last_selected =:lastSelected, network_exclusions =:networkExclusions WHERE mesh_uuid = :meshUUID")
+            "iv_index =:ivIndex, last_selected =:lastSelected, network_exclusions =:networkExclusions, " +
+            "replay_protection_list =:replayProtectionList WHERE mesh_uuid = :meshUUID")
     void update(final String meshUUID, final String meshName, final long timestamp, final boolean partial,
-                final String ivIndex, final boolean lastSelected, final String networkExclusions);
+                final String ivIndex, final boolean lastSelected, final String networkExclusions,
+                final String replayProtectionList);
 
     @Delete
     void delete(final MeshNetwork meshNetwork);
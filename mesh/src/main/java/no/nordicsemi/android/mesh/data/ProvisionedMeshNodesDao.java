@@ -22,6 +22,12 @@ public interface ProvisionedMeshNodesDao {
     @Query("SELECT * from nodes WHERE mesh_uuid IS :meshUuid")
     List<ProvisionedMeshNode> getNodes(final String meshUuid);
 
+    /**
+     * Returns the nodes with the given UUIDs, which must be in upper case.
+     */
+    @Query("SELECT * from nodes WHERE mesh_uuid IS :meshUuid AND UPPER(uuid) IN (:uuids)")
+    List<ProvisionedMeshNode> getNodes(final String meshUuid, final List<String> uuids);
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(final List<ProvisionedMeshNode> provisionedMeshNode);
 
@@ -2,8 +2,10 @@ package no.nordicsemi.android.mesh.logger;
 
 import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 
 public final class MeshLogger {
 
@@ -17,25 +19,87 @@ public final class MeshLogger {
          */
         void log(int priority, String tag, String message);
     }
-    
+
+    /**
+     * Supplies a log message that is only built if the message will be logged.
+     */
+    public interface MessageSupplier {
+        String get();
+    }
+
     @Nullable
     private static LogHandler logHandler = null;
 
+    private static volatile int logLevel = Log.VERBOSE;
+
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public static void verbose(String tag, String message) {
         log(Log.VERBOSE, tag, message, null);
     }
 
+    /**
+     * Logs a verbose message where each "{}" in the message is replaced with the next argument.
+     * Byte arrays are formatted as hex strings. The message is only formatted if it will be logged.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void verbose(String tag, String message, Object arg) {
+        if (isLoggable(Log.VERBOSE)) {
+            log(Log.VERBOSE, tag, format(message, arg, null, 1), null);
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void verbose(String tag, String message, Object arg1, Object arg2) {
+        if (isLoggable(Log.VERBOSE)) {
+            log(Log.VERBOSE, tag, format(message, arg1, arg2, 2), null);
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void verbose(String tag, @NonNull MessageSupplier supplier) {
+        if (isLoggable(Log.VERBOSE)) {
+            log(Log.VERBOSE, tag, supplier.get(), null);
+        }
+    }
+
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public static void debug(String tag, String message) {
         log(Log.DEBUG, tag, message, null);
     }
 
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void debug(String tag, String message, Object arg) {
+        if (isLoggable(Log.DEBUG)) {
+            log(Log.DEBUG, tag, format(message, arg, null, 1), null);
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void debug(String tag, String message, Object arg1, Object arg2) {
+        if (isLoggable(Log.DEBUG)) {
+            log(Log.DEBUG, tag, format(message, arg1, arg2, 2), null);
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void debug(String tag, @NonNull MessageSupplier supplier) {
+        if (isLoggable(Log.DEBUG)) {
+            log(Log.DEBUG, tag, supplier.get(), null);
+        }
+    }
+
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public static void info(String tag, String message) {
         log(Log.INFO, tag, message, null);
     }
 
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void info(String tag, String message, Object arg) {
+        if (isLoggable(Log.INFO)) {
+            log(Log.INFO, tag, format(message, arg, null, 1), null);
+        }
+    }
+
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public static void warn(String tag, String message) {
         log(Log.WARN, tag, message, null);
@@ -55,7 +119,74 @@ public final class MeshLogger {
         MeshLogger.logHandler = logHandler;
     }
 
+    /**
+     * Sets the minimum priority of the messages that are logged. Messages with a lower priority are discarded
+     * before they are formatted. Defaults to {@link Log#VERBOSE}.
+     *
+     * @param priority One of {@link Log#VERBOSE}, {@link Log#DEBUG}, {@link Log#INFO}, {@link Log#WARN}, {@link Log#ERROR}
+     *                 or {@link Log#ASSERT} to disable logging.
+     */
+    public static void setLogLevel(int priority) {
+        MeshLogger.logLevel = priority;
+    }
+
+    /**
+     * Returns the minimum priority of the messages that are logged.
+     */
+    public static int getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Returns true if messages with the given priority will be logged.
+     *
+     * @param priority The priority/type of the log message.
+     */
+    public static boolean isLoggable(int priority) {
+        return priority >= logLevel;
+    }
+
+    /**
+     * Returns an object that formats the given bytes as a hex string only when {@link Object#toString()} is called.
+     *
+     * @param bytes Bytes to format
+     * @param add0x True to prefix the hex string with "0x"
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static Object hex(@Nullable final byte[] bytes, final boolean add0x) {
+        return new Object() {
+            @NonNull
+            @Override
+            public String toString() {
+                return MeshParserUtils.bytesToHex(bytes, add0x);
+            }
+        };
+    }
+
+    private static String format(String message, @Nullable Object arg1, @Nullable Object arg2, int count) {
+        final StringBuilder builder = new StringBuilder(message.length() + 32);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            final int index = message.indexOf("{}", start);
+            if (index < 0)
+                break;
+            builder.append(message, start, index).append(toString(i == 0 ? arg1 : arg2));
+            start = index + 2;
+        }
+        return builder.append(message, start, message.length()).toString();
+    }
+
+    private static String toString(@Nullable Object arg) {
+        if (arg instanceof byte[]) {
+            return MeshParserUtils.bytesToHex((byte[]) arg, false);
+        }
+        return String.valueOf(arg);
+    }
+
     private static void log(int priority, String tag, String message, @Nullable Throwable throwable) {
+        if (!isLoggable(priority))
+            return;
+
         String fullMessage = message;
         if (throwable != null) {
             fullMessage = fullMessage + "\n" + Log.getStackTraceString(throwable);
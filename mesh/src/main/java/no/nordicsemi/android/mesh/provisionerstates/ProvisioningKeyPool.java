@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.provisionerstates;
+
+import org.spongycastle.jce.ECNamedCurveTable;
+import org.spongycastle.jce.spec.ECParameterSpec;
+import org.spongycastle.jce.spec.ECPublicKeySpec;
+import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.crypto.KeyAgreement;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import no.nordicsemi.android.mesh.logger.MeshLogger;
+
+/**
+ * Pool of provisioner P-256 key pairs generated in the background.
+ * <p>
+ * Generating the provisioner key pair and calculating the ECDH shared secret are the most expensive steps of
+ * provisioning. The pool keeps a number of key pairs ready so that the provisioner public key can be sent without
+ * waiting for the key generation, and calculates the shared secret in the background. Each key pair is handed out once,
+ * so that every provisioning session still uses a fresh key pair.
+ * </p>
+ * <p>
+ * The shared secret is calculated on its own executor, so that a session waiting for it is never queued behind the
+ * key pairs being generated to refill the pool.
+ * </p>
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class ProvisioningKeyPool {
+    private static final String TAG = ProvisioningKeyPool.class.getSimpleName();
+    private static final String CURVE = "secp256r1";
+
+    private final int capacity;
+    private final ExecutorService keyPairExecutor;
+    private final ExecutorService secretExecutor;
+    private final Executor callbackExecutor;
+    private final ArrayDeque<KeyPair> keyPairs;
+    private int pendingKeyPairs;
+    private boolean closed;
+
+    /**
+     * Callbacks for the shared secret calculated in the background
+     */
+    public interface SecretCallbacks {
+
+        /**
+         * Invoked on the callback executor once the shared secret has been calculated.
+         *
+         * @param secret ECDH shared secret or null if the provisionee public key is invalid
+         */
+        void onSecretGenerated(@Nullable final byte[] secret);
+    }
+
+    /**
+     * Constructs the key pool and starts generating key pairs
+     *
+     * @param capacity         Number of key pairs kept ready
+     * @param callbackExecutor Executor on which the shared secret is delivered
+     */
+    public ProvisioningKeyPool(final int capacity, @NonNull final Executor callbackExecutor) {
+        this(capacity, callbackExecutor, Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor());
+    }
+
+    @VisibleForTesting
+    ProvisioningKeyPool(final int capacity,
+                        @NonNull final Executor callbackExecutor,
+                        @NonNull final ExecutorService keyPairExecutor,
+                        @NonNull final ExecutorService secretExecutor) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        this.capacity = capacity;
+        this.callbackExecutor = callbackExecutor;
+        this.keyPairExecutor = keyPairExecutor;
+        this.secretExecutor = secretExecutor;
+        this.keyPairs = new ArrayDeque<>(capacity);
+        refill();
+    }
+
+    /**
+     * Returns a key pair that has not been used before.
+     * <p>
+     * If the pool is empty, the key pair is generated on the calling thread. The pool is refilled in the background.
+     * </p>
+     */
+    @NonNull
+    public KeyPair take() throws GeneralSecurityException {
+        final KeyPair keyPair;
+        synchronized (this) {
+            keyPair = keyPairs.poll();
+        }
+        refill();
+        return keyPair != null ? keyPair : generateKeyPair();
+    }
+
+    /**
+     * Calculates the ECDH shared secret in the background, without waiting for the key pairs being generated.
+     *
+     * @param privateKey       Provisioner private key
+     * @param provisioneeKeyXY xy components of the provisionee public key
+     * @param callbacks        callbacks invoked on the callback executor
+     */
+    public void generateSecret(@NonNull final PrivateKey privateKey,
+                               @NonNull final byte[] provisioneeKeyXY,
+                               @NonNull final SecretCallbacks callbacks) {
+        final Runnable task = () -> {
+            final byte[] secret = generateSecretOrNull(privateKey, provisioneeKeyXY);
+            callbackExecutor.execute(() -> callbacks.onSecretGenerated(secret));
+        };
+        try {
+            secretExecutor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // The pool was closed while a session was still using it
+            task.run();
+        }
+    }
+
+    /**
+     * Discards the pooled key pairs and stops the background executors. Shared secrets that are already being
+     * calculated are still delivered.
+     */
+    public synchronized void close() {
+        closed = true;
+        keyPairs.clear();
+        keyPairExecutor.shutdownNow();
+        secretExecutor.shutdown();
+    }
+
+    private synchronized void refill() {
+        if (closed)
+            return;
+        for (int i = keyPairs.size() + pendingKeyPairs; i < capacity; i++) {
+            pendingKeyPairs++;
+            keyPairExecutor.execute(() -> {
+                KeyPair keyPair = null;
+                try {
+                    keyPair = generateKeyPair();
+                } catch (GeneralSecurityException ex) {
+                    MeshLogger.error(TAG, "Failed to generate key pair: " + ex.getMessage());
+                }
+                synchronized (ProvisioningKeyPool.this) {
+                    pendingKeyPairs--;
+                    if (keyPair != null && !closed) {
+                        keyPairs.add(keyPair);
+                    }
+                }
+            });
+        }
+    }
+
+    @Nullable
+    private static byte[] generateSecretOrNull(@NonNull final PrivateKey privateKey,
+                                               @NonNull final byte[] provisioneeKeyXY) {
+        try {
+            return generateSecret(privateKey, provisioneeKeyXY);
+        } catch (Exception ex) {
+            MeshLogger.error(TAG, "Failed to generate ECDH secret: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Generates a P-256 key pair
+     */
+    @NonNull
+    static KeyPair generateKeyPair() throws GeneralSecurityException {
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDH", "SC");
+        keyPairGenerator.initialize(ECNamedCurveTable.getParameterSpec(CURVE));
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    /**
+     * Calculates the ECDH shared secret
+     *
+     * @param privateKey       Provisioner private key
+     * @param provisioneeKeyXY xy components of the provisionee public key
+     */
+    @NonNull
+    static byte[] generateSecret(@NonNull final PrivateKey privateKey,
+                                 @NonNull final byte[] provisioneeKeyXY) throws GeneralSecurityException {
+        final BigInteger x = BigIntegers.fromUnsignedByteArray(provisioneeKeyXY, 0, 32);
+        final BigInteger y = BigIntegers.fromUnsignedByteArray(provisioneeKeyXY, 32, 32);
+
+        final ECParameterSpec ecParameters = ECNamedCurveTable.getParameterSpec(CURVE);
+        final ECPoint ecPoint = ecParameters.getCurve().validatePoint(x, y);
+
+        final KeyFactory keyFactory = KeyFactory.getInstance("ECDH", "SC");
+        final PublicKey publicKey = keyFactory.generatePublic(new ECPublicKeySpec(ecPoint, ecParameters));
+
+        final KeyAgreement keyAgreement = KeyAgreement.getInstance("ECDH", "SC");
+        keyAgreement.init(privateKey);
+        keyAgreement.doPhase(publicKey, true);
+        return keyAgreement.generateSecret();
+    }
+}
@@ -25,30 +25,18 @@ package no.nordicsemi.android.mesh.provisionerstates;
 
 import no.nordicsemi.android.mesh.logger.MeshLogger;
 
-import org.spongycastle.jce.ECNamedCurveTable;
-import org.spongycastle.jce.interfaces.ECPrivateKey;
 import org.spongycastle.jce.interfaces.ECPublicKey;
-import org.spongycastle.jce.spec.ECNamedCurveParameterSpec;
-import org.spongycastle.jce.spec.ECParameterSpec;
-import org.spongycastle.jce.spec.ECPublicKeySpec;
-import org.spongycastle.math.ec.ECCurve;
 import org.spongycastle.math.ec.ECPoint;
 import org.spongycastle.util.BigIntegers;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
-import java.security.InvalidKeyException;
-import java.security.KeyFactory;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
-import java.security.spec.InvalidKeySpecException;
-
-import javax.crypto.KeyAgreement;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import no.nordicsemi.android.mesh.InternalTransportCallbacks;
 import no.nordicsemi.android.mesh.MeshManagerApi;
 import no.nordicsemi.android.mesh.MeshProvisioningStatusCallbacks;
@@ -61,6 +49,7 @@ public class ProvisioningPublicKeyState extends ProvisioningState {
     private final MeshProvisioningStatusCallbacks provisioningStatusCallbacks;
     private final UnprovisionedMeshNode node;
     private final InternalTransportCallbacks internalTransportCallbacks;
+    private final ProvisioningKeyPool keyPool;
 
     private PrivateKey mProvisionerPrivateKey;
 
@@ -74,10 +63,26 @@ public class ProvisioningPublicKeyState extends ProvisioningState {
     public ProvisioningPublicKeyState(final UnprovisionedMeshNode node,
                                       final InternalTransportCallbacks internalTransportCallbacks,
                                       final MeshProvisioningStatusCallbacks provisioningStatusCallbacks) {
+        this(node, internalTransportCallbacks, provisioningStatusCallbacks, null);
+    }
+
+    /**
+     * Constructs the provisioning public key state using pre-generated key pairs.
+     *
+     * @param node                        {@link UnprovisionedMeshNode} node.
+     * @param internalTransportCallbacks  {@link InternalTransportCallbacks} callbacks.
+     * @param provisioningStatusCallbacks {@link MeshProvisioningStatusCallbacks} callbacks.
+     * @param keyPool                     {@link ProvisioningKeyPool} or null to generate the key pair when sending the public key.
+     */
+    public ProvisioningPublicKeyState(final UnprovisionedMeshNode node,
+                                      final InternalTransportCallbacks internalTransportCallbacks,
+                                      final MeshProvisioningStatusCallbacks provisioningStatusCallbacks,
+                                      @Nullable final ProvisioningKeyPool keyPool) {
         super();
         this.node = node;
         this.provisioningStatusCallbacks = provisioningStatusCallbacks;
         this.internalTransportCallbacks = internalTransportCallbacks;
+        this.keyPool = keyPool;
     }
 
     @Override
@@ -95,22 +100,65 @@ public class ProvisioningPublicKeyState extends ProvisioningState {
 
     @Override
     public boolean parseData(@NonNull final byte[] data) {
+        onProvisioneePublicKeyReceived(data);
+        node.setSharedECDHSecret(generateSharedECDHSecret(data));
+        return true;
+    }
+
+    /**
+     * Parses the provisionee public key and calculates the shared ECDH secret.
+     * <p>
+     * If a {@link ProvisioningKeyPool} is used, the secret is calculated in the background and the callback is invoked
+     * on the callback executor of the pool, otherwise it is invoked before this method returns.
+     * </p>
+     *
+     * @param data      xy components of the provisionee public key
+     * @param callbacks callbacks invoked once the shared secret is available, with null if it could not be calculated
+     */
+    public void parseData(@NonNull final byte[] data, @NonNull final ProvisioningKeyPool.SecretCallbacks callbacks) {
+        onProvisioneePublicKeyReceived(data);
+        if (keyPool == null) {
+            final byte[] secret = generateSharedECDHSecret(data);
+            node.setSharedECDHSecret(secret);
+            callbacks.onSecretGenerated(secret);
+        } else {
+            keyPool.generateSecret(mProvisionerPrivateKey, data, secret -> {
+                if (secret != null) {
+                    MeshLogger.verbose(TAG, "ECDH Secret: " + MeshParserUtils.bytesToHex(secret, false));
+                    node.setSharedECDHSecret(secret);
+                }
+                callbacks.onSecretGenerated(secret);
+            });
+        }
+    }
+
+    private void onProvisioneePublicKeyReceived(final byte[] xy) {
         if (node.getProvisioneePublicKeyXY() == null) {
-            provisioningStatusCallbacks.onProvisioningStateChanged(node, States.PROVISIONING_PUBLIC_KEY_RECEIVED, data);
+            provisioningStatusCallbacks.onProvisioningStateChanged(node, States.PROVISIONING_PUBLIC_KEY_RECEIVED, xy);
+            node.setProvisioneePublicKeyXY(xy);
+        } else {
+            // Mark the node as secure if the provisionee public key is not null.
+            // This would assume that the key was obtained via an OOB method and is provided by the
+            // user before starting provisioning.
+            node.setSecure(true);
         }
-        generateSharedECDHSecret(data);
-        return true;
+
+        final byte[] xComponent = new byte[32];
+        System.arraycopy(xy, 0, xComponent, 0, xComponent.length);
+
+        final byte[] yComponent = new byte[32];
+        System.arraycopy(xy, 32, yComponent, 0, xComponent.length);
+
+        MeshLogger.verbose(TAG, "Provisionee X: " + MeshParserUtils.bytesToHex(yComponent, false));
+        MeshLogger.verbose(TAG, "Provisionee Y: " + MeshParserUtils.bytesToHex(xComponent, false));
     }
 
     private void generateKeyPairs() {
         try {
-            final ECNamedCurveParameterSpec parameterSpec = ECNamedCurveTable.getParameterSpec("secp256r1");
-            final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDH", "SC");
-            keyPairGenerator.initialize(parameterSpec);
-            final KeyPair keyPair = keyPairGenerator.generateKeyPair();
+            final KeyPair keyPair = keyPool != null ? keyPool.take() : ProvisioningKeyPool.generateKeyPair();
             final ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
 
-            mProvisionerPrivateKey = (ECPrivateKey) keyPair.getPrivate();
+            mProvisionerPrivateKey = keyPair.getPrivate();
 
             final ECPoint point = publicKey.getQ();
 
@@ -143,54 +191,14 @@ public class ProvisioningPublicKeyState extends ProvisioningState {
         return buffer.array();
     }
 
-    private void generateSharedECDHSecret(final byte[] xy) {
-        if(node.getProvisioneePublicKeyXY() == null) {
-            node.setProvisioneePublicKeyXY(xy);
-        } else {
-            // Mark the node as secure if the provisionee public key is not null.
-            // This would assume that the key was obtained via an OOB method and is provided by the
-            // user before starting provisioning.
-            node.setSecure(true);
-        }
-
-        final byte[] xComponent = new byte[32];
-        System.arraycopy(xy, 0, xComponent, 0, xComponent.length);
-
-        final byte[] yComponent = new byte[32];
-        System.arraycopy(xy, 32, yComponent, 0, xComponent.length);
-
-        MeshLogger.verbose(TAG, "Provisionee X: " + MeshParserUtils.bytesToHex(yComponent, false));
-        MeshLogger.verbose(TAG, "Provisionee Y: " + MeshParserUtils.bytesToHex(xComponent, false));
-
-        final BigInteger x = BigIntegers.fromUnsignedByteArray(xy, 0, 32);
-        final BigInteger y = BigIntegers.fromUnsignedByteArray(xy, 32, 32);
-
-        final ECParameterSpec ecParameters = ECNamedCurveTable.getParameterSpec("secp256r1");
-        ECCurve curve = ecParameters.getCurve();
-        ECPoint ecPoint = curve.validatePoint(x, y);
-
-        ECPublicKeySpec keySpec = new ECPublicKeySpec(ecPoint, ecParameters);
-        KeyFactory keyFactory;
+    private byte[] generateSharedECDHSecret(final byte[] xy) {
         try {
-            keyFactory = KeyFactory.getInstance("ECDH", "SC");
-            ECPublicKey publicKey = (ECPublicKey) keyFactory.generatePublic(keySpec);
-
-            KeyAgreement a = KeyAgreement.getInstance("ECDH", "SC");
-            a.init(mProvisionerPrivateKey);
-            a.doPhase(publicKey, true);
-
-            final byte[] sharedECDHSecret = a.generateSecret();
-            node.setSharedECDHSecret(sharedECDHSecret);
+            final byte[] sharedECDHSecret = ProvisioningKeyPool.generateSecret(mProvisionerPrivateKey, xy);
             MeshLogger.verbose(TAG, "ECDH Secret: " + MeshParserUtils.bytesToHex(sharedECDHSecret, false));
-
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        } catch (NoSuchProviderException e) {
-            e.printStackTrace();
-        } catch (InvalidKeySpecException e) {
-            e.printStackTrace();
-        } catch (InvalidKeyException e) {
+            return sharedECDHSecret;
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
+            return null;
         }
     }
 }
@@ -22,8 +22,6 @@
 
 package no.nordicsemi.android.mesh.transport;
 
-import android.content.Context;
-import android.os.Handler;
 import no.nordicsemi.android.mesh.logger.MeshLogger;
 
 import java.nio.ByteBuffer;
@@ -31,8 +29,8 @@ import java.nio.ByteOrder;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
+import no.nordicsemi.android.mesh.MeshExecutor;
 
-import static no.nordicsemi.android.mesh.utils.MeshParserUtils.bytesToHex;
 import static no.nordicsemi.android.mesh.utils.MeshParserUtils.createVendorOpCode;
 import static no.nordicsemi.android.mesh.utils.MeshParserUtils.getOpCode;
 import static no.nordicsemi.android.mesh.utils.MeshParserUtils.getOpCodeLength;
@@ -47,12 +45,9 @@ import static no.nordicsemi.android.mesh.utils.MeshParserUtils.unsignedByteToInt
 abstract class AccessLayer {
 
     private static final String TAG = AccessLayer.class.getSimpleName();
-    protected Context mContext;
-    Handler mHandler;
+    MeshExecutor mExecutor;
     ProvisionedMeshNode mMeshNode;
 
-    protected abstract void initHandler();
-
     /**
      * Creates an access message
      *
@@ -90,7 +85,7 @@ abstract class AccessLayer {
         }
         final byte[] accessPdu = accessMessageBuffer.array();
 
-        MeshLogger.verbose(TAG, "Created Access PDU " + bytesToHex(accessPdu, false));
+        MeshLogger.verbose(TAG, "Created Access PDU {}", accessPdu);
         accessMessage.setAccessPdu(accessMessageBuffer.array());
     }
 
@@ -114,7 +109,7 @@ abstract class AccessLayer {
             accessMessageBuffer.put(vendorOpcode);
         }
         final byte[] accessPdu = accessMessageBuffer.array();
-        MeshLogger.verbose(TAG, "Created Access PDU " + bytesToHex(accessPdu, false));
+        MeshLogger.verbose(TAG, "Created Access PDU {}", accessPdu);
         accessMessage.setAccessPdu(accessPdu);
     }
 
@@ -136,6 +131,6 @@ abstract class AccessLayer {
         final ByteBuffer paramsBuffer = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
         paramsBuffer.put(accessPayload, opCodeLength, length);
         message.setParameters(paramsBuffer.array());
-        MeshLogger.verbose(TAG, "Received Access PDU " + bytesToHex(accessPayload, false));
+        MeshLogger.verbose(TAG, "Received Access PDU {}", accessPayload);
     }
 }
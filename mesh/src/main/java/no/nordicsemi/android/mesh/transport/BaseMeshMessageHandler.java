@@ -36,18 +36,20 @@ import java.util.UUID;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import no.nordicsemi.android.mesh.InternalTransportCallbacks;
+import no.nordicsemi.android.mesh.MeshExecutor;
 import no.nordicsemi.android.mesh.MeshManagerApi;
 import no.nordicsemi.android.mesh.MeshNetwork;
 import no.nordicsemi.android.mesh.MeshStatusCallbacks;
-import no.nordicsemi.android.mesh.NetworkKey;
+import no.nordicsemi.android.mesh.ReplayProtectionList;
+import no.nordicsemi.android.mesh.SubnetRoutingTable;
 import no.nordicsemi.android.mesh.utils.ExtendedInvalidCipherTextException;
 import no.nordicsemi.android.mesh.utils.MeshAddress;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 import no.nordicsemi.android.mesh.utils.SecureUtils;
 
-import static no.nordicsemi.android.mesh.transport.NetworkLayer.createNetworkNonce;
-import static no.nordicsemi.android.mesh.transport.NetworkLayer.createProxyNonce;
-import static no.nordicsemi.android.mesh.transport.NetworkLayer.deObfuscateNetworkHeader;
+import static no.nordicsemi.android.mesh.core.NetworkCrypto.createNetworkNonce;
+import static no.nordicsemi.android.mesh.core.NetworkCrypto.createProxyNonce;
+import static no.nordicsemi.android.mesh.core.NetworkCrypto.deObfuscateNetworkHeader;
 
 /**
  * Abstract class that handles mesh messages
@@ -57,22 +59,28 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
     private static final String TAG = BaseMeshMessageHandler.class.getSimpleName();
 
     protected final Context mContext;
+    private final MeshExecutor mExecutor;
     protected final InternalTransportCallbacks mInternalTransportCallbacks;
     private final NetworkLayerCallbacks networkLayerCallbacks;
     private final UpperTransportLayerCallbacks upperTransportLayerCallbacks;
     protected MeshStatusCallbacks mStatusCallbacks;
     private final SparseArray<MeshTransport> transportSparseArray = new SparseArray<>();
     private final SparseArray<MeshMessageState> stateSparseArray = new SparseArray<>();
+    private final NetworkMessageCache networkMessageCache = new NetworkMessageCache(NetworkMessageCache.DEFAULT_SIZE);
+    private int replayProtectionListSize = ReplayProtectionList.DEFAULT_SIZE;
+    private final MeshMessageScheduler scheduler;
 
     /**
      * Constructs BaseMessageHandler
      *
      * @param context                      Context
+     * @param executor                     {@link MeshExecutor} running the transports and their timers
      * @param internalTransportCallbacks   {@link InternalTransportCallbacks} Callbacks
      * @param networkLayerCallbacks        {@link NetworkLayerCallbacks} network layer callbacks
      * @param upperTransportLayerCallbacks {@link UpperTransportLayerCallbacks} upper transport layer callbacks
      */
     protected BaseMeshMessageHandler(@NonNull final Context context,
+                                     @NonNull final MeshExecutor executor,
                                      @NonNull final InternalTransportCallbacks internalTransportCallbacks,
                                      @NonNull final NetworkLayerCallbacks networkLayerCallbacks,
                                      @NonNull final UpperTransportLayerCallbacks upperTransportLayerCallbacks) {
@@ -80,6 +88,18 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
         this.mInternalTransportCallbacks = internalTransportCallbacks;
         this.networkLayerCallbacks = networkLayerCallbacks;
         this.upperTransportLayerCallbacks = upperTransportLayerCallbacks;
+        this.mExecutor = executor;
+        this.scheduler = new MeshMessageScheduler(this::sendMeshMessage, new MeshMessageScheduler.Timer() {
+            @Override
+            public void schedule(@NonNull final Runnable task, final long delay) {
+                executor.schedule(task, delay);
+            }
+
+            @Override
+            public void cancel(@NonNull final Runnable task) {
+                executor.cancel(task);
+            }
+        }, this::onTransactionTimedOut);
     }
 
     /**
@@ -89,6 +109,40 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
      */
     protected abstract void setMeshStatusCallbacks(@NonNull final MeshStatusCallbacks statusCallbacks);
 
+    /**
+     * Sets the maximum number of source addresses kept in the {@link ReplayProtectionList} of the network.
+     *
+     * @param size maximum number of source addresses
+     */
+    public void setReplayProtectionListSize(final int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Replay protection list size must be greater than 0");
+        replayProtectionListSize = size;
+    }
+
+    /**
+     * Sets the maximum number of acknowledged messages that are sent without waiting for their status messages.
+     * Further messages are queued and sent as status messages are received.
+     *
+     * @param perNode Maximum number of acknowledged messages in flight to a single node
+     * @param total   Maximum number of acknowledged messages in flight to all nodes
+     */
+    public void setMaxAcknowledgedMessagesInFlight(final int perNode, final int total) {
+        scheduler.setMaxInFlight(perNode, total);
+    }
+
+    /**
+     * Sets how long to wait for the status message acknowledging a message before the message is sent again.
+     * The timeout is doubled after each retry. If no status message is received after the last retry,
+     * {@link MeshStatusCallbacks#onTransactionFailed(int, boolean)} is invoked.
+     *
+     * @param timeout    Time to wait for the first status message in milliseconds
+     * @param retryCount Number of times a message is sent again
+     */
+    public void setAcknowledgedMessageTimeout(final long timeout, final int retryCount) {
+        scheduler.setResponseTimeout(timeout, retryCount);
+    }
+
     /**
      * Parse the mesh network/proxy pdus
      * <p>
@@ -99,90 +153,106 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
      * @param network {@link MeshNetwork}
      */
     protected void parseMeshPduNotifications(@NonNull final byte[] pdu, @NonNull final MeshNetwork network) throws ExtendedInvalidCipherTextException {
-        final List<NetworkKey> networkKeys = network.getNetKeys();
         final int ivi = ((pdu[1] & 0xFF) >>> 7) & 0x01;
         final int nid = pdu[1] & 0x7F;
+        // Only the subnets with a matching NID are considered, which is usually just one.
+        final List<SubnetRoutingTable.Subnet> subnets = network.getSubnetRoutingTable().getSubnets(nid);
+        if (subnets.isEmpty())
+            return;
+
+        // The IVI contains the least significant bit of the IV Index used to secure the PDU, which is either the
+        // current IV Index or the previous one during an IV Update procedure.
         final int acceptedIvIndex = network.getIvIndex().getIvIndex();
-        int ivIndex = acceptedIvIndex == 0 ? 0 : acceptedIvIndex - 1;
-        int tempIvIndex = ivIndex;
-        NetworkKey networkKey = null;
-        SecureUtils.K2Output k2Output = null;
-        byte[] networkHeader = null;
-        int ctlTtl = 0;
-        int ctl = 0;
-        int src = 0;
-        ProvisionedMeshNode node = null;
-        while (tempIvIndex <= ivIndex + 1) {
-            //Here we go through all the network keys and filter out network keys based on the nid.
-            for (int i = 0; i < networkKeys.size(); i++) {
-                networkKey = networkKeys.get(i);
-                k2Output = getMatchingK2Output(networkKey, nid);
-                if (k2Output != null) {
-                    networkHeader = deObfuscateNetworkHeader(pdu, MeshParserUtils.intToBytes(tempIvIndex), k2Output.getPrivacyKey());
-                    ctlTtl = networkHeader[0];
-                    ctl = (ctlTtl >> 7) & 0x01;
-                    src = MeshParserUtils.unsignedBytesToInt(networkHeader[5], networkHeader[4]);
-                    // Check if the src is known to the network and if found let's break
-                    // Note a node may not be found if there are two provisioners are operating independently without syncing the network.
-                    node = network.getNode(src);
-                    if (node != null) {
-                        break;
-                    }
-                }
-            }
+        final int ivIndex = (acceptedIvIndex & 0x01) == ivi ? acceptedIvIndex : acceptedIvIndex - 1;
+        if (ivIndex < 0)
+            return;
+
+        InvalidCipherTextException exception = null;
+        for (SubnetRoutingTable.Subnet subnet : subnets) {
+            final SecureUtils.K2Output k2Output = subnet.getDerivatives();
+            final byte[] networkHeader = deObfuscateNetworkHeader(pdu, ivIndex, k2Output.getPrivacyCipher());
+            final int ctlTtl = networkHeader[0];
+            final int ctl = (ctlTtl >> 7) & 0x01;
+            final int src = MeshParserUtils.unsignedBytesToInt(networkHeader[5], networkHeader[4]);
+            // Check if the src is known to the network.
+            // Note a node may not be found if there are two provisioners are operating independently without syncing the network.
+            final ProvisionedMeshNode node = network.getNode(src);
+            if (node == null)
+                continue;
+
+            // Duplicate PDUs are discarded before spending a decryption on them. Replayed messages are discarded by
+            // the lower transport layer once complete, as segments may be received out of order.
+            final int seq = MeshParserUtils.unsignedBytesToInt(networkHeader[3], networkHeader[2])
+                    | ((networkHeader[1] & 0xFF) << 16);
+            if (networkMessageCache.contains(src, seq, ivIndex))
+                return;
+
             // IF the node was found we can safely try to decrypt message with the network key which we found src of the message.
-            if(node != null && k2Output != null) {
-                final byte[] sequenceNumber = ByteBuffer.allocate(3).order(ByteOrder.BIG_ENDIAN).put(networkHeader, 1, 3).array();
-                MeshLogger.verbose(TAG, "Sequence number of received Network PDU: " + MeshParserUtils.convert24BitsToInt(sequenceNumber));
-                //TODO validate ivi
-                byte[] nonce;
-                try {
-                    final int networkPayloadLength = pdu.length - (2 + networkHeader.length);
-                    final byte[] transportPdu = new byte[networkPayloadLength];
-                    System.arraycopy(pdu, 8, transportPdu, 0, networkPayloadLength);
-                    final byte[] decryptedPayload;
-                    final MeshMessageState state;
-                    if (pdu[0] == MeshManagerApi.PDU_TYPE_NETWORK) {
-                        nonce = createNetworkNonce((byte) ctlTtl, sequenceNumber, src, MeshParserUtils.intToBytes(tempIvIndex));
-                        decryptedPayload = SecureUtils.decryptCCM(transportPdu, k2Output.getEncryptionKey(), nonce, SecureUtils.getNetMicLength(ctl));
-                        state = getState(src);
-                    } else {
-                        nonce = createProxyNonce(sequenceNumber, src, MeshParserUtils.intToBytes(tempIvIndex));
-                        decryptedPayload = SecureUtils.decryptCCM(transportPdu, k2Output.getEncryptionKey(), nonce, SecureUtils.getNetMicLength(ctl));
-                        state = getState(MeshAddress.UNASSIGNED_ADDRESS);
-                    }
-                    if (state != null) {
-                        //TODO look in to proxy filter messages
-                        ((DefaultNoOperationMessageState) state).parseMeshPdu(networkKey, node, pdu, networkHeader, decryptedPayload, tempIvIndex, sequenceNumber);
-                        return;
-                    }
-                } catch (InvalidCipherTextException ex) {
-                    throw new ExtendedInvalidCipherTextException(ex.getMessage(), ex.getCause(), TAG);
+            final byte[] sequenceNumber = ByteBuffer.allocate(3).order(ByteOrder.BIG_ENDIAN).put(networkHeader, 1, 3).array();
+            MeshLogger.verbose(TAG, "Sequence number of received Network PDU: {}", seq);
+            try {
+                final int networkPayloadLength = pdu.length - (2 + networkHeader.length);
+                final byte[] nonce;
+                final MeshMessageState state;
+                if (pdu[0] == MeshManagerApi.PDU_TYPE_NETWORK) {
+                    nonce = createNetworkNonce(ctlTtl, seq, src, ivIndex);
+                    state = getState(src);
+                } else {
+                    nonce = createProxyNonce(seq, src, ivIndex);
+                    state = getState(MeshAddress.UNASSIGNED_ADDRESS);
                 }
+                final byte[] decryptedPayload = k2Output.getEncryptionCipher()
+                        .decryptCCM(pdu, 8, networkPayloadLength, nonce, null, SecureUtils.getNetMicLength(ctl));
+                networkMessageCache.add(src, seq, ivIndex);
+                if (state != null) {
+                    //TODO look in to proxy filter messages
+                    ((DefaultNoOperationMessageState) state).parseMeshPdu(subnet.getNetworkKey(), node, pdu, networkHeader, decryptedPayload, ivIndex, sequenceNumber);
+                }
+                return;
+            } catch (InvalidCipherTextException ex) {
+                // Another subnet may share the same NID, in which case the PDU may still be decrypted using its key.
+                exception = ex;
             }
-            tempIvIndex++;
         }
-    }
-
-    /**
-     * Returns the K2output for a given Network Key matching the received NID
-     *
-     * @param networkKey NetworkKey
-     * @param nid        NID
-     * @return {@link SecureUtils.K2Output} or null if the NID doesn't match.
-     */
-    private SecureUtils.K2Output getMatchingK2Output(@NonNull final NetworkKey networkKey, final int nid) {
-        if (nid == networkKey.getDerivatives().getNid())
-            return networkKey.getDerivatives();
-        else if (networkKey.getOldDerivatives() != null && nid == networkKey.getOldDerivatives().getNid())
-            return networkKey.getOldDerivatives();
-        return null;
+        if (exception != null) {
+            throw new ExtendedInvalidCipherTextException(exception.getMessage(), exception.getCause(), TAG);
+        }
     }
 
     @Override
     public final void onIncompleteTimerExpired(final int address) {
         //We switch no operation state if the incomplete timer has expired so that we don't wait on the same state if a particular message fails.
         stateSparseArray.put(address, toggleState(getTransport(address), getState(address).getMeshMessage()));
+        scheduler.onTransactionFailed(address);
+    }
+
+    @Nullable
+    @Override
+    public final MeshMessage getPendingMessage(final int address, final int opCode) {
+        return scheduler.getPendingMessage(address, opCode);
+    }
+
+    @Override
+    public final void onResponseReceived(final int address, final int opCode) {
+        scheduler.onResponseReceived(address, opCode);
+    }
+
+    /**
+     * Invoked when no status message was received for an acknowledged message after all retries.
+     *
+     * @param transaction transaction that timed out
+     */
+    private void onTransactionTimedOut(@NonNull final MeshMessageScheduler.Transaction transaction) {
+        final int dst = transaction.dst;
+        MeshLogger.warn(TAG, "No response received from " + MeshAddress.formatAddress(dst, true) +
+                " after " + transaction.attempts + " attempts");
+        // Other messages may still be in flight to the same node, in which case their state is kept.
+        if (!scheduler.hasInFlight(dst)) {
+            stateSparseArray.put(dst, toggleState(getTransport(dst), transaction.meshMessage));
+        }
+        if (mStatusCallbacks != null) {
+            mStatusCallbacks.onTransactionFailed(dst, false);
+        }
     }
 
     /**
@@ -210,6 +280,29 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
         return state;
     }
 
+    /**
+     * Checks a complete access message against the {@link ReplayProtectionList} of the network and records its SeqAuth.
+     * The list is written with the next coalesced write of the network.
+     *
+     * @param src            Source address of the message
+     * @param ivIndex        IV Index used to secure the message
+     * @param sequenceNumber Sequence number of the message, or of its first segment if the message was segmented
+     * @return true if the message is new, or false if it is a replay or the list is full
+     */
+    private boolean acceptMessage(final int src, final int ivIndex, final int sequenceNumber) {
+        final ReplayProtectionList replayProtectionList = mInternalTransportCallbacks.getMeshNetwork().getReplayProtectionList();
+        if (replayProtectionList.isReplayed(src, sequenceNumber, ivIndex)) {
+            MeshLogger.verbose(TAG, () -> "Discarding replayed message from " + MeshAddress.formatAddress(src, true) + ", SeqAuth: " + sequenceNumber);
+            return false;
+        }
+        if (!replayProtectionList.update(src, sequenceNumber, ivIndex, replayProtectionListSize)) {
+            MeshLogger.warn(TAG, "Replay protection list is full, discarding message from " + MeshAddress.formatAddress(src, true));
+            return false;
+        }
+        mInternalTransportCallbacks.onReplayProtectionListUpdated();
+        return true;
+    }
+
     /**
      * Returns the existing transport of the node or a new transport if nothing exists
      *
@@ -218,9 +311,10 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
     private MeshTransport getTransport(final int address) {
         MeshTransport transport = transportSparseArray.get(address);
         if (transport == null) {
-            transport = new MeshTransport(mContext);
+            transport = new MeshTransport(mExecutor);
             transport.setNetworkLayerCallbacks(networkLayerCallbacks);
             transport.setUpperTransportLayerCallbacks(upperTransportLayerCallbacks);
+            transport.setReplayProtection(this::acceptMessage);
             transportSparseArray.put(address, transport);
         }
         return transport;
@@ -233,22 +327,48 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
      */
     public void resetState(final int address) {
         stateSparseArray.remove(address);
-        transportSparseArray.remove(address);
+        final MeshTransport transport = transportSparseArray.get(address);
+        if (transport != null) {
+            transport.cancelSegmentTransmissionTimer();
+            transportSparseArray.remove(address);
+        }
+        scheduler.reset(address);
     }
 
     @Override
     public void createMeshMessage(final int src, final int dst, @Nullable final UUID label, @NonNull final MeshMessage meshMessage) {
         if (meshMessage instanceof ProxyConfigMessage) {
             createProxyConfigMeshMessage(src, dst, (ProxyConfigMessage) meshMessage);
-        } else if (meshMessage instanceof ConfigMessage) {
-            createConfigMeshMessage(src, dst, (ConfigMessage) meshMessage);
+        } else {
+            scheduler.schedule(src, dst, label, meshMessage);
+        }
+    }
+
+    /**
+     * Sends a message scheduled by the {@link MeshMessageScheduler}
+     *
+     * @param transaction scheduled transaction
+     * @return true if the message was sent or false otherwise
+     */
+    private boolean sendMeshMessage(@NonNull final MeshMessageScheduler.Transaction transaction) {
+        final int src = transaction.src;
+        final int dst = transaction.dst;
+        final MeshMessage meshMessage = transaction.meshMessage;
+        // A message that is sent again uses a new sequence number, so the segments of the previous attempt are not.
+        if (transaction.attempts > 1 && meshMessage.getMessage() != null) {
+            getTransport(dst).cancelSegmentTransmissionTimer(meshMessage.getMessage());
+        }
+        if (meshMessage instanceof ConfigMessage) {
+            return createConfigMeshMessage(src, dst, (ConfigMessage) meshMessage);
         } else if (meshMessage instanceof ApplicationMessage) {
-            if (label == null) {
+            if (transaction.label == null) {
                 createAppMeshMessage(src, dst, (ApplicationMessage) meshMessage);
             } else {
-                createAppMeshMessage(src, dst, label, (ApplicationMessage) meshMessage);
+                createAppMeshMessage(src, dst, transaction.label, (ApplicationMessage) meshMessage);
             }
+            return true;
         }
+        return false;
     }
 
     /**
@@ -267,11 +387,13 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
      * Sends a mesh message specified within the {@link MeshMessage} object
      *
      * @param configurationMessage {@link ConfigMessage} Mesh message containing the message opcode and message parameters
+     * @return true if the message was sent or false if the destination is not a known node
      */
-    private void createConfigMeshMessage(final int src, final int dst, @NonNull final ConfigMessage configurationMessage) {
+    private boolean createConfigMeshMessage(final int src, final int dst, @NonNull final ConfigMessage configurationMessage) {
         final ProvisionedMeshNode node = mInternalTransportCallbacks.getNode(dst);
         if (node == null) {
-            return;
+            MeshLogger.error(TAG, "Node " + MeshAddress.formatAddress(dst, true) + " not found, config message not sent");
+            return false;
         }
 
         final ConfigMessageState currentState = new ConfigMessageState(src, dst, node.getDeviceKey(), configurationMessage,
@@ -280,6 +402,7 @@ public abstract class BaseMeshMessageHandler implements MeshMessageHandlerApi, I
             stateSparseArray.put(dst, toggleState(getTransport(dst), configurationMessage));
         }
         currentState.executeSend();
+        return true;
     }
 
     /**
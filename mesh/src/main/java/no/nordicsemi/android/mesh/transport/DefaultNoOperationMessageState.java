@@ -5,8 +5,6 @@ import no.nordicsemi.android.mesh.logger.MeshLogger;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 import no.nordicsemi.android.mesh.Features;
@@ -16,12 +14,9 @@ import no.nordicsemi.android.mesh.MeshManagerApi;
 import no.nordicsemi.android.mesh.MeshNetwork;
 import no.nordicsemi.android.mesh.MeshStatusCallbacks;
 import no.nordicsemi.android.mesh.NetworkKey;
-import no.nordicsemi.android.mesh.control.BlockAcknowledgementMessage;
 import no.nordicsemi.android.mesh.control.TransportControlMessage;
 import no.nordicsemi.android.mesh.models.ConfigurationServerModel;
 import no.nordicsemi.android.mesh.models.SceneServer;
-import no.nordicsemi.android.mesh.opcodes.ApplicationMessageOpCodes;
-import no.nordicsemi.android.mesh.opcodes.ConfigMessageOpCodes;
 import no.nordicsemi.android.mesh.opcodes.ProxyConfigMessageOpCodes;
 import no.nordicsemi.android.mesh.utils.AddressArray;
 import no.nordicsemi.android.mesh.utils.ExtendedInvalidCipherTextException;
@@ -93,424 +88,283 @@ class DefaultNoOperationMessageState extends MeshMessageState {
      * @param message access message received by the acccess layer
      */
     private void parseAccessMessage(final AccessMessage message) {
-        final ProvisionedMeshNode node = mInternalTransportCallbacks.getNode(message.getSrc());
-        final int opCodeLength = MeshParserUtils.getOpCodeLength(message.getAccessPdu()[0] & 0xFF);
-        //OpCode length
-        switch (opCodeLength) {
-            case 1:
-                if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_STATUS) {
-                    final ConfigCompositionDataStatus status = new ConfigCompositionDataStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        node.setCompositionData(status);
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SCENE_STATUS) {
-                    final SceneStatus sceneStatus = new SceneStatus(message);
-                    if (sceneStatus.isSuccessful()) {
-                        final MeshModel model = getMeshModel(node, sceneStatus.getSrc(), SCENE_SERVER);
-                        if (model != null) {
-                            final SceneServer sceneServer = ((SceneServer) model);
-                            sceneServer.currentScene = sceneStatus.getCurrentScene();
-                            sceneServer.targetScene = sceneStatus.getTargetScene();
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(sceneStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), sceneStatus);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_HEARTBEAT_PUBLICATION_STATUS) {
-                    final ConfigHeartbeatPublicationStatus status = new ConfigHeartbeatPublicationStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, status.getSrc(), CONFIGURATION_SERVER);
-                            if (model != null) {
-                                ((ConfigurationServerModel) model).
-                                        setHeartbeatPublication(!isValidUnassignedAddress(status.getHeartbeatPublication().getDst()) ? status.getHeartbeatPublication() : null);
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.GENERIC_LOCATION_GLOBAL_STATUS) {
-                    final GenericLocationGlobalStatus genericLocationGlobalStatus = new GenericLocationGlobalStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(genericLocationGlobalStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), genericLocationGlobalStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SENSOR_DESCRIPTOR_STATUS) {
-                    final SensorDescriptorStatus status = new SensorDescriptorStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SENSOR_CADENCE_STATUS) {
-                    final SensorCadenceStatus status = new SensorCadenceStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SENSOR_SETTINGS_STATUS) {
-                    final SensorSettingsStatus status = new SensorSettingsStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SENSOR_SETTING_STATUS) {
-                    final SensorSettingStatus status = new SensorSettingStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SENSOR_STATUS) {
-                    final SensorStatus status = new SensorStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SENSOR_COLUMN_STATUS) {
-                    final SensorColumnStatus status = new SensorColumnStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SENSOR_SERIES_STATUS) {
-                    final SensorSeriesStatus status = new SensorSeriesStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SCHEDULER_ACTION_STATUS) {
-                    final SchedulerActionStatus schedulerActionStatus = new SchedulerActionStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(schedulerActionStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), schedulerActionStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.GENERIC_ADMIN_PROPERTY_STATUS ||
-                        message.getOpCode() == ApplicationMessageOpCodes.GENERIC_MANUFACTURER_PROPERTY_STATUS ||
-                        message.getOpCode() == ApplicationMessageOpCodes.GENERIC_USER_PROPERTY_STATUS) {
-                    final GenericPropertyStatus status = new GenericPropertyStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.TIME_STATUS) {
-                    final TimeStatus timeStatus = new TimeStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(timeStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), timeStatus);
-                } else {
-                    handleUnknownPdu(message);
-                }
-                break;
-            case 2:
-                if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_STATUS) {
-                    final ConfigDefaultTtlStatus status = new ConfigDefaultTtlStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        node.setTtl(status.getTtl());
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.GENERIC_ON_POWER_UP_STATUS) {
-                    final GenericOnPowerUpStatus genericOnPowerUpStatus = new GenericOnPowerUpStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(genericOnPowerUpStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), genericOnPowerUpStatus);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_NETKEY_STATUS) {
-                    final ConfigNetKeyStatus status = new ConfigNetKeyStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            if (mMeshMessage instanceof ConfigNetKeyAdd) {
-                                node.setAddedNetKeyIndex(status.getNetKeyIndex());
-                            } else if (mMeshMessage instanceof ConfigNetKeyUpdate) {
-                                node.updateAddedNetKey(status.getNetKeyIndex());
-                            } else if (mMeshMessage instanceof ConfigNetKeyDelete) {
-                                node.removeAddedNetKeyIndex(status.getNetKeyIndex());
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_NETKEY_LIST) {
-                    final ConfigNetKeyList netKeyList = new ConfigNetKeyList(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (netKeyList.isSuccessful()) {
-                            node.updateNetKeyList(netKeyList.getKeyIndexes());
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(netKeyList);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), netKeyList);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_APPKEY_STATUS) {
-                    final ConfigAppKeyStatus status = new ConfigAppKeyStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            if (mMeshMessage instanceof ConfigAppKeyAdd) {
-                                node.setAddedAppKeyIndex(status.getAppKeyIndex());
-                            } else if (mMeshMessage instanceof ConfigAppKeyUpdate) {
-                                node.updateAddedAppKey(status.getAppKeyIndex());
-                            } else if (mMeshMessage instanceof ConfigAppKeyDelete) {
-                                node.removeAddedAppKeyIndex(status.getAppKeyIndex());
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_APPKEY_LIST) {
-                    final ConfigAppKeyList appKeyList = new ConfigAppKeyList(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (appKeyList.isSuccessful()) {
-                            node.updateAppKeyList(appKeyList.getNetKeyIndex(), appKeyList.getKeyIndexes(),
-                                    mInternalTransportCallbacks.getApplicationKeys(appKeyList.getNetKeyIndex()));
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(appKeyList);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), appKeyList);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_MODEL_APP_STATUS) {
-                    final ConfigModelAppStatus status = new ConfigModelAppStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            if (mMeshMessage instanceof ConfigModelAppBind) {
-                                node.setAppKeyBindStatus(status);
-                            } else {
-                                node.setAppKeyUnbindStatus(status);
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_SIG_MODEL_APP_LIST) {
-                    final ConfigSigModelAppList appKeyList = new ConfigSigModelAppList(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (appKeyList.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, appKeyList.getElementAddress(), appKeyList.getModelIdentifier());
-                            if (model != null) {
-                                model.setBoundAppKeyIndexes(appKeyList.getKeyIndexes());
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(appKeyList);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), appKeyList);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_APP_LIST) {
-                    final ConfigVendorModelAppList appKeyList = new ConfigVendorModelAppList(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (appKeyList.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, appKeyList.getElementAddress(), appKeyList.getModelIdentifier());
-                            if (model != null) {
-                                model.setBoundAppKeyIndexes(appKeyList.getKeyIndexes());
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(appKeyList);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), appKeyList);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_MODEL_PUBLICATION_STATUS) {
-                    final ConfigModelPublicationStatus status = new ConfigModelPublicationStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
-                            if (model != null) {
-                                if (mMeshMessage instanceof ConfigModelPublicationGet) {
-                                    model.updatePublicationStatus(status);
-                                } else if (mMeshMessage instanceof ConfigModelPublicationSet) {
-                                    model.setPublicationStatus(status, null);
-                                } else if (mMeshMessage instanceof ConfigModelPublicationVirtualAddressSet) {
-                                    final UUID labelUUID = ((ConfigModelPublicationVirtualAddressSet) mMeshMessage).
-                                            getLabelUuid();
-                                    model.setPublicationStatus(status, labelUUID);
-                                }
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_STATUS) {
-                    final ConfigModelSubscriptionStatus status = new ConfigModelSubscriptionStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
-                            if (model != null) {
-                                if (mMeshMessage instanceof ConfigModelSubscriptionAdd) {
-                                    model.addSubscriptionAddress(status.getSubscriptionAddress());
-                                } else if (mMeshMessage instanceof ConfigModelSubscriptionVirtualAddressAdd) {
-                                    model.addSubscriptionAddress(((ConfigModelSubscriptionVirtualAddressAdd) mMeshMessage).
-                                            getLabelUuid(), status.getSubscriptionAddress());
-                                } else if (mMeshMessage instanceof ConfigModelSubscriptionOverwrite) {
-                                    model.overwriteSubscriptionAddress(status.getSubscriptionAddress());
-                                } else if (mMeshMessage instanceof ConfigModelSubscriptionVirtualAddressOverwrite) {
-                                    model.overwriteSubscriptionAddress(((ConfigModelSubscriptionVirtualAddressOverwrite) mMeshMessage).
-                                            getLabelUuid(), status.getSubscriptionAddress());
-                                } else if (mMeshMessage instanceof ConfigModelSubscriptionDelete) {
-                                    model.removeSubscriptionAddress(status.getSubscriptionAddress());
-                                } else if (mMeshMessage instanceof ConfigModelSubscriptionVirtualAddressDelete) {
-                                    model.removeSubscriptionAddress(((ConfigModelSubscriptionVirtualAddressDelete) mMeshMessage).
-                                            getLabelUuid(), status.getSubscriptionAddress());
-                                } else if (mMeshMessage instanceof ConfigModelSubscriptionDeleteAll) {
-                                    model.removeAllSubscriptionAddresses();
-                                }
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_SIG_MODEL_SUBSCRIPTION_LIST) {
-                    final ConfigSigModelSubscriptionList status = new ConfigSigModelSubscriptionList(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
-                            if (model != null) {
-                                model.updateSubscriptionAddressesList(status.getSubscriptionAddresses());
-                            }
-                            createGroups(status.getSubscriptionAddresses());
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_SUBSCRIPTION_LIST) {
-                    final ConfigVendorModelSubscriptionList status = new ConfigVendorModelSubscriptionList(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
-                            if (model != null) {
-                                model.updateSubscriptionAddressesList(status.getSubscriptionAddresses());
-                            }
-                            createGroups(status.getSubscriptionAddresses());
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_HEARTBEAT_SUBSCRIPTION_STATUS) {
-                    final ConfigHeartbeatSubscriptionStatus status = new ConfigHeartbeatSubscriptionStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        if (status.isSuccessful()) {
-                            final MeshModel model = getMeshModel(node, message.getSrc(), CONFIGURATION_SERVER);
-                            if (model != null) {
-                                ((ConfigurationServerModel) model).
-                                        setHeartbeatSubscription((!isValidUnassignedAddress(status.getHeartbeatSubscription().getSrc()) ||
-                                                !isValidUnassignedAddress(status.getHeartbeatSubscription().getDst()))
-                                                ? status.getHeartbeatSubscription() : null);
-                            }
-                        }
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_NODE_IDENTITY_STATUS) {
-                    final ConfigNodeIdentityStatus status = new ConfigNodeIdentityStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        node.nodeIdentityState = status.getNodeIdentityState();
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_NODE_RESET_STATUS) {
-                    final ConfigNodeResetStatus status = new ConfigNodeResetStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        mInternalTransportCallbacks.onMeshNodeReset(node);
-                    }
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_NETWORK_TRANSMIT_STATUS) {
-                    final ConfigNetworkTransmitStatus status = new ConfigNetworkTransmitStatus(message);
-                    final NetworkTransmitSettings networkTransmitSettings =
-                            new NetworkTransmitSettings(status.getNetworkTransmitCount(), status.getNetworkTransmitIntervalSteps());
-                    node.setNetworkTransmitSettings(networkTransmitSettings);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_RELAY_STATUS) {
-                    final ConfigRelayStatus status = new ConfigRelayStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        final RelaySettings relaySettings =
-                                new RelaySettings(status.getRelayRetransmitCount(), status.getRelayRetransmitIntervalSteps());
-                        node.setRelaySettings(relaySettings);
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_BEACON_STATUS) {
-                    final ConfigBeaconStatus status = new ConfigBeaconStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        node.setSecureNetworkBeaconSupported(status.isEnable());
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_FRIEND_STATUS) {
-                    final ConfigFriendStatus status = new ConfigFriendStatus(message);
-                    if (!isReceivedViaProxyFilter(message)) {
-                        node.getNodeFeatures().setFriend(status.isEnable() ? Features.ENABLED : Features.DISABLED);
-                    }
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_KEY_REFRESH_PHASE_STATUS) {
-                    final ConfigKeyRefreshPhaseStatus status = new ConfigKeyRefreshPhaseStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_GATT_PROXY_STATUS) {
-                    final ConfigProxyStatus status = new ConfigProxyStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ConfigMessageOpCodes.CONFIG_LOW_POWER_NODE_POLLTIMEOUT_STATUS) {
-                    final ConfigLowPowerNodePollTimeoutStatus status = new ConfigLowPowerNodePollTimeoutStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.GENERIC_ON_OFF_STATUS) {
-                    final GenericOnOffStatus status = new GenericOnOffStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.GENERIC_LEVEL_STATUS) {
-                    final GenericLevelStatus genericLevelStatus = new GenericLevelStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(genericLevelStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), genericLevelStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.LIGHT_LIGHTNESS_STATUS) {
-                    final LightLightnessStatus lightLightnessStatus = new LightLightnessStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(lightLightnessStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), lightLightnessStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.LIGHT_CTL_STATUS) {
-                    final LightCtlStatus lightCtlStatus = new LightCtlStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(lightCtlStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), lightCtlStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.LIGHT_HSL_STATUS) {
-                    final LightHslStatus lightHslStatus = new LightHslStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(lightHslStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), lightHslStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.LIGHT_LC_MODE_STATUS) {
-                    final LightLCModeStatus lightLcModeStatus = new LightLCModeStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(lightLcModeStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), lightLcModeStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.LIGHT_LC_OCCUPANCY_MODE_STATUS) {
-                    final LightLCOccupancyModeStatus lightLcOccupancyModeStatus = new LightLCOccupancyModeStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(lightLcOccupancyModeStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), lightLcOccupancyModeStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.LIGHT_LC_LIGHT_ON_OFF_STATUS) {
-                    final LightLCLightOnOffStatus lightLcLightOnOffStatus = new LightLCLightOnOffStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(lightLcLightOnOffStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), lightLcLightOnOffStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.LIGHT_LC_PROPERTY_STATUS) {
-                    final LightLCPropertyStatus status = new LightLCPropertyStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(status);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SCENE_REGISTER_STATUS) {
-                    if (mMeshMessage instanceof SceneStore) {
-                        final SceneRegisterStatus status = new SceneRegisterStatus(message);
-                        storeScene(node, status);
-                        mInternalTransportCallbacks.updateMeshNetwork(status);
-                        mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                    } else if (mMeshMessage instanceof SceneRecall) {
-                        final SceneStatus status = new SceneStatus(message);
-                        storeScene(node, status);
-                        mInternalTransportCallbacks.updateMeshNetwork(status);
-                        mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                    } else if (mMeshMessage instanceof SceneDelete) {
-                        final SceneRegisterStatus status = new SceneRegisterStatus(message);
-                        deleteScene(node, status);
-                        mInternalTransportCallbacks.updateMeshNetwork(status);
-                        mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                    }
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.SCHEDULER_STATUS) {
-                    final SchedulerStatus schedulerStatus = new SchedulerStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(schedulerStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), schedulerStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.TIME_ZONE_STATUS) {
-                    final TimeZoneStatus timeZoneStatus = new TimeZoneStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(timeZoneStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), timeZoneStatus);
-                } else if (message.getOpCode() == ApplicationMessageOpCodes.GENERIC_DEFAULT_TRANSITION_TIME_STATUS) {
-                    final GenericDefaultTransitionTimeStatus genericDefaultTransitionTimeStatus = new GenericDefaultTransitionTimeStatus(message);
-                    mInternalTransportCallbacks.updateMeshNetwork(genericDefaultTransitionTimeStatus);
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), genericDefaultTransitionTimeStatus);
-                } else {
-                    handleUnknownPdu(message);
+        final byte[] accessPdu = message.getAccessPdu();
+        final int opCodeLength = MeshParserUtils.getOpCodeLength(accessPdu[0] & 0xFF);
+        final int opCode = opCodeLength == 3 ?
+                StatusMessageRegistry.getVendorOpCode(accessPdu[0], MeshParserUtils.unsignedBytesToInt(accessPdu[1], accessPdu[2])) :
+                message.getOpCode();
+        // The status is handled in the context of the message it acknowledges, if that message is still in flight.
+        final MeshMessage pendingMessage = meshMessageHandlerCallbacks.getPendingMessage(message.getSrc(), opCode);
+        if (pendingMessage != null) {
+            mMeshMessage = pendingMessage;
+            // The status implies that the message was received, even if the block acknowledgement was lost.
+            if (pendingMessage.getMessage() != null) {
+                mMeshTransport.cancelSegmentTransmissionTimer(pendingMessage.getMessage());
+            }
+        }
+        final StatusMessageRegistry.Entry<?> entry = StatusMessageRegistry.get(opCode);
+        if (entry != null) {
+            onStatusReceived(entry, message);
+        } else if (opCodeLength == 3 && mMeshMessage instanceof VendorModelMessageAcked) {
+            final VendorModelMessageAcked vendorModelMessageAcked = (VendorModelMessageAcked) mMeshMessage;
+            final VendorModelMessageStatus status = new VendorModelMessageStatus(message, vendorModelMessageAcked.getModelIdentifier());
+            mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
+            MeshLogger.verbose(TAG, "Vendor model Access PDU Received: {}", accessPdu);
+        } else if (opCodeLength == 3 && mMeshMessage instanceof VendorModelMessageUnacked) {
+            final VendorModelMessageUnacked vendorModelMessageUnacked = (VendorModelMessageUnacked) mMeshMessage;
+            final VendorModelMessageStatus status = new VendorModelMessageStatus(message, vendorModelMessageUnacked.getModelIdentifier());
+            mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
+        } else {
+            handleUnknownPdu(message);
+        }
+        if (pendingMessage != null) {
+            meshMessageHandlerCallbacks.onResponseReceived(message.getSrc(), opCode);
+        }
+    }
+
+    /**
+     * Creates the status message using the registry entry, updates the state of the node and notifies the status.
+     *
+     * @param entry   registry entry of the received opcode
+     * @param message access message received by the access layer
+     */
+    private <T extends MeshMessage> void onStatusReceived(@NonNull final StatusMessageRegistry.Entry<T> entry,
+                                                          @NonNull final AccessMessage message) {
+        final T status = entry.factory.create(message, mMeshMessage);
+        if (status == null)
+            return;
+
+        if (entry.updater != null && (!entry.filtered || !isReceivedViaProxyFilter(message))) {
+            final ProvisionedMeshNode node = mInternalTransportCallbacks.getNode(message.getSrc());
+            entry.updater.update(this, node, status);
+        }
+        if (entry.updatesNetwork) {
+            mInternalTransportCallbacks.updateMeshNetwork(status);
+        }
+        mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
+    }
+
+    void onCompositionDataStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigCompositionDataStatus status) {
+        node.setCompositionData(status);
+        mInternalTransportCallbacks.getMeshNetwork().updateSubscriptionIndex(node);
+    }
+
+    void onSceneStatus(@NonNull final ProvisionedMeshNode node, @NonNull final SceneStatus status) {
+        if (status.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, status.getSrc(), SCENE_SERVER);
+            if (model != null) {
+                final SceneServer sceneServer = ((SceneServer) model);
+                sceneServer.currentScene = status.getCurrentScene();
+                sceneServer.targetScene = status.getTargetScene();
+            }
+        }
+    }
+
+    void onHeartbeatPublicationStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigHeartbeatPublicationStatus status) {
+        if (status.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, status.getSrc(), CONFIGURATION_SERVER);
+            if (model != null) {
+                ((ConfigurationServerModel) model).
+                        setHeartbeatPublication(!isValidUnassignedAddress(status.getHeartbeatPublication().getDst()) ? status.getHeartbeatPublication() : null);
+            }
+        }
+    }
+
+    void onHeartbeatSubscriptionStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigHeartbeatSubscriptionStatus status) {
+        if (status.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, status.getSrc(), CONFIGURATION_SERVER);
+            if (model != null) {
+                ((ConfigurationServerModel) model).
+                        setHeartbeatSubscription((!isValidUnassignedAddress(status.getHeartbeatSubscription().getSrc()) ||
+                                !isValidUnassignedAddress(status.getHeartbeatSubscription().getDst()))
+                                ? status.getHeartbeatSubscription() : null);
+            }
+        }
+    }
+
+    void onDefaultTtlStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigDefaultTtlStatus status) {
+        node.setTtl(status.getTtl());
+    }
+
+    void onNetKeyStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigNetKeyStatus status) {
+        if (status.isSuccessful()) {
+            if (mMeshMessage instanceof ConfigNetKeyAdd) {
+                node.setAddedNetKeyIndex(status.getNetKeyIndex());
+            } else if (mMeshMessage instanceof ConfigNetKeyUpdate) {
+                node.updateAddedNetKey(status.getNetKeyIndex());
+            } else if (mMeshMessage instanceof ConfigNetKeyDelete) {
+                node.removeAddedNetKeyIndex(status.getNetKeyIndex());
+            }
+        }
+    }
+
+    void onKeyRefreshPhaseStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigKeyRefreshPhaseStatus status) {
+        if (status.isSuccessful()) {
+            node.updateKeyRefreshPhase(status.getNetKeyIndex(), status.getTransition(),
+                    mInternalTransportCallbacks.getApplicationKeys(status.getNetKeyIndex()));
+        }
+    }
+
+    void onNetKeyList(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigNetKeyList netKeyList) {
+        if (netKeyList.isSuccessful()) {
+            node.updateNetKeyList(netKeyList.getKeyIndexes());
+        }
+    }
+
+    void onAppKeyStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigAppKeyStatus status) {
+        if (status.isSuccessful()) {
+            if (mMeshMessage instanceof ConfigAppKeyAdd) {
+                node.setAddedAppKeyIndex(status.getAppKeyIndex());
+            } else if (mMeshMessage instanceof ConfigAppKeyUpdate) {
+                node.updateAddedAppKey(status.getAppKeyIndex());
+            } else if (mMeshMessage instanceof ConfigAppKeyDelete) {
+                node.removeAddedAppKeyIndex(status.getAppKeyIndex());
+            }
+        }
+    }
+
+    void onAppKeyList(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigAppKeyList appKeyList) {
+        if (appKeyList.isSuccessful()) {
+            node.updateAppKeyList(appKeyList.getNetKeyIndex(), appKeyList.getKeyIndexes(),
+                    mInternalTransportCallbacks.getApplicationKeys(appKeyList.getNetKeyIndex()));
+        }
+    }
+
+    void onModelAppStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigModelAppStatus status) {
+        if (status.isSuccessful()) {
+            if (mMeshMessage instanceof ConfigModelAppBind) {
+                node.setAppKeyBindStatus(status);
+            } else {
+                node.setAppKeyUnbindStatus(status);
+            }
+        }
+    }
+
+    void onSigModelAppList(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigSigModelAppList appKeyList) {
+        if (appKeyList.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, appKeyList.getElementAddress(), appKeyList.getModelIdentifier());
+            if (model != null) {
+                model.setBoundAppKeyIndexes(appKeyList.getKeyIndexes());
+            }
+        }
+    }
+
+    void onVendorModelAppList(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigVendorModelAppList appKeyList) {
+        if (appKeyList.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, appKeyList.getElementAddress(), appKeyList.getModelIdentifier());
+            if (model != null) {
+                model.setBoundAppKeyIndexes(appKeyList.getKeyIndexes());
+            }
+        }
+    }
+
+    void onModelPublicationStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigModelPublicationStatus status) {
+        if (status.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
+            if (model != null) {
+                if (mMeshMessage instanceof ConfigModelPublicationGet) {
+                    model.updatePublicationStatus(status);
+                } else if (mMeshMessage instanceof ConfigModelPublicationSet) {
+                    model.setPublicationStatus(status, null);
+                } else if (mMeshMessage instanceof ConfigModelPublicationVirtualAddressSet) {
+                    final UUID labelUUID = ((ConfigModelPublicationVirtualAddressSet) mMeshMessage).
+                            getLabelUuid();
+                    model.setPublicationStatus(status, labelUUID);
                 }
-                break;
-            case 3:
-                if (mMeshMessage instanceof VendorModelMessageAcked) {
-                    final VendorModelMessageAcked vendorModelMessageAcked = (VendorModelMessageAcked) mMeshMessage;
-                    final VendorModelMessageStatus status = new VendorModelMessageStatus(message, vendorModelMessageAcked.getModelIdentifier());
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                    MeshLogger.verbose(TAG, "Vendor model Access PDU Received: " + MeshParserUtils.bytesToHex(message.getAccessPdu(), false));
-                } else if (mMeshMessage instanceof VendorModelMessageUnacked) {
-                    final VendorModelMessageUnacked vendorModelMessageUnacked = (VendorModelMessageUnacked) mMeshMessage;
-                    final VendorModelMessageStatus status = new VendorModelMessageStatus(message, vendorModelMessageUnacked.getModelIdentifier());
-                    mMeshStatusCallbacks.onMeshMessageReceived(message.getSrc(), status);
-                } else {
-                    handleUnknownPdu(message);
+                mInternalTransportCallbacks.getMeshNetwork().updateSubscriptionIndex(node);
+            }
+        }
+    }
+
+    void onModelSubscriptionStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigModelSubscriptionStatus status) {
+        if (status.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
+            if (model != null) {
+                if (mMeshMessage instanceof ConfigModelSubscriptionAdd) {
+                    model.addSubscriptionAddress(status.getSubscriptionAddress());
+                } else if (mMeshMessage instanceof ConfigModelSubscriptionVirtualAddressAdd) {
+                    model.addSubscriptionAddress(((ConfigModelSubscriptionVirtualAddressAdd) mMeshMessage).
+                            getLabelUuid(), status.getSubscriptionAddress());
+                } else if (mMeshMessage instanceof ConfigModelSubscriptionOverwrite) {
+                    model.overwriteSubscriptionAddress(status.getSubscriptionAddress());
+                } else if (mMeshMessage instanceof ConfigModelSubscriptionVirtualAddressOverwrite) {
+                    model.overwriteSubscriptionAddress(((ConfigModelSubscriptionVirtualAddressOverwrite) mMeshMessage).
+                            getLabelUuid(), status.getSubscriptionAddress());
+                } else if (mMeshMessage instanceof ConfigModelSubscriptionDelete) {
+                    model.removeSubscriptionAddress(status.getSubscriptionAddress());
+                } else if (mMeshMessage instanceof ConfigModelSubscriptionVirtualAddressDelete) {
+                    model.removeSubscriptionAddress(((ConfigModelSubscriptionVirtualAddressDelete) mMeshMessage).
+                            getLabelUuid(), status.getSubscriptionAddress());
+                } else if (mMeshMessage instanceof ConfigModelSubscriptionDeleteAll) {
+                    model.removeAllSubscriptionAddresses();
                 }
-                break;
+                mInternalTransportCallbacks.getMeshNetwork().updateSubscriptionIndex(node);
+            }
+        }
+    }
+
+    void onSigModelSubscriptionList(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigSigModelSubscriptionList status) {
+        if (status.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
+            if (model != null) {
+                model.updateSubscriptionAddressesList(status.getSubscriptionAddresses());
+                mInternalTransportCallbacks.getMeshNetwork().updateSubscriptionIndex(node);
+            }
+            createGroups(status.getSubscriptionAddresses());
+        }
+    }
+
+    void onVendorModelSubscriptionList(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigVendorModelSubscriptionList status) {
+        if (status.isSuccessful()) {
+            final MeshModel model = getMeshModel(node, status.getElementAddress(), status.getModelIdentifier());
+            if (model != null) {
+                model.updateSubscriptionAddressesList(status.getSubscriptionAddresses());
+                mInternalTransportCallbacks.getMeshNetwork().updateSubscriptionIndex(node);
+            }
+            createGroups(status.getSubscriptionAddresses());
+        }
+    }
+
+    void onNodeIdentityStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigNodeIdentityStatus status) {
+        node.nodeIdentityState = status.getNodeIdentityState();
+    }
+
+    void onNodeResetStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigNodeResetStatus status) {
+        mInternalTransportCallbacks.onMeshNodeReset(node);
+    }
+
+    void onNetworkTransmitStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigNetworkTransmitStatus status) {
+        final NetworkTransmitSettings networkTransmitSettings =
+                new NetworkTransmitSettings(status.getNetworkTransmitCount(), status.getNetworkTransmitIntervalSteps());
+        node.setNetworkTransmitSettings(networkTransmitSettings);
+    }
+
+    void onRelayStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigRelayStatus status) {
+        final RelaySettings relaySettings =
+                new RelaySettings(status.getRelayRetransmitCount(), status.getRelayRetransmitIntervalSteps());
+        node.setRelaySettings(relaySettings);
+    }
+
+    void onBeaconStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigBeaconStatus status) {
+        node.setSecureNetworkBeaconSupported(status.isEnable());
+    }
+
+    void onFriendStatus(@NonNull final ProvisionedMeshNode node, @NonNull final ConfigFriendStatus status) {
+        node.getNodeFeatures().setFriend(status.isEnable() ? Features.ENABLED : Features.DISABLED);
+    }
+
+    void onSceneRegisterStatus(@NonNull final ProvisionedMeshNode node, @NonNull final MeshMessage status) {
+        if (mMeshMessage instanceof SceneStore) {
+            storeScene(node, (SceneRegisterStatus) status);
+        } else if (mMeshMessage instanceof SceneRecall) {
+            storeScene(node, (SceneStatus) status);
+        } else if (mMeshMessage instanceof SceneDelete) {
+            deleteScene(node, (SceneRegisterStatus) status);
         }
     }
 
     private void handleUnknownPdu(final AccessMessage message) {
-        MeshLogger.verbose(TAG, "Unknown Access PDU Received: " + MeshParserUtils.bytesToHex(message.getAccessPdu(), false));
+        MeshLogger.verbose(TAG, "Unknown Access PDU Received: {}", message.getAccessPdu());
         mMeshStatusCallbacks.onUnknownPduReceived(message.getSrc(), message.getAccessPdu());
     }
 
@@ -520,15 +374,12 @@ class DefaultNoOperationMessageState extends MeshMessageState {
      * @param controlMessage control message received by the transport layer
      */
     private void parseControlMessage(final ControlMessage controlMessage) {
-        //Get the segment count count of the access message
-        final int segmentCount = message.getNetworkLayerPdu().size();
         if (controlMessage.getPduType() == MeshManagerApi.PDU_TYPE_NETWORK) {
             final TransportControlMessage transportControlMessage = controlMessage.getTransportControlMessage();
             if (transportControlMessage.getState() == TransportControlMessage.TransportControlMessageState.LOWER_TRANSPORT_BLOCK_ACKNOWLEDGEMENT) {
-                MeshLogger.verbose(TAG, "Acknowledgement payload: " + MeshParserUtils.bytesToHex(controlMessage.getTransportControlPdu(), false));
-                final ArrayList<Integer> retransmitPduIndexes = BlockAcknowledgementMessage.getSegmentsToBeRetransmitted(controlMessage.getTransportControlPdu(), segmentCount);
+                MeshLogger.verbose(TAG, "Acknowledgement payload: {}", controlMessage.getTransportControlPdu());
                 mMeshStatusCallbacks.onBlockAcknowledgementReceived(controlMessage.getSrc(), controlMessage);
-                executeResend(retransmitPduIndexes);
+                mMeshTransport.onSegmentsAcknowledged(controlMessage.getTransportControlPdu());
             } else {
                 MeshLogger.verbose(TAG, "Unexpected control message received, ignoring message");
                 mMeshStatusCallbacks.onUnknownPduReceived(controlMessage.getSrc(), controlMessage.getTransportControlPdu());
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import no.nordicsemi.android.mesh.Features;
+import no.nordicsemi.android.mesh.models.ConfigurationServerModel;
+import no.nordicsemi.android.mesh.models.SigModelParser;
+import no.nordicsemi.android.mesh.models.VendorModel;
+import no.nordicsemi.android.mesh.utils.HeartbeatPublication;
+import no.nordicsemi.android.mesh.utils.HeartbeatSubscription;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+/**
+ * Compact binary encoding of the elements of a node, used to store them in the database.
+ * <p>
+ * The encoding starts with a version byte followed by the elements. Integers are written as unsigned variable length
+ * quantities, 7 bits per byte, so that addresses, key indexes and publication parameters take one to three bytes
+ * each. Label UUIDs are written as 16 bytes and names as length prefixed UTF-8.
+ * </p>
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class ElementsCodec {
+
+    static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int FLAG_PUBLICATION = 1;
+    private static final int FLAG_LABEL_UUID = 1 << 1;
+    private static final int FLAG_HEARTBEAT_PUBLICATION = 1 << 2;
+    private static final int FLAG_HEARTBEAT_SUBSCRIPTION = 1 << 3;
+    private static final int FLAG_FEATURES = 1 << 4;
+
+    private ElementsCodec() {
+    }
+
+    /**
+     * Encodes the elements of a node
+     *
+     * @param elements Elements keyed by the element address
+     * @return encoded elements
+     */
+    @NonNull
+    public static byte[] encode(@NonNull final Map<Integer, Element> elements) {
+        final Writer writer = new Writer();
+        writer.writeByte(VERSION);
+        writer.writeVarInt(elements.size());
+        for (Map.Entry<Integer, Element> entry : elements.entrySet()) {
+            final Element element = entry.getValue();
+            writer.writeVarInt(entry.getKey());
+            writer.writeVarInt(element.elementAddress);
+            writer.writeVarInt(element.locationDescriptor);
+            writer.writeString(element.name);
+            writer.writeVarInt(element.meshModels.size());
+            for (Map.Entry<Integer, MeshModel> modelEntry : element.meshModels.entrySet()) {
+                writer.writeVarInt(modelEntry.getKey());
+                writeModel(writer, modelEntry.getValue());
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes elements encoded with {@link #encode(Map)}
+     *
+     * @param data Encoded elements
+     * @return elements keyed by the element address
+     * @throws IllegalArgumentException if the data is not a supported encoding
+     */
+    @NonNull
+    public static Map<Integer, Element> decode(@NonNull final byte[] data) {
+        final Reader reader = new Reader(data);
+        final int version = reader.readByte();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported elements encoding version: " + version);
+
+        final int elementCount = reader.readVarInt();
+        final Map<Integer, Element> elements = new LinkedHashMap<>();
+        for (int i = 0; i < elementCount; i++) {
+            final int key = reader.readVarInt();
+            final int address = reader.readVarInt();
+            final int locationDescriptor = reader.readVarInt();
+            final String name = reader.readString();
+            final int modelCount = reader.readVarInt();
+            final Map<Integer, MeshModel> models = new LinkedHashMap<>();
+            for (int j = 0; j < modelCount; j++) {
+                final int modelKey = reader.readVarInt();
+                models.put(modelKey, readModel(reader));
+            }
+            elements.put(key, new Element(address, locationDescriptor, models, name));
+        }
+        if (reader.remaining() != 0)
+            throw new IllegalArgumentException("Unexpected data after the encoded elements");
+        return elements;
+    }
+
+    private static void writeModel(@NonNull final Writer writer, @NonNull final MeshModel model) {
+        final PublicationSettings publication = model.mPublicationSettings;
+        HeartbeatPublication heartbeatPublication = null;
+        HeartbeatSubscription heartbeatSubscription = null;
+        if (model instanceof ConfigurationServerModel) {
+            heartbeatPublication = ((ConfigurationServerModel) model).getHeartbeatPublication();
+            heartbeatSubscription = ((ConfigurationServerModel) model).getHeartbeatSubscription();
+        }
+        int flags = 0;
+        if (publication != null) {
+            flags |= FLAG_PUBLICATION;
+            if (publication.getLabelUUID() != null)
+                flags |= FLAG_LABEL_UUID;
+        }
+        if (heartbeatPublication != null) {
+            flags |= FLAG_HEARTBEAT_PUBLICATION;
+            if (heartbeatPublication.getFeatures() != null)
+                flags |= FLAG_FEATURES;
+        }
+        if (heartbeatSubscription != null)
+            flags |= FLAG_HEARTBEAT_SUBSCRIPTION;
+
+        writer.writeVarInt(model.getModelId());
+        writer.writeByte(flags);
+        writer.writeIntList(model.mBoundAppKeyIndexes);
+        writer.writeIntList(model.subscriptionAddresses);
+        writer.writeVarInt(model.labelUuids.size());
+        for (UUID uuid : model.labelUuids) {
+            writer.writeUuid(uuid);
+        }
+        writer.writeIntList(model.sceneNumbers);
+
+        if (publication != null) {
+            writer.writeVarInt(publication.getPublishAddress());
+            if (publication.getLabelUUID() != null)
+                writer.writeUuid(publication.getLabelUUID());
+            writer.writeVarInt(publication.getAppKeyIndex());
+            writer.writeByte(publication.getCredentialFlag() ? 1 : 0);
+            writer.writeVarInt(publication.getPublishTtl());
+            writer.writeVarInt(publication.getPublicationSteps());
+            writer.writeVarInt(publication.getPublicationResolution());
+            writer.writeVarInt(publication.getPublishRetransmitCount());
+            writer.writeVarInt(publication.getPublishRetransmitIntervalSteps());
+        }
+
+        if (heartbeatPublication != null) {
+            writer.writeVarInt(heartbeatPublication.getDst());
+            writer.writeByte(heartbeatPublication.getCountLog());
+            writer.writeByte(heartbeatPublication.getPeriodLog());
+            writer.writeVarInt(heartbeatPublication.getTtl());
+            writer.writeVarInt(heartbeatPublication.getNetKeyIndex());
+            final Features features = heartbeatPublication.getFeatures();
+            if (features != null) {
+                writer.writeByte(features.getFriend());
+                writer.writeByte(features.getLowPower());
+                writer.writeByte(features.getProxy());
+                writer.writeByte(features.getRelay());
+            }
+        }
+
+        if (heartbeatSubscription != null) {
+            writer.writeVarInt(heartbeatSubscription.getSrc());
+            writer.writeVarInt(heartbeatSubscription.getDst());
+            writer.writeByte(heartbeatSubscription.getPeriodLog());
+            writer.writeByte(heartbeatSubscription.getCountLog());
+            writer.writeVarInt(heartbeatSubscription.getMinHops());
+            writer.writeVarInt(heartbeatSubscription.getMaxHops());
+        }
+    }
+
+    private static MeshModel readModel(@NonNull final Reader reader) {
+        final int modelId = reader.readVarInt();
+        final int flags = reader.readByte();
+        final MeshModel model = getMeshModel(modelId);
+        reader.readIntList(model.mBoundAppKeyIndexes);
+        reader.readIntList(model.subscriptionAddresses);
+        final int labelCount = reader.readVarInt();
+        for (int i = 0; i < labelCount; i++) {
+            model.labelUuids.add(reader.readUuid());
+        }
+        reader.readIntList(model.sceneNumbers);
+
+        if ((flags & FLAG_PUBLICATION) != 0) {
+            final int publishAddress = reader.readVarInt();
+            final UUID labelUuid = (flags & FLAG_LABEL_UUID) != 0 ? reader.readUuid() : null;
+            final int appKeyIndex = reader.readVarInt();
+            final boolean credentialFlag = reader.readByte() == 1;
+            final int publishTtl = reader.readVarInt();
+            final int publicationSteps = reader.readVarInt();
+            final int publicationResolution = reader.readVarInt();
+            final int publishRetransmitCount = reader.readVarInt();
+            final int publishRetransmitIntervalSteps = reader.readVarInt();
+            model.mPublicationSettings = new PublicationSettings(publishAddress, labelUuid, appKeyIndex, credentialFlag,
+                    publishTtl, publicationSteps, publicationResolution, publishRetransmitCount, publishRetransmitIntervalSteps);
+        }
+
+        if ((flags & FLAG_HEARTBEAT_PUBLICATION) != 0) {
+            final int dst = reader.readVarInt();
+            final byte countLog = (byte) reader.readByte();
+            final byte periodLog = (byte) reader.readByte();
+            final int ttl = reader.readVarInt();
+            final int netKeyIndex = reader.readVarInt();
+            Features features = null;
+            if ((flags & FLAG_FEATURES) != 0) {
+                features = new Features(reader.readByte(), reader.readByte(), reader.readByte(), reader.readByte());
+            }
+            ((ConfigurationServerModel) model).setHeartbeatPublication(
+                    new HeartbeatPublication(dst, countLog, periodLog, ttl, features, netKeyIndex));
+        }
+
+        if ((flags & FLAG_HEARTBEAT_SUBSCRIPTION) != 0) {
+            final int src = reader.readVarInt();
+            final int dst = reader.readVarInt();
+            final byte periodLog = (byte) reader.readByte();
+            final byte countLog = (byte) reader.readByte();
+            final int minHops = reader.readVarInt();
+            final int maxHops = reader.readVarInt();
+            ((ConfigurationServerModel) model).setHeartbeatSubscription(
+                    new HeartbeatSubscription(src, dst, periodLog, countLog, minHops, maxHops));
+        }
+        return model;
+    }
+
+    /**
+     * Returns a {@link MeshModel}
+     *
+     * @param modelId model Id
+     * @return {@link MeshModel}
+     */
+    private static MeshModel getMeshModel(final int modelId) {
+        if (MeshParserUtils.isVendorModel(modelId)) {
+            return new VendorModel(modelId);
+        } else {
+            return SigModelParser.getSigModel(modelId);
+        }
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer() {
+            super(256);
+        }
+
+        void writeByte(final int value) {
+            write(value);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeIntList(@NonNull final List<Integer> values) {
+            writeVarInt(values.size());
+            for (Integer value : values) {
+                writeVarInt(value);
+            }
+        }
+
+        void writeUuid(@NonNull final UUID uuid) {
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+        }
+
+        void writeString(@Nullable final String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            final byte[] bytes = value.getBytes(UTF_8);
+            writeVarInt(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+
+        private void writeLong(final long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(@NonNull final byte[] data) {
+            this.data = data;
+        }
+
+        int remaining() {
+            return data.length - position;
+        }
+
+        int readByte() {
+            if (position >= data.length)
+                throw new IllegalArgumentException("Unexpected end of the encoded elements");
+            return data[position++] & 0xFF;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IllegalArgumentException("Malformed integer in the encoded elements");
+        }
+
+        void readIntList(@NonNull final List<Integer> values) {
+            final int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                values.add(readVarInt());
+            }
+        }
+
+        UUID readUuid() {
+            return new UUID(readLong(), readLong());
+        }
+
+        @Nullable
+        String readString() {
+            final int length = readVarInt();
+            if (length == 0)
+                return null;
+            if (length - 1 > remaining())
+                throw new IllegalArgumentException("Unexpected end of the encoded elements");
+            final String value = new String(data, position, length - 1, UTF_8);
+            position += length - 1;
+            return value;
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+    }
+}
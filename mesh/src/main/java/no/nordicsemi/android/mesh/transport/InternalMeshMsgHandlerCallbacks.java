@@ -22,6 +22,8 @@
 
 package no.nordicsemi.android.mesh.transport;
 
+import androidx.annotation.Nullable;
+
 /**
  * Callbacks to notify the mesh message handler to notify events from transport layers.
  */
@@ -34,4 +36,21 @@ interface InternalMeshMsgHandlerCallbacks {
      */
     void onIncompleteTimerExpired(final int address);
 
+    /**
+     * Returns the message in flight to a node that is acknowledged by the received message or null if there is none.
+     *
+     * @param address address of the node that sent the message
+     * @param opCode  opcode of the received message
+     */
+    @Nullable
+    MeshMessage getPendingMessage(final int address, final int opCode);
+
+    /**
+     * Callback to notify that a message acknowledging a message in flight has been received and processed
+     *
+     * @param address address of the node that sent the message
+     * @param opCode  opcode of the received message
+     */
+    void onResponseReceived(final int address, final int opCode);
+
 }
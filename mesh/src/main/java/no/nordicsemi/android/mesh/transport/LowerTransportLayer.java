@@ -23,15 +23,21 @@
 package no.nordicsemi.android.mesh.transport;
 
 import no.nordicsemi.android.mesh.logger.MeshLogger;
+import android.util.Log;
 import android.util.SparseArray;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import no.nordicsemi.android.mesh.MeshManagerApi;
 import no.nordicsemi.android.mesh.control.BlockAcknowledgementMessage;
+import no.nordicsemi.android.mesh.core.Segmentation;
 import no.nordicsemi.android.mesh.opcodes.TransportLayerOpCodes;
 import no.nordicsemi.android.mesh.utils.ExtendedInvalidCipherTextException;
 import no.nordicsemi.android.mesh.utils.MeshAddress;
@@ -49,11 +55,12 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
     private static final String TAG = LowerTransportLayer.class.getSimpleName();
     private static final int BLOCK_ACK_TIMER = 150; //Increased from minimum value 150;
     private static final int UNSEGMENTED_HEADER = 0;
-    private static final int SEGMENTED_HEADER = 1;
     private static final int UNSEGMENTED_MESSAGE_HEADER_LENGTH = 1;
     private static final int SEGMENTED_MESSAGE_HEADER_LENGTH = 4;
     private static final int UNSEGMENTED_ACK_MESSAGE_HEADER_LENGTH = 3;
     private static final long INCOMPLETE_TIMER_DELAY = 10 * 1000; // According to the spec the incomplete timer must be a minimum of 10 seconds.
+    private static final int SEGMENT_TRANSMISSION_TIMER = 200; // According to the spec the segment transmission timer must be a minimum of 200 + 50 * TTL milliseconds.
+    private static final int SEGMENT_RETRANSMISSION_LIMIT = 2; // According to the spec unacknowledged segments must be retransmitted at least two times.
 
     private final SparseArray<byte[]> segmentedAccessMessageMap = new SparseArray<>();
     private final SparseArray<byte[]> segmentedControlMessageMap = new SparseArray<>();
@@ -61,10 +68,32 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
     private boolean mSegmentedAccessAcknowledgementTimerStarted;
     private Integer mSegmentedAccessBlockAck;
     private boolean mSegmentedControlAcknowledgementTimerStarted;
+    private Runnable mSegmentedAccessAcknowledgementTimerRunnable;
+    private Runnable mSegmentedControlAcknowledgementTimerRunnable;
     private Integer mSegmentedControlBlockAck;
     private boolean mIncompleteTimerStarted;
     private boolean mBlockAckSent;
     private long mDuration;
+    // Segmented messages being sent to the destination of this layer, keyed by SeqZero.
+    private final SparseArray<SegmentTransmission> mSegmentTransmissions = new SparseArray<>();
+    private ReplayProtection mReplayProtection;
+
+    /**
+     * Replay protection applied by the lower transport layer once a message is complete
+     */
+    interface ReplayProtection {
+
+        /**
+         * Checks the SeqAuth of a complete access message against the replay protection list and records it if the
+         * message is new.
+         *
+         * @param src            Source address of the message
+         * @param ivIndex        IV Index used to secure the message
+         * @param sequenceNumber Sequence number of the message, or of its first segment if the message was segmented
+         * @return true if the message is new, or false if it must be discarded
+         */
+        boolean accept(final int src, final int ivIndex, final int sequenceNumber);
+    }
 
     /**
      * Runnable for incomplete timer
@@ -78,6 +107,63 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         }
     };
 
+    /**
+     * Segment transmission timer and acknowledged segments of a segmented message that was sent
+     */
+    private final class SegmentTransmission implements Runnable {
+        final Message message;
+        final int seqZero;
+        final int segmentCount;
+        int acknowledgedSegments;
+        int retransmissionsLeft = SEGMENT_RETRANSMISSION_LIMIT;
+
+        SegmentTransmission(@NonNull final Message message, final int seqZero) {
+            this.message = message;
+            this.seqZero = seqZero;
+            this.segmentCount = getLowerTransportPdus(message).size();
+        }
+
+        @Override
+        public void run() {
+            if (mSegmentTransmissions.get(seqZero) != this)
+                return;
+
+            if (retransmissionsLeft-- <= 0) {
+                MeshLogger.verbose(TAG, "Segment retransmission limit reached for SeqZero {}", seqZero);
+                mSegmentTransmissions.remove(seqZero);
+                return;
+            }
+            final List<Integer> segments = getUnacknowledgedSegments();
+            MeshLogger.verbose(TAG, "Segment transmission timer expired, retransmitting {} segments", segments.size());
+            mLowerTransportLayerCallbacks.retransmitSegments(message, segments);
+            mExecutor.schedule(this, getSegmentTransmissionInterval(message));
+        }
+
+        List<Integer> getUnacknowledgedSegments() {
+            final List<Integer> segments = new ArrayList<>(segmentCount);
+            for (int segO = 0; segO < segmentCount; segO++) {
+                if ((acknowledgedSegments & (1 << segO)) == 0) {
+                    segments.add(segO);
+                }
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Sets the replay protection checked for every complete access message received.
+     * <p>
+     * Segments are checked once the message is reassembled, with the SeqAuth of the message, so that segments received
+     * out of order or sent again are not taken for replays. Duplicate network pdus are discarded by the network message
+     * cache before reaching this layer.
+     * </p>
+     *
+     * @param replayProtection Replay protection, or null to accept all messages
+     */
+    final void setReplayProtection(@Nullable final ReplayProtection replayProtection) {
+        mReplayProtection = replayProtection;
+    }
+
     /**
      * Sets the lower transport layer callbacks
      *
@@ -154,8 +240,19 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
 
     @Override
     final void reassembleLowerTransportAccessPDU(@NonNull final AccessMessage accessMessage) {
-        final SparseArray<byte[]> lowerTransportAccessPdu = removeLowerTransportAccessMessageHeader(accessMessage);
-        final byte[] upperTransportPdu = MeshParserUtils.concatenateSegmentedMessages(lowerTransportAccessPdu);
+        final SparseArray<byte[]> lowerTransportAccessPdu = accessMessage.getLowerTransportAccessPdu();
+        final byte[] upperTransportPdu;
+        if (accessMessage.isSegmented()) {
+            // Segment headers are skipped while concatenating, the received segments are kept as they are
+            final byte[][] segments = new byte[lowerTransportAccessPdu.size()][];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = lowerTransportAccessPdu.get(i);
+            }
+            upperTransportPdu = Segmentation.reassemble(segments);
+        } else {
+            final byte[] data = lowerTransportAccessPdu.get(0);
+            upperTransportPdu = Arrays.copyOfRange(data, UNSEGMENTED_MESSAGE_HEADER_LENGTH, data.length);
+        }
         accessMessage.setUpperTransportPdu(upperTransportPdu);
     }
 
@@ -166,28 +263,6 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         controlMessage.setTransportControlPdu(lowerTransportControlPdu);
     }
 
-    /**
-     * Removes the transport header of the access message.
-     *
-     * @param message access message received.
-     * @return map containing the messages.
-     */
-    private SparseArray<byte[]> removeLowerTransportAccessMessageHeader(@NonNull final AccessMessage message) {
-        final SparseArray<byte[]> messages = message.getLowerTransportAccessPdu();
-        if (message.isSegmented()) {
-            for (int i = 0; i < messages.size(); i++) {
-                final byte[] data = messages.get(i);
-                final int length = data.length - SEGMENTED_MESSAGE_HEADER_LENGTH; //header size of unsegmented messages is 4;
-                messages.put(i, removeHeader(data, 4, length));
-            }
-        } else {
-            final byte[] data = messages.get(0);
-            final int length = data.length - UNSEGMENTED_MESSAGE_HEADER_LENGTH; //header size of unsegmented messages is 1;
-            messages.put(0, removeHeader(data, 1, length));
-        }
-        return messages;
-    }
-
     /**
      * Removes the transport header of the control message.
      *
@@ -248,7 +323,7 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         lowerTransportBuffer.put(header);
         lowerTransportBuffer.put(encryptedUpperTransportPDU);
         final byte[] lowerTransportPDU = lowerTransportBuffer.array();
-        MeshLogger.verbose(TAG, "Unsegmented Lower transport access PDU " + MeshParserUtils.bytesToHex(lowerTransportPDU, false));
+        MeshLogger.verbose(TAG, "Unsegmented Lower transport access PDU {}", lowerTransportPDU);
         return lowerTransportPDU;
     }
 
@@ -265,24 +340,13 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         final byte[] sequenceNumber = message.getSequenceNumber();
         int seqZero = MeshParserUtils.calculateSeqZero(sequenceNumber);
 
-        final int numberOfSegments = (encryptedUpperTransportPDU.length + (MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH - 1)) / MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH;
-        final int segN = numberOfSegments - 1; //Zero based segN
-        final SparseArray<byte[]> lowerTransportPduMap = new SparseArray<>();
-        int offset = 0;
-        int length;
-        for (int segO = 0; segO < numberOfSegments; segO++) {
-            //Here we calculate the size of the segments based on the offset and the maximum payload of a segment access message
-            length = Math.min(encryptedUpperTransportPDU.length - offset, MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH);
-            final ByteBuffer lowerTransportBuffer = ByteBuffer.allocate(SEGMENTED_MESSAGE_HEADER_LENGTH + length).order(ByteOrder.BIG_ENDIAN);
-            lowerTransportBuffer.put((byte) ((SEGMENTED_HEADER << 7) | akfAid));
-            lowerTransportBuffer.put((byte) ((aszmic << 7) | ((seqZero >> 6) & 0x7F)));
-            lowerTransportBuffer.put((byte) (((seqZero << 2) & 0xFC) | ((segO >> 3) & 0x03)));
-            lowerTransportBuffer.put((byte) (((segO << 5) & 0xE0) | ((segN) & 0x1F)));
-            lowerTransportBuffer.put(encryptedUpperTransportPDU, offset, length);
-            offset += length;
-
-            final byte[] lowerTransportPDU = lowerTransportBuffer.array();
-            MeshLogger.verbose(TAG, "Segmented Lower transport access PDU: " + MeshParserUtils.bytesToHex(lowerTransportPDU, false) + " " + segO + " of " + numberOfSegments);
+        final byte[][] segments = Segmentation.segment(encryptedUpperTransportPDU, akfAid, aszmic, seqZero, MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH);
+        final SparseArray<byte[]> lowerTransportPduMap = new SparseArray<>(segments.length);
+        for (int segO = 0; segO < segments.length; segO++) {
+            final byte[] lowerTransportPDU = segments[segO];
+            if (MeshLogger.isLoggable(Log.VERBOSE)) {
+                MeshLogger.verbose(TAG, "Segmented Lower transport access PDU: " + MeshParserUtils.bytesToHex(lowerTransportPDU, false) + " " + segO + " of " + segments.length);
+            }
             lowerTransportPduMap.put(segO, lowerTransportPDU);
         }
         return lowerTransportPduMap;
@@ -315,7 +379,7 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
 
         lowerTransportBuffer.put(upperTransportControlPDU);
         final byte[] lowerTransportPDU = lowerTransportBuffer.array();
-        MeshLogger.verbose(TAG, "Unsegmented Lower transport control PDU " + MeshParserUtils.bytesToHex(lowerTransportPDU, false));
+        MeshLogger.verbose(TAG, "Unsegmented Lower transport control PDU {}", lowerTransportPDU);
         final SparseArray<byte[]> lowerTransportControlPduMap = new SparseArray<>();
         lowerTransportControlPduMap.put(0, lowerTransportPDU);
         message.setLowerTransportControlPdu(lowerTransportControlPduMap);
@@ -334,24 +398,13 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         final byte[] sequenceNumber = controlMessage.getSequenceNumber();
         final int seqZero = MeshParserUtils.calculateSeqZero(sequenceNumber);
 
-        final int numberOfSegments = (encryptedUpperTransportControlPDU.length + (MAX_SEGMENTED_CONTROL_PAYLOAD_LENGTH - 1)) / MAX_SEGMENTED_CONTROL_PAYLOAD_LENGTH;
-        final int segN = numberOfSegments - 1; //Zero based segN
-        final SparseArray<byte[]> lowerTransportControlPduMap = new SparseArray<>();
-        int offset = 0;
-        int length;
-        for (int segO = 0; segO < numberOfSegments; segO++) {
-            //Here we calculate the size of the segments based on the offset and the maximum payload of a segment access message
-            length = Math.min(encryptedUpperTransportControlPDU.length - offset, MAX_SEGMENTED_CONTROL_PAYLOAD_LENGTH);
-            final ByteBuffer lowerTransportBuffer = ByteBuffer.allocate(SEGMENTED_MESSAGE_HEADER_LENGTH + length).order(ByteOrder.BIG_ENDIAN);
-            lowerTransportBuffer.put((byte) ((SEGMENTED_HEADER << 7) | opCode));
-            lowerTransportBuffer.put((byte) ((rfu << 7) | ((seqZero >> 6) & 0x7F)));
-            lowerTransportBuffer.put((byte) (((seqZero << 2) & 0xFC) | ((segO >> 3) & 0x03)));
-            lowerTransportBuffer.put((byte) (((segO << 5) & 0xE0) | (segN & 0x1F)));
-            lowerTransportBuffer.put(encryptedUpperTransportControlPDU, offset, length);
-            offset += length;
-
-            final byte[] lowerTransportPDU = lowerTransportBuffer.array();
-            MeshLogger.verbose(TAG, "Segmented Lower transport access PDU: " + MeshParserUtils.bytesToHex(lowerTransportPDU, false) + " " + segO + " of " + numberOfSegments);
+        final byte[][] segments = Segmentation.segment(encryptedUpperTransportControlPDU, opCode, rfu, seqZero, MAX_SEGMENTED_CONTROL_PAYLOAD_LENGTH);
+        final SparseArray<byte[]> lowerTransportControlPduMap = new SparseArray<>(segments.length);
+        for (int segO = 0; segO < segments.length; segO++) {
+            final byte[] lowerTransportPDU = segments[segO];
+            if (MeshLogger.isLoggable(Log.VERBOSE)) {
+                MeshLogger.verbose(TAG, "Segmented Lower transport access PDU: " + MeshParserUtils.bytesToHex(lowerTransportPDU, false) + " " + segO + " of " + segments.length);
+            }
             lowerTransportControlPduMap.put(segO, lowerTransportPDU);
         }
         controlMessage.setLowerTransportControlPdu(lowerTransportControlPduMap);
@@ -369,62 +422,42 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
     }
 
     /**
-     * Parses a unsegmented lower transport access pdu
+     * Parses the header of an unsegmented lower transport access pdu.
+     * <p>
+     * The pdu is parsed where it was decrypted at the network layer. The upper transport pdu following the header is
+     * decrypted from the same buffer by {@link #parseUnsegmentedUpperTransportPDU(AccessMessage, byte[], int, int)}.
+     * A copy of the lower transport pdu is set on the message, as for segmented messages.
+     * </p>
      *
-     * @param pdu            The complete pdu was received from the node. This is already de-obfuscated
-     *                       and decrypted at network layer.
-     * @param ivIndex        IV Index of the received pdu
-     * @param sequenceNumber Sequence number of the message.
+     * @param decryptedNetworkPayload Decrypted network payload, i.e. the destination address followed by the lower transport pdu.
+     * @param src                     Source address of the message.
+     * @param ivIndex                 IV Index of the received pdu
+     * @param sequenceNumber          Sequence number of the message.
+     * @return access message or null if the message was already received
      */
     /*package*/
-    final AccessMessage parseUnsegmentedAccessLowerTransportPDU(@NonNull final byte[] pdu,
+    final AccessMessage parseUnsegmentedAccessLowerTransportPDU(@NonNull final byte[] decryptedNetworkPayload,
+                                                                final int src,
                                                                 final int ivIndex,
-                                                                @NonNull final byte[] sequenceNumber) {
-        AccessMessage message = null;
-        final byte header = pdu[10]; //Lower transport pdu starts here
-        final int seg = (header >> 7) & 0x01;
+                                                                final int sequenceNumber) {
+        final byte header = decryptedNetworkPayload[2]; //Lower transport pdu starts here
         final int akf = (header >> 6) & 0x01;
         final int aid = header & 0x3F;
-        if (seg == 0) { //Unsegmented message
-            MeshLogger.debug(TAG, "IV Index of received message: " + ivIndex);
-            final int seqAuth = (ivIndex << 24) | MeshParserUtils.convert24BitsToInt(sequenceNumber);
-            final byte[] src = MeshParserUtils.getSrcAddress(pdu);
-            final int srcAdd = MeshParserUtils.unsignedBytesToInt(src[1], src[0]);
-            MeshLogger.debug(TAG, "SeqAuth: " + seqAuth);
-            if (!isValidSeqAuth(seqAuth, srcAdd)) {
-                return null;
-            }
-            mMeshNode.setSeqAuth(srcAdd, seqAuth);
-            // We do not need to rely on the sequence number here
-            // Setting hte sequence number here will reset the already incremented sequence number for a message sent to all nodes.
-            // mMeshNode.setSequenceNumber(MeshParserUtils.convert24BitsToInt(sequenceNumber));
-            message = new AccessMessage();
-            if (akf == 0) {// device key was used to encrypt
-                final int lowerTransportPduLength = pdu.length - 10;
-                final ByteBuffer lowerTransportBuffer = ByteBuffer.allocate(lowerTransportPduLength).order(ByteOrder.BIG_ENDIAN);
-                lowerTransportBuffer.put(pdu, 10, lowerTransportPduLength);
-                final byte[] lowerTransportPDU = lowerTransportBuffer.array();
-                final SparseArray<byte[]> messages = new SparseArray<>();
-                messages.put(0, lowerTransportPDU);
-                message.setSegmented(false);
-                message.setAszmic(0); //aszmic is always 0 for unsegmented access messages
-                message.setAkf(akf);
-                message.setAid(aid);
-                message.setLowerTransportAccessPdu(messages);
-            } else {
-                final int lowerTransportPduLength = pdu.length - 10;
-                final ByteBuffer lowerTransportBuffer = ByteBuffer.allocate(lowerTransportPduLength).order(ByteOrder.BIG_ENDIAN);
-                lowerTransportBuffer.put(pdu, 10, lowerTransportPduLength);
-                final byte[] lowerTransportPDU = lowerTransportBuffer.array();
-                final SparseArray<byte[]> messages = new SparseArray<>();
-                messages.put(0, lowerTransportPDU);
-                message.setSegmented(false);
-                message.setAszmic(0); //aszmic is always 0 for unsegmented access messages
-                message.setAkf(akf);
-                message.setAid(aid);
-                message.setLowerTransportAccessPdu(messages);
-            }
+        MeshLogger.debug(TAG, "IV Index of received message: {}", ivIndex);
+        final int seqAuth = (ivIndex << 24) | sequenceNumber;
+        MeshLogger.debug(TAG, "SeqAuth: {}", seqAuth);
+        if (!isValidSeqAuth(seqAuth, src) || !isAccepted(src, ivIndex, sequenceNumber)) {
+            return null;
         }
+        mMeshNode.setSeqAuth(src, seqAuth);
+        // We do not need to rely on the sequence number here
+        // Setting hte sequence number here will reset the already incremented sequence number for a message sent to all nodes.
+        final AccessMessage message = new AccessMessage();
+        message.setSegmented(false);
+        message.setAszmic(0); //aszmic is always 0 for unsegmented access messages
+        message.setAkf(akf);
+        message.setAid(aid);
+        message.getLowerTransportAccessPdu().put(0, Arrays.copyOfRange(decryptedNetworkPayload, 2, decryptedNetworkPayload.length));
         return message;
     }
 
@@ -445,10 +478,10 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         final int akf = (header >> 6) & 0x01;
         final int aid = header & 0x3F;
 
-        final int szmic = (pdu[11] >> 7) & 0x01;
-        final int seqZero = ((pdu[11] & 0x7F) << 6) | ((pdu[12] & 0xFC) >> 2);
-        final int segO = ((pdu[12] & 0x03) << 3) | ((pdu[13] & 0xE0) >> 5);
-        final int segN = ((pdu[13]) & 0x1F);
+        final int szmic = Segmentation.getSzmic(pdu, 10);
+        final int seqZero = Segmentation.getSeqZero(pdu, 10);
+        final int segO = Segmentation.getSegO(pdu, 10);
+        final int segN = Segmentation.getSegN(pdu, 10);
 
         final byte[] src = MeshParserUtils.getSrcAddress(pdu);
         final byte[] dst = MeshParserUtils.getDstAddress(pdu);
@@ -456,16 +489,16 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         final int blockAckSrc = MeshParserUtils.unsignedBytesToInt(dst[1], dst[0]); //Destination of the received packet would be the source for the ack
         final int blockAckDst = MeshParserUtils.unsignedBytesToInt(src[1], src[0]); //Source of the received packet would be the destination for the ack
 
-        MeshLogger.verbose(TAG, "SEG O: " + segO);
-        MeshLogger.verbose(TAG, "SEG N: " + segN);
+        MeshLogger.verbose(TAG, "SEG O: {}", segO);
+        MeshLogger.verbose(TAG, "SEG N: {}", segN);
 
         final int seqNumber = getTransportLayerSequenceNumber(MeshParserUtils.convert24BitsToInt(sequenceNumber), seqZero);
         final int seqAuth = ivIndex << 24 | seqNumber;
         final Integer lastSeqAuth = mMeshNode.getSeqAuth(blockAckDst);
         if (lastSeqAuth != null)
-            MeshLogger.verbose(TAG, "Last SeqAuth value " + lastSeqAuth);
+            MeshLogger.verbose(TAG, "Last SeqAuth value {}", lastSeqAuth);
 
-        MeshLogger.verbose(TAG, "Current SeqAuth value " + seqAuth);
+        MeshLogger.verbose(TAG, "Current SeqAuth value {}", seqAuth);
 
         final int payloadLength = pdu.length - 10;
         final ByteBuffer payloadBuffer = ByteBuffer.allocate(payloadLength);
@@ -483,6 +516,8 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
             if((segO==0) && (segN == 0)){
                 // This is the first and last segment
                 handleImmediateBlockAcks(seqZero, ttl, blockAckSrc, blockAckDst, segN);
+                if (!isAccepted(blockAckDst, ivIndex, seqNumber))
+                    return null;
 
                 final int upperTransportSequenceNumber = getTransportLayerSequenceNumber(MeshParserUtils.getSequenceNumberFromPDU(pdu), seqZero);
                 final AccessMessage accessMessage = new AccessMessage();
@@ -497,7 +532,7 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
             }
 
 
-            MeshLogger.verbose(TAG, "Starting incomplete timer for src: " + MeshAddress.formatAddress(blockAckDst, false));
+            MeshLogger.verbose(TAG, () -> "Starting incomplete timer for src: " + MeshAddress.formatAddress(blockAckDst, false));
             initIncompleteTimer();
 
             //Start acknowledgement calculation and timer only for messages directed to a unicast address.
@@ -515,17 +550,17 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
                         segmentedAccessMessageMap.put(segO, payloadBuffer.array());
                     }
                     final int receivedSegmentedMessageCount = segmentedAccessMessageMap.size();
-                    MeshLogger.verbose(TAG, "Received segment message count: " + receivedSegmentedMessageCount);
+                    MeshLogger.verbose(TAG, "Received segment message count: {}", receivedSegmentedMessageCount);
                     //Add +1 to segN since its zero based
                     if (receivedSegmentedMessageCount != (segN + 1)) {
                         restartIncompleteTimer();
                         mSegmentedAccessBlockAck = BlockAcknowledgementMessage.calculateBlockAcknowledgement(mSegmentedAccessBlockAck, segO);
-                        MeshLogger.verbose(TAG, "Restarting incomplete timer for src: " + MeshAddress.formatAddress(blockAckDst, false));
+                        MeshLogger.verbose(TAG, () -> "Restarting incomplete timer for src: " + MeshAddress.formatAddress(blockAckDst, false));
 
                         //Start acknowledgement calculation and timer only for messages directed to a unicast address.
                         //We also have to make sure we restart the acknowledgement timer only if the acknowledgement timer is not active and the incomplete timer is active
                         if (MeshAddress.isValidUnicastAddress(dst) && !mSegmentedAccessAcknowledgementTimerStarted) {
-                            MeshLogger.verbose(TAG, "Restarting block acknowledgement timer for src: " + MeshAddress.formatAddress(blockAckDst, false));
+                            MeshLogger.verbose(TAG, () -> "Restarting block acknowledgement timer for src: " + MeshAddress.formatAddress(blockAckDst, false));
                             //Start the block acknowledgement timer irrespective of which segment was received first
                             initSegmentedAccessAcknowledgementTimer(seqZero, ttl, blockAckSrc, blockAckDst, segN);
                         }
@@ -537,6 +572,8 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
                             //We should cancel the incomplete timer since we have received all segments
                             cancelIncompleteTimer();
                         }
+                        if (!isAccepted(blockAckDst, ivIndex, seqNumber))
+                            return null;
 
                         final AccessMessage accessMessage = new AccessMessage();
                         accessMessage.setAszmic(szmic);
@@ -629,13 +666,13 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         final int blockAckSrc = MeshParserUtils.unsignedBytesToInt(dst[1], dst[0]); //Destination of the received packet would be the source for the ack
         final int blockAckDst = MeshParserUtils.unsignedBytesToInt(src[1], src[0]); //Source of the received packet would be the destination for the ack
 
-        MeshLogger.verbose(TAG, "SEG O: " + segO);
-        MeshLogger.verbose(TAG, "SEG N: " + segN);
+        MeshLogger.verbose(TAG, "SEG O: {}", segO);
+        MeshLogger.verbose(TAG, "SEG N: {}", segN);
 
         //Start the timer irrespective of which segment was received first
         initSegmentedControlAcknowledgementTimer(seqZero, ttl, blockAckDst, blockAckSrc, segN);
         mSegmentedControlBlockAck = BlockAcknowledgementMessage.calculateBlockAcknowledgement(mSegmentedControlBlockAck, segO);
-        MeshLogger.verbose(TAG, "Block acknowledgement value for " + mSegmentedControlBlockAck + " Seg O " + segO);
+        MeshLogger.verbose(TAG, "Block acknowledgement value for {} Seg O {}", mSegmentedControlBlockAck, segO);
 
         final int payloadLength = pdu.length - 10;
 
@@ -648,11 +685,11 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         if (segN == receivedSegmentedMessageCount) {
             MeshLogger.verbose(TAG, "All segments received");
             //Remove the incomplete timer if all segments were received
-            mHandler.removeCallbacks(mIncompleteTimerRunnable);
-            MeshLogger.verbose(TAG, "Block ack sent? " + mBlockAckSent);
+            mExecutor.cancel(mIncompleteTimerRunnable);
+            MeshLogger.verbose(TAG, "Block ack sent? {}", mBlockAckSent);
             if (mDuration > System.currentTimeMillis() && !mBlockAckSent) {
                 if (MeshAddress.isValidUnicastAddress(dst)) {
-                    mHandler.removeCallbacksAndMessages(null);
+                    cancelBlockAckTimers();
                     MeshLogger.verbose(TAG, "Cancelling Scheduled block ack and incomplete timer, sending an immediate block ack");
                     sendBlockAck(seqZero, ttl, blockAckSrc, blockAckDst, segN);
                     //mBlockAckSent = false;
@@ -679,7 +716,7 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
      * Start incomplete timer for segmented messages.
      */
     private void initIncompleteTimer() {
-        mHandler.postDelayed(mIncompleteTimerRunnable, INCOMPLETE_TIMER_DELAY);
+        mExecutor.schedule(mIncompleteTimerRunnable, INCOMPLETE_TIMER_DELAY);
         mIncompleteTimerStarted = true;
     }
 
@@ -689,7 +726,7 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
     private void restartIncompleteTimer() {
         //Remove the existing incomplete timer
         if (mIncompleteTimerStarted) {
-            mHandler.removeCallbacks(mIncompleteTimerRunnable);
+            mExecutor.cancel(mIncompleteTimerRunnable);
         }
         //Call init to start the timer again
         initIncompleteTimer();
@@ -701,7 +738,122 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
     private void cancelIncompleteTimer() {
         //Remove the existing incomplete timer
         mIncompleteTimerStarted = false;
-        mHandler.removeCallbacks(mIncompleteTimerRunnable);
+        mExecutor.cancel(mIncompleteTimerRunnable);
+    }
+
+    /**
+     * Starts the segment transmission timer for a segmented message that was sent.
+     * <p>
+     * Each time the timer expires the segments that have not been acknowledged are sent again, up to
+     * {@link #SEGMENT_RETRANSMISSION_LIMIT} times since the last acknowledgement that acknowledged new segments.
+     * Segmented messages to group and virtual addresses are not acknowledged, so all segments are sent again.
+     * Each segmented message in flight has its own timer, identified by its SeqZero.
+     * </p>
+     *
+     * @param message Segmented message that was sent
+     */
+    final void startSegmentTransmissionTimer(@NonNull final Message message) {
+        if (!message.isSegmented())
+            return;
+
+        final int seqZero = getSeqZero(message);
+        cancelSegmentTransmissionTimer(seqZero);
+        final SegmentTransmission transmission = new SegmentTransmission(message, seqZero);
+        mSegmentTransmissions.put(seqZero, transmission);
+        mExecutor.schedule(transmission, getSegmentTransmissionInterval(message));
+    }
+
+    /**
+     * Cancels the segment transmission timer of a segmented message that was sent.
+     *
+     * @param message Segmented message that was sent
+     */
+    final void cancelSegmentTransmissionTimer(@NonNull final Message message) {
+        if (message.isSegmented()) {
+            cancelSegmentTransmissionTimer(getSeqZero(message));
+        }
+    }
+
+    /**
+     * Cancels the segment transmission timers of all segmented messages that were sent
+     */
+    final void cancelSegmentTransmissionTimer() {
+        for (int i = 0; i < mSegmentTransmissions.size(); i++) {
+            mExecutor.cancel(mSegmentTransmissions.valueAt(i));
+        }
+        mSegmentTransmissions.clear();
+    }
+
+    private void cancelSegmentTransmissionTimer(final int seqZero) {
+        final SegmentTransmission transmission = mSegmentTransmissions.get(seqZero);
+        if (transmission != null) {
+            mSegmentTransmissions.remove(seqZero);
+            mExecutor.cancel(transmission);
+        }
+    }
+
+    /**
+     * Returns the number of segmented messages sent that have not been acknowledged yet.
+     */
+    final int getSegmentTransmissionCount() {
+        return mSegmentTransmissions.size();
+    }
+
+    /**
+     * Updates the segments acknowledged by the destination of a segmented message being sent and sends the segments
+     * that are missing again.
+     * <p>
+     * The segment transmission timer of the message with the acknowledged SeqZero is cancelled once all segments are
+     * acknowledged or if the destination is unable to receive the message, and restarted otherwise.
+     * </p>
+     *
+     * @param blockAcknowledgement Block acknowledgement payload
+     */
+    final void onSegmentsAcknowledged(@NonNull final byte[] blockAcknowledgement) {
+        final int seqZero = ((blockAcknowledgement[0] & 0x7F) << 6) | ((blockAcknowledgement[1] & 0xFC) >> 2);
+        final SegmentTransmission transmission = mSegmentTransmissions.get(seqZero);
+        if (transmission == null) {
+            MeshLogger.verbose(TAG, "Ignoring block acknowledgement for SeqZero {}", seqZero);
+            return;
+        }
+
+        final int blockAck = ByteBuffer.wrap(blockAcknowledgement, 2, 4).order(ByteOrder.BIG_ENDIAN).getInt();
+        if (blockAck == 0) {
+            MeshLogger.verbose(TAG, "Destination is busy, cancelling segment transmission");
+            cancelSegmentTransmissionTimer(seqZero);
+            return;
+        }
+
+        if ((blockAck & ~transmission.acknowledgedSegments) != 0) {
+            transmission.retransmissionsLeft = SEGMENT_RETRANSMISSION_LIMIT;
+        }
+        transmission.acknowledgedSegments |= blockAck;
+        final List<Integer> segments = transmission.getUnacknowledgedSegments();
+        if (segments.isEmpty()) {
+            MeshLogger.verbose(TAG, "All segments acknowledged, cancelling segment transmission timer");
+            cancelSegmentTransmissionTimer(seqZero);
+        } else {
+            mExecutor.cancel(transmission);
+            mExecutor.schedule(transmission, getSegmentTransmissionInterval(transmission.message));
+            mLowerTransportLayerCallbacks.retransmitSegments(transmission.message, segments);
+        }
+    }
+
+    private static long getSegmentTransmissionInterval(@NonNull final Message message) {
+        return SEGMENT_TRANSMISSION_TIMER + (50 * message.getTtl());
+    }
+
+    private static SparseArray<byte[]> getLowerTransportPdus(@NonNull final Message message) {
+        if (message instanceof AccessMessage) {
+            return ((AccessMessage) message).getLowerTransportAccessPdu();
+        }
+        return ((ControlMessage) message).getLowerTransportControlPdu();
+    }
+
+    private static int getSeqZero(@NonNull final Message message) {
+        // The SeqZero is read from the first segment as the sequence number of the message changes on retransmission.
+        final byte[] pdu = getLowerTransportPdus(message).get(0);
+        return ((pdu[1] & 0x7F) << 6) | ((pdu[2] & 0xFC) >> 2);
     }
 
     /**
@@ -714,14 +866,15 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
     private void initSegmentedAccessAcknowledgementTimer(final int seqZero, final int ttl, final int src, final int dst, final int segN) {
         if (!mSegmentedAccessAcknowledgementTimerStarted) {
             mSegmentedAccessAcknowledgementTimerStarted = true;
-            MeshLogger.verbose(TAG, "TTL: " + ttl);
+            MeshLogger.verbose(TAG, "TTL: {}", ttl);
             final int duration = (BLOCK_ACK_TIMER + (50 * ttl));
-            MeshLogger.verbose(TAG, "Duration: " + duration);
+            MeshLogger.verbose(TAG, "Duration: {}", duration);
             mDuration = System.currentTimeMillis() + duration;
-            mHandler.postDelayed(() -> {
+            mSegmentedAccessAcknowledgementTimerRunnable = () -> {
                 MeshLogger.verbose(TAG, "Acknowledgement timer expiring");
                 sendBlockAck(seqZero, ttl, src, dst, segN);
-            }, duration);
+            };
+            mExecutor.schedule(mSegmentedAccessAcknowledgementTimerRunnable, duration);
         }
     }
 
@@ -738,7 +891,22 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
             mSegmentedControlAcknowledgementTimerStarted = true;
             final int duration = BLOCK_ACK_TIMER + (50 * ttl);
             mDuration = System.currentTimeMillis() + duration;
-            mHandler.postDelayed(() -> sendBlockAck(seqZero, ttl, src, dst, segN), duration);
+            mSegmentedControlAcknowledgementTimerRunnable = () -> sendBlockAck(seqZero, ttl, src, dst, segN);
+            mExecutor.schedule(mSegmentedControlAcknowledgementTimerRunnable, duration);
+        }
+    }
+
+    /**
+     * Cancels the pending acknowledgement timers of segmented messages being received.
+     */
+    private void cancelBlockAckTimers() {
+        if (mSegmentedAccessAcknowledgementTimerRunnable != null) {
+            mExecutor.cancel(mSegmentedAccessAcknowledgementTimerRunnable);
+            mSegmentedAccessAcknowledgementTimerRunnable = null;
+        }
+        if (mSegmentedControlAcknowledgementTimerRunnable != null) {
+            mExecutor.cancel(mSegmentedControlAcknowledgementTimerRunnable);
+            mSegmentedControlAcknowledgementTimerRunnable = null;
         }
     }
 
@@ -758,7 +926,7 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
         }
 
         final byte[] upperTransportControlPdu = createAcknowledgementPayload(seqZero, blockAck);
-        MeshLogger.verbose(TAG, "Block acknowledgement payload: " + MeshParserUtils.bytesToHex(upperTransportControlPdu, false));
+        MeshLogger.verbose(TAG, "Block acknowledgement payload: {}", upperTransportControlPdu);
         final ControlMessage controlMessage = new ControlMessage();
         controlMessage.setOpCode(TransportLayerOpCodes.SAR_ACK_OPCODE);
         controlMessage.setTransportControlPdu(upperTransportControlPdu);
@@ -811,6 +979,18 @@ abstract class LowerTransportLayer extends UpperTransportLayer {
 
     }
 
+    /**
+     * Checks a complete access message against the replay protection list
+     *
+     * @param src            Source address of the message
+     * @param ivIndex        IV Index used to secure the message
+     * @param sequenceNumber Sequence number of the message, or of its first segment if the message was segmented
+     */
+    private boolean isAccepted(final int src, final int ivIndex, final int sequenceNumber) {
+        final ReplayProtection replayProtection = mReplayProtection;
+        return replayProtection == null || replayProtection.accept(src, ivIndex, sequenceNumber);
+    }
+
     /**
      * Validates Sequence authentication value.
      *
@@ -22,6 +22,10 @@
 
 package no.nordicsemi.android.mesh.transport;
 
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
 public interface LowerTransportLayerCallbacks {
 
     /**
@@ -36,5 +40,14 @@ public interface LowerTransportLayerCallbacks {
      */
     void onIncompleteTimerExpired();
 
+    /**
+     * Callback to notify that segments of a segmented message that was sent must be sent again, either because the
+     * segment transmission timer has expired or because a block acknowledgement reported them missing.
+     *
+     * @param message  segmented message that was sent
+     * @param segments indexes of the segments to be sent
+     */
+    void retransmitSegments(@NonNull final Message message, @NonNull final List<Integer> segments);
+
     int getTtl();
 }
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.transport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.utils.MeshAddress;
+
+/**
+ * Schedules outgoing mesh messages.
+ * <p>
+ * Messages to a unicast address are queued per destination and sent in order. An acknowledged message stays in flight
+ * until the status message acknowledging it is received or the transaction fails, while an unacknowledged message is
+ * sent as soon as it reaches the head of its queue. The number of acknowledged messages in flight is limited per
+ * destination and in total, and destinations take turns so that one node with many queued messages does not delay
+ * the others. Two messages that are acknowledged by the same status message are never in flight to the same
+ * destination at the same time, so that each status message can be matched to the message it acknowledges.
+ * </p>
+ * <p>
+ * Messages to group and virtual addresses are not acknowledged by a single node and are sent immediately.
+ * </p>
+ * <p>
+ * If the status message is not received within the response timeout, the message is sent again with a new sequence
+ * number and the timeout is doubled. Once the retries are exhausted the transaction is reported as timed out.
+ * </p>
+ */
+final class MeshMessageScheduler {
+
+    static final int DEFAULT_MAX_IN_FLIGHT_PER_DESTINATION = 1;
+    static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    static final long DEFAULT_RESPONSE_TIMEOUT = 5000;
+    static final int DEFAULT_RETRY_COUNT = 2;
+
+    interface Sender {
+
+        /**
+         * Sends the message of a transaction.
+         *
+         * @param transaction Transaction to be sent
+         * @return true if the message was sent or false otherwise
+         */
+        boolean send(@NonNull final Transaction transaction);
+    }
+
+    interface Timer {
+
+        /**
+         * Runs the task after the given delay.
+         *
+         * @param task  Task to run
+         * @param delay Delay in milliseconds
+         */
+        void schedule(@NonNull final Runnable task, final long delay);
+
+        /**
+         * Cancels a task that has not run yet.
+         *
+         * @param task Task to cancel
+         */
+        void cancel(@NonNull final Runnable task);
+    }
+
+    interface TimeoutListener {
+
+        /**
+         * Notifies that no status message was received for a transaction after all retries.
+         *
+         * @param transaction Transaction that timed out
+         */
+        void onTransactionTimedOut(@NonNull final Transaction transaction);
+    }
+
+    static final class Transaction {
+        final int src;
+        final int dst;
+        final UUID label;
+        final MeshMessage meshMessage;
+        final int responseOpCode;
+        // Number of times the message has been sent.
+        int attempts;
+        Runnable timeout;
+
+        Transaction(final int src, final int dst, @Nullable final UUID label, @NonNull final MeshMessage meshMessage) {
+            this.src = src;
+            this.dst = dst;
+            this.label = label;
+            this.meshMessage = meshMessage;
+            this.responseOpCode = ResponseOpCodes.getResponseOpCode(meshMessage);
+        }
+
+        boolean isAcknowledged() {
+            return responseOpCode != ResponseOpCodes.NO_RESPONSE;
+        }
+    }
+
+    private final Sender sender;
+    private final Timer timer;
+    private final TimeoutListener timeoutListener;
+    private final Map<Integer, ArrayDeque<Transaction>> queues = new HashMap<>();
+    private final Map<Integer, List<Transaction>> inFlight = new HashMap<>();
+    // Destinations with queued messages in the order they take turns.
+    private final ArrayDeque<Integer> destinations = new ArrayDeque<>();
+    private int inFlightCount;
+    private int maxInFlightPerDestination = DEFAULT_MAX_IN_FLIGHT_PER_DESTINATION;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private long responseTimeout = DEFAULT_RESPONSE_TIMEOUT;
+    private int retryCount = DEFAULT_RETRY_COUNT;
+
+    MeshMessageScheduler(@NonNull final Sender sender,
+                         @NonNull final Timer timer,
+                         @NonNull final TimeoutListener timeoutListener) {
+        this.sender = sender;
+        this.timer = timer;
+        this.timeoutListener = timeoutListener;
+    }
+
+    /**
+     * Sets the maximum number of acknowledged messages in flight.
+     *
+     * @param perDestination Maximum number of acknowledged messages in flight to a single destination
+     * @param total          Maximum number of acknowledged messages in flight to all destinations
+     */
+    synchronized void setMaxInFlight(final int perDestination, final int total) {
+        if (perDestination <= 0 || total < perDestination)
+            throw new IllegalArgumentException("Invalid number of messages in flight");
+        maxInFlightPerDestination = perDestination;
+        maxInFlight = total;
+        pump();
+    }
+
+    /**
+     * Sets how long to wait for the status message acknowledging a message and how many times the message is sent
+     * again if it is not received. The timeout is doubled after each retry.
+     *
+     * @param timeout    Time to wait for the first status message in milliseconds
+     * @param retryCount Number of times a message is sent again
+     */
+    synchronized void setResponseTimeout(final long timeout, final int retryCount) {
+        if (timeout <= 0 || retryCount < 0)
+            throw new IllegalArgumentException("Invalid response timeout or retry count");
+        this.responseTimeout = timeout;
+        this.retryCount = retryCount;
+    }
+
+    /**
+     * Schedules a message to be sent.
+     *
+     * @param src         Source address
+     * @param dst         Destination address
+     * @param label       Label UUID of the destination address or null
+     * @param meshMessage Mesh message to be sent
+     */
+    synchronized void schedule(final int src, final int dst, @Nullable final UUID label, @NonNull final MeshMessage meshMessage) {
+        final Transaction transaction = new Transaction(src, dst, label, meshMessage);
+        if (!MeshAddress.isValidUnicastAddress(dst)) {
+            sender.send(transaction);
+            return;
+        }
+        ArrayDeque<Transaction> queue = queues.get(dst);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(dst, queue);
+            destinations.add(dst);
+        }
+        queue.add(transaction);
+        pump();
+    }
+
+    /**
+     * Returns the message in flight to the given address that is acknowledged by a message with the given opcode
+     * or null if there is none.
+     *
+     * @param address Address of the node that sent the message
+     * @param opCode  Opcode of the received message
+     */
+    @Nullable
+    synchronized MeshMessage getPendingMessage(final int address, final int opCode) {
+        final Transaction transaction = findInFlight(address, opCode);
+        return transaction == null ? null : transaction.meshMessage;
+    }
+
+    /**
+     * Completes the transaction acknowledged by the received message and sends the next queued messages.
+     *
+     * @param address Address of the node that sent the message
+     * @param opCode  Opcode of the received message
+     */
+    synchronized void onResponseReceived(final int address, final int opCode) {
+        final Transaction transaction = findInFlight(address, opCode);
+        if (transaction != null) {
+            removeInFlight(transaction);
+            pump();
+        }
+    }
+
+    /**
+     * Fails the transactions in flight to the given address and sends the next queued messages.
+     *
+     * @param address Destination address
+     */
+    synchronized void onTransactionFailed(final int address) {
+        final List<Transaction> transactions = inFlight.remove(address);
+        if (transactions != null) {
+            for (Transaction transaction : transactions) {
+                cancelTimeout(transaction);
+            }
+            inFlightCount -= transactions.size();
+            pump();
+        }
+    }
+
+    /**
+     * Discards the queued messages and the transactions in flight to the given address.
+     *
+     * @param address Destination address
+     */
+    synchronized void reset(final int address) {
+        if (queues.remove(address) != null) {
+            destinations.remove(address);
+        }
+        onTransactionFailed(address);
+    }
+
+    /**
+     * Returns the number of acknowledged messages in flight.
+     */
+    synchronized int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    /**
+     * Returns true if any acknowledged message is in flight to the given address.
+     *
+     * @param address Destination address
+     */
+    synchronized boolean hasInFlight(final int address) {
+        final List<Transaction> transactions = inFlight.get(address);
+        return transactions != null && !transactions.isEmpty();
+    }
+
+    /**
+     * Returns the number of messages queued for the given address.
+     *
+     * @param address Destination address
+     */
+    synchronized int getQueuedCount(final int address) {
+        final ArrayDeque<Transaction> queue = queues.get(address);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Sends queued messages while the limits allow, taking one message from each destination in turn.
+     */
+    private void pump() {
+        boolean sent = true;
+        while (sent && !destinations.isEmpty()) {
+            sent = false;
+            for (int i = destinations.size(); i > 0 && !destinations.isEmpty(); i--) {
+                final Integer dst = destinations.poll();
+                final ArrayDeque<Transaction> queue = queues.get(dst);
+                if (queue == null)
+                    continue;
+
+                final Transaction transaction = queue.peek();
+                if (transaction == null || !canSend(transaction)) {
+                    destinations.add(dst);
+                    continue;
+                }
+                queue.poll();
+                // The queue is updated before sending as the message may be processed before send returns.
+                if (queue.isEmpty()) {
+                    queues.remove(dst);
+                } else {
+                    destinations.add(dst);
+                }
+                send(transaction);
+                sent = true;
+            }
+        }
+    }
+
+    private boolean canSend(@NonNull final Transaction transaction) {
+        if (!transaction.isAcknowledged())
+            return true;
+
+        if (inFlightCount >= maxInFlight)
+            return false;
+
+        final List<Transaction> transactions = inFlight.get(transaction.dst);
+        if (transactions == null)
+            return true;
+
+        if (transactions.size() >= maxInFlightPerDestination)
+            return false;
+
+        for (Transaction t : transactions) {
+            if (t.responseOpCode == transaction.responseOpCode)
+                return false;
+        }
+        return true;
+    }
+
+    private void send(@NonNull final Transaction transaction) {
+        if (!transaction.isAcknowledged()) {
+            sender.send(transaction);
+            return;
+        }
+        List<Transaction> transactions = inFlight.get(transaction.dst);
+        if (transactions == null) {
+            transactions = new ArrayList<>(maxInFlightPerDestination);
+            inFlight.put(transaction.dst, transactions);
+        }
+        transactions.add(transaction);
+        inFlightCount++;
+        transmit(transaction);
+    }
+
+    /**
+     * Sends an acknowledged message and starts waiting for its status message.
+     */
+    private void transmit(@NonNull final Transaction transaction) {
+        transaction.attempts++;
+        if (!sender.send(transaction)) {
+            removeInFlight(transaction);
+            return;
+        }
+        // The message may have been acknowledged while it was being sent.
+        if (isInFlight(transaction)) {
+            final Runnable timeout = () -> onTimeout(transaction);
+            transaction.timeout = timeout;
+            timer.schedule(timeout, responseTimeout << (transaction.attempts - 1));
+        }
+    }
+
+    private synchronized void onTimeout(@NonNull final Transaction transaction) {
+        if (transaction.timeout == null || !isInFlight(transaction))
+            return;
+
+        transaction.timeout = null;
+        if (transaction.attempts <= retryCount) {
+            transmit(transaction);
+        } else {
+            removeInFlight(transaction);
+            timeoutListener.onTransactionTimedOut(transaction);
+        }
+        pump();
+    }
+
+    private void cancelTimeout(@NonNull final Transaction transaction) {
+        if (transaction.timeout != null) {
+            timer.cancel(transaction.timeout);
+            transaction.timeout = null;
+        }
+    }
+
+    private boolean isInFlight(@NonNull final Transaction transaction) {
+        final List<Transaction> transactions = inFlight.get(transaction.dst);
+        return transactions != null && transactions.contains(transaction);
+    }
+
+    @Nullable
+    private Transaction findInFlight(final int address, final int opCode) {
+        final List<Transaction> transactions = inFlight.get(address);
+        if (transactions != null) {
+            for (Transaction transaction : transactions) {
+                if (ResponseOpCodes.matches(transaction.responseOpCode, opCode))
+                    return transaction;
+            }
+        }
+        return null;
+    }
+
+    private void removeInFlight(@NonNull final Transaction transaction) {
+        final List<Transaction> transactions = inFlight.get(transaction.dst);
+        if (transactions != null && transactions.remove(transaction)) {
+            cancelTimeout(transaction);
+            inFlightCount--;
+            if (transactions.isEmpty()) {
+                inFlight.remove(transaction.dst);
+            }
+        }
+    }
+}
@@ -8,7 +8,6 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import no.nordicsemi.android.mesh.InternalTransportCallbacks;
 import no.nordicsemi.android.mesh.MeshStatusCallbacks;
-import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 
 /**
  * This generic class handles the mesh messages received or sent.
@@ -24,7 +23,7 @@ abstract class MeshMessageState implements LowerTransportLayerCallbacks {
 
     MeshMessage mMeshMessage;
     final MeshTransport mMeshTransport;
-    private final InternalMeshMsgHandlerCallbacks meshMessageHandlerCallbacks;
+    final InternalMeshMsgHandlerCallbacks meshMessageHandlerCallbacks;
     protected InternalTransportCallbacks mInternalTransportCallbacks;
     MeshStatusCallbacks mMeshStatusCallbacks;
     int mSrc;
@@ -87,28 +86,35 @@ abstract class MeshMessageState implements LowerTransportLayerCallbacks {
             if (mMeshStatusCallbacks != null) {
                 mMeshStatusCallbacks.onMeshMessageProcessed(mDst, mMeshMessage);
             }
+            mMeshTransport.startSegmentTransmissionTimer(message);
         }
     }
 
     /**
      * Re-sends the mesh pdu segments that were lost in flight
      *
+     * @param message              segmented message that was sent
      * @param retransmitPduIndexes list of indexes of the messages to be
      */
-    final void executeResend(final List<Integer> retransmitPduIndexes) {
+    final void executeResend(@NonNull final Message message, final List<Integer> retransmitPduIndexes) {
         if (message.getNetworkLayerPdu().size() > 0 && !retransmitPduIndexes.isEmpty()) {
             for (int i = 0; i < retransmitPduIndexes.size(); i++) {
                 final int segO = retransmitPduIndexes.get(i);
                 if (message.getNetworkLayerPdu().get(segO) != null) {
                     final byte[] pdu = message.getNetworkLayerPdu().get(segO);
-                    MeshLogger.verbose(TAG, "Resending segment " + segO + " : " + MeshParserUtils.bytesToHex(pdu, false));
+                    MeshLogger.verbose(TAG, "Resending segment {} : {}", segO, pdu);
                     final Message retransmitMeshMessage = mMeshTransport.createRetransmitMeshMessage(message, segO);
-                    mInternalTransportCallbacks.onMeshPduCreated(mDst, retransmitMeshMessage.getNetworkLayerPdu().get(segO));
+                    mInternalTransportCallbacks.onMeshPduCreated(message.getDst(), retransmitMeshMessage.getNetworkLayerPdu().get(segO));
                 }
             }
         }
     }
 
+    @Override
+    public void retransmitSegments(@NonNull final Message message, @NonNull final List<Integer> segments) {
+        executeResend(message, segments);
+    }
+
     @Override
     public void onIncompleteTimerExpired() {
         MeshLogger.verbose(TAG, "Incomplete timer has expired, all segments were not received!");
@@ -130,7 +136,7 @@ abstract class MeshMessageState implements LowerTransportLayerCallbacks {
     public void sendSegmentAcknowledgementMessage(final ControlMessage controlMessage) {
         //We don't send acknowledgements here
         final ControlMessage message = mMeshTransport.createSegmentBlockAcknowledgementMessage(controlMessage);
-        MeshLogger.verbose(TAG, "Sending acknowledgement: " + MeshParserUtils.bytesToHex(message.getNetworkLayerPdu().get(0), false));
+        MeshLogger.verbose(TAG, "Sending acknowledgement: {}", message.getNetworkLayerPdu().get(0));
         if (mInternalTransportCallbacks == null) {
             MeshLogger.error(MeshMessageState.TAG, "mInternalTransportCallbacks is null");
             return;
@@ -22,8 +22,6 @@
 
 package no.nordicsemi.android.mesh.transport;
 
-import android.content.Context;
-import android.os.Handler;
 import no.nordicsemi.android.mesh.logger.MeshLogger;
 
 import java.util.UUID;
@@ -32,6 +30,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import no.nordicsemi.android.mesh.ApplicationKey;
+import no.nordicsemi.android.mesh.MeshExecutor;
 import no.nordicsemi.android.mesh.MeshManagerApi;
 import no.nordicsemi.android.mesh.utils.MeshAddress;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
@@ -47,30 +46,23 @@ final class MeshTransport extends NetworkLayer {
     /**
      * Constructs the MeshTransport
      *
-     * @param context context
+     * @param executor executor running the transport timers
      */
-    MeshTransport(@NonNull final Context context) {
-        this.mContext = context;
-        initHandler();
+    MeshTransport(@NonNull final MeshExecutor executor) {
+        this.mExecutor = executor;
     }
 
     /**
      * Constructs MeshTransport
      *
-     * @param context Context
-     * @param node    Mesh node
+     * @param executor executor running the transport timers
+     * @param node     Mesh node
      */
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
-    MeshTransport(@NonNull final Context context, @NonNull final ProvisionedMeshNode node) {
+    MeshTransport(@NonNull final MeshExecutor executor, @NonNull final ProvisionedMeshNode node) {
         super();
-        this.mContext = context;
+        this.mExecutor = executor;
         this.mMeshNode = node;
-        initHandler();
-    }
-
-    @Override
-    protected final void initHandler() {
-        this.mHandler = new Handler(mContext.getMainLooper());
     }
 
     @Override
@@ -129,15 +121,15 @@ final class MeshTransport extends NetworkLayer {
         final int sequenceNumber = node.incrementSequenceNumber();
         final byte[] sequenceNum = MeshParserUtils.getSequenceNumberBytes(sequenceNumber);
 
-        MeshLogger.verbose(TAG, "Src address: " + MeshAddress.formatAddress(src, false));
-        MeshLogger.verbose(TAG, "Dst address: " + MeshAddress.formatAddress(dst, false));
-        MeshLogger.verbose(TAG, "Key: " + MeshParserUtils.bytesToHex(key, false));
-        MeshLogger.verbose(TAG, "akf: " + akf);
-        MeshLogger.verbose(TAG, "aid: " + aid);
-        MeshLogger.verbose(TAG, "aszmic: " + aszmic);
-        MeshLogger.verbose(TAG, "Sequence number: " + sequenceNumber);
-        MeshLogger.verbose(TAG, "Access message opcode: " + Integer.toHexString(accessOpCode));
-        MeshLogger.verbose(TAG, "Access message parameters: " + MeshParserUtils.bytesToHex(accessMessageParameters, false));
+        MeshLogger.verbose(TAG, () -> "Src address: " + MeshAddress.formatAddress(src, false));
+        MeshLogger.verbose(TAG, () -> "Dst address: " + MeshAddress.formatAddress(dst, false));
+        MeshLogger.verbose(TAG, "Key: {}", key);
+        MeshLogger.verbose(TAG, "akf: {}", akf);
+        MeshLogger.verbose(TAG, "aid: {}", aid);
+        MeshLogger.verbose(TAG, "aszmic: {}", aszmic);
+        MeshLogger.verbose(TAG, "Sequence number: {}", sequenceNumber);
+        MeshLogger.verbose(TAG, () -> "Access message opcode: " + Integer.toHexString(accessOpCode));
+        MeshLogger.verbose(TAG, "Access message parameters: {}", accessMessageParameters);
 
         final AccessMessage message = new AccessMessage();
         message.setSrc(src);
@@ -188,15 +180,15 @@ final class MeshTransport extends NetworkLayer {
         final int sequenceNumber = node.incrementSequenceNumber();
         final byte[] sequenceNum = MeshParserUtils.getSequenceNumberBytes(sequenceNumber);
 
-        MeshLogger.verbose(TAG, "Src address: " + MeshAddress.formatAddress(src, false));
-        MeshLogger.verbose(TAG, "Dst address: " + MeshAddress.formatAddress(dst, false));
-        MeshLogger.verbose(TAG, "Key: " + MeshParserUtils.bytesToHex(key.getKey(), false));
-        MeshLogger.verbose(TAG, "akf: " + akf);
-        MeshLogger.verbose(TAG, "aid: " + aid);
-        MeshLogger.verbose(TAG, "aszmic: " + aszmic);
-        MeshLogger.verbose(TAG, "Sequence number: " + sequenceNumber);
-        MeshLogger.verbose(TAG, "Access message opcode: " + Integer.toHexString(accessOpCode));
-        MeshLogger.verbose(TAG, "Access message parameters: " + MeshParserUtils.bytesToHex(accessMessageParameters, false));
+        MeshLogger.verbose(TAG, () -> "Src address: " + MeshAddress.formatAddress(src, false));
+        MeshLogger.verbose(TAG, () -> "Dst address: " + MeshAddress.formatAddress(dst, false));
+        MeshLogger.verbose(TAG, "Key: {}", key.getKey());
+        MeshLogger.verbose(TAG, "akf: {}", akf);
+        MeshLogger.verbose(TAG, "aid: {}", aid);
+        MeshLogger.verbose(TAG, "aszmic: {}", aszmic);
+        MeshLogger.verbose(TAG, "Sequence number: {}", sequenceNumber);
+        MeshLogger.verbose(TAG, () -> "Access message opcode: " + Integer.toHexString(accessOpCode));
+        MeshLogger.verbose(TAG, "Access message parameters: {}", accessMessageParameters);
 
         final AccessMessage message = new AccessMessage();
         message.setSrc(src);
@@ -251,15 +243,15 @@ final class MeshTransport extends NetworkLayer {
         final int sequenceNumber = node.incrementSequenceNumber();
         final byte[] sequenceNum = MeshParserUtils.getSequenceNumberBytes(sequenceNumber);
 
-        MeshLogger.verbose(TAG, "Src address: " + MeshAddress.formatAddress(src, false));
-        MeshLogger.verbose(TAG, "Dst address: " + MeshAddress.formatAddress(dst, false));
-        MeshLogger.verbose(TAG, "Key: " + MeshParserUtils.bytesToHex(key.getKey(), false));
-        MeshLogger.verbose(TAG, "akf: " + akf);
-        MeshLogger.verbose(TAG, "aid: " + aid);
-        MeshLogger.verbose(TAG, "aszmic: " + aszmic);
-        MeshLogger.verbose(TAG, "Sequence number: " + sequenceNumber);
-        MeshLogger.verbose(TAG, "Access message opcode: " + Integer.toHexString(accessOpCode));
-        MeshLogger.verbose(TAG, "Access message parameters: " + MeshParserUtils.bytesToHex(accessMessageParameters, false));
+        MeshLogger.verbose(TAG, () -> "Src address: " + MeshAddress.formatAddress(src, false));
+        MeshLogger.verbose(TAG, () -> "Dst address: " + MeshAddress.formatAddress(dst, false));
+        MeshLogger.verbose(TAG, "Key: {}", key.getKey());
+        MeshLogger.verbose(TAG, "akf: {}", akf);
+        MeshLogger.verbose(TAG, "aid: {}", aid);
+        MeshLogger.verbose(TAG, "aszmic: {}", aszmic);
+        MeshLogger.verbose(TAG, "Sequence number: {}", sequenceNumber);
+        MeshLogger.verbose(TAG, () -> "Access message opcode: " + Integer.toHexString(accessOpCode));
+        MeshLogger.verbose(TAG, "Access message parameters: {}", accessMessageParameters);
 
         final AccessMessage message = new AccessMessage();
         message.setCompanyIdentifier(companyIdentifier);
@@ -299,11 +291,11 @@ final class MeshTransport extends NetworkLayer {
         final int sequenceNumber = node.incrementSequenceNumber();
         final byte[] sequenceNum = MeshParserUtils.getSequenceNumberBytes(sequenceNumber);
 
-        MeshLogger.verbose(TAG, "Src address: " + MeshAddress.formatAddress(src, false));
-        MeshLogger.verbose(TAG, "Dst address: " + MeshAddress.formatAddress(dst, false));
-        MeshLogger.verbose(TAG, "Sequence number: " + sequenceNumber);
-        MeshLogger.verbose(TAG, "Control message opcode: " + Integer.toHexString(opcode));
-        MeshLogger.verbose(TAG, "Control message parameters: " + MeshParserUtils.bytesToHex(parameters, false));
+        MeshLogger.verbose(TAG, () -> "Src address: " + MeshAddress.formatAddress(src, false));
+        MeshLogger.verbose(TAG, () -> "Dst address: " + MeshAddress.formatAddress(dst, false));
+        MeshLogger.verbose(TAG, "Sequence number: {}", sequenceNumber);
+        MeshLogger.verbose(TAG, () -> "Control message opcode: " + Integer.toHexString(opcode));
+        MeshLogger.verbose(TAG, "Control message parameters: {}", parameters);
 
         final ControlMessage message = new ControlMessage();
         message.setSrc(src);
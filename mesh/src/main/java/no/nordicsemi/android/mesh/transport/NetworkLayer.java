@@ -37,6 +37,8 @@ import androidx.annotation.VisibleForTesting;
 import no.nordicsemi.android.mesh.MeshManagerApi;
 import no.nordicsemi.android.mesh.NetworkKey;
 import no.nordicsemi.android.mesh.Provisioner;
+import no.nordicsemi.android.mesh.core.NetworkCrypto;
+import no.nordicsemi.android.mesh.utils.CipherContext;
 import no.nordicsemi.android.mesh.utils.ExtendedInvalidCipherTextException;
 import no.nordicsemi.android.mesh.utils.MeshAddress;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
@@ -94,11 +96,8 @@ abstract class NetworkLayer extends LowerTransportLayer {
     public final Message createNetworkLayerPDU(@NonNull final Message message) {
         final SecureUtils.K2Output k2Output = getK2Output(message);
         final int nid = k2Output.getNid();
-        final byte[] encryptionKey = k2Output.getEncryptionKey();
-        MeshLogger.verbose(TAG, "Encryption key: " + MeshParserUtils.bytesToHex(encryptionKey, false));
-
-        final byte[] privacyKey = k2Output.getPrivacyKey();
-        MeshLogger.verbose(TAG, "Privacy key: " + MeshParserUtils.bytesToHex(privacyKey, false));
+        final CipherContext encryptionCipher = k2Output.getEncryptionCipher();
+        final CipherContext privacyCipher = k2Output.getPrivacyCipher();
         final int ctl = message.getCtl();
         final int ttl = message.getTtl();
         final int ivi = message.getIvIndex()[3] & 0x01; // least significant bit of IV Index
@@ -122,16 +121,16 @@ abstract class NetworkLayer extends LowerTransportLayer {
                 for (int i = 0; i < lowerTransportPduMap.size(); i++) {
                     final byte[] lowerTransportPdu = lowerTransportPduMap.get(i);
                     if (i != 0) {
-                        node.setSequenceNumber(MeshParserUtils.convert24BitsToInt(message.getSequenceNumber()));
+                        node.advanceSequenceNumber(MeshParserUtils.convert24BitsToInt(message.getSequenceNumber()));
                         final byte[] sequenceNumber = MeshParserUtils.getSequenceNumberBytes(node.incrementSequenceNumber());
                         message.setSequenceNumber(sequenceNumber);
                     }
                     sequenceNumbers.add(message.getSequenceNumber());
-                    MeshLogger.verbose(TAG, "Sequence Number: " + MeshParserUtils.bytesToHex(sequenceNumbers.get(i), false));
+                    MeshLogger.verbose(TAG, "Sequence Number: {}", sequenceNumbers.get(i));
                     final byte[] nonce = createNetworkNonce(ctlTTL, sequenceNumbers.get(i), src, message.getIvIndex());
-                    final byte[] encryptedPayload = encryptPdu(lowerTransportPdu, encryptionKey, nonce, message.getDst(), SecureUtils.getNetMicLength(message.getCtl()));
+                    final byte[] encryptedPayload = encryptPdu(lowerTransportPdu, encryptionCipher, nonce, message.getDst(), SecureUtils.getNetMicLength(message.getCtl()));
                     encryptedPduPayload.put(i, encryptedPayload);
-                    MeshLogger.verbose(TAG, "Encrypted Network payload: " + MeshParserUtils.bytesToHex(encryptedPayload, false));
+                    MeshLogger.verbose(TAG, "Encrypted Network payload: {}", encryptedPayload);
                 }
                 break;
             case MeshManagerApi.PDU_TYPE_PROXY_CONFIGURATION:
@@ -142,22 +141,18 @@ abstract class NetworkLayer extends LowerTransportLayer {
                     message.setSequenceNumber(sequenceNum);
                     sequenceNumbers.add(message.getSequenceNumber());
                     final byte[] nonce = createProxyNonce(message.getSequenceNumber(), src, message.getIvIndex());
-                    final byte[] encryptedPayload = encryptPdu(lowerTransportPdu, encryptionKey, nonce, message.getDst(), SecureUtils.getNetMicLength(message.getCtl()));
+                    final byte[] encryptedPayload = encryptPdu(lowerTransportPdu, encryptionCipher, nonce, message.getDst(), SecureUtils.getNetMicLength(message.getCtl()));
                     encryptedPduPayload.put(i, encryptedPayload);
-                    MeshLogger.verbose(TAG, "Encrypted Network payload: " + MeshParserUtils.bytesToHex(encryptedPayload, false));
+                    MeshLogger.verbose(TAG, "Encrypted Network payload: {}", encryptedPayload);
                 }
                 break;
         }
 
         final SparseArray<byte[]> pduArray = new SparseArray<>();
         for (int i = 0; i < encryptedPduPayload.size(); i++) {
-            //Create the privacy random
             final byte[] encryptedPayload = encryptedPduPayload.get(i);
-            final byte[] privacyRandom = createPrivacyRandom(encryptedPayload);
-            //Next we create the PECB
-            final byte[] pecb = createPECB(message.getIvIndex(), privacyRandom, privacyKey);
-
-            final byte[] header = obfuscateNetworkHeader(ctlTTL, sequenceNumbers.get(i), src, pecb);
+            final byte[] header = NetworkCrypto.obfuscateNetworkHeader(ctlTTL, MeshParserUtils.convert24BitsToInt(sequenceNumbers.get(i)),
+                    src, MeshParserUtils.bytesToInt(message.getIvIndex()), encryptedPayload, privacyCipher);
             final byte[] pdu = ByteBuffer.allocate(1 + 1 + header.length + encryptedPayload.length).order(ByteOrder.BIG_ENDIAN)
                     .put((byte) pduType)
                     .put(iviNID)
@@ -175,11 +170,8 @@ abstract class NetworkLayer extends LowerTransportLayer {
     final Message createRetransmitNetworkLayerPDU(@NonNull final Message message, final int segment) {
         final SecureUtils.K2Output k2Output = getK2Output(message);
         final int nid = k2Output.getNid();
-        final byte[] encryptionKey = k2Output.getEncryptionKey();
-        MeshLogger.verbose(TAG, "Encryption key: " + MeshParserUtils.bytesToHex(encryptionKey, false));
-
-        final byte[] privacyKey = k2Output.getPrivacyKey();
-        MeshLogger.verbose(TAG, "Privacy key: " + MeshParserUtils.bytesToHex(privacyKey, false));
+        final CipherContext encryptionCipher = k2Output.getEncryptionCipher();
+        final CipherContext privacyCipher = k2Output.getPrivacyCipher();
         final int ctl = message.getCtl();
         final int ttl = message.getTtl();
         final int ivi = message.getIvIndex()[3] & 0x01; // least significant bit of IV Index
@@ -199,28 +191,24 @@ abstract class NetworkLayer extends LowerTransportLayer {
         if (message.getPduType() == MeshManagerApi.PDU_TYPE_NETWORK) {
             final ProvisionedMeshNode node = mUpperTransportLayerCallbacks.getNode(message.getSrc());
             final byte[] lowerTransportPdu = lowerTransportPduMap.get(segment);
-            node.setSequenceNumber(MeshParserUtils.convert24BitsToInt(message.getSequenceNumber()));
-            //final int sequenceNumber = node.incrementSequenceNumber();//incrementSequenceNumber(mNetworkLayerCallbacks.getProvisioner(), message.getSequenceNumber());
+            node.advanceSequenceNumber(MeshParserUtils.convert24BitsToInt(message.getSequenceNumber()));
             final byte[] sequenceNum = MeshParserUtils.getSequenceNumberBytes(node.incrementSequenceNumber());
             message.setSequenceNumber(sequenceNum);
 
-            MeshLogger.verbose(TAG, "Sequence Number: " + MeshParserUtils.bytesToHex(sequenceNum, false));
+            MeshLogger.verbose(TAG, "Sequence Number: {}", sequenceNum);
 
             final byte[] nonce = createNetworkNonce(ctlTTL, sequenceNum, src, message.getIvIndex());
-            encryptedNetworkPayload = encryptPdu(lowerTransportPdu, encryptionKey, nonce, message.getDst(), SecureUtils.getNetMicLength(message.getCtl()));
+            encryptedNetworkPayload = encryptPdu(lowerTransportPdu, encryptionCipher, nonce, message.getDst(), SecureUtils.getNetMicLength(message.getCtl()));
             if (encryptedNetworkPayload == null)
                 return null;
-            MeshLogger.verbose(TAG, "Encrypted Network payload: " + MeshParserUtils.bytesToHex(encryptedNetworkPayload, false));
+            MeshLogger.verbose(TAG, "Encrypted Network payload: {}", encryptedNetworkPayload);
         }
 
         if (encryptedNetworkPayload == null)
             return null;
 
-        final byte[] privacyRandom = createPrivacyRandom(encryptedNetworkPayload);
-        //Next we create the PECB
-        final byte[] pecb = createPECB(message.getIvIndex(), privacyRandom, privacyKey);
-
-        final byte[] header = obfuscateNetworkHeader(ctlTTL, message.getSequenceNumber(), src, pecb);
+        final byte[] header = NetworkCrypto.obfuscateNetworkHeader(ctlTTL, MeshParserUtils.convert24BitsToInt(message.getSequenceNumber()),
+                src, MeshParserUtils.bytesToInt(message.getIvIndex()), encryptedNetworkPayload, privacyCipher);
         final byte[] pdu = ByteBuffer.allocate(1 + 1 + header.length + encryptedNetworkPayload.length).order(ByteOrder.BIG_ENDIAN)
                 .put((byte) pduType)
                 .put(iviNID)
@@ -257,7 +245,7 @@ abstract class NetworkLayer extends LowerTransportLayer {
         final int ctlTtl = networkHeader[0];
         final int ctl = (ctlTtl >> 7) & 0x01;
         final int ttl = ctlTtl & 0x7F;
-        MeshLogger.verbose(TAG, "TTL for received message: " + ttl);
+        MeshLogger.verbose(TAG, "TTL for received message: {}", ttl);
         final int src = MeshParserUtils.unsignedBytesToInt(networkHeader[5], networkHeader[4]);
         if (ctl == 1) {
             return parseControlMessage(key, provisioner.getProvisionerAddress(), data, networkHeader, decryptedNetworkPayload, src, sequenceNumber);
@@ -289,10 +277,10 @@ abstract class NetworkLayer extends LowerTransportLayer {
         try {
             int receivedTtl = networkHeader[0] & 0x7F;
             final int dst = MeshParserUtils.unsignedBytesToInt(decryptedNetworkPayload[1], decryptedNetworkPayload[0]);
-            MeshLogger.verbose(TAG, "Dst: " + MeshAddress.formatAddress(dst, true));
+            MeshLogger.verbose(TAG, () -> "Dst: " + MeshAddress.formatAddress(dst, true));
 
             if (isSegmentedMessage(decryptedNetworkPayload[2])) {
-                MeshLogger.verbose(TAG, "Received a segmented access message from: " + MeshAddress.formatAddress(src, false));
+                MeshLogger.verbose(TAG, () -> "Received a segmented access message from: " + MeshAddress.formatAddress(src, false));
 
                 //Check if the received segmented message is from the same src as the previous segment
                 //Ideal case this check is not needed but let's leave it for now.
@@ -323,7 +311,8 @@ abstract class NetworkLayer extends LowerTransportLayer {
                 final AccessMessage message = parseSegmentedAccessLowerTransportPDU(ttl, pdu, ivIndex, sequenceNumber);
 
                 if (message != null) {
-                    final SparseArray<byte[]> segmentedMessages = segmentedAccessMessagesMessages.clone();
+                    // The segments are handed over to the message as the map is recreated for the next segmented message
+                    final SparseArray<byte[]> segmentedMessages = segmentedAccessMessagesMessages;
                     segmentedAccessMessagesMessages = null;
                     message.setNetworkKey(key);
                     message.setIvIndex(MeshParserUtils.intToBytes(ivIndex));
@@ -337,27 +326,22 @@ abstract class NetworkLayer extends LowerTransportLayer {
                 return message;
 
             } else {
-
-                //Removing the mDst here
-                final byte[] pdu = ByteBuffer.allocate(2 + networkHeader.length + decryptedNetworkPayload.length)
-                        .order(ByteOrder.BIG_ENDIAN)
-                        .put(data, 0, 2)
-                        .put(networkHeader)
-                        .put(decryptedNetworkPayload)
-                        .array();
-                final AccessMessage message = parseUnsegmentedAccessLowerTransportPDU(pdu, ivIndex, sequenceNumber);
+                // Unsegmented messages are parsed and decrypted within the decrypted network payload, which holds the
+                // destination address (2 octets), the lower transport header (1 octet) and the upper transport pdu.
+                final AccessMessage message = parseUnsegmentedAccessLowerTransportPDU(decryptedNetworkPayload, src, ivIndex,
+                        MeshParserUtils.convert24BitsToInt(sequenceNumber));
                 if (message == null)
                     return null;
                 message.setNetworkKey(key);
                 message.setIvIndex(MeshParserUtils.intToBytes(ivIndex));
-                final SparseArray<byte[]> pduArray = new SparseArray<>();
+                final SparseArray<byte[]> pduArray = new SparseArray<>(1);
                 pduArray.put(0, data);
                 message.setNetworkLayerPdu(pduArray);
                 message.setTtl(receivedTtl);
                 message.setSrc(src);
                 message.setDst(dst);
                 message.setSequenceNumber(sequenceNumber);
-                parseUpperTransportPDU(message);
+                parseUnsegmentedUpperTransportPDU(message, decryptedNetworkPayload, 3, decryptedNetworkPayload.length - 3);
                 parseAccessLayerPDU(message);
                 return message;
             }
@@ -514,84 +498,6 @@ abstract class NetworkLayer extends LowerTransportLayer {
         return networkKey.getTxDerivatives();
     }
 
-    /**
-     * Obfuscates the network header
-     *
-     * @param ctlTTL         Message type and ttl bit
-     * @param sequenceNumber Sequence number of the message
-     * @param src            Source address
-     * @param pecb           Value derived from the privacy random
-     * @return Obfuscated network header
-     */
-    private byte[] obfuscateNetworkHeader(final byte ctlTTL, @NonNull final byte[] sequenceNumber, final int src, @NonNull final byte[] pecb) {
-
-        final ByteBuffer buffer = ByteBuffer.allocate(1 + sequenceNumber.length + 2).order(ByteOrder.BIG_ENDIAN);
-        buffer.put(ctlTTL);
-        buffer.put(sequenceNumber);   //sequence number
-        buffer.putShort((short) src);       //source address
-
-        final byte[] headerBuffer = buffer.array();
-
-        final ByteBuffer bufferPECB = ByteBuffer.allocate(6);
-        bufferPECB.put(pecb, 0, 6);
-
-        final byte[] obfuscated = new byte[6];
-        for (int i = 0; i < 6; i++)
-            obfuscated[i] = (byte) (headerBuffer[i] ^ pecb[i]);
-
-        return obfuscated;
-    }
-
-    /**
-     * De-obfuscates the network header
-     *
-     * @param pdu Received from the node
-     * @return Obfuscated network header
-     */
-    static byte[] deObfuscateNetworkHeader(@NonNull final byte[] pdu,
-                                           @NonNull final byte[] ivIndex,
-                                           @NonNull final byte[] privacyKey) {
-        final ByteBuffer obfuscatedNetworkBuffer = ByteBuffer.allocate(6);
-        obfuscatedNetworkBuffer.order(ByteOrder.BIG_ENDIAN);
-        obfuscatedNetworkBuffer.put(pdu, 2, 6);
-        final byte[] obfuscatedData = obfuscatedNetworkBuffer.array();
-
-        final ByteBuffer privacyRandomBuffer = ByteBuffer.allocate(7);
-        privacyRandomBuffer.order(ByteOrder.BIG_ENDIAN);
-        privacyRandomBuffer.put(pdu, 8, 7);
-        final byte[] privacyRandom = createPrivacyRandom(privacyRandomBuffer.array());
-
-        final byte[] pecb = createPECB(ivIndex, privacyRandom, privacyKey);
-        final byte[] deObfuscatedData = new byte[6];
-
-        for (int i = 0; i < 6; i++)
-            deObfuscatedData[i] = (byte) (obfuscatedData[i] ^ pecb[i]);
-
-        return deObfuscatedData;
-    }
-
-    /**
-     * Creates the privacy random.
-     *
-     * @param encryptedUpperTransportPDU Encrypted transport pdu
-     * @return Privacy random
-     */
-    private static byte[] createPrivacyRandom(@NonNull final byte[] encryptedUpperTransportPDU) {
-        final byte[] privacyRandom = new byte[7];
-        System.arraycopy(encryptedUpperTransportPDU, 0, privacyRandom, 0, privacyRandom.length);
-        return privacyRandom;
-    }
-
-    private static byte[] createPECB(@NonNull final byte[] ivIndex, @NonNull final byte[] privacyRandom, @NonNull final byte[] privacyKey) {
-        final ByteBuffer buffer = ByteBuffer.allocate(5 + privacyRandom.length + ivIndex.length);
-        buffer.order(ByteOrder.BIG_ENDIAN);
-        buffer.put(new byte[]{0x00, 0x00, 0x00, 0x00, 0x00});
-        buffer.put(ivIndex);
-        buffer.put(privacyRandom);
-        final byte[] temp = buffer.array();
-        return SecureUtils.encryptWithAES(temp, privacyKey);
-    }
-
     /**
      * Creates the network nonce
      *
@@ -601,14 +507,7 @@ abstract class NetworkLayer extends LowerTransportLayer {
      * @return Network nonce
      */
     static byte[] createNetworkNonce(final byte ctlTTL, @NonNull final byte[] sequenceNumber, final int src, @NonNull final byte[] ivIndex) {
-        final ByteBuffer networkNonce = ByteBuffer.allocate(13);
-        networkNonce.put((byte) NONCE_TYPE_NETWORK); //Nonce type
-        networkNonce.put(ctlTTL); // CTL and TTL
-        networkNonce.put(sequenceNumber);
-        networkNonce.putShort((short) src);
-        networkNonce.put(new byte[]{PAD_NETWORK_NONCE, PAD_NETWORK_NONCE}); //PAD
-        networkNonce.put(ivIndex);
-        return networkNonce.array();
+        return NetworkCrypto.createNetworkNonce(ctlTTL, MeshParserUtils.convert24BitsToInt(sequenceNumber), src, MeshParserUtils.bytesToInt(ivIndex));
     }
 
     /**
@@ -619,27 +518,20 @@ abstract class NetworkLayer extends LowerTransportLayer {
      * @return Proxy nonce
      */
     static byte[] createProxyNonce(@NonNull final byte[] sequenceNumber, final int src, @NonNull final byte[] ivIndex) {
-        final ByteBuffer applicationNonceBuffer = ByteBuffer.allocate(13);
-        applicationNonceBuffer.put((byte) NONCE_TYPE_PROXY); //Nonce type
-        applicationNonceBuffer.put((byte) PAD_PROXY_NONCE); //PAD
-        applicationNonceBuffer.put(sequenceNumber);
-        applicationNonceBuffer.putShort((short) src);
-        applicationNonceBuffer.put(new byte[]{PAD_PROXY_NONCE, PAD_PROXY_NONCE});
-        applicationNonceBuffer.put(ivIndex);
-        return applicationNonceBuffer.array();
+        return NetworkCrypto.createProxyNonce(MeshParserUtils.convert24BitsToInt(sequenceNumber), src, MeshParserUtils.bytesToInt(ivIndex));
     }
 
     /**
      * Encrypts the pdu
      *
      * @param lowerTransportPdu lower transport pdu to be encrypted
-     * @param encryptionKey     Encryption key
+     * @param encryptionCipher  Cipher context keyed with the encryption key
      * @param nonce             nonce depending on the pdu type
      * @param dst               Destination address
      * @param micLength         Message integrity check length
      */
     private byte[] encryptPdu(@NonNull final byte[] lowerTransportPdu,
-                              @NonNull final byte[] encryptionKey,
+                              @NonNull final CipherContext encryptionCipher,
                               @NonNull final byte[] nonce,
                               final int dst,
                               final int micLength) {
@@ -648,6 +540,6 @@ abstract class NetworkLayer extends LowerTransportLayer {
                 .putShort((short) dst)
                 .put(lowerTransportPdu).array();
         //Network layer encryption
-        return SecureUtils.encryptCCM(unencryptedNetworkPayload, encryptionKey, nonce, micLength);
+        return encryptionCipher.encryptCCM(unencryptedNetworkPayload, nonce, micLength);
     }
 }
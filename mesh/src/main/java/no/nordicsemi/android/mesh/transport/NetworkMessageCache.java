@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.transport;
+
+/**
+ * Network message cache, see Mesh Profile specification section 3.4.6.5.
+ * <p>
+ * Remembers the most recently received Network PDUs by source address, sequence number and IV Index so that duplicate
+ * copies, which are common when the same PDU is relayed by several nodes, can be discarded right after de-obfuscating
+ * the network header instead of being decrypted again.
+ * </p>
+ * <p>
+ * The cache is set associative with a fixed number of entries and does not allocate once constructed. Each entry is a
+ * single long containing the lower 24 bits of the IV Index, the 16-bit source address and the 24-bit sequence number.
+ * When a set is full, its oldest entry is replaced.
+ * </p>
+ */
+final class NetworkMessageCache {
+
+    static final int DEFAULT_SIZE = 256;
+    private static final int WAYS = 4;
+
+    private final long[] entries;
+    private final byte[] victims;
+    private final int setShift;
+
+    /**
+     * Constructs the cache.
+     *
+     * @param size number of entries, must be a power of two and not less than 4
+     */
+    NetworkMessageCache(final int size) {
+        if (size < WAYS || Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Size must be a power of two and not less than " + WAYS);
+        final int sets = size / WAYS;
+        entries = new long[size];
+        victims = new byte[sets];
+        setShift = 32 - Integer.numberOfTrailingZeros(sets);
+    }
+
+    private static long key(final int src, final int sequenceNumber, final int ivIndex) {
+        return ((long) (ivIndex & 0xFFFFFF) << 40) | ((long) (src & 0xFFFF) << 24) | (sequenceNumber & 0xFFFFFF);
+    }
+
+    private int set(final long key) {
+        if (setShift == 32)
+            return 0;
+        final int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return (hash >>> setShift) * WAYS;
+    }
+
+    /**
+     * Returns true if a PDU with the given source address, sequence number and IV Index has already been received.
+     *
+     * @param src            Source address
+     * @param sequenceNumber Sequence number
+     * @param ivIndex        IV Index
+     */
+    synchronized boolean contains(final int src, final int sequenceNumber, final int ivIndex) {
+        final long key = key(src, sequenceNumber, ivIndex);
+        final int set = set(key);
+        for (int i = set; i < set + WAYS; i++) {
+            if (entries[i] == key)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a PDU that has been successfully decrypted to the cache.
+     *
+     * @param src            Source address
+     * @param sequenceNumber Sequence number
+     * @param ivIndex        IV Index
+     */
+    synchronized void add(final int src, final int sequenceNumber, final int ivIndex) {
+        final long key = key(src, sequenceNumber, ivIndex);
+        final int set = set(key);
+        final int victim = victims[set / WAYS];
+        entries[set + victim] = key;
+        victims[set / WAYS] = (byte) ((victim + 1) % WAYS);
+    }
+}
@@ -105,9 +105,13 @@ abstract class ProvisionedBaseMeshNode implements Parcelable {
     @ColumnInfo(name = "device_key")
     @Expose
     byte[] deviceKey;
-    @ColumnInfo(name = "seq_number")
+    @Ignore
     @Expose
     int sequenceNumber = 0;
+    // Highest sequence number that may be used without another database write, this is what gets persisted.
+    @ColumnInfo(name = "seq_number")
+    @Expose(serialize = false, deserialize = false)
+    private int reservedSequenceNumber = 0;
     @ColumnInfo(name = "cid")
     @Nullable
     @Expose
@@ -166,6 +170,33 @@ abstract class ProvisionedBaseMeshNode implements Parcelable {
         this.meshUuid = meshUuid;
     }
 
+    /**
+     * Returns the highest sequence number reserved for this node.
+     * <p>
+     * This is the value that is persisted instead of the sequence number so that the node does not have to be written for
+     * every message sent.
+     * </p>
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public int getReservedSequenceNumber() {
+        return reservedSequenceNumber;
+    }
+
+    /**
+     * Sets the highest sequence number reserved for this node.
+     * <p>
+     * Sequence numbers up to the reserved one may already have been used before the network was closed, hence the
+     * sequence number of the node resumes from the reservation when the node is loaded.
+     * </p>
+     *
+     * @param reservedSequenceNumber highest reserved sequence number
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void setReservedSequenceNumber(final int reservedSequenceNumber) {
+        this.reservedSequenceNumber = reservedSequenceNumber;
+        sequenceNumber = Math.max(sequenceNumber, reservedSequenceNumber);
+    }
+
     @NonNull
     public String getUuid() {
         return uuid;
@@ -48,6 +48,7 @@ import no.nordicsemi.android.mesh.Provisioner;
 import no.nordicsemi.android.mesh.models.ConfigurationServerModel;
 import no.nordicsemi.android.mesh.models.SigModelParser;
 import no.nordicsemi.android.mesh.provisionerstates.UnprovisionedMeshNode;
+import no.nordicsemi.android.mesh.utils.CipherContext;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 import no.nordicsemi.android.mesh.utils.NetworkTransmitSettings;
 import no.nordicsemi.android.mesh.utils.RelaySettings;
@@ -65,6 +66,8 @@ import static androidx.room.ForeignKey.CASCADE;
         indices = @Index("mesh_uuid"))
 public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
 
+    private static final int MAX_SEQUENCE_NUMBER = 0xFFFFFF;
+
     public static final Creator<ProvisionedMeshNode> CREATOR = new Creator<ProvisionedMeshNode>() {
         @Override
         public ProvisionedMeshNode createFromParcel(Parcel in) {
@@ -77,6 +80,9 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
         }
     };
 
+    @Ignore
+    private CipherContext deviceKeyCipher;
+
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public ProvisionedMeshNode() {
@@ -157,6 +163,7 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
         deviceKey = in.createByteArray();
         ttl = (Integer) in.readValue(Integer.class.getClassLoader());
         sequenceNumber = in.readInt();
+        setReservedSequenceNumber(in.readInt());
         companyIdentifier = (Integer) in.readValue(Integer.class.getClassLoader());
         productIdentifier = (Integer) in.readValue(Integer.class.getClassLoader());
         versionIdentifier = (Integer) in.readValue(Integer.class.getClassLoader());
@@ -185,6 +192,7 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
         dest.writeByteArray(deviceKey);
         dest.writeValue(ttl);
         dest.writeInt(sequenceNumber);
+        dest.writeInt(getReservedSequenceNumber());
         dest.writeValue(companyIdentifier);
         dest.writeValue(productIdentifier);
         dest.writeValue(versionIdentifier);
@@ -237,6 +245,18 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public void setDeviceKey(final byte[] deviceKey) {
         this.deviceKey = deviceKey;
+        deviceKeyCipher = null;
+    }
+
+    /**
+     * Returns a {@link CipherContext} keyed with the device key that can be reused across messages.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public CipherContext getDeviceKeyCipher() {
+        if (deviceKeyCipher == null) {
+            deviceKeyCipher = new CipherContext(deviceKey);
+        }
+        return deviceKeyCipher;
     }
 
     public int getSequenceNumber() {
@@ -248,12 +268,15 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
      * <p>
      * This is only meant to be used internally within the library.
      * However this is open now for users to set the sequence number manually in provisioner node.
+     * The sequence number reservation is reset to the sequence number given, i.e. the next message sent reserves a
+     * new block of sequence numbers.
      * </p>
      *
      * @param sequenceNumber sequence number of the node
      */
     public void setSequenceNumber(final int sequenceNumber) {
         this.sequenceNumber = sequenceNumber;
+        setReservedSequenceNumber(sequenceNumber);
     }
 
     public Integer getCompanyIdentifier() {
@@ -342,6 +365,32 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
         final NodeKey nodeKey = MeshParserUtils.getNodeKey(mAddedNetKeys, index);
         if (nodeKey != null) {
             nodeKey.setUpdated(true);
+            nodeKey.setPhase(NetworkKey.KEY_DISTRIBUTION);
+        }
+    }
+
+    /**
+     * Updates the Key Refresh Phase of a net key reported by the node. Once the node returns to normal operation the
+     * net key and the app keys bound to it are no longer marked as updated.
+     *
+     * @param index        NetKey index
+     * @param phase        Key Refresh Phase
+     * @param boundAppKeys App keys bound to the net key
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    void updateKeyRefreshPhase(final int index, final int phase, @NonNull final List<ApplicationKey> boundAppKeys) {
+        final NodeKey nodeKey = MeshParserUtils.getNodeKey(mAddedNetKeys, index);
+        if (nodeKey == null)
+            return;
+        nodeKey.setPhase(phase);
+        if (phase == NetworkKey.NORMAL_OPERATION) {
+            nodeKey.setUpdated(false);
+            for (ApplicationKey appKey : boundAppKeys) {
+                final NodeKey appNodeKey = MeshParserUtils.getNodeKey(mAddedAppKeys, appKey.getKeyIndex());
+                if (appNodeKey != null) {
+                    appNodeKey.setUpdated(false);
+                }
+            }
         }
     }
 
@@ -416,7 +465,7 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     void updateAddedAppKey(final int index) {
-        final NodeKey nodeKey = MeshParserUtils.getNodeKey(mAddedNetKeys, index);
+        final NodeKey nodeKey = MeshParserUtils.getNodeKey(mAddedAppKeys, index);
         if (nodeKey != null) {
             nodeKey.setUpdated(true);
         }
@@ -585,10 +634,50 @@ public final class ProvisionedMeshNode extends ProvisionedBaseMeshNode {
         return false;
     }
 
+    /**
+     * Moves the sequence number forward to the one given, leaving the sequence number reservation as is.
+     * <p>
+     * Unlike {@link #setSequenceNumber(int)} the sequence number is never lowered, so that the sequence numbers used
+     * since are not reused.
+     * </p>
+     *
+     * @param sequenceNumber sequence number already used by the node
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void advanceSequenceNumber(final int sequenceNumber) {
+        this.sequenceNumber = Math.max(this.sequenceNumber, sequenceNumber);
+    }
+
     /**
      * Increments the sequence number
      */
     public int incrementSequenceNumber() {
         return sequenceNumber = sequenceNumber + 1;
     }
+
+    /**
+     * Returns true if the current sequence number is beyond the reserved sequence numbers, i.e. it has not been persisted.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public boolean isSequenceNumberReservationExhausted() {
+        return sequenceNumber > getReservedSequenceNumber();
+    }
+
+    /**
+     * Reserves the next block of sequence numbers once half of the current reservation has been used.
+     *
+     * @param blockSize number of sequence numbers to reserve ahead of the current sequence number
+     * @return true if a new block was reserved, in which case the node must be persisted
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public boolean reserveSequenceNumbers(final int blockSize) {
+        final int reservedSequenceNumber = getReservedSequenceNumber();
+        if (sequenceNumber + blockSize / 2 < reservedSequenceNumber)
+            return false;
+        final int nextReservation = Math.min(sequenceNumber + blockSize, MAX_SEQUENCE_NUMBER);
+        if (nextReservation <= reservedSequenceNumber)
+            return false;
+        setReservedSequenceNumber(nextReservation);
+        return true;
+    }
 }
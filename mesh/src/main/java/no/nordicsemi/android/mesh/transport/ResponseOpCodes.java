@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.transport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.opcodes.ApplicationMessageOpCodes;
+import no.nordicsemi.android.mesh.opcodes.ConfigMessageOpCodes;
+
+/**
+ * Maps the opcodes of acknowledged messages to the opcode of the status message sent in response.
+ */
+final class ResponseOpCodes {
+
+    /**
+     * The message is unacknowledged or its response is not known to the library.
+     */
+    static final int NO_RESPONSE = -1;
+
+    /**
+     * The message is a {@link VendorModelMessageAcked}, which is acknowledged by any vendor model message.
+     */
+    static final int VENDOR_MODEL_RESPONSE = -2;
+
+    private static final Map<Integer, Integer> RESPONSES = new HashMap<>();
+
+    static {
+        //Config messages
+        put(ConfigMessageOpCodes.CONFIG_APPKEY_STATUS, ConfigMessageOpCodes.CONFIG_APPKEY_ADD, ConfigMessageOpCodes.CONFIG_APPKEY_UPDATE, ConfigMessageOpCodes.CONFIG_APPKEY_DELETE);
+        put(ConfigMessageOpCodes.CONFIG_APPKEY_LIST, ConfigMessageOpCodes.CONFIG_APPKEY_GET);
+        put(ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_STATUS, ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_GET);
+        put(ConfigMessageOpCodes.CONFIG_BEACON_STATUS, ConfigMessageOpCodes.CONFIG_BEACON_GET, ConfigMessageOpCodes.CONFIG_BEACON_SET);
+        put(ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_STATUS, ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_GET, ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_SET);
+        put(ConfigMessageOpCodes.CONFIG_FRIEND_STATUS, ConfigMessageOpCodes.CONFIG_FRIEND_GET, ConfigMessageOpCodes.CONFIG_FRIEND_SET);
+        put(ConfigMessageOpCodes.CONFIG_GATT_PROXY_STATUS, ConfigMessageOpCodes.CONFIG_GATT_PROXY_GET, ConfigMessageOpCodes.CONFIG_GATT_PROXY_SET);
+        put(ConfigMessageOpCodes.CONFIG_KEY_REFRESH_PHASE_STATUS, ConfigMessageOpCodes.CONFIG_KEY_REFRESH_PHASE_GET, ConfigMessageOpCodes.CONFIG_KEY_REFRESH_PHASE_SET);
+        put(ConfigMessageOpCodes.CONFIG_MODEL_PUBLICATION_STATUS, ConfigMessageOpCodes.CONFIG_MODEL_PUBLICATION_GET, ConfigMessageOpCodes.CONFIG_MODEL_PUBLICATION_SET,
+                ConfigMessageOpCodes.CONFIG_MODEL_PUBLICATION_VIRTUAL_ADDRESS_SET);
+        put(ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_STATUS, ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_ADD, ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_DELETE,
+                ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_DELETE_ALL, ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_OVERWRITE,
+                ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_VIRTUAL_ADDRESS_ADD, ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_VIRTUAL_ADDRESS_DELETE,
+                ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_VIRTUAL_ADDRESS_OVERWRITE);
+        put(ConfigMessageOpCodes.CONFIG_SIG_MODEL_SUBSCRIPTION_LIST, ConfigMessageOpCodes.CONFIG_SIG_MODEL_SUBSCRIPTION_GET);
+        put(ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_SUBSCRIPTION_LIST, ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_SUBSCRIPTION_GET);
+        put(ConfigMessageOpCodes.CONFIG_NETWORK_TRANSMIT_STATUS, ConfigMessageOpCodes.CONFIG_NETWORK_TRANSMIT_GET, ConfigMessageOpCodes.CONFIG_NETWORK_TRANSMIT_SET);
+        put(ConfigMessageOpCodes.CONFIG_RELAY_STATUS, ConfigMessageOpCodes.CONFIG_RELAY_GET, ConfigMessageOpCodes.CONFIG_RELAY_SET);
+        put(ConfigMessageOpCodes.CONFIG_LOW_POWER_NODE_POLLTIMEOUT_STATUS, ConfigMessageOpCodes.CONFIG_LOW_POWER_NODE_POLLTIMEOUT_GET);
+        put(ConfigMessageOpCodes.CONFIG_HEARTBEAT_PUBLICATION_STATUS, ConfigMessageOpCodes.CONFIG_HEARTBEAT_PUBLICATION_GET, ConfigMessageOpCodes.CONFIG_HEARTBEAT_PUBLICATION_SET);
+        put(ConfigMessageOpCodes.CONFIG_HEARTBEAT_SUBSCRIPTION_STATUS, ConfigMessageOpCodes.CONFIG_HEARTBEAT_SUBSCRIPTION_GET, ConfigMessageOpCodes.CONFIG_HEARTBEAT_SUBSCRIPTION_SET);
+        put(ConfigMessageOpCodes.CONFIG_MODEL_APP_STATUS, ConfigMessageOpCodes.CONFIG_MODEL_APP_BIND, ConfigMessageOpCodes.CONFIG_MODEL_APP_UNBIND);
+        put(ConfigMessageOpCodes.CONFIG_NETKEY_STATUS, ConfigMessageOpCodes.CONFIG_NETKEY_ADD, ConfigMessageOpCodes.CONFIG_NETKEY_UPDATE, ConfigMessageOpCodes.CONFIG_NETKEY_DELETE);
+        put(ConfigMessageOpCodes.CONFIG_NETKEY_LIST, ConfigMessageOpCodes.CONFIG_NETKEY_GET);
+        put(ConfigMessageOpCodes.CONFIG_NODE_IDENTITY_STATUS, ConfigMessageOpCodes.CONFIG_NODE_IDENTITY_GET, ConfigMessageOpCodes.CONFIG_NODE_IDENTITY_SET);
+        put(ConfigMessageOpCodes.CONFIG_NODE_RESET_STATUS, ConfigMessageOpCodes.CONFIG_NODE_RESET);
+        put(ConfigMessageOpCodes.CONFIG_SIG_MODEL_APP_LIST, ConfigMessageOpCodes.CONFIG_SIG_MODEL_APP_GET);
+        put(ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_APP_LIST, ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_APP_GET);
+
+        //Generic messages
+        put(ApplicationMessageOpCodes.GENERIC_ON_OFF_STATUS, ApplicationMessageOpCodes.GENERIC_ON_OFF_GET, ApplicationMessageOpCodes.GENERIC_ON_OFF_SET);
+        put(ApplicationMessageOpCodes.GENERIC_LEVEL_STATUS, ApplicationMessageOpCodes.GENERIC_LEVEL_GET, ApplicationMessageOpCodes.GENERIC_LEVEL_SET);
+        put(ApplicationMessageOpCodes.GENERIC_LOCATION_GLOBAL_STATUS, ApplicationMessageOpCodes.GENERIC_LOCATION_GLOBAL_GET, ApplicationMessageOpCodes.GENERIC_LOCATION_GLOBAL_SET);
+        put(ApplicationMessageOpCodes.GENERIC_DEFAULT_TRANSITION_TIME_STATUS, ApplicationMessageOpCodes.GENERIC_DEFAULT_TRANSITION_TIME_GET, ApplicationMessageOpCodes.GENERIC_DEFAULT_TRANSITION_TIME_SET);
+        put(ApplicationMessageOpCodes.GENERIC_ON_POWER_UP_STATUS, ApplicationMessageOpCodes.GENERIC_ON_POWER_UP_GET, ApplicationMessageOpCodes.GENERIC_ON_POWER_UP_SET);
+        put(ApplicationMessageOpCodes.GENERIC_ADMIN_PROPERTY_STATUS, ApplicationMessageOpCodes.GENERIC_ADMIN_PROPERTY_SET);
+        put(ApplicationMessageOpCodes.GENERIC_MANUFACTURER_PROPERTY_STATUS, ApplicationMessageOpCodes.GENERIC_MANUFACTURER_PROPERTY_SET);
+        put(ApplicationMessageOpCodes.GENERIC_USER_PROPERTY_STATUS, ApplicationMessageOpCodes.GENERIC_USER_PROPERTY_SET);
+
+        //Sensor messages
+        put(ApplicationMessageOpCodes.SENSOR_DESCRIPTOR_STATUS, ApplicationMessageOpCodes.SENSOR_DESCRIPTOR_GET);
+        put(ApplicationMessageOpCodes.SENSOR_STATUS, ApplicationMessageOpCodes.SENSOR_GET);
+        put(ApplicationMessageOpCodes.SENSOR_COLUMN_STATUS, ApplicationMessageOpCodes.SENSOR_COLUMN_GET);
+        put(ApplicationMessageOpCodes.SENSOR_SERIES_STATUS, ApplicationMessageOpCodes.SENSOR_SERIES_GET);
+        put(ApplicationMessageOpCodes.SENSOR_CADENCE_STATUS, ApplicationMessageOpCodes.SENSOR_CADENCE_GET, ApplicationMessageOpCodes.SENSOR_CADENCE_SET);
+        put(ApplicationMessageOpCodes.SENSOR_SETTINGS_STATUS, ApplicationMessageOpCodes.SENSOR_SETTINGS_GET);
+        put(ApplicationMessageOpCodes.SENSOR_SETTING_STATUS, ApplicationMessageOpCodes.SENSOR_SETTING_GET, ApplicationMessageOpCodes.SENSOR_SETTING_SET);
+
+        //Time, scene and scheduler messages
+        put(ApplicationMessageOpCodes.TIME_STATUS, ApplicationMessageOpCodes.TIME_GET, ApplicationMessageOpCodes.TIME_SET);
+        put(ApplicationMessageOpCodes.TIME_ZONE_STATUS, ApplicationMessageOpCodes.TIME_ZONE_GET, ApplicationMessageOpCodes.TIME_ZONE_SET);
+        put(ApplicationMessageOpCodes.SCENE_STATUS, ApplicationMessageOpCodes.SCENE_GET, ApplicationMessageOpCodes.SCENE_RECALL);
+        put(ApplicationMessageOpCodes.SCENE_REGISTER_STATUS, ApplicationMessageOpCodes.SCENE_REGISTER_GET, ApplicationMessageOpCodes.SCENE_STORE, ApplicationMessageOpCodes.SCENE_DELETE);
+        put(ApplicationMessageOpCodes.SCHEDULER_STATUS, ApplicationMessageOpCodes.SCHEDULER_GET);
+        put(ApplicationMessageOpCodes.SCHEDULER_ACTION_STATUS, ApplicationMessageOpCodes.SCHEDULER_ACTION_GET, ApplicationMessageOpCodes.SCHEDULER_ACTION_SET);
+
+        //Lighting messages
+        put(ApplicationMessageOpCodes.LIGHT_LIGHTNESS_STATUS, ApplicationMessageOpCodes.LIGHT_LIGHTNESS_GET, ApplicationMessageOpCodes.LIGHT_LIGHTNESS_SET);
+        put(ApplicationMessageOpCodes.LIGHT_CTL_STATUS, ApplicationMessageOpCodes.LIGHT_CTL_GET, ApplicationMessageOpCodes.LIGHT_CTL_SET);
+        put(ApplicationMessageOpCodes.LIGHT_HSL_STATUS, ApplicationMessageOpCodes.LIGHT_HSL_GET, ApplicationMessageOpCodes.LIGHT_HSL_SET);
+        put(ApplicationMessageOpCodes.LIGHT_LC_MODE_STATUS, ApplicationMessageOpCodes.LIGHT_LC_MODE_GET, ApplicationMessageOpCodes.LIGHT_LC_MODE_SET);
+        put(ApplicationMessageOpCodes.LIGHT_LC_OCCUPANCY_MODE_STATUS, ApplicationMessageOpCodes.LIGHT_LC_OCCUPANCY_MODE_GET, ApplicationMessageOpCodes.LIGHT_LC_OCCUPANCY_MODE_SET);
+        put(ApplicationMessageOpCodes.LIGHT_LC_LIGHT_ON_OFF_STATUS, ApplicationMessageOpCodes.LIGHT_LC_LIGHT_ON_OFF_GET, ApplicationMessageOpCodes.LIGHT_LC_LIGHT_ON_OFF_SET);
+        put(ApplicationMessageOpCodes.LIGHT_LC_PROPERTY_STATUS, ApplicationMessageOpCodes.LIGHT_LC_PROPERTY_GET, ApplicationMessageOpCodes.LIGHT_LC_PROPERTY_SET);
+    }
+
+    private ResponseOpCodes() {
+    }
+
+    private static void put(final int responseOpCode, final int... opCodes) {
+        for (int opCode : opCodes) {
+            RESPONSES.put(opCode, responseOpCode);
+        }
+    }
+
+    /**
+     * Returns the opcode of the status message that acknowledges the given message,
+     * {@link #VENDOR_MODEL_RESPONSE} or {@link #NO_RESPONSE}.
+     *
+     * @param meshMessage Mesh message that is sent
+     */
+    static int getResponseOpCode(@NonNull final MeshMessage meshMessage) {
+        if (meshMessage instanceof VendorModelMessageAcked) {
+            return VENDOR_MODEL_RESPONSE;
+        } else if (meshMessage instanceof VendorModelMessageUnacked) {
+            return NO_RESPONSE;
+        }
+        final Integer responseOpCode = RESPONSES.get(meshMessage.getOpCode());
+        return responseOpCode == null ? NO_RESPONSE : responseOpCode;
+    }
+
+    /**
+     * Returns true if the received message with the given opcode acknowledges a message with the given response opcode.
+     *
+     * @param responseOpCode Response opcode of the message that was sent
+     * @param opCode         Opcode of the received message, 3-octet opcodes are expected in the form returned by
+     *                       {@link StatusMessageRegistry#getVendorOpCode(int, int)}
+     */
+    static boolean matches(final int responseOpCode, final int opCode) {
+        if (responseOpCode == VENDOR_MODEL_RESPONSE) {
+            return opCode > 0xFFFF;
+        }
+        return responseOpCode == opCode;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.transport;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.mesh.opcodes.ApplicationMessageOpCodes;
+import no.nordicsemi.android.mesh.opcodes.ConfigMessageOpCodes;
+
+/**
+ * Registry of status messages that may be received by the access layer.
+ * <p>
+ * Each entry maps an opcode to a factory that creates the status message from the received {@link AccessMessage} and
+ * an optional handler that updates the local state of the node that sent it. Received access messages are dispatched
+ * with a single lookup in this registry. Status messages defined by the Mesh Profile and Mesh Model specifications are
+ * registered by default. Vendor specific status messages may be registered using
+ * {@link #register(int, StatusFactory, StatusHandler)}, messages with opcodes that are not registered are reported via
+ * {@link no.nordicsemi.android.mesh.MeshStatusCallbacks#onUnknownPduReceived(int, byte[])}.
+ * </p>
+ */
+@SuppressWarnings("unused")
+public final class StatusMessageRegistry {
+
+    private static final Map<Integer, Entry<?>> ENTRIES = new ConcurrentHashMap<>();
+
+    static {
+        registerDefaults();
+    }
+
+    private StatusMessageRegistry() {
+    }
+
+    /**
+     * Registers the status messages defined by the Mesh Profile and Mesh Model specifications.
+     */
+    private static void registerDefaults() {
+        //Config messages
+        registerInternal(ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_STATUS,
+                (message, sentMessage) -> new ConfigCompositionDataStatus(message),
+                DefaultNoOperationMessageState::onCompositionDataStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_HEARTBEAT_PUBLICATION_STATUS,
+                (message, sentMessage) -> new ConfigHeartbeatPublicationStatus(message),
+                DefaultNoOperationMessageState::onHeartbeatPublicationStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_HEARTBEAT_SUBSCRIPTION_STATUS,
+                (message, sentMessage) -> new ConfigHeartbeatSubscriptionStatus(message),
+                DefaultNoOperationMessageState::onHeartbeatSubscriptionStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_STATUS,
+                (message, sentMessage) -> new ConfigDefaultTtlStatus(message),
+                DefaultNoOperationMessageState::onDefaultTtlStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_NETKEY_STATUS,
+                (message, sentMessage) -> new ConfigNetKeyStatus(message),
+                DefaultNoOperationMessageState::onNetKeyStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_NETKEY_LIST,
+                (message, sentMessage) -> new ConfigNetKeyList(message),
+                DefaultNoOperationMessageState::onNetKeyList, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_APPKEY_STATUS,
+                (message, sentMessage) -> new ConfigAppKeyStatus(message),
+                DefaultNoOperationMessageState::onAppKeyStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_APPKEY_LIST,
+                (message, sentMessage) -> new ConfigAppKeyList(message),
+                DefaultNoOperationMessageState::onAppKeyList, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_MODEL_APP_STATUS,
+                (message, sentMessage) -> new ConfigModelAppStatus(message),
+                DefaultNoOperationMessageState::onModelAppStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_SIG_MODEL_APP_LIST,
+                (message, sentMessage) -> new ConfigSigModelAppList(message),
+                DefaultNoOperationMessageState::onSigModelAppList, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_APP_LIST,
+                (message, sentMessage) -> new ConfigVendorModelAppList(message),
+                DefaultNoOperationMessageState::onVendorModelAppList, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_MODEL_PUBLICATION_STATUS,
+                (message, sentMessage) -> new ConfigModelPublicationStatus(message),
+                DefaultNoOperationMessageState::onModelPublicationStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_MODEL_SUBSCRIPTION_STATUS,
+                (message, sentMessage) -> new ConfigModelSubscriptionStatus(message),
+                DefaultNoOperationMessageState::onModelSubscriptionStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_SIG_MODEL_SUBSCRIPTION_LIST,
+                (message, sentMessage) -> new ConfigSigModelSubscriptionList(message),
+                DefaultNoOperationMessageState::onSigModelSubscriptionList, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_VENDOR_MODEL_SUBSCRIPTION_LIST,
+                (message, sentMessage) -> new ConfigVendorModelSubscriptionList(message),
+                DefaultNoOperationMessageState::onVendorModelSubscriptionList, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_NODE_IDENTITY_STATUS,
+                (message, sentMessage) -> new ConfigNodeIdentityStatus(message),
+                DefaultNoOperationMessageState::onNodeIdentityStatus, true, true);
+        //A node that has been reset is removed from the network instead of being updated
+        registerInternal(ConfigMessageOpCodes.CONFIG_NODE_RESET_STATUS,
+                (message, sentMessage) -> new ConfigNodeResetStatus(message),
+                DefaultNoOperationMessageState::onNodeResetStatus, true, false);
+        registerInternal(ConfigMessageOpCodes.CONFIG_NETWORK_TRANSMIT_STATUS,
+                (message, sentMessage) -> new ConfigNetworkTransmitStatus(message),
+                DefaultNoOperationMessageState::onNetworkTransmitStatus, false, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_RELAY_STATUS,
+                (message, sentMessage) -> new ConfigRelayStatus(message),
+                DefaultNoOperationMessageState::onRelayStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_BEACON_STATUS,
+                (message, sentMessage) -> new ConfigBeaconStatus(message),
+                DefaultNoOperationMessageState::onBeaconStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_FRIEND_STATUS,
+                (message, sentMessage) -> new ConfigFriendStatus(message),
+                DefaultNoOperationMessageState::onFriendStatus, true, true);
+        registerInternal(ConfigMessageOpCodes.CONFIG_KEY_REFRESH_PHASE_STATUS,
+                (message, sentMessage) -> new ConfigKeyRefreshPhaseStatus(message),
+                DefaultNoOperationMessageState::onKeyRefreshPhaseStatus, true, true);
+        register(ConfigMessageOpCodes.CONFIG_GATT_PROXY_STATUS,
+                (message, sentMessage) -> new ConfigProxyStatus(message));
+        register(ConfigMessageOpCodes.CONFIG_LOW_POWER_NODE_POLLTIMEOUT_STATUS,
+                (message, sentMessage) -> new ConfigLowPowerNodePollTimeoutStatus(message));
+
+        //Generic messages
+        register(ApplicationMessageOpCodes.GENERIC_ON_OFF_STATUS,
+                (message, sentMessage) -> new GenericOnOffStatus(message));
+        register(ApplicationMessageOpCodes.GENERIC_LEVEL_STATUS,
+                (message, sentMessage) -> new GenericLevelStatus(message));
+        register(ApplicationMessageOpCodes.GENERIC_ON_POWER_UP_STATUS,
+                (message, sentMessage) -> new GenericOnPowerUpStatus(message));
+        register(ApplicationMessageOpCodes.GENERIC_DEFAULT_TRANSITION_TIME_STATUS,
+                (message, sentMessage) -> new GenericDefaultTransitionTimeStatus(message));
+        register(ApplicationMessageOpCodes.GENERIC_LOCATION_GLOBAL_STATUS,
+                (message, sentMessage) -> new GenericLocationGlobalStatus(message));
+        register(ApplicationMessageOpCodes.GENERIC_ADMIN_PROPERTY_STATUS,
+                (message, sentMessage) -> new GenericPropertyStatus(message));
+        register(ApplicationMessageOpCodes.GENERIC_MANUFACTURER_PROPERTY_STATUS,
+                (message, sentMessage) -> new GenericPropertyStatus(message));
+        register(ApplicationMessageOpCodes.GENERIC_USER_PROPERTY_STATUS,
+                (message, sentMessage) -> new GenericPropertyStatus(message));
+
+        //Sensor messages
+        register(ApplicationMessageOpCodes.SENSOR_DESCRIPTOR_STATUS,
+                (message, sentMessage) -> new SensorDescriptorStatus(message));
+        register(ApplicationMessageOpCodes.SENSOR_CADENCE_STATUS,
+                (message, sentMessage) -> new SensorCadenceStatus(message));
+        register(ApplicationMessageOpCodes.SENSOR_SETTINGS_STATUS,
+                (message, sentMessage) -> new SensorSettingsStatus(message));
+        register(ApplicationMessageOpCodes.SENSOR_SETTING_STATUS,
+                (message, sentMessage) -> new SensorSettingStatus(message));
+        register(ApplicationMessageOpCodes.SENSOR_STATUS,
+                (message, sentMessage) -> new SensorStatus(message));
+        register(ApplicationMessageOpCodes.SENSOR_COLUMN_STATUS,
+                (message, sentMessage) -> new SensorColumnStatus(message));
+        register(ApplicationMessageOpCodes.SENSOR_SERIES_STATUS,
+                (message, sentMessage) -> new SensorSeriesStatus(message));
+
+        //Time and scene messages
+        register(ApplicationMessageOpCodes.TIME_STATUS,
+                (message, sentMessage) -> new TimeStatus(message));
+        register(ApplicationMessageOpCodes.TIME_ZONE_STATUS,
+                (message, sentMessage) -> new TimeZoneStatus(message));
+        registerInternal(ApplicationMessageOpCodes.SCENE_STATUS,
+                (message, sentMessage) -> new SceneStatus(message),
+                DefaultNoOperationMessageState::onSceneStatus, false, true);
+        registerInternal(ApplicationMessageOpCodes.SCENE_REGISTER_STATUS,
+                StatusMessageRegistry::createSceneRegisterStatus,
+                DefaultNoOperationMessageState::onSceneRegisterStatus, false, true);
+        register(ApplicationMessageOpCodes.SCHEDULER_STATUS,
+                (message, sentMessage) -> new SchedulerStatus(message));
+        register(ApplicationMessageOpCodes.SCHEDULER_ACTION_STATUS,
+                (message, sentMessage) -> new SchedulerActionStatus(message));
+
+        //Lighting messages
+        register(ApplicationMessageOpCodes.LIGHT_LIGHTNESS_STATUS,
+                (message, sentMessage) -> new LightLightnessStatus(message));
+        register(ApplicationMessageOpCodes.LIGHT_CTL_STATUS,
+                (message, sentMessage) -> new LightCtlStatus(message));
+        register(ApplicationMessageOpCodes.LIGHT_HSL_STATUS,
+                (message, sentMessage) -> new LightHslStatus(message));
+        register(ApplicationMessageOpCodes.LIGHT_LC_MODE_STATUS,
+                (message, sentMessage) -> new LightLCModeStatus(message));
+        register(ApplicationMessageOpCodes.LIGHT_LC_OCCUPANCY_MODE_STATUS,
+                (message, sentMessage) -> new LightLCOccupancyModeStatus(message));
+        register(ApplicationMessageOpCodes.LIGHT_LC_LIGHT_ON_OFF_STATUS,
+                (message, sentMessage) -> new LightLCLightOnOffStatus(message));
+        register(ApplicationMessageOpCodes.LIGHT_LC_PROPERTY_STATUS,
+                (message, sentMessage) -> new LightLCPropertyStatus(message));
+    }
+
+    /**
+     * Creates a status message from a received access message.
+     *
+     * @param <T> Type of the status message
+     */
+    public interface StatusFactory<T extends MeshMessage> {
+
+        /**
+         * Creates the status message.
+         *
+         * @param message     Received access message
+         * @param sentMessage Message that was last sent to the node or null if there is none
+         * @return status message or null to ignore the received message
+         */
+        @Nullable
+        T create(@NonNull final AccessMessage message, @Nullable final MeshMessage sentMessage);
+    }
+
+    /**
+     * Updates the local state of a node when a status message is received from it.
+     *
+     * @param <T> Type of the status message
+     */
+    public interface StatusHandler<T extends MeshMessage> {
+
+        /**
+         * Invoked after the status message has been created and before it is delivered to
+         * {@link no.nordicsemi.android.mesh.MeshStatusCallbacks#onMeshMessageReceived(int, MeshMessage)}.
+         *
+         * @param node        Node that sent the status message
+         * @param status      Status message received
+         * @param sentMessage Message that was last sent to the node or null if there is none
+         */
+        void onStatusReceived(@NonNull final ProvisionedMeshNode node, @NonNull final T status, @Nullable final MeshMessage sentMessage);
+    }
+
+    /**
+     * Updates the state of a node using the message state that received the status message.
+     */
+    interface StateUpdater<T extends MeshMessage> {
+
+        void update(@NonNull final DefaultNoOperationMessageState state, @NonNull final ProvisionedMeshNode node, @NonNull final T status);
+    }
+
+    static final class Entry<T extends MeshMessage> {
+        final StatusFactory<T> factory;
+        final StateUpdater<T> updater;
+        final boolean filtered;
+        final boolean updatesNetwork;
+
+        /**
+         * Constructs a registry entry.
+         *
+         * @param factory        Status message factory
+         * @param updater        State updater or null if the status message does not change the state of the node
+         * @param filtered       True if the state should not be updated when the message was received via the proxy filter
+         * @param updatesNetwork True if the mesh network should be updated after the status message has been received
+         */
+        Entry(@NonNull final StatusFactory<T> factory,
+              @Nullable final StateUpdater<T> updater,
+              final boolean filtered,
+              final boolean updatesNetwork) {
+            this.factory = factory;
+            this.updater = updater;
+            this.filtered = filtered;
+            this.updatesNetwork = updatesNetwork;
+        }
+    }
+
+    /**
+     * Registers a status message that does not change the state of the node that sent it.
+     *
+     * @param opCode  Opcode of the status message
+     * @param factory Factory creating the status message
+     * @param <T>     Type of the status message
+     * @see #register(int, StatusFactory, StatusHandler)
+     */
+    public static <T extends MeshMessage> void register(final int opCode, @NonNull final StatusFactory<T> factory) {
+        register(opCode, factory, null);
+    }
+
+    /**
+     * Registers a status message. Registering an opcode that is already registered replaces the existing entry.
+     * <p>
+     * Status messages for vendor models are registered with their 3-octet opcode, see {@link #getVendorOpCode(int, int)}.
+     * The handler is not invoked if the message was received because of the proxy filter.
+     * </p>
+     *
+     * @param opCode  Opcode of the status message
+     * @param factory Factory creating the status message
+     * @param handler Handler updating the state of the node or null if the message does not change it
+     * @param <T>     Type of the status message
+     */
+    public static <T extends MeshMessage> void register(final int opCode,
+                                                        @NonNull final StatusFactory<T> factory,
+                                                        @Nullable final StatusHandler<T> handler) {
+        final StateUpdater<T> updater = handler == null ? null :
+                (state, node, status) -> handler.onStatusReceived(node, status, state.mMeshMessage);
+        ENTRIES.put(opCode, new Entry<>(factory, updater, true, true));
+    }
+
+    /**
+     * Removes a registered status message.
+     *
+     * @param opCode Opcode of the status message
+     */
+    public static void unregister(final int opCode) {
+        ENTRIES.remove(opCode);
+    }
+
+    /**
+     * Removes all registered status messages and registers the default status messages again, replacing any default
+     * status message that has been registered or unregistered. Should not be called while messages are being received.
+     */
+    public static void reset() {
+        ENTRIES.clear();
+        registerDefaults();
+    }
+
+    /**
+     * Returns true if a status message has been registered for the given opcode.
+     *
+     * @param opCode Opcode of the status message
+     */
+    public static boolean isRegistered(final int opCode) {
+        return ENTRIES.containsKey(opCode);
+    }
+
+    /**
+     * Returns the 3-octet opcode of a vendor model message as it is used as a key in this registry.
+     *
+     * @param opCode            6-bit vendor opcode
+     * @param companyIdentifier 16-bit company identifier
+     */
+    public static int getVendorOpCode(final int opCode, final int companyIdentifier) {
+        return ((opCode | 0xC0) & 0xFF) << 16 | (companyIdentifier & 0xFF) << 8 | (companyIdentifier >> 8) & 0xFF;
+    }
+
+    /**
+     * Returns the registry entry for the given opcode or null if the opcode is not registered.
+     *
+     * @param opCode Opcode of the received message
+     */
+    @Nullable
+    static Entry<?> get(final int opCode) {
+        return ENTRIES.get(opCode);
+    }
+
+    private static <T extends MeshMessage> void registerInternal(final int opCode,
+                                                                 @NonNull final StatusFactory<T> factory,
+                                                                 @NonNull final StateUpdater<T> updater,
+                                                                 final boolean filtered,
+                                                                 final boolean updatesNetwork) {
+        ENTRIES.put(opCode, new Entry<>(factory, updater, filtered, updatesNetwork));
+    }
+
+    /**
+     * A Scene Register Status is received as a response to Scene Store, Scene Delete and Scene Recall messages.
+     * The response to a Scene Recall message is reported as a {@link SceneStatus}.
+     */
+    @Nullable
+    private static MeshMessage createSceneRegisterStatus(@NonNull final AccessMessage message, @Nullable final MeshMessage sentMessage) {
+        if (sentMessage instanceof SceneStore || sentMessage instanceof SceneDelete) {
+            return new SceneRegisterStatus(message);
+        } else if (sentMessage instanceof SceneRecall) {
+            return new SceneStatus(message);
+        }
+        return null;
+    }
+}
@@ -28,6 +28,7 @@ import org.spongycastle.crypto.InvalidCipherTextException;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.List;
 
 import androidx.annotation.NonNull;
@@ -35,6 +36,8 @@ import androidx.annotation.VisibleForTesting;
 import no.nordicsemi.android.mesh.ApplicationKey;
 import no.nordicsemi.android.mesh.Group;
 import no.nordicsemi.android.mesh.MeshManagerApi;
+import no.nordicsemi.android.mesh.core.UpperTransportCrypto;
+import no.nordicsemi.android.mesh.utils.CipherContext;
 import no.nordicsemi.android.mesh.utils.ExtendedInvalidCipherTextException;
 import no.nordicsemi.android.mesh.utils.MeshAddress;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
@@ -52,19 +55,8 @@ abstract class UpperTransportLayer extends AccessLayer {
     static final int MAX_SEGMENTED_ACCESS_PAYLOAD_LENGTH = 12;
     static final int MAX_UNSEGMENTED_CONTROL_PAYLOAD_LENGTH = 11;
     static final int MAX_SEGMENTED_CONTROL_PAYLOAD_LENGTH = 8;
-
-    //Nonce types
-    static final int NONCE_TYPE_NETWORK = 0x00;
-    static final int NONCE_TYPE_PROXY = 0x03;
-
-    //Nonce paddings
-    static final int PAD_NETWORK_NONCE = 0x00;
-    static final int PAD_PROXY_NONCE = 0x00;
     static final int APPLICATION_KEY_IDENTIFIER = 0; //Identifies that the device key is to be used
     private static final int MAX_UNSEGMENTED_ACCESS_PAYLOAD_LENGTH = 15;
-    private static final int NONCE_TYPE_APPLICATION = 0x01;
-    private static final int NONCE_TYPE_DEVICE = 0x02;
-    private static final int PAD_APPLICATION_DEVICE_NONCE = 0b0000000;
     private static final int SZMIC = 1; //Transmic becomes 8 bytes
     private static final int TRANSPORT_SAR_SEQZERO_MASK = 8191;
     private static final int DEFAULT_UNSEGMENTED_MIC_LENGTH = 4; //octets
@@ -114,7 +106,7 @@ abstract class UpperTransportLayer extends AccessLayer {
             super.createMeshMessage(message);
             final AccessMessage accessMessage = (AccessMessage) message;
             final byte[] encryptedTransportPDU = encryptUpperTransportPDU(accessMessage);
-            MeshLogger.verbose(TAG, "Encrypted upper transport pdu: " + MeshParserUtils.bytesToHex(encryptedTransportPDU, false));
+            MeshLogger.verbose(TAG, "Encrypted upper transport pdu: {}", encryptedTransportPDU);
             accessMessage.setUpperTransportPdu(encryptedTransportPDU);
         } else {
             createUpperTransportPDU(message);
@@ -130,7 +122,7 @@ abstract class UpperTransportLayer extends AccessLayer {
         super.createVendorMeshMessage(message);
         final AccessMessage accessMessage = (AccessMessage) message;
         final byte[] encryptedTransportPDU = encryptUpperTransportPDU(accessMessage);
-        MeshLogger.verbose(TAG, "Encrypted upper transport pdu: " + MeshParserUtils.bytesToHex(encryptedTransportPDU, false));
+        MeshLogger.verbose(TAG, "Encrypted upper transport pdu: {}", encryptedTransportPDU);
         accessMessage.setUpperTransportPdu(encryptedTransportPDU);
     }
 
@@ -145,7 +137,7 @@ abstract class UpperTransportLayer extends AccessLayer {
             //Access message
             final AccessMessage accessMessage = (AccessMessage) message;
             final byte[] encryptedTransportPDU = encryptUpperTransportPDU(accessMessage);
-            MeshLogger.verbose(TAG, "Encrypted upper transport pdu: " + MeshParserUtils.bytesToHex(encryptedTransportPDU, false));
+            MeshLogger.verbose(TAG, "Encrypted upper transport pdu: {}", encryptedTransportPDU);
             accessMessage.setUpperTransportPdu(encryptedTransportPDU);
         } else {
             final ControlMessage controlMessage = (ControlMessage) message;
@@ -163,7 +155,7 @@ abstract class UpperTransportLayer extends AccessLayer {
             }
             final byte[] accessPdu = accessMessageBuffer.array();
 
-            MeshLogger.verbose(TAG, "Created Transport Control PDU " + MeshParserUtils.bytesToHex(accessPdu, false));
+            MeshLogger.verbose(TAG, "Created Transport Control PDU {}", accessPdu);
             controlMessage.setTransportControlPdu(accessPdu);
         }
     }
@@ -205,6 +197,28 @@ abstract class UpperTransportLayer extends AccessLayer {
         }
     }
 
+    /**
+     * Decrypts the upper transport pdu of an unsegmented access message within the buffer it was received in,
+     * so that it does not have to be copied out of the network pdu first. A copy of the upper transport pdu is set on
+     * the message, as for segmented messages.
+     *
+     * @param message access message
+     * @param pdu     buffer containing the upper transport pdu
+     * @param offset  offset of the upper transport pdu within the buffer
+     * @param length  length of the upper transport pdu including the transport mic
+     */
+    final void parseUnsegmentedUpperTransportPDU(@NonNull final AccessMessage message,
+                                                 @NonNull final byte[] pdu,
+                                                 final int offset,
+                                                 final int length) throws ExtendedInvalidCipherTextException {
+        message.setUpperTransportPdu(Arrays.copyOfRange(pdu, offset, offset + length));
+        try {
+            message.setAccessPdu(decryptUpperTransportPDU(message, pdu, offset, length));
+        } catch (InvalidCipherTextException ex) {
+            throw new ExtendedInvalidCipherTextException(ex.getMessage(), ex.getCause(), TAG);
+        }
+    }
+
     /**
      * Encrypts upper transport pdu
      *
@@ -220,17 +234,17 @@ abstract class UpperTransportLayer extends AccessLayer {
         final int src = message.getSrc();
         final int dst = message.getDst();
         final byte[] ivIndex = message.getIvIndex();
-        final byte[] key;
+        final CipherContext cipher;
 
         byte[] nonce;
         if (akf == APPLICATION_KEY_IDENTIFIER) {
-            key = message.getDeviceKey();
+            cipher = getDeviceKeyCipher(message.getDeviceKey(), dst);
             nonce = createDeviceNonce(aszmic, sequenceNumber, src, dst, ivIndex);
-            MeshLogger.verbose(TAG, "Device nonce: " + MeshParserUtils.bytesToHex(nonce, false));
+            MeshLogger.verbose(TAG, "Device nonce: {}", nonce);
         } else {
-            key = message.getApplicationKey().getKey();
+            cipher = message.getApplicationKey().getCipher();
             nonce = createApplicationNonce(aszmic, sequenceNumber, src, dst, ivIndex);
-            MeshLogger.verbose(TAG, "Application nonce: " + MeshParserUtils.bytesToHex(nonce, false));
+            MeshLogger.verbose(TAG, "Application nonce: {}", nonce);
         }
 
         int transMicLength;
@@ -242,10 +256,27 @@ abstract class UpperTransportLayer extends AccessLayer {
             transMicLength = SecureUtils.getTransMicLength(message.getAszmic());
         }
         if (MeshAddress.isValidVirtualAddress(dst)) {
-            return SecureUtils.encryptCCM(accessPDU, key, nonce, MeshParserUtils.uuidToBytes(message.getLabel()), transMicLength);
+            return cipher.encryptCCM(accessPDU, nonce, MeshParserUtils.uuidToBytes(message.getLabel()), transMicLength);
         } else {
-            return SecureUtils.encryptCCM(accessPDU, key, nonce, transMicLength);
+            return cipher.encryptCCM(accessPDU, nonce, transMicLength);
+        }
+    }
+
+    /**
+     * Returns the cipher context for a device key
+     * <p>
+     * The context cached in the destination node is reused if the device key matches, otherwise a new one is created.
+     * </p>
+     *
+     * @param deviceKey device key used to encrypt the message
+     * @param dst       destination address
+     */
+    private CipherContext getDeviceKeyCipher(@NonNull final byte[] deviceKey, final int dst) {
+        final ProvisionedMeshNode node = mUpperTransportLayerCallbacks.getNode(dst);
+        if (node != null && Arrays.equals(node.getDeviceKey(), deviceKey)) {
+            return node.getDeviceKeyCipher();
         }
+        return new CipherContext(deviceKey);
     }
 
     /**
@@ -254,16 +285,30 @@ abstract class UpperTransportLayer extends AccessLayer {
      * @param accessMessage Access message object containing the upper transport pdu
      */
     private byte[] decryptUpperTransportPDU(@NonNull final AccessMessage accessMessage) throws InvalidCipherTextException {
-        byte[] decryptedUpperTransportPDU;
-        byte[] key;
+        final byte[] upperTransportPdu = accessMessage.getUpperTransportPdu();
+        return decryptUpperTransportPDU(accessMessage, upperTransportPdu, 0, upperTransportPdu.length);
+    }
+
+    /**
+     * Returns the decrypted upper transport pdu
+     *
+     * @param accessMessage Access message object
+     * @param pdu           buffer containing the upper transport pdu
+     * @param offset        offset of the upper transport pdu within the buffer
+     * @param length        length of the upper transport pdu including the transport mic
+     */
+    private byte[] decryptUpperTransportPDU(@NonNull final AccessMessage accessMessage,
+                                            @NonNull final byte[] pdu,
+                                            final int offset,
+                                            final int length) throws InvalidCipherTextException {
+        final byte[] decryptedUpperTransportPDU;
         final int transportMicLength = accessMessage.getAszmic() == SZMIC ? MAXIMUM_TRANSMIC_LENGTH : MINIMUM_TRANSMIC_LENGTH;
         //Check if the key used for encryption is an application key or a device key
         final byte[] nonce;
         if (APPLICATION_KEY_IDENTIFIER == accessMessage.getAkf()) {
-            key = mMeshNode.getDeviceKey();
             //If its a device key that was used to encrypt the message we need to create a device nonce to decrypt it
             nonce = createDeviceNonce(accessMessage.getAszmic(), accessMessage.getSequenceNumber(), accessMessage.getSrc(), accessMessage.getDst(), accessMessage.getIvIndex());
-            decryptedUpperTransportPDU = SecureUtils.decryptCCM(accessMessage.getUpperTransportPdu(), key, nonce, transportMicLength);
+            decryptedUpperTransportPDU = mMeshNode.getDeviceKeyCipher().decryptCCM(pdu, offset, length, nonce, null, transportMicLength);
         } else {
             final List<ApplicationKey> keys = mUpperTransportLayerCallbacks.getApplicationKeys(accessMessage.getNetworkKey().getKeyIndex());
             if (keys.isEmpty())
@@ -273,40 +318,35 @@ abstract class UpperTransportLayer extends AccessLayer {
                     accessMessage.getDst(), accessMessage.getIvIndex());
 
             if (MeshAddress.isValidVirtualAddress(accessMessage.getDst())) {
-                decryptedUpperTransportPDU = decrypt(accessMessage, mUpperTransportLayerCallbacks.gerVirtualGroups(), keys, nonce, transportMicLength);
+                decryptedUpperTransportPDU = decrypt(accessMessage.getAid(), pdu, offset, length, mUpperTransportLayerCallbacks.gerVirtualGroups(), keys, nonce, transportMicLength);
             } else {
-                decryptedUpperTransportPDU = decrypt(accessMessage, keys, nonce, transportMicLength);
+                decryptedUpperTransportPDU = decrypt(accessMessage.getAid(), pdu, offset, length, keys, nonce, transportMicLength);
             }
         }
 
         if (decryptedUpperTransportPDU == null)
             throw new IllegalArgumentException("Unable to decrypt the message, invalid application key identifier!");
-
-        final byte[] tempBytes = new byte[decryptedUpperTransportPDU.length];
-        ByteBuffer decryptedBuffer = ByteBuffer.wrap(tempBytes);
-        decryptedBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        decryptedBuffer.put(decryptedUpperTransportPDU);
-        decryptedUpperTransportPDU = decryptedBuffer.array();
         return decryptedUpperTransportPDU;
     }
 
-    private byte[] decrypt(@NonNull final AccessMessage accessMessage, @NonNull final List<Group> groups, @NonNull List<ApplicationKey> keys, final byte[] nonce, final int transportMicLength) {
+    private byte[] decrypt(final int aid, @NonNull final byte[] pdu, final int offset, final int length,
+                           @NonNull final List<Group> groups, @NonNull List<ApplicationKey> keys, final byte[] nonce, final int transportMicLength) {
         for (ApplicationKey key : keys) {
             for (Group group : groups) {
                 if(group.getAddressLabel() != null) {
-                    if (key.getAid() == accessMessage.getAid()) {
+                    if (key.getAid() == aid) {
                         try {
-                            return SecureUtils
-                                    .decryptCCM(accessMessage.getUpperTransportPdu(), key.getKey(), nonce, MeshParserUtils.uuidToBytes(group.getAddressLabel()), transportMicLength);
+                            return key.getCipher()
+                                    .decryptCCM(pdu, offset, length, nonce, MeshParserUtils.uuidToBytes(group.getAddressLabel()), transportMicLength);
                         } catch (Exception ex) {
                             // Retrying decryption
                         }
                     }
-                    if (key.getOldAid() == accessMessage.getAid()) {
+                    if (key.getOldCipher() != null && key.getOldAid() == aid) {
 
                         try {
-                            return SecureUtils
-                                    .decryptCCM(accessMessage.getUpperTransportPdu(), key.getOldKey(), nonce, MeshParserUtils.uuidToBytes(group.getAddressLabel()), transportMicLength);
+                            return key.getOldCipher()
+                                    .decryptCCM(pdu, offset, length, nonce, MeshParserUtils.uuidToBytes(group.getAddressLabel()), transportMicLength);
                         } catch (Exception ex) {
                             // Retrying decryption
                         }
@@ -317,21 +357,22 @@ abstract class UpperTransportLayer extends AccessLayer {
         return null;
     }
 
-    private byte[] decrypt(@NonNull final AccessMessage accessMessage, @NonNull List<ApplicationKey> keys, final byte[] nonce, final int transportMicLength) {
+    private byte[] decrypt(final int aid, @NonNull final byte[] pdu, final int offset, final int length,
+                           @NonNull List<ApplicationKey> keys, final byte[] nonce, final int transportMicLength) {
         for (ApplicationKey key : keys) {
-            if (key.getAid() == accessMessage.getAid()) {
+            if (key.getAid() == aid) {
                 try {
-                    return SecureUtils
-                            .decryptCCM(accessMessage.getUpperTransportPdu(), key.getKey(), nonce, transportMicLength);
+                    return key.getCipher()
+                            .decryptCCM(pdu, offset, length, nonce, null, transportMicLength);
                 } catch (Exception ex) {
                     // Retrying decryption.
                 }
 
             }
-            if (key.getOldAid() == accessMessage.getAid()) {
+            if (key.getOldCipher() != null && key.getOldAid() == aid) {
                 try {
-                    return SecureUtils
-                            .decryptCCM(accessMessage.getUpperTransportPdu(), key.getKey(), nonce, transportMicLength);
+                    return key.getOldCipher()
+                            .decryptCCM(pdu, offset, length, nonce, null, transportMicLength);
                 } catch (Exception ex) {
                     // Retrying decryption.
                 }
@@ -354,14 +395,8 @@ abstract class UpperTransportLayer extends AccessLayer {
                                           final int src,
                                           final int dst,
                                           @NonNull final byte[] ivIndex) {
-        final ByteBuffer applicationNonceBuffer = ByteBuffer.allocate(13);
-        applicationNonceBuffer.put((byte) NONCE_TYPE_APPLICATION); //Nonce type
-        applicationNonceBuffer.put((byte) ((aszmic << 7) | PAD_APPLICATION_DEVICE_NONCE)); //ASZMIC (SZMIC if a segmented access message) and PAD
-        applicationNonceBuffer.put(sequenceNumber);
-        applicationNonceBuffer.putShort((short) src);
-        applicationNonceBuffer.putShort((short) dst);
-        applicationNonceBuffer.put(ivIndex);
-        return applicationNonceBuffer.array();
+        return UpperTransportCrypto.createApplicationNonce(aszmic, MeshParserUtils.convert24BitsToInt(sequenceNumber), src, dst,
+                MeshParserUtils.bytesToInt(ivIndex));
     }
 
     /**
@@ -378,14 +413,8 @@ abstract class UpperTransportLayer extends AccessLayer {
                                      final int src,
                                      final int dst,
                                      @NonNull final byte[] ivIndex) {
-        final ByteBuffer deviceNonceBuffer = ByteBuffer.allocate(13);
-        deviceNonceBuffer.put((byte) NONCE_TYPE_DEVICE); //Nonce type
-        deviceNonceBuffer.put((byte) ((aszmic << 7) | PAD_APPLICATION_DEVICE_NONCE)); //ASZMIC (SZMIC if a segmented access message) and PAD
-        deviceNonceBuffer.put(sequenceNumber);
-        deviceNonceBuffer.putShort((short) src);
-        deviceNonceBuffer.putShort((short) dst);
-        deviceNonceBuffer.put(ivIndex);
-        return deviceNonceBuffer.array();
+        return UpperTransportCrypto.createDeviceNonce(aszmic, MeshParserUtils.convert24BitsToInt(sequenceNumber), src, dst,
+                MeshParserUtils.bytesToInt(ivIndex));
     }
 
     /**
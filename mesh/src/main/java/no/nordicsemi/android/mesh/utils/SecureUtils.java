@@ -28,12 +28,10 @@ import no.nordicsemi.android.mesh.logger.MeshLogger;
 
 import com.google.gson.annotations.Expose;
 
-import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.crypto.engines.AESEngine;
 import org.spongycastle.crypto.engines.AESLightEngine;
-import org.spongycastle.crypto.macs.CMac;
 import org.spongycastle.crypto.modes.CCMBlockCipher;
 import org.spongycastle.crypto.params.AEADParameters;
 import org.spongycastle.crypto.params.KeyParameter;
@@ -45,6 +43,7 @@ import java.security.SecureRandom;
 
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.mesh.SecureNetworkBeacon;
+import no.nordicsemi.android.mesh.core.KeyDerivation;
 
 @SuppressWarnings({"WeakerAccess", "CharsetObjectCanBeUsed"})
 public class SecureUtils {
@@ -143,16 +142,7 @@ public class SecureUtils {
     }
 
     public static byte[] calculateCMAC(final byte[] data, final byte[] key) {
-        final byte[] cmac = new byte[16];
-
-        CipherParameters cipherParameters = new KeyParameter(key);
-        BlockCipher blockCipher = new AESEngine();
-        CMac mac = new CMac(blockCipher);
-
-        mac.init(cipherParameters);
-        mac.update(data, 0, data.length);
-        mac.doFinal(cmac, 0);
-        return cmac;
+        return KeyDerivation.cmac(data, key);
     }
 
     public static byte[] encryptCCM(@NonNull final byte[] data,
@@ -237,30 +227,8 @@ public class SecureUtils {
         if (data == null || p == null)
             return null;
 
-        final byte[] salt = calculateSalt(SMK2);
-        final byte[] t = calculateCMAC(data, salt);
-
-        final byte[] t0 = {};
-        final ByteBuffer inputBufferT0 = ByteBuffer.allocate(t0.length + p.length + 1);
-        inputBufferT0.put(t0);
-        inputBufferT0.put(p);
-        inputBufferT0.put((byte) 0x01);
-        final byte[] t1 = calculateCMAC(inputBufferT0.array(), t);
-        final byte nid = (byte) (t1[15] & 0x7F);
-
-        final ByteBuffer inputBufferT1 = ByteBuffer.allocate(t1.length + p.length + 1);
-        inputBufferT1.put(t1);
-        inputBufferT1.put(p);
-        inputBufferT1.put((byte) 0x02);
-        final byte[] encryptionKey = calculateCMAC(inputBufferT1.array(), t);
-
-        final ByteBuffer inputBufferT2 = ByteBuffer.allocate(encryptionKey.length + p.length + 1);
-        inputBufferT2.put(encryptionKey);
-        inputBufferT2.put(p);
-        inputBufferT2.put((byte) 0x03);
-        final byte[] privacyKey = calculateCMAC(inputBufferT2.array(), t);
-
-        return new K2Output(nid, encryptionKey, privacyKey);
+        final KeyDerivation.K2 k2 = KeyDerivation.k2(data, p);
+        return new K2Output((byte) k2.nid, k2.encryptionKey, k2.privacyKey);
     }
 
     /**
@@ -299,20 +267,7 @@ public class SecureUtils {
     public static byte calculateK4(final byte[] n) {
         if (n == null || n.length != 16)
             throw new IllegalArgumentException("Key cannot be empty and must be 16-bytes long.");
-
-        byte[] salt = calculateSalt(SMK4);
-
-        final byte[] t = calculateCMAC(n, salt);
-
-        ByteBuffer buffer = ByteBuffer.allocate(SMK4_DATA.length + 1);
-        buffer.put(SMK4_DATA);
-        buffer.put((byte) 0x01);
-        final byte[] cmacInput = buffer.array();
-
-        final byte[] result = calculateCMAC(cmacInput, t);
-
-        //Only the least siginificant 6 bytes are returned
-        return (byte) ((result[15]) & 0x3F);
+        return (byte) KeyDerivation.k4(n);
     }
 
     /**
@@ -339,6 +294,8 @@ public class SecureUtils {
      * @return hash value
      */
     public static byte[] calculateBeaconKey(final byte[] n) {
+        if (n == null)
+            return null;
         final byte[] salt = calculateSalt(NKBK);
         ByteBuffer buffer = ByteBuffer.allocate(ID128.length + 1);
         buffer.put(ID128);
@@ -359,12 +316,26 @@ public class SecureUtils {
                                                            final int flags,
                                                            @NonNull final byte[] networkId,
                                                            final int ivIndex) {
+        return calculateAuthValueSecureNetBeaconWithBeaconKey(calculateBeaconKey(n), flags, networkId, ivIndex);
+    }
+
+    /**
+     * Calculates the authentication value of secure network beacon using a beacon key derived in advance
+     *
+     * @param beaconKey beacon key derived from the network key
+     * @param flags     flags
+     * @param networkId network id of the network
+     * @param ivIndex   ivindex of the network
+     */
+    public static byte[] calculateAuthValueSecureNetBeaconWithBeaconKey(@NonNull final byte[] beaconKey,
+                                                                        final int flags,
+                                                                        @NonNull final byte[] networkId,
+                                                                        final int ivIndex) {
         final int inputLength = 1 + networkId.length + 4;
         final ByteBuffer pBuffer = ByteBuffer.allocate(inputLength);
         pBuffer.put((byte) flags);
         pBuffer.put(networkId);
         pBuffer.putInt(ivIndex);
-        final byte[] beaconKey = calculateBeaconKey(n);
         return calculateCMAC(pBuffer.array(), beaconKey);
     }
 
@@ -493,6 +464,8 @@ public class SecureUtils {
         private byte[] encryptionKey;
         @Expose
         private byte[] privacyKey;
+        private CipherContext encryptionCipher;
+        private CipherContext privacyCipher;
 
         private K2Output(final byte nid, final byte[] encryptionKey, final byte[] privacyKey) {
             this.nid = nid;
@@ -529,5 +502,25 @@ public class SecureUtils {
         public byte[] getPrivacyKey() {
             return privacyKey;
         }
+
+        /**
+         * Returns a {@link CipherContext} keyed with the encryption key that can be reused across PDUs.
+         */
+        public CipherContext getEncryptionCipher() {
+            if (encryptionCipher == null) {
+                encryptionCipher = new CipherContext(encryptionKey);
+            }
+            return encryptionCipher;
+        }
+
+        /**
+         * Returns a {@link CipherContext} keyed with the privacy key that can be reused across PDUs.
+         */
+        public CipherContext getPrivacyCipher() {
+            if (privacyCipher == null) {
+                privacyCipher = new CipherContext(privacyKey);
+            }
+            return privacyCipher;
+        }
     }
 }
@@ -0,0 +1,134 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import no.nordicsemi.android.mesh.provisionerstates.UnprovisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.ControlMessage;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+
+public class CallbacksDispatcherTest {
+
+    private static final class QueueExecutor implements Executor {
+        private final Queue<Runnable> tasks = new LinkedList<>();
+
+        @Override
+        public void execute(final Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static final class RecordingManagerCallbacks implements MeshManagerCallbacks {
+        final List<byte[]> pdus = new ArrayList<>();
+
+        @Override
+        public void onNetworkLoaded(final MeshNetwork meshNetwork) {
+        }
+
+        @Override
+        public void onNetworkUpdated(final MeshNetwork meshNetwork) {
+        }
+
+        @Override
+        public void onNetworkLoadFailed(final String error) {
+        }
+
+        @Override
+        public void onNetworkImported(final MeshNetwork meshNetwork) {
+        }
+
+        @Override
+        public void onNetworkImportFailed(final String error) {
+        }
+
+        @Override
+        public void sendProvisioningPdu(final UnprovisionedMeshNode meshNode, final byte[] pdu) {
+        }
+
+        @Override
+        public void onMeshPduCreated(final byte[] pdu) {
+            pdus.add(pdu);
+        }
+
+        @Override
+        public int getMtu() {
+            return 23;
+        }
+    }
+
+    @Test
+    public void testManagerCallbacksAreDeliveredInOrderOnExecutor() {
+        final QueueExecutor executor = new QueueExecutor();
+        final RecordingManagerCallbacks callbacks = new RecordingManagerCallbacks();
+        final MeshManagerCallbacks dispatcher = new MeshManagerCallbacksDispatcher(callbacks, executor);
+
+        dispatcher.onMeshPduCreated(new byte[]{1});
+        dispatcher.onMeshPduCreated(new byte[]{2});
+        assertTrue(callbacks.pdus.isEmpty());
+        // The MTU is required by the mesh stack right away
+        assertEquals(23, dispatcher.getMtu());
+
+        executor.runAll();
+        assertEquals(2, callbacks.pdus.size());
+        assertArrayEquals(new byte[]{1}, callbacks.pdus.get(0));
+        assertArrayEquals(new byte[]{2}, callbacks.pdus.get(1));
+    }
+
+    @Test
+    public void testStatusCallbacksAreDeliveredOnExecutor() {
+        final QueueExecutor executor = new QueueExecutor();
+        final List<Integer> failed = new ArrayList<>();
+        final MeshStatusCallbacks dispatcher = new MeshStatusCallbacksDispatcher(new MeshStatusCallbacks() {
+            @Override
+            public void onTransactionFailed(final int dst, final boolean hasIncompleteTimerExpired) {
+                failed.add(dst);
+            }
+
+            @Override
+            public void onUnknownPduReceived(final int src, final byte[] accessPayload) {
+            }
+
+            @Override
+            public void onBlockAcknowledgementProcessed(final int dst, final ControlMessage message) {
+            }
+
+            @Override
+            public void onBlockAcknowledgementReceived(final int src, final ControlMessage message) {
+            }
+
+            @Override
+            public void onMeshMessageProcessed(final int dst, final MeshMessage meshMessage) {
+            }
+
+            @Override
+            public void onMeshMessageReceived(final int src, final MeshMessage meshMessage) {
+            }
+
+            @Override
+            public void onMessageDecryptionFailed(final String meshLayer, final String errorMessage) {
+            }
+        }, executor);
+
+        dispatcher.onTransactionFailed(0x0002, true);
+        assertTrue(failed.isEmpty());
+        executor.runAll();
+        assertEquals(1, failed.size());
+        assertEquals(0x0002, (int) failed.get(0));
+    }
+}
@@ -0,0 +1,266 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.models.SigModelParser;
+import no.nordicsemi.android.mesh.transport.AccessMessage;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyAdd;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyStatus;
+import no.nordicsemi.android.mesh.transport.ConfigCompositionDataGet;
+import no.nordicsemi.android.mesh.transport.ConfigCompositionDataStatus;
+import no.nordicsemi.android.mesh.transport.ConfigModelAppBind;
+import no.nordicsemi.android.mesh.transport.ConfigModelAppStatus;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.TestElements;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+public class ConfigurationPlanProcedureTest {
+
+    private static final int GENERIC_ON_OFF_SERVER = 0x1000;
+
+    private MeshNetwork network;
+    private ApplicationKey appKey;
+    private ConfigurationPlan plan;
+    private final List<Integer> sentTo = new ArrayList<>();
+    private final List<MeshMessage> sentMessages = new ArrayList<>();
+    private final RecordingCallbacks callbacks = new RecordingCallbacks();
+
+    private static final class RecordingCallbacks implements ConfigurationPlanCallbacks {
+        final List<ProvisionedMeshNode> configuredNodes = new ArrayList<>();
+        final List<Integer> messageCounts = new ArrayList<>();
+        final List<ProvisionedMeshNode> failedNodes = new ArrayList<>();
+        final List<MeshMessage> failedMessages = new ArrayList<>();
+        List<ProvisionedMeshNode> completedNodes;
+        List<ProvisionedMeshNode> completedFailedNodes;
+
+        @Override
+        public void onNodeConfigured(final ProvisionedMeshNode node, final int messageCount, final int skippedCount) {
+            configuredNodes.add(node);
+            messageCounts.add(messageCount);
+        }
+
+        @Override
+        public void onNodeConfigurationFailed(final ProvisionedMeshNode node, final MeshMessage message) {
+            failedNodes.add(node);
+            failedMessages.add(message);
+        }
+
+        @Override
+        public void onConfigurationCompleted(final List<ProvisionedMeshNode> configuredNodes, final List<ProvisionedMeshNode> failedNodes) {
+            completedNodes = configuredNodes;
+            completedFailedNodes = failedNodes;
+        }
+    }
+
+    /**
+     * Creates a node with a Generic OnOff Server on its primary element and, unless the composition is unknown, the
+     * application key of the plan already added.
+     */
+    private ProvisionedMeshNode createNode(final int unicastAddress, final boolean compositionKnown) {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.setUuid(UUID.randomUUID().toString());
+        node.setUnicastAddress(unicastAddress);
+        final List<NodeKey> appKeys = new ArrayList<>();
+        if (compositionKnown) {
+            node.setElements(TestElements.createElements(TestElements.createElement(unicastAddress,
+                    SigModelParser.getSigModel(GENERIC_ON_OFF_SERVER))));
+            appKeys.add(new NodeKey(appKey.getKeyIndex(), false));
+        }
+        node.setAddedAppKeys(appKeys);
+        network.nodes.add(node);
+        return node;
+    }
+
+    private ConfigurationPlanProcedure createProcedure(final int maxNodesInFlight, final ProvisionedMeshNode... nodes) {
+        return new ConfigurationPlanProcedure(network, plan, new ConfigurationPlan(plan), Arrays.asList(nodes), maxNodesInFlight,
+                (dst, meshMessage) -> {
+                    sentTo.add(dst);
+                    sentMessages.add(meshMessage);
+                }, callbacks);
+    }
+
+    private static AccessMessage createAccessMessage(final int src, final String parameters) {
+        final AccessMessage message = new AccessMessage();
+        message.setSrc(src);
+        message.setParameters(MeshParserUtils.toByteArray(parameters));
+        return message;
+    }
+
+    private static ConfigModelAppStatus createModelAppStatus(final int elementAddress, final int modelId, final int statusCode) {
+        return new ConfigModelAppStatus(createAccessMessage(elementAddress, String.format(Locale.US, "%02X%02X%02X0000%02X%02X",
+                statusCode, elementAddress & 0xFF, elementAddress >> 8, modelId & 0xFF, modelId >> 8)));
+    }
+
+    private static ConfigAppKeyStatus createAppKeyStatus(final int src) {
+        // Network Key 0 and Application Key 0
+        return new ConfigAppKeyStatus(createAccessMessage(src, "00000000"));
+    }
+
+    /**
+     * Returns a Composition Data Status with a single element and a Generic OnOff Server.
+     */
+    private static ConfigCompositionDataStatus createCompositionDataStatus(final int src) {
+        final String parameters = "0059000100020028000300000001000010";
+        final AccessMessage message = createAccessMessage(src, parameters);
+        message.setAccessPdu(MeshParserUtils.toByteArray("02" + parameters));
+        return new ConfigCompositionDataStatus(message);
+    }
+
+    /**
+     * Acknowledges the app key bind message of a node the way the status handler updates the node.
+     */
+    private void acknowledgeBind(final ConfigurationPlanProcedure procedure, final ProvisionedMeshNode node) {
+        TestElements.bind(node.getElements().get(node.getUnicastAddress()).getMeshModels().get(GENERIC_ON_OFF_SERVER),
+                appKey.getKeyIndex());
+        procedure.onMeshMessageReceived(node.getUnicastAddress(),
+                createModelAppStatus(node.getUnicastAddress(), GENERIC_ON_OFF_SERVER, 0));
+    }
+
+    @Before
+    public void setUp() {
+        network = new MeshNetwork(UUID.randomUUID().toString());
+        network.netKeys.add(new NetworkKey(0, MeshParserUtils.toByteArray("7DD7364CD842AD18C17C2B820C84C3D6")));
+        appKey = new ApplicationKey(0, MeshParserUtils.toByteArray("63964771734FBD76E3B40519D1D94A48"));
+        plan = new ConfigurationPlan().bindAppKey(GENERIC_ON_OFF_SERVER, appKey);
+    }
+
+    @Test
+    public void testNodesInFlightAreBounded() {
+        final ProvisionedMeshNode node1 = createNode(0x0002, true);
+        final ProvisionedMeshNode node2 = createNode(0x0003, true);
+        final ProvisionedMeshNode node3 = createNode(0x0004, true);
+        final ConfigurationPlanProcedure procedure = createProcedure(2, node1, node2, node3);
+
+        procedure.start();
+        assertEquals(Arrays.asList(0x0002, 0x0003), sentTo);
+        assertTrue(sentMessages.get(0) instanceof ConfigModelAppBind);
+
+        acknowledgeBind(procedure, node1);
+        assertEquals(Arrays.asList(0x0002, 0x0003, 0x0004), sentTo);
+        assertEquals(Collections.singletonList(node1), callbacks.configuredNodes);
+
+        acknowledgeBind(procedure, node3);
+        assertFalse(procedure.isFinished());
+        acknowledgeBind(procedure, node2);
+        assertTrue(procedure.isFinished());
+        assertEquals(Arrays.asList(node1, node3, node2), callbacks.completedNodes);
+        assertTrue(callbacks.completedFailedNodes.isEmpty());
+        assertEquals(Arrays.asList(1, 1, 1), callbacks.messageCounts);
+    }
+
+    @Test
+    public void testStatusesAreRoutedToTheCurrentStep() {
+        final ProvisionedMeshNode node = createNode(0x0002, true);
+        final ConfigurationPlanProcedure procedure = createProcedure(1, node);
+        procedure.start();
+
+        // Statuses of other messages, models or nodes do not acknowledge the bind message
+        procedure.onMeshMessageReceived(0x0002, createAppKeyStatus(0x0002));
+        procedure.onMeshMessageReceived(0x0002, createModelAppStatus(0x0002, 0x1002, 0));
+        procedure.onMeshMessageReceived(0x0003, createModelAppStatus(0x0003, GENERIC_ON_OFF_SERVER, 0));
+        assertFalse(procedure.isFinished());
+        assertTrue(callbacks.configuredNodes.isEmpty());
+
+        acknowledgeBind(procedure, node);
+        assertTrue(procedure.isFinished());
+        assertEquals(Collections.singletonList(node), callbacks.completedNodes);
+    }
+
+    @Test
+    public void testCompositionDataIsReadBeforeCompiling() {
+        final ProvisionedMeshNode node = createNode(0x0002, false);
+        final ConfigurationPlanProcedure procedure = createProcedure(1, node);
+
+        procedure.start();
+        assertEquals(1, sentMessages.size());
+        assertTrue(sentMessages.get(0) instanceof ConfigCompositionDataGet);
+
+        // The status handler stores the elements of the node before the procedure is notified
+        final ConfigCompositionDataStatus status = createCompositionDataStatus(0x0002);
+        node.setElements(status.getElements());
+        procedure.onMeshMessageReceived(0x0002, status);
+        // The application key is added before it is bound
+        assertEquals(2, sentMessages.size());
+        assertTrue(sentMessages.get(1) instanceof ConfigAppKeyAdd);
+
+        node.getAddedAppKeys().add(new NodeKey(appKey.getKeyIndex(), false));
+        procedure.onMeshMessageReceived(0x0002, createAppKeyStatus(0x0002));
+        assertEquals(3, sentMessages.size());
+        assertTrue(sentMessages.get(2) instanceof ConfigModelAppBind);
+
+        acknowledgeBind(procedure, node);
+        assertTrue(procedure.isFinished());
+        assertEquals(Collections.singletonList(3), callbacks.messageCounts);
+    }
+
+    @Test
+    public void testFailedNodesMoveOnToTheNextNode() {
+        final ProvisionedMeshNode node1 = createNode(0x0002, true);
+        final ProvisionedMeshNode node2 = createNode(0x0003, true);
+        final ProvisionedMeshNode node3 = createNode(0x0004, true);
+        final ConfigurationPlanProcedure procedure = createProcedure(1, node1, node2, node3);
+        procedure.start();
+
+        // Cannot Bind
+        procedure.onMeshMessageReceived(0x0002, createModelAppStatus(0x0002, GENERIC_ON_OFF_SERVER, 0x0D));
+        assertEquals(Arrays.asList(0x0002, 0x0003), sentTo);
+        assertEquals(Collections.singletonList(node1), callbacks.failedNodes);
+        assertTrue(callbacks.failedMessages.get(0) instanceof ConfigModelAppBind);
+
+        procedure.onTransactionFailed(0x0003);
+        assertEquals(Arrays.asList(0x0002, 0x0003, 0x0004), sentTo);
+        // Failures of nodes that are not being configured are ignored
+        procedure.onTransactionFailed(0x0003);
+        assertEquals(Arrays.asList(node1, node2), callbacks.failedNodes);
+
+        acknowledgeBind(procedure, node3);
+        assertTrue(procedure.isFinished());
+        assertEquals(Collections.singletonList(node3), callbacks.completedNodes);
+        assertEquals(Arrays.asList(node1, node2), callbacks.completedFailedNodes);
+    }
+
+    @Test
+    public void testCancel() {
+        final ProvisionedMeshNode node1 = createNode(0x0002, true);
+        final ProvisionedMeshNode node2 = createNode(0x0003, true);
+        final ConfigurationPlanProcedure procedure = createProcedure(1, node1, node2);
+        procedure.start();
+
+        procedure.cancel();
+        assertTrue(procedure.isFinished());
+        acknowledgeBind(procedure, node1);
+        procedure.onTransactionFailed(0x0002);
+        assertEquals(Collections.singletonList(0x0002), sentTo);
+        assertTrue(callbacks.configuredNodes.isEmpty());
+        assertTrue(callbacks.failedNodes.isEmpty());
+        assertNull(callbacks.completedNodes);
+    }
+
+    @Test
+    public void testNodesListedTwiceAreConfiguredOnce() {
+        final ProvisionedMeshNode node1 = createNode(0x0002, true);
+        final ProvisionedMeshNode node2 = createNode(0x0003, true);
+        final ConfigurationPlanProcedure procedure = createProcedure(4, node1, node2, node1);
+
+        procedure.start();
+        assertEquals(Arrays.asList(0x0002, 0x0003), sentTo);
+        acknowledgeBind(procedure, node1);
+        acknowledgeBind(procedure, node2);
+        assertTrue(procedure.isFinished());
+        assertEquals(Arrays.asList(node1, node2), callbacks.completedNodes);
+    }
+}
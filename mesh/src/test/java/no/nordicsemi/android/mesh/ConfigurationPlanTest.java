@@ -0,0 +1,85 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyAdd;
+import no.nordicsemi.android.mesh.transport.ConfigModelAppBind;
+import no.nordicsemi.android.mesh.transport.ConfigModelSubscriptionAdd;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.TestElements;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+public class ConfigurationPlanTest {
+
+    private static final int GENERIC_ON_OFF_SERVER = 0x1000;
+    private static final int VENDOR_MODEL = 0x00590001;
+
+    private MeshNetwork network;
+    private ApplicationKey appKey;
+    private ApplicationKey otherAppKey;
+    private ProvisionedMeshNode node;
+
+    @Before
+    public void setUp() {
+        network = new MeshNetwork(UUID.randomUUID().toString());
+        network.netKeys.add(new NetworkKey(0, MeshParserUtils.toByteArray("7DD7364CD842AD18C17C2B820C84C3D6")));
+        appKey = new ApplicationKey(0, MeshParserUtils.toByteArray("63964771734FBD76E3B40519D1D94A48"));
+        otherAppKey = new ApplicationKey(1, MeshParserUtils.toByteArray("63964771734FBD76E3B40519D1D94A49"));
+
+        node = new ProvisionedMeshNode();
+        node.setUnicastAddress(0x0002);
+        // The primary element has a Generic OnOff Server bound to key 0 and subscribed to 0xC000
+        node.setElements(TestElements.createSampleElements(0x0002));
+        node.setAddedAppKeys(new ArrayList<>(Collections.singletonList(new NodeKey(0))));
+    }
+
+    @Test
+    public void testStepsMatchingTheNodeAreSkipped() {
+        final ConfigurationPlan plan = new ConfigurationPlan()
+                .bindAppKey(GENERIC_ON_OFF_SERVER, appKey)
+                .subscribe(GENERIC_ON_OFF_SERVER, 0xC000);
+
+        final List<ConfigurationPlan.Step> steps = new ArrayList<>();
+        assertEquals(3, plan.compile(network, node, steps));
+        assertTrue(steps.isEmpty());
+    }
+
+    @Test
+    public void testMissingStateIsCompiledOnce() {
+        final ConfigurationPlan plan = new ConfigurationPlan()
+                .bindAppKey(GENERIC_ON_OFF_SERVER, otherAppKey)
+                .bindAppKey(VENDOR_MODEL, otherAppKey)
+                .bindAppKey(VENDOR_MODEL, otherAppKey)
+                .subscribe(GENERIC_ON_OFF_SERVER, 0xC001)
+                .subscribe(GENERIC_ON_OFF_SERVER, 0xC001);
+
+        final List<ConfigurationPlan.Step> steps = new ArrayList<>();
+        assertEquals(0, plan.compile(network, node, steps));
+        assertEquals(4, steps.size());
+        // The application key is added once, before it is bound
+        assertTrue(steps.get(0).message instanceof ConfigAppKeyAdd);
+        assertTrue(steps.get(1).message instanceof ConfigModelAppBind);
+        assertTrue(steps.get(2).message instanceof ConfigModelSubscriptionAdd);
+        final ConfigModelAppBind vendorBind = (ConfigModelAppBind) steps.get(3).message;
+        assertEquals(0x0003, vendorBind.getElementAddress());
+        assertEquals(VENDOR_MODEL, vendorBind.getModelIdentifier());
+    }
+
+    @Test
+    public void testModelsNotPresentAreIgnored() {
+        final ConfigurationPlan plan = new ConfigurationPlan().bindAppKey(0x1300, appKey);
+
+        final List<ConfigurationPlan.Step> steps = new ArrayList<>();
+        assertEquals(0, plan.compile(network, node, steps));
+        assertTrue(steps.isEmpty());
+    }
+}
@@ -0,0 +1,157 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+public class ImportExportUtilsTest {
+
+    private ImportExportUtils utils;
+    private MeshNetwork network;
+
+    @Before
+    public void setUp() throws IOException {
+        utils = new ImportExportUtils();
+        network = importFixture(null);
+    }
+
+    private MeshNetwork importFixture(final NetworkImportCallbacks callbacks) throws IOException {
+        final InputStream stream = getClass().getClassLoader().getResourceAsStream("network.json");
+        assertNotNull(stream);
+        final Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        try {
+            return utils.importNetwork(reader, callbacks);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static JsonObject findNode(final JsonObject json, final String unicastAddress) {
+        for (JsonElement node : json.getAsJsonArray("nodes")) {
+            if (node.getAsJsonObject().get("unicastAddress").getAsString().equals(unicastAddress))
+                return node.getAsJsonObject();
+        }
+        throw new AssertionError("Node " + unicastAddress + " was not exported");
+    }
+
+    private static JsonObject findModel(final JsonObject node, final String modelId) {
+        for (JsonElement element : node.getAsJsonArray("elements")) {
+            for (JsonElement model : element.getAsJsonObject().getAsJsonArray("models")) {
+                if (model.getAsJsonObject().get("modelId").getAsString().equals(modelId))
+                    return model.getAsJsonObject();
+            }
+        }
+        throw new AssertionError("Model " + modelId + " was not exported");
+    }
+
+    private static List<String> values(final JsonArray array, final String property) {
+        final List<String> values = new ArrayList<>();
+        for (JsonElement element : array) {
+            values.add(property == null ? element.getAsString() : element.getAsJsonObject().get(property).getAsString());
+        }
+        return values;
+    }
+
+    @Test
+    public void testExportMatchesNetworkSerializer() throws IOException {
+        assertEquals(4, network.getNodes().size());
+        assertEquals(0x0001, (int) network.getProvisioners().get(0).getProvisionerAddress());
+
+        final String exported = utils.export(network, false);
+        assertNotNull(exported);
+        assertEquals(utils.getGson().toJsonTree(network), JsonParser.parseString(exported));
+
+        // Importing the export again gives the same network
+        final MeshNetwork imported = utils.importNetwork(new StringReader(exported), null);
+        assertEquals(JsonParser.parseString(exported), JsonParser.parseString(utils.export(imported, false)));
+    }
+
+    @Test
+    public void testPartialExport() {
+        final NetworkKey netKey = network.getNetKey(1);
+        final ProvisionedMeshNode light = network.getNode(0x0002);
+        final ProvisionedMeshNode switchNode = network.getNode(0x0004);
+        final Provisioner provisioner = network.getProvisioners().get(1);
+        final byte[] deviceKey = switchNode.getDeviceKey();
+
+        final String exported = utils.export(network,
+                new NetworkKeysConfig.ExportSome(Collections.singletonList(netKey)).build(),
+                new ApplicationKeysConfig.ExportSome(network.getAppKeys()).build(),
+                new NodesConfig.ExportSome(Collections.singletonList(light), Collections.singletonList(switchNode)).build(),
+                new ProvisionersConfig.ExportSome(Collections.singletonList(provisioner)).build(),
+                new GroupsConfig.ExportRelated().build(),
+                new ScenesConfig.ExportAll().build());
+        assertNotNull(exported);
+        final JsonObject json = JsonParser.parseString(exported).getAsJsonObject();
+
+        assertTrue(json.get("partial").getAsBoolean());
+        assertEquals(Collections.singletonList("1"), values(json.getAsJsonArray("netKeys"), "index"));
+        // Application Key 1 is bound to a Network Key that is not exported
+        assertEquals(Collections.singletonList("1"), values(json.getAsJsonArray("appKeys"), "index"));
+        assertEquals(Arrays.asList("Provisioner 1", "Provisioner 2"),
+                values(json.getAsJsonArray("provisioners"), "provisionerName"));
+        // The nodes of the provisioners are exported even when they were not selected
+        assertEquals(Arrays.asList("0002", "0004", "0001", "199B"), values(json.getAsJsonArray("nodes"), "unicastAddress"));
+
+        assertFalse(findNode(json, "0002").get("deviceKey").getAsString().isEmpty());
+        assertTrue(findNode(json, "0004").get("deviceKey").getAsString().isEmpty());
+
+        // Bindings to keys that are not exported are removed, along with the publications using them
+        final JsonObject onOffServer = findModel(findNode(json, "0002"), "1000");
+        assertEquals(Collections.singletonList("1"), values(onOffServer.getAsJsonArray("bind"), null));
+        assertEquals(Arrays.asList("C000", "C001"), values(onOffServer.getAsJsonArray("subscribe"), null));
+        final JsonObject levelServer = findModel(findNode(json, "0002"), "1002");
+        assertEquals(0, levelServer.getAsJsonArray("bind").size());
+        assertFalse(levelServer.has("publish"));
+
+        // Only the groups the exported models subscribe or publish to are related
+        assertEquals(Arrays.asList("C000", "C001"), values(json.getAsJsonArray("groups"), "address"));
+        // Scenes only list the exported nodes
+        final JsonObject scene = json.getAsJsonArray("scenes").get(0).getAsJsonObject();
+        assertEquals(Collections.singletonList("0002"), values(scene.getAsJsonArray("addresses"), null));
+
+        // The network itself is not modified
+        assertFalse(network.isPartial());
+        assertArrayEquals(deviceKey, switchNode.getDeviceKey());
+        assertEquals(Arrays.asList(0x0002, 0x0006), network.getScenes().get(0).getAddresses());
+        assertEquals(Arrays.asList(0, 1), light.getElements().get(0x0002).getMeshModels().get(0x1000).getBoundAppKeyIndexes());
+        assertEquals(2, network.getNetKeys().size());
+    }
+
+    @Test
+    public void testImportProgressIsReportedPerNode() throws IOException {
+        final List<Integer> counts = new ArrayList<>();
+        final MeshNetwork imported = importFixture(new NetworkImportCallbacks() {
+            @Override
+            public void onNodesImported(final int count) {
+                counts.add(count);
+            }
+        });
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), counts);
+        assertEquals(imported.getNodes().size(), (int) counts.get(counts.size() - 1));
+    }
+}
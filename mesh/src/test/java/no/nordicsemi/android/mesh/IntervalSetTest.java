@@ -0,0 +1,65 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IntervalSetTest {
+
+    @Test
+    public void testAddMergesAdjacentIntervals() {
+        final IntervalSet set = new IntervalSet();
+        set.add(1, 3);
+        set.add(7, 9);
+        assertEquals(2, set.getIntervalCount());
+
+        set.add(4, 6);
+        assertEquals(1, set.getIntervalCount());
+        assertTrue(set.contains(1));
+        assertTrue(set.contains(9));
+        assertFalse(set.contains(10));
+
+        set.add(2, 20);
+        assertEquals(1, set.getIntervalCount());
+        assertEquals(20, set.lastUsed(1, 1));
+    }
+
+    @Test
+    public void testRemoveSplitsIntervals() {
+        final IntervalSet set = new IntervalSet();
+        set.add(1, 10);
+        set.remove(5);
+        assertEquals(2, set.getIntervalCount());
+        assertFalse(set.contains(5));
+        assertTrue(set.contains(4));
+        assertTrue(set.contains(6));
+
+        set.remove(1, 4);
+        set.remove(9, 12);
+        assertEquals(1, set.getIntervalCount());
+        assertFalse(set.contains(1));
+        assertTrue(set.contains(6));
+        assertTrue(set.contains(8));
+        assertFalse(set.contains(9));
+
+        set.remove(0, 100);
+        assertEquals(0, set.getIntervalCount());
+    }
+
+    @Test
+    public void testNextFree() {
+        final IntervalSet set = new IntervalSet();
+        assertEquals(1, set.nextFree(1, 10, 1));
+
+        set.add(1, 3);
+        set.add(5);
+        set.add(8, 9);
+        assertEquals(4, set.nextFree(1, 10, 1));
+        assertEquals(6, set.nextFree(1, 10, 2));
+        assertEquals(10, set.nextFree(8, 10, 1));
+        assertEquals(-1, set.nextFree(1, 10, 3));
+        assertEquals(-1, set.nextFree(8, 9, 1));
+    }
+}
@@ -0,0 +1,212 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.transport.AccessMessage;
+import no.nordicsemi.android.mesh.transport.ConfigKeyRefreshPhaseSet;
+import no.nordicsemi.android.mesh.transport.ConfigKeyRefreshPhaseStatus;
+import no.nordicsemi.android.mesh.transport.ConfigNetKeyStatus;
+import no.nordicsemi.android.mesh.transport.ConfigNetKeyUpdate;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+public class KeyRefreshProcedureTest {
+
+    private MeshNetwork network;
+    private NetworkKey networkKey;
+    private final List<Integer> sentTo = new ArrayList<>();
+    private final List<MeshMessage> sentMessages = new ArrayList<>();
+    private final RecordingCallbacks callbacks = new RecordingCallbacks();
+
+    private static final class RecordingCallbacks implements KeyRefreshCallbacks {
+        final List<Integer> phases = new ArrayList<>();
+        final List<Integer> nodeCounts = new ArrayList<>();
+        List<ProvisionedMeshNode> unreachableNodes;
+
+        @Override
+        public void onKeyRefreshPhaseStarted(final NetworkKey networkKey, final int phase, final int nodeCount) {
+            phases.add(phase);
+            nodeCounts.add(nodeCount);
+        }
+
+        @Override
+        public void onKeyRefreshProgress(final NetworkKey networkKey, final int phase, final int completed, final int failed, final int total) {
+        }
+
+        @Override
+        public void onNodeKeyRefreshFailed(final NetworkKey networkKey, final ProvisionedMeshNode node, final int phase) {
+        }
+
+        @Override
+        public void onKeyRefreshCompleted(final NetworkKey networkKey, final List<ProvisionedMeshNode> unreachableNodes) {
+            this.unreachableNodes = unreachableNodes;
+        }
+    }
+
+    private ProvisionedMeshNode createNode(final int unicastAddress) {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.setUuid(UUID.randomUUID().toString());
+        node.setUnicastAddress(unicastAddress);
+        final List<NodeKey> netKeys = new ArrayList<>();
+        netKeys.add(new NodeKey(networkKey.getKeyIndex(), false));
+        node.setAddedNetKeys(netKeys);
+        node.setAddedAppKeys(new ArrayList<NodeKey>());
+        network.nodes.add(node);
+        return node;
+    }
+
+    private KeyRefreshProcedure createProcedure(final int maxNodesInFlight) {
+        return new KeyRefreshProcedure(network, networkKey, maxNodesInFlight, (dst, meshMessage) -> {
+            sentTo.add(dst);
+            sentMessages.add(meshMessage);
+        }, callbacks);
+    }
+
+    private static NodeKey getNodeKey(final ProvisionedMeshNode node) {
+        return node.getAddedNetKeys().get(0);
+    }
+
+    private static ConfigNetKeyStatus createNetKeyStatus() {
+        final AccessMessage message = new AccessMessage();
+        message.setParameters(MeshParserUtils.toByteArray("000000"));
+        return new ConfigNetKeyStatus(message);
+    }
+
+    private static ConfigKeyRefreshPhaseStatus createPhaseStatus(final int phase) {
+        final AccessMessage message = new AccessMessage();
+        message.setParameters(MeshParserUtils.toByteArray("0000000" + phase));
+        return new ConfigKeyRefreshPhaseStatus(message);
+    }
+
+    /**
+     * Acknowledges the key refresh phase set message of a node the way the status handler updates the node, which is
+     * covered by {@link no.nordicsemi.android.mesh.transport.KeyRefreshPhaseStatusTest}.
+     */
+    private void acknowledgePhase(final KeyRefreshProcedure procedure, final ProvisionedMeshNode node, final int phase) {
+        getNodeKey(node).setPhase(phase);
+        procedure.onMeshMessageReceived(node.getUnicastAddress(), createPhaseStatus(phase));
+    }
+
+    @Before
+    public void setUp() {
+        network = new MeshNetwork(UUID.randomUUID().toString());
+        networkKey = new NetworkKey(0, MeshParserUtils.toByteArray("7DD7364CD842AD18C17C2B820C84C3D6"));
+        networkKey.setPhase(NetworkKey.KEY_DISTRIBUTION);
+        network.netKeys.add(networkKey);
+    }
+
+    @Test
+    public void testAllPhasesWithBoundedConcurrency() {
+        final ProvisionedMeshNode node1 = createNode(0x0002);
+        final ProvisionedMeshNode node2 = createNode(0x0003);
+        final ProvisionedMeshNode node3 = createNode(0x0004);
+        final KeyRefreshProcedure procedure = createProcedure(2);
+
+        procedure.start();
+        assertEquals(2, sentTo.size());
+        assertTrue(sentMessages.get(0) instanceof ConfigNetKeyUpdate);
+
+        getNodeKey(node1).setUpdated(true);
+        procedure.onMeshMessageReceived(0x0002, createNetKeyStatus());
+        assertEquals(3, sentTo.size());
+        assertEquals(0x0004, (int) sentTo.get(2));
+
+        procedure.onTransactionFailed(0x0003);
+        // The network does not move to the next phase until every reachable node has the new key
+        assertEquals(NetworkKey.KEY_DISTRIBUTION, networkKey.getPhase());
+
+        getNodeKey(node3).setUpdated(true);
+        procedure.onMeshMessageReceived(0x0004, createNetKeyStatus());
+        assertEquals(NetworkKey.USING_NEW_KEYS, networkKey.getPhase());
+        assertEquals(5, sentTo.size());
+        assertTrue(sentMessages.get(3) instanceof ConfigKeyRefreshPhaseSet);
+
+        acknowledgePhase(procedure, node1, NetworkKey.USING_NEW_KEYS);
+        assertEquals(NetworkKey.USING_NEW_KEYS, networkKey.getPhase());
+        acknowledgePhase(procedure, node3, NetworkKey.USING_NEW_KEYS);
+        assertEquals(NetworkKey.NORMAL_OPERATION, networkKey.getPhase());
+        assertEquals(7, sentTo.size());
+
+        acknowledgePhase(procedure, node1, NetworkKey.NORMAL_OPERATION);
+        assertNull(callbacks.unreachableNodes);
+        acknowledgePhase(procedure, node3, NetworkKey.NORMAL_OPERATION);
+        assertTrue(procedure.isFinished());
+        assertEquals(Collections.singletonList(node2), callbacks.unreachableNodes);
+        assertEquals(3, callbacks.phases.size());
+        assertEquals(NetworkKey.REVOKE_OLD_KEYS, (int) callbacks.phases.get(2));
+    }
+
+    @Test
+    public void testResumeFromPersistedProgress() {
+        networkKey.setPhase(NetworkKey.USING_NEW_KEYS);
+        final ProvisionedMeshNode switched = createNode(0x0002);
+        getNodeKey(switched).setUpdated(true);
+        getNodeKey(switched).setPhase(NetworkKey.USING_NEW_KEYS);
+        final ProvisionedMeshNode distributed = createNode(0x0003);
+        getNodeKey(distributed).setUpdated(true);
+        getNodeKey(distributed).setPhase(NetworkKey.KEY_DISTRIBUTION);
+        createNode(0x0004);
+
+        assertEquals(NetworkKey.USING_NEW_KEYS, KeyRefreshProcedure.getResumePhase(network, networkKey));
+        final KeyRefreshProcedure procedure = createProcedure(8);
+        procedure.start();
+        // Only the node that has not switched yet is sent a message, the node that never received the new key is skipped
+        assertEquals(Collections.singletonList(0x0003), sentTo);
+        assertEquals(2, (int) callbacks.nodeCounts.get(0));
+
+        acknowledgePhase(procedure, distributed, NetworkKey.USING_NEW_KEYS);
+        assertEquals(Arrays.asList(0x0003, 0x0002, 0x0003), sentTo);
+
+        // Restarted before the nodes acknowledged revoking the old keys
+        procedure.cancel();
+        sentTo.clear();
+        assertEquals(NetworkKey.REVOKE_OLD_KEYS, KeyRefreshProcedure.getResumePhase(network, networkKey));
+        final KeyRefreshProcedure resumed = createProcedure(8);
+        resumed.start();
+        assertEquals(Arrays.asList(0x0002, 0x0003), sentTo);
+        acknowledgePhase(resumed, switched, NetworkKey.NORMAL_OPERATION);
+        acknowledgePhase(resumed, distributed, NetworkKey.NORMAL_OPERATION);
+        assertTrue(resumed.isFinished());
+        assertTrue(callbacks.unreachableNodes.isEmpty());
+        assertEquals(NetworkKey.NORMAL_OPERATION, KeyRefreshProcedure.getResumePhase(network, networkKey));
+    }
+
+    @Test
+    public void testNodeFailingToSwitchIsReported() {
+        final ProvisionedMeshNode switched = createNode(0x0002);
+        getNodeKey(switched).setUpdated(true);
+        getNodeKey(switched).setPhase(NetworkKey.KEY_DISTRIBUTION);
+        final ProvisionedMeshNode stranded = createNode(0x0003);
+        getNodeKey(stranded).setUpdated(true);
+        getNodeKey(stranded).setPhase(NetworkKey.KEY_DISTRIBUTION);
+        networkKey.setPhase(NetworkKey.USING_NEW_KEYS);
+        final KeyRefreshProcedure procedure = createProcedure(8);
+        procedure.start();
+
+        acknowledgePhase(procedure, switched, NetworkKey.USING_NEW_KEYS);
+        procedure.onTransactionFailed(0x0003);
+        // The old keys are revoked although the stranded node still transmits using them
+        assertEquals(NetworkKey.NORMAL_OPERATION, networkKey.getPhase());
+        assertEquals(Arrays.asList(0x0002, 0x0003, 0x0002), sentTo);
+
+        // Restarted before the node acknowledged revoking the old keys, the stranded node is still reported
+        procedure.cancel();
+        final KeyRefreshProcedure resumed = createProcedure(8);
+        resumed.start();
+        acknowledgePhase(resumed, switched, NetworkKey.NORMAL_OPERATION);
+        assertTrue(resumed.isFinished());
+        assertEquals(Collections.singletonList(stranded), callbacks.unreachableNodes);
+    }
+}
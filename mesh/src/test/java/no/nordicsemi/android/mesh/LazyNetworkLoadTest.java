@@ -0,0 +1,82 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+public class LazyNetworkLoadTest {
+
+    private MeshNetwork network;
+    private Provisioner provisioner;
+
+    private static ProvisionedMeshNode createNode(final String uuid, final int unicastAddress) {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.setUuid(uuid);
+        node.setUnicastAddress(unicastAddress);
+        return node;
+    }
+
+    @Before
+    public void setUp() {
+        network = new MeshNetwork(UUID.randomUUID().toString());
+        provisioner = new Provisioner(UUID.randomUUID().toString(),
+                Collections.singletonList(new AllocatedUnicastRange(0x0001, 0x00FF)),
+                Collections.<AllocatedGroupRange>emptyList(),
+                Collections.<AllocatedSceneRange>emptyList(),
+                network.getMeshUUID());
+    }
+
+    @Test
+    public void testLoadedNodesAreMerged() {
+        final ProvisionedMeshNode provisionerNode = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0001);
+        network.nodes.add(provisionerNode);
+        network.setNodesLoading();
+        assertFalse(network.areNodesLoaded());
+
+        final ProvisionedMeshNode storedProvisionerNode = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0001);
+        final ProvisionedMeshNode node = createNode("8E0F4C5A1B2D4E6F8091A2B3C4D5E6F7", 0x0002);
+        network.onNodesLoaded(Arrays.asList(storedProvisionerNode, node));
+
+        assertTrue(network.areNodesLoaded());
+        assertEquals(2, network.getNodes().size());
+        // The node that was already part of the network is kept
+        assertSame(provisionerNode, network.getNode(0x0001));
+        assertSame(node, network.getNode(0x0002));
+    }
+
+    @Test
+    public void testNodesDeletedWhileLoadingAreNotRestored() {
+        final ProvisionedMeshNode node = createNode("8E0F4C5A1B2D4E6F8091A2B3C4D5E6F7", 0x0002);
+        network.nodes.add(node);
+        network.setNodesLoading();
+        assertTrue(network.deleteNode(node));
+
+        network.onNodesLoaded(Collections.singletonList(createNode("8E0F4C5A1B2D4E6F8091A2B3C4D5E6F7", 0x0002)));
+        assertNull(network.getNode(0x0002));
+        assertTrue(network.getNodes().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnicastAddressesAreNotAllocatedWhileLoading() {
+        network.setNodesLoading();
+        network.nextAvailableUnicastAddress(1, provisioner);
+    }
+
+    @Test
+    public void testUnicastAddressesSkipLoadedNodes() {
+        network.setNodesLoading();
+        network.onNodesLoaded(Collections.singletonList(createNode("8E0F4C5A1B2D4E6F8091A2B3C4D5E6F7", 0x0001)));
+        assertEquals(0x0002, network.nextAvailableUnicastAddress(1, provisioner));
+    }
+}
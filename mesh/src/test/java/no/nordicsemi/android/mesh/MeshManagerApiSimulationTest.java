@@ -0,0 +1,447 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.opcodes.ConfigMessageOpCodes;
+import no.nordicsemi.android.mesh.provisionerstates.UnprovisionedMeshNode;
+import no.nordicsemi.android.mesh.simulator.GenericOnOffServer;
+import no.nordicsemi.android.mesh.simulator.LinkConditions;
+import no.nordicsemi.android.mesh.simulator.LoopbackBearer;
+import no.nordicsemi.android.mesh.simulator.SimulatedModel;
+import no.nordicsemi.android.mesh.simulator.SimulatedNetwork;
+import no.nordicsemi.android.mesh.simulator.SimulatedNode;
+import no.nordicsemi.android.mesh.simulator.VirtualTimeExecutor;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyAdd;
+import no.nordicsemi.android.mesh.transport.ConfigAppKeyStatus;
+import no.nordicsemi.android.mesh.transport.ConfigCompositionDataGet;
+import no.nordicsemi.android.mesh.transport.ConfigCompositionDataStatus;
+import no.nordicsemi.android.mesh.transport.ConfigDefaultTtlGet;
+import no.nordicsemi.android.mesh.transport.ConfigDefaultTtlStatus;
+import no.nordicsemi.android.mesh.transport.ControlMessage;
+import no.nordicsemi.android.mesh.transport.MeshMessage;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.StatusMessageRegistry;
+import no.nordicsemi.android.mesh.transport.VendorModelMessageAcked;
+import no.nordicsemi.android.mesh.transport.VendorModelMessageStatus;
+import no.nordicsemi.android.mesh.transport.VendorModelMessageUnacked;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+/**
+ * Runs the mesh stack against a {@link SimulatedNetwork} connected through a {@link LoopbackBearer}, with the stack and
+ * the network sharing a {@link VirtualTimeExecutor} so that the transport timers run without waiting.
+ * <p>
+ * The network is imported from simulation.json, in which the node 0x0002 has a Configuration Server and a Generic OnOff
+ * Server on its primary element, as the simulated node does.
+ * </p>
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MeshManagerApiSimulationTest {
+
+    private static final byte[] NETWORK_KEY = MeshParserUtils.toByteArray("7DD7364CD842AD18C17C2B820C84C3D6");
+    private static final byte[] DEVICE_KEY = MeshParserUtils.toByteArray("3C7E9A1B5D2F4E6A8C0B1D3F5E7A9C2B");
+    private static final int IV_INDEX = 0;
+    private static final int NODE_ADDRESS = 0x0002;
+    private static final long NETWORK_LOAD_TIMEOUT = 5000;
+    private static final int COMPANY_IDENTIFIER = 0x0059;
+    private static final int VENDOR_MODEL_ID = 0x00590001;
+    private static final int VENDOR_GET = 0x01;
+    private static final int VENDOR_STATUS = 0x02;
+    private static final int VENDOR_UNKNOWN_RESPONSE = 0x03;
+    private static final int UNKNOWN_OPCODE = 0x82FF;
+
+    private final VirtualTimeExecutor executor = new VirtualTimeExecutor();
+    private final RecordingCallbacks callbacks = new RecordingCallbacks();
+    private MeshManagerApi api;
+    private SimulatedNetwork network;
+    private SimulatedNode node;
+    private LoopbackBearer bearer;
+    private MeshNetwork meshNetwork;
+    private int notificationsToForward = Integer.MAX_VALUE;
+    private int notificationsToHold;
+    private final List<byte[]> heldNotifications = new ArrayList<>();
+    private final List<byte[]> forwardedNotifications = new ArrayList<>();
+
+    private final class RecordingCallbacks implements MeshManagerCallbacks, MeshStatusCallbacks {
+        final List<MeshMessage> receivedMessages = new ArrayList<>();
+        final List<Integer> blockAcksReceived = new ArrayList<>();
+        final List<Integer> blockAcksProcessed = new ArrayList<>();
+        final List<Integer> failedTransactions = new ArrayList<>();
+        final List<Boolean> incompleteTimerExpirations = new ArrayList<>();
+        final List<byte[]> unknownPdus = new ArrayList<>();
+
+        @Override
+        public void onNetworkLoaded(final MeshNetwork meshNetwork) {
+            MeshManagerApiSimulationTest.this.meshNetwork = meshNetwork;
+        }
+
+        @Override
+        public void onNetworkUpdated(final MeshNetwork meshNetwork) {
+        }
+
+        @Override
+        public void onNetworkLoadFailed(final String error) {
+            throw new AssertionError("Network load failed: " + error);
+        }
+
+        @Override
+        public void onNetworkImported(final MeshNetwork meshNetwork) {
+        }
+
+        @Override
+        public void onNetworkImportFailed(final String error) {
+            throw new AssertionError("Network import failed: " + error);
+        }
+
+        @Override
+        public void sendProvisioningPdu(final UnprovisionedMeshNode meshNode, final byte[] pdu) {
+        }
+
+        @Override
+        public void onMeshPduCreated(final byte[] pdu) {
+            bearer.send(pdu);
+        }
+
+        @Override
+        public int getMtu() {
+            return bearer.getMtu();
+        }
+
+        @Override
+        public void onTransactionFailed(final int dst, final boolean hasIncompleteTimerExpired) {
+            failedTransactions.add(dst);
+            incompleteTimerExpirations.add(hasIncompleteTimerExpired);
+        }
+
+        @Override
+        public void onUnknownPduReceived(final int src, final byte[] accessPayload) {
+            if (src == NODE_ADDRESS)
+                unknownPdus.add(accessPayload);
+        }
+
+        @Override
+        public void onBlockAcknowledgementProcessed(final int dst, @NonNull final ControlMessage message) {
+            blockAcksProcessed.add(dst);
+        }
+
+        @Override
+        public void onBlockAcknowledgementReceived(final int src, @NonNull final ControlMessage message) {
+            blockAcksReceived.add(src);
+        }
+
+        @Override
+        public void onMeshMessageProcessed(final int dst, @NonNull final MeshMessage meshMessage) {
+        }
+
+        @Override
+        public void onMeshMessageReceived(final int src, @NonNull final MeshMessage meshMessage) {
+            if (src == NODE_ADDRESS)
+                receivedMessages.add(meshMessage);
+        }
+
+        @Override
+        public void onMessageDecryptionFailed(final String meshLayer, final String errorMessage) {
+        }
+
+        <T extends MeshMessage> List<T> getReceivedMessages(final Class<T> type) {
+            final List<T> messages = new ArrayList<>();
+            for (MeshMessage message : receivedMessages) {
+                if (type.isInstance(message))
+                    messages.add(type.cast(message));
+            }
+            return messages;
+        }
+    }
+
+    /**
+     * Vendor model responding to {@link #VENDOR_GET} with a vendor status and to {@link #VENDOR_UNKNOWN_RESPONSE} with
+     * a message the stack does not know
+     */
+    private static final class VendorServer extends SimulatedModel {
+
+        VendorServer() {
+            super(VENDOR_MODEL_ID);
+        }
+
+        @Override
+        protected boolean onMessage(@NonNull final Request request) {
+            if (request.getOpCode() == StatusMessageRegistry.getVendorOpCode(VENDOR_GET, COMPANY_IDENTIFIER)) {
+                request.respond(StatusMessageRegistry.getVendorOpCode(VENDOR_STATUS, COMPANY_IDENTIFIER), new byte[]{0x2A});
+                return true;
+            } else if (request.getOpCode() == StatusMessageRegistry.getVendorOpCode(VENDOR_UNKNOWN_RESPONSE, COMPANY_IDENTIFIER)) {
+                request.respond(UNKNOWN_OPCODE, new byte[]{0x01});
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Connects the mesh stack to a simulated network and imports the network of the node
+     *
+     * @param conditions Conditions of the link
+     * @param mtu        MTU of the bearer
+     */
+    private void setUp(final LinkConditions conditions, final int mtu) throws Exception {
+        network = new SimulatedNetwork(executor, NETWORK_KEY, IV_INDEX, conditions, 1);
+        node = new SimulatedNode(NODE_ADDRESS, DEVICE_KEY);
+        node.addModel(0, new GenericOnOffServer());
+        network.addNode(node);
+        bearer = new LoopbackBearer(network, mtu);
+
+        // Callbacks are delivered directly on the thread advancing the clock
+        api = new MeshManagerApi(RuntimeEnvironment.getApplication(), executor, Runnable::run);
+        api.setMeshManagerCallbacks(callbacks);
+        api.setMeshStatusCallbacks(callbacks);
+        bearer.setNotificationListener(pdu -> {
+            if (notificationsToHold > 0) {
+                notificationsToHold--;
+                heldNotifications.add(pdu);
+            } else if (notificationsToForward > 0) {
+                notificationsToForward--;
+                forward(pdu);
+            }
+        });
+        api.importMeshNetworkJson(readResource("simulation.json"));
+        awaitNetworkLoaded();
+    }
+
+    @After
+    public void tearDown() {
+        if (api != null) {
+            api.close();
+            executor.advanceTimeBy(0);
+        }
+        StatusMessageRegistry.reset();
+    }
+
+    /**
+     * The imported network is stored on the database thread, which then posts the network to the mesh executor
+     */
+    private void awaitNetworkLoaded() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + NETWORK_LOAD_TIMEOUT;
+        while (meshNetwork == null) {
+            assertTrue("Network not loaded", System.currentTimeMillis() < deadline);
+            executor.advanceTimeBy(0);
+            Thread.sleep(10);
+        }
+    }
+
+    private String readResource(final String name) throws Exception {
+        final InputStream stream = getClass().getClassLoader().getResourceAsStream(name);
+        assertNotNull(stream);
+        try {
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int length;
+            while ((length = stream.read(buffer)) != -1) {
+                data.write(buffer, 0, length);
+            }
+            return data.toString("UTF-8");
+        } finally {
+            stream.close();
+        }
+    }
+
+    private void forward(final byte[] pdu) {
+        forwardedNotifications.add(pdu);
+        api.handleNotifications(bearer.getMtu(), pdu);
+    }
+
+    private void addAppKey() {
+        api.createMeshPdu(NODE_ADDRESS, new ConfigAppKeyAdd(meshNetwork.getNetKey(0), meshNetwork.getAppKey(0)));
+    }
+
+    /**
+     * Adds a vendor model bound to the first application key to the primary element of the node
+     */
+    private void addVendorServer() {
+        final ApplicationKey appKey = meshNetwork.getAppKey(0);
+        assertTrue(node.addAppKey(appKey.getKeyIndex(), appKey.getKey()));
+        final VendorServer server = new VendorServer();
+        server.bindAppKey(appKey.getKeyIndex());
+        node.addModel(0, server);
+    }
+
+    @Test
+    public void testSegmentedMessagesAreSentAndReceived() throws Exception {
+        // The smallest MTU, so that the proxy pdus are segmented too
+        setUp(LinkConditions.PERFECT, 20);
+
+        // Config AppKey Add is sent in two segments, which the node acknowledges
+        addAppKey();
+        executor.advanceTimeBy(5000);
+        assertTrue(node.hasAppKey(0));
+        assertEquals(1, node.getReceivedMessageCount());
+        assertTrue(callbacks.blockAcksReceived.contains(NODE_ADDRESS));
+        final List<ConfigAppKeyStatus> appKeyStatuses = callbacks.getReceivedMessages(ConfigAppKeyStatus.class);
+        assertEquals(1, appKeyStatuses.size());
+        assertTrue(appKeyStatuses.get(0).isSuccessful());
+        assertEquals(0, appKeyStatuses.get(0).getAppKeyIndex());
+
+        // Config Composition Data Status is received in two segments, which the stack acknowledges
+        api.createMeshPdu(NODE_ADDRESS, new ConfigCompositionDataGet());
+        executor.advanceTimeBy(5000);
+        assertTrue(callbacks.blockAcksProcessed.contains(NODE_ADDRESS));
+        final List<ConfigCompositionDataStatus> compositionData = callbacks.getReceivedMessages(ConfigCompositionDataStatus.class);
+        assertEquals(1, compositionData.size());
+        assertEquals(0x0059, compositionData.get(0).getCompanyIdentifier());
+        assertEquals(0x0020, compositionData.get(0).getCrpl());
+        assertEquals(1, compositionData.get(0).getElements().size());
+
+        assertTrue(callbacks.failedTransactions.isEmpty());
+        assertEquals(0, network.getDroppedPduCount());
+    }
+
+    @Test
+    public void testLostSegmentsAreRetransmitted() throws Exception {
+        setUp(new LinkConditions(0.1, 20, 10), 66);
+        api.setAcknowledgedMessageTimeout(5000, 5);
+
+        final int count = 10;
+        addAppKey();
+        for (int i = 0; i < count; i++) {
+            api.createMeshPdu(NODE_ADDRESS, new ConfigCompositionDataGet());
+        }
+        executor.advanceTimeBy(10 * 60 * 1000);
+
+        assertTrue(network.getDroppedPduCount() > 0);
+        assertTrue(callbacks.failedTransactions.isEmpty());
+        assertTrue(node.hasAppKey(0));
+        // Lost segments are sent again by the lower transport layer of either side, and lost messages by the stack
+        assertFalse(callbacks.getReceivedMessages(ConfigAppKeyStatus.class).isEmpty());
+        assertEquals(count, callbacks.getReceivedMessages(ConfigCompositionDataStatus.class).size());
+    }
+
+    @Test
+    public void testIncompleteTimerExpires() throws Exception {
+        // A large MTU, so that each notification carries a single network pdu
+        setUp(LinkConditions.PERFECT, 66);
+        api.setAcknowledgedMessageTimeout(60 * 1000, 0);
+
+        // Only the first segment of the Config Composition Data Status reaches the stack
+        notificationsToForward = 1;
+        api.createMeshPdu(NODE_ADDRESS, new ConfigCompositionDataGet());
+        executor.advanceTimeBy(9000);
+        // The node retransmits the segment that was not acknowledged
+        assertTrue(bearer.getNotificationCount() > 2);
+        assertTrue(callbacks.failedTransactions.isEmpty());
+
+        executor.advanceTimeBy(2000);
+        assertEquals(1, callbacks.failedTransactions.size());
+        assertEquals(NODE_ADDRESS, (int) callbacks.failedTransactions.get(0));
+        assertTrue(callbacks.incompleteTimerExpirations.get(0));
+        assertTrue(callbacks.getReceivedMessages(ConfigCompositionDataStatus.class).isEmpty());
+    }
+
+    @Test
+    public void testReorderedSegmentsAreAccepted() throws Exception {
+        // A large MTU, so that each notification carries a single network pdu
+        setUp(LinkConditions.PERFECT, 66);
+        api.setAcknowledgedMessageTimeout(60 * 1000, 0);
+
+        // The first segment of the Config Composition Data Status is held back and reaches the stack after the second,
+        // which was sent with a higher sequence number
+        notificationsToHold = 1;
+        api.createMeshPdu(NODE_ADDRESS, new ConfigCompositionDataGet());
+        executor.advanceTimeBy(0);
+        assertEquals(1, heldNotifications.size());
+        assertTrue(callbacks.getReceivedMessages(ConfigCompositionDataStatus.class).isEmpty());
+
+        // The message completes before the acknowledgement timer expires, so no segment has been retransmitted
+        forward(heldNotifications.remove(0));
+        executor.advanceTimeBy(0);
+        assertEquals(1, callbacks.getReceivedMessages(ConfigCompositionDataStatus.class).size());
+        assertEquals(2, bearer.getNotificationCount());
+
+        // Delivering the segments again does not deliver the message twice
+        for (byte[] pdu : new ArrayList<>(forwardedNotifications)) {
+            forward(pdu);
+        }
+        executor.advanceTimeBy(5000);
+        assertEquals(1, callbacks.getReceivedMessages(ConfigCompositionDataStatus.class).size());
+        assertTrue(callbacks.failedTransactions.isEmpty());
+        assertEquals(0, network.getDroppedPduCount());
+    }
+
+    @Test
+    public void testSigStatusIsDispatched() throws Exception {
+        setUp(LinkConditions.PERFECT, 66);
+        node.setDefaultTtl(7);
+        assertTrue(StatusMessageRegistry.isRegistered(ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_STATUS));
+
+        api.createMeshPdu(NODE_ADDRESS, new ConfigDefaultTtlGet());
+        executor.advanceTimeBy(5000);
+
+        // The status is created by the registered factory and the handler updates the ttl of the node
+        final List<ConfigDefaultTtlStatus> statuses = callbacks.getReceivedMessages(ConfigDefaultTtlStatus.class);
+        assertEquals(1, statuses.size());
+        assertEquals(7, statuses.get(0).getTtl());
+        assertEquals(7, (int) meshNetwork.getNode(NODE_ADDRESS).getTtl());
+        assertTrue(callbacks.unknownPdus.isEmpty());
+        assertTrue(callbacks.failedTransactions.isEmpty());
+    }
+
+    @Test
+    public void testRegisteredVendorStatusIsDispatched() throws Exception {
+        setUp(LinkConditions.PERFECT, 66);
+        addVendorServer();
+        final List<ProvisionedMeshNode> handledNodes = new ArrayList<>();
+        final List<MeshMessage> handledSentMessages = new ArrayList<>();
+        StatusMessageRegistry.register(StatusMessageRegistry.getVendorOpCode(VENDOR_STATUS, COMPANY_IDENTIFIER),
+                (message, sentMessage) -> new VendorModelMessageStatus(message, VENDOR_MODEL_ID),
+                (meshNode, status, sentMessage) -> {
+                    handledNodes.add(meshNode);
+                    handledSentMessages.add(sentMessage);
+                });
+
+        final VendorModelMessageAcked get = new VendorModelMessageAcked(meshNetwork.getAppKey(0),
+                VENDOR_MODEL_ID, COMPANY_IDENTIFIER, VENDOR_GET, new byte[0]);
+        api.createMeshPdu(NODE_ADDRESS, get);
+        executor.advanceTimeBy(5000);
+
+        final List<VendorModelMessageStatus> statuses = callbacks.getReceivedMessages(VendorModelMessageStatus.class);
+        assertEquals(1, statuses.size());
+        assertEquals(VENDOR_MODEL_ID, statuses.get(0).getModelIdentifier());
+        assertArrayEquals(new byte[]{(byte) 0xC2, 0x59, 0x00, 0x2A}, statuses.get(0).getAccessPayload());
+        // The handler is given the node that sent the status and the message it acknowledges
+        assertEquals(1, handledNodes.size());
+        assertEquals(NODE_ADDRESS, handledNodes.get(0).getUnicastAddress());
+        assertEquals(get, handledSentMessages.get(0));
+        assertTrue(callbacks.unknownPdus.isEmpty());
+        assertTrue(callbacks.failedTransactions.isEmpty());
+    }
+
+    @Test
+    public void testUnknownOpCodeIsReported() throws Exception {
+        setUp(LinkConditions.PERFECT, 66);
+        addVendorServer();
+        assertFalse(StatusMessageRegistry.isRegistered(UNKNOWN_OPCODE));
+        final Integer ttl = meshNetwork.getNode(NODE_ADDRESS).getTtl();
+
+        api.createMeshPdu(NODE_ADDRESS, new VendorModelMessageUnacked(meshNetwork.getAppKey(0),
+                VENDOR_MODEL_ID, COMPANY_IDENTIFIER, VENDOR_UNKNOWN_RESPONSE, new byte[0]));
+        executor.advanceTimeBy(5000);
+
+        // The access payload is reported as it was received and the node is not updated
+        assertEquals(1, callbacks.unknownPdus.size());
+        assertArrayEquals(new byte[]{(byte) 0x82, (byte) 0xFF, 0x01}, callbacks.unknownPdus.get(0));
+        assertTrue(callbacks.receivedMessages.isEmpty());
+        assertEquals(ttl, meshNetwork.getNode(NODE_ADDRESS).getTtl());
+    }
+}
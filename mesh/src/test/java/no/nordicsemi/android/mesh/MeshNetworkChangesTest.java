@@ -0,0 +1,124 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.data.MeshNetworkDao;
+import no.nordicsemi.android.mesh.data.NetworkKeysDao;
+import no.nordicsemi.android.mesh.data.ProvisionedMeshNodesDao;
+import no.nordicsemi.android.mesh.data.ScenesDao;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+public class MeshNetworkChangesTest {
+
+    private MeshNetwork network;
+    private NetworkKey networkKey;
+
+    @Before
+    public void setUp() {
+        network = new MeshNetwork(UUID.randomUUID().toString());
+        networkKey = new NetworkKey(0, MeshParserUtils.toByteArray("7DD7364CD842AD18C17C2B820C84C3D6"));
+        network.netKeys.add(networkKey);
+    }
+
+    private ProvisionedMeshNode createNode(final int unicastAddress) {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.setUuid(UUID.randomUUID().toString());
+        node.setUnicastAddress(unicastAddress);
+        final List<NodeKey> netKeys = new ArrayList<>();
+        netKeys.add(new NodeKey(networkKey.getKeyIndex(), false));
+        node.setAddedNetKeys(netKeys);
+        node.setAddedAppKeys(new ArrayList<NodeKey>());
+        return node;
+    }
+
+    @Test
+    public void testRemoveSceneAddressMarksScenesChanged() {
+        final Scene scene1 = new Scene(1, Arrays.asList(0x0002, 0x0003), network.getMeshUUID());
+        final Scene scene2 = new Scene(2, Collections.singletonList(0x0003), network.getMeshUUID());
+        final Scene scene3 = new Scene(3, Collections.singletonList(0x0004), network.getMeshUUID());
+        network.scenes.add(scene1);
+        network.scenes.add(scene2);
+        network.scenes.add(scene3);
+
+        assertTrue(network.removeSceneAddress(0x0003));
+        assertEquals(Collections.singletonList(0x0002), scene1.getAddresses());
+        assertTrue(scene2.getAddresses().isEmpty());
+
+        final MeshNetworkChanges changes = network.getPendingChanges().drain();
+        assertEquals(Arrays.asList(scene1, scene2), changes.getScenes());
+        assertTrue(network.getPendingChanges().isEmpty());
+
+        // Removing an address that is not part of any scene leaves nothing to persist
+        assertFalse(network.removeSceneAddress(0x0005));
+        assertTrue(network.getPendingChanges().isEmpty());
+    }
+
+    @Test
+    public void testMarkNetKeysInsecureMarksKeysChanged() {
+        assertTrue(networkKey.isMinSecurity());
+        final ProvisionedMeshNode node = createNode(0x0002);
+        // A key index that is not known to the network is ignored
+        node.getAddedNetKeys().add(new NodeKey(5, false));
+
+        assertTrue(network.markNetKeysInsecure(node));
+        assertFalse(networkKey.isMinSecurity());
+
+        final MeshNetworkChanges changes = network.getPendingChanges().drain();
+        assertEquals(Collections.singletonList(networkKey), changes.getNetKeys());
+        assertTrue(network.getPendingChanges().isEmpty());
+    }
+
+    @Test
+    public void testChangesAreWrittenToDatabase() {
+        final Scene scene = new Scene(1, Collections.singletonList(0x0002), network.getMeshUUID());
+        network.scenes.add(scene);
+        final ProvisionedMeshNode node = createNode(0x0002);
+        network.removeSceneAddress(node.getUnicastAddress());
+        network.markNetKeysInsecure(node);
+
+        final MeshNetworkDao networkDao = mock(MeshNetworkDao.class);
+        final ProvisionedMeshNodesDao nodesDao = mock(ProvisionedMeshNodesDao.class);
+        final NetworkKeysDao netKeysDao = mock(NetworkKeysDao.class);
+        final ScenesDao scenesDao = mock(ScenesDao.class);
+        MeshNetworkDb.writeChanges(network, network.getPendingChanges().drain(),
+                networkDao, nodesDao, netKeysDao, scenesDao);
+
+        verify(netKeysDao).update(Collections.singletonList(networkKey));
+        verify(scenesDao).update(Collections.singletonList(scene));
+        verify(nodesDao, never()).update(anyList());
+    }
+
+    @Test
+    public void testReplayProtectionListIsWrittenWithNetwork() {
+        network.getReplayProtectionList().update(0x0002, 0x000010, 0, ReplayProtectionList.DEFAULT_SIZE);
+        assertTrue(network.getPendingChanges().markNetworkChanged());
+
+        final MeshNetworkDao networkDao = mock(MeshNetworkDao.class);
+        MeshNetworkDb.writeChanges(network, network.getPendingChanges().drain(), networkDao,
+                mock(ProvisionedMeshNodesDao.class), mock(NetworkKeysDao.class), mock(ScenesDao.class));
+
+        verify(networkDao).update(eq(network.getMeshUUID()), any(), anyLong(), anyBoolean(), anyString(), anyBoolean(),
+                anyString(), eq(MeshTypeConverters.replayProtectionListToJson(network.getReplayProtectionList())));
+    }
+}
@@ -0,0 +1,279 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.spongycastle.jce.ECNamedCurveTable;
+import org.spongycastle.jce.interfaces.ECPublicKey;
+import org.spongycastle.jce.spec.ECParameterSpec;
+import org.spongycastle.jce.spec.ECPublicKeySpec;
+import org.spongycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import javax.crypto.KeyAgreement;
+
+import no.nordicsemi.android.mesh.provisionerstates.ProvisioningState;
+import no.nordicsemi.android.mesh.provisionerstates.UnprovisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.utils.SecureUtils;
+
+/**
+ * Provisions several simulated devices in parallel over loopback bearers. Each bearer delivers its events in order,
+ * while the bearers are served in a random but reproducible order so that the steps of the sessions interleave.
+ */
+public class MeshProvisioningHandlerTest {
+
+    private static final int DEVICE_COUNT = 8;
+    private static final byte[] NETWORK_KEY = SecureUtils.generateRandomNumber();
+
+    private final Random random = new Random(0x5EED);
+    private final Map<UUID, SimulatedDevice> devices = new LinkedHashMap<>();
+    private final List<ProvisionedMeshNode> provisionedNodes = new ArrayList<>();
+    private final List<UnprovisionedMeshNode> failedNodes = new ArrayList<>();
+
+    private MeshNetwork network;
+    private Provisioner provisioner;
+    private MeshProvisioningHandler handler;
+
+    @Before
+    public void setUp() {
+        Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
+        network = new MeshNetwork(UUID.randomUUID().toString());
+        provisioner = new Provisioner(UUID.randomUUID().toString(),
+                Collections.singletonList(new AllocatedUnicastRange(0x0001, 0x00FF)),
+                Collections.<AllocatedGroupRange>emptyList(),
+                Collections.<AllocatedSceneRange>emptyList(),
+                network.getMeshUUID());
+
+        final InternalTransportCallbacks transportCallbacks = mock(InternalTransportCallbacks.class);
+        when(transportCallbacks.getMeshNetwork()).thenReturn(network);
+        doAnswer(invocation -> {
+            final UnprovisionedMeshNode node = invocation.getArgument(0);
+            final byte[] pdu = invocation.getArgument(1);
+            final SimulatedDevice device = devices.get(node.getDeviceUuid());
+            // The write callback of the bearer is always delivered before the device receives the PDU
+            device.bearer.add(() -> handler.handleProvisioningWriteCallbacks(device.uuid));
+            device.bearer.add(() -> device.onPduReceived(pdu));
+            return null;
+        }).when(transportCallbacks).sendProvisioningPdu(any(), any());
+
+        final InternalMeshManagerCallbacks meshManagerCallbacks = (meshNode, numberOfElements) -> {
+            network.nodes.add(meshNode);
+            network.invalidateNodeIndex();
+        };
+
+        handler = new MeshProvisioningHandler(mock(Context.class), transportCallbacks, meshManagerCallbacks);
+        handler.setProvisioningCallbacks(new MeshProvisioningStatusCallbacks() {
+            @Override
+            public void onProvisioningStateChanged(final UnprovisionedMeshNode meshNode,
+                                                   final ProvisioningState.States state,
+                                                   final byte[] data) {
+                if (state == ProvisioningState.States.PROVISIONING_CAPABILITIES) {
+                    handler.reserveUnicastAddress(meshNode, network, provisioner);
+                    handler.startProvisioningNoOOB(meshNode);
+                }
+            }
+
+            @Override
+            public void onProvisioningFailed(final UnprovisionedMeshNode meshNode,
+                                             final ProvisioningState.States state,
+                                             final byte[] data) {
+                failedNodes.add(meshNode);
+            }
+
+            @Override
+            public void onProvisioningCompleted(final ProvisionedMeshNode meshNode,
+                                                final ProvisioningState.States state,
+                                                final byte[] data) {
+                provisionedNodes.add(meshNode);
+            }
+        });
+    }
+
+    @Test
+    public void testProvisionDevicesInParallel() {
+        final NetworkKey networkKey = new NetworkKey(0, NETWORK_KEY);
+        for (int i = 0; i < DEVICE_COUNT; i++) {
+            final SimulatedDevice device = new SimulatedDevice(1 + i % 3);
+            devices.put(device.uuid, device);
+            handler.identify(device.uuid, networkKey, 0, 0, 5, MeshProvisioningHandler.ATTENTION_TIMER);
+        }
+
+        final List<SimulatedDevice> pending = new ArrayList<>(devices.values());
+        while (!pending.isEmpty()) {
+            final SimulatedDevice device = pending.get(random.nextInt(pending.size()));
+            device.bearer.poll().run();
+            if (device.bearer.isEmpty()) {
+                pending.remove(device);
+            }
+        }
+
+        assertTrue(failedNodes.isEmpty());
+        assertEquals(DEVICE_COUNT, provisionedNodes.size());
+        assertEquals(DEVICE_COUNT, network.nodes.size());
+
+        final boolean[] used = new boolean[0x0100];
+        for (ProvisionedMeshNode node : provisionedNodes) {
+            final SimulatedDevice device = devices.get(UUID.fromString(node.getUuid()));
+            // The device must have received the same address the provisioner assigned to it
+            assertEquals(node.getUnicastAddress(), device.unicastAddress);
+            assertArrayEquals(NETWORK_KEY, device.networkKey);
+            for (int address = node.getUnicastAddress(); address < node.getUnicastAddress() + device.elementCount; address++) {
+                assertFalse("Address assigned twice: " + address, used[address]);
+                used[address] = true;
+            }
+            assertNull(handler.getSession(device.uuid));
+        }
+        assertEquals(0, network.getReservedAddresses().getIntervalCount());
+    }
+
+    @Test
+    public void testCancelReleasesReservedAddresses() {
+        final NetworkKey networkKey = new NetworkKey(0, NETWORK_KEY);
+        final SimulatedDevice device = new SimulatedDevice(2);
+        devices.put(device.uuid, device);
+        handler.identify(device.uuid, networkKey, 0, 0, 5, MeshProvisioningHandler.ATTENTION_TIMER);
+
+        // Deliver events until the address has been reserved
+        while (network.getReservedAddresses().getIntervalCount() == 0) {
+            device.bearer.poll().run();
+        }
+        assertTrue(network.getReservedAddresses().contains(handler.getSession(device.uuid).getMeshNode().getUnicastAddress()));
+
+        handler.cancel(device.uuid);
+        assertNull(handler.getSession(device.uuid));
+        assertEquals(0, network.getReservedAddresses().getIntervalCount());
+    }
+
+    /**
+     * Provisionee side of the provisioning protocol using No OOB authentication.
+     */
+    private final class SimulatedDevice {
+        final UUID uuid = UUID.randomUUID();
+        final ArrayDeque<Runnable> bearer = new ArrayDeque<>();
+        final int elementCount;
+        final byte[] deviceRandom = SecureUtils.generateRandomNumber();
+        final ByteBuffer confirmationInputs = ByteBuffer.allocate(1 + 11 + 5 + 64 + 64);
+        byte[] ecdhSecret;
+        byte[] confirmationSalt;
+        byte[] provisionerConfirmation;
+        byte[] provisionerRandom;
+        byte[] networkKey;
+        int unicastAddress = -1;
+
+        SimulatedDevice(final int elementCount) {
+            this.elementCount = elementCount;
+        }
+
+        void onPduReceived(final byte[] pdu) {
+            try {
+                final byte[] parameters = Arrays.copyOfRange(pdu, 2, pdu.length);
+                switch (pdu[1]) {
+                    case 0x00: // Invite
+                        confirmationInputs.put(parameters);
+                        final byte[] capabilities = new byte[]{(byte) elementCount, 0x00, 0x01, 0, 0, 0, 0, 0, 0, 0, 0};
+                        confirmationInputs.put(capabilities);
+                        respond(0x01, capabilities);
+                        break;
+                    case 0x02: // Start
+                        confirmationInputs.put(parameters);
+                        break;
+                    case 0x03: // Public Key
+                        respond(0x03, generatePublicKey(parameters));
+                        break;
+                    case 0x05: // Confirmation
+                        provisionerConfirmation = parameters;
+                        confirmationSalt = SecureUtils.calculateSalt(confirmationInputs.array());
+                        respond(0x05, calculateConfirmation(deviceRandom));
+                        break;
+                    case 0x06: // Random
+                        provisionerRandom = parameters;
+                        assertArrayEquals(provisionerConfirmation, calculateConfirmation(provisionerRandom));
+                        respond(0x06, deviceRandom);
+                        break;
+                    case 0x07: // Data
+                        final byte[] data = decryptProvisioningData(parameters);
+                        networkKey = Arrays.copyOfRange(data, 0, 16);
+                        unicastAddress = ((data[23] & 0xFF) << 8) | (data[24] & 0xFF);
+                        respond(0x08, new byte[0]);
+                        break;
+                }
+            } catch (Exception ex) {
+                throw new AssertionError(ex);
+            }
+        }
+
+        private byte[] generatePublicKey(final byte[] provisionerKeyXY) throws Exception {
+            final ECParameterSpec parameterSpec = ECNamedCurveTable.getParameterSpec("secp256r1");
+            final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDH", "SC");
+            keyPairGenerator.initialize(parameterSpec);
+            final KeyPair keyPair = keyPairGenerator.generateKeyPair();
+            final ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+            final byte[] deviceKeyXY = ByteBuffer.allocate(64)
+                    .put(BigIntegers.asUnsignedByteArray(32, publicKey.getQ().getAffineXCoord().toBigInteger()))
+                    .put(BigIntegers.asUnsignedByteArray(32, publicKey.getQ().getAffineYCoord().toBigInteger()))
+                    .array();
+
+            final BigInteger x = BigIntegers.fromUnsignedByteArray(provisionerKeyXY, 0, 32);
+            final BigInteger y = BigIntegers.fromUnsignedByteArray(provisionerKeyXY, 32, 32);
+            final ECPublicKeySpec keySpec = new ECPublicKeySpec(parameterSpec.getCurve().validatePoint(x, y), parameterSpec);
+            final KeyAgreement keyAgreement = KeyAgreement.getInstance("ECDH", "SC");
+            keyAgreement.init(keyPair.getPrivate());
+            keyAgreement.doPhase(KeyFactory.getInstance("ECDH", "SC").generatePublic(keySpec), true);
+            ecdhSecret = keyAgreement.generateSecret();
+
+            confirmationInputs.put(provisionerKeyXY);
+            confirmationInputs.put(deviceKeyXY);
+            return deviceKeyXY;
+        }
+
+        private byte[] calculateConfirmation(final byte[] random) {
+            final byte[] confirmationKey = SecureUtils.calculateK1(ecdhSecret, confirmationSalt, SecureUtils.PRCK);
+            final byte[] authenticationValue = new byte[16];
+            return SecureUtils.calculateCMAC(ByteBuffer.allocate(32).put(random).put(authenticationValue).array(), confirmationKey);
+        }
+
+        private byte[] decryptProvisioningData(final byte[] encryptedData) throws Exception {
+            final byte[] provisioningSalt = SecureUtils.calculateSalt(ByteBuffer.allocate(48)
+                    .put(confirmationSalt).put(provisionerRandom).put(deviceRandom).array());
+            final byte[] sessionKey = SecureUtils.calculateK1(ecdhSecret, provisioningSalt, SecureUtils.PRSK);
+            final byte[] nonce = SecureUtils.calculateK1(ecdhSecret, provisioningSalt, SecureUtils.PRSN);
+            return SecureUtils.decryptCCM(encryptedData, sessionKey, Arrays.copyOfRange(nonce, 3, 16), 8);
+        }
+
+        private void respond(final int type, final byte[] parameters) {
+            final byte[] pdu = ByteBuffer.allocate(parameters.length + 2)
+                    .put(MeshManagerApi.PDU_TYPE_PROVISIONING)
+                    .put((byte) type)
+                    .put(parameters)
+                    .array();
+            bearer.add(() -> handler.parseProvisioningNotifications(uuid, pdu));
+        }
+    }
+}
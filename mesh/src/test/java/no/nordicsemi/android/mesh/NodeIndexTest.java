@@ -0,0 +1,81 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+
+public class NodeIndexTest {
+
+    private static ProvisionedMeshNode createNode(final String uuid, final int unicastAddress) {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.setUuid(uuid);
+        node.setUnicastAddress(unicastAddress);
+        return node;
+    }
+
+    @Test
+    public void testLookupByAddress() {
+        final ProvisionedMeshNode node1 = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0001);
+        final ProvisionedMeshNode node2 = createNode("8E0F4C5A1B2D4E6F8091A2B3C4D5E6F7", 0x0005);
+        final NodeIndex index = new NodeIndex(Arrays.asList(node1, node2));
+
+        assertSame(node1, index.get(0x0001));
+        assertSame(node2, index.get(0x0005));
+        assertNull(index.get(0x0003));
+        assertNull(index.get(0x0000));
+        assertNull(index.get(0x7FFF));
+    }
+
+    @Test
+    public void testLookupByUuidIgnoresCase() {
+        final ProvisionedMeshNode node = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0001);
+        final NodeIndex index = new NodeIndex(Arrays.asList(node));
+
+        assertSame(node, index.get("70cf7c9732a345b691494810d2e9cbf4"));
+        assertNull(index.get("8E0F4C5A1B2D4E6F8091A2B3C4D5E6F7"));
+        assertNull(index.get((String) null));
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        final ProvisionedMeshNode node = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0001);
+        final ProvisionedMeshNode replacement = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0001);
+        final NodeIndex index = new NodeIndex(Arrays.asList(node));
+
+        index.add(replacement);
+        // Removing a node that was already replaced must not remove the replacement
+        index.remove(node);
+        assertSame(replacement, index.get(0x0001));
+        assertSame(replacement, index.get("70CF7C9732A345B691494810D2E9CBF4"));
+
+        index.remove(replacement);
+        assertNull(index.get(0x0001));
+        assertNull(index.get("70CF7C9732A345B691494810D2E9CBF4"));
+    }
+
+    @Test
+    public void testPutNodeReplacesNodeWithSameUuid() {
+        final MeshNetwork network = new MeshNetwork(UUID.randomUUID().toString());
+        final ProvisionedMeshNode node = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0001);
+        final ProvisionedMeshNode other = createNode("8E0F4C5A1B2D4E6F8091A2B3C4D5E6F7", 0x0002);
+        network.putNode(node);
+        network.putNode(other);
+        assertSame(node, network.getNode(0x0001));
+
+        // The node was provisioned again with a new address
+        final ProvisionedMeshNode replacement = createNode("70CF7C9732A345B691494810D2E9CBF4", 0x0005);
+        network.putNode(replacement);
+        assertEquals(2, network.getNodes().size());
+        assertNull(network.getNode(0x0001));
+        assertSame(replacement, network.getNode(0x0005));
+        assertSame(replacement, network.getNode("70CF7C9732A345B691494810D2E9CBF4"));
+        assertSame(other, network.getNode(0x0002));
+    }
+}
@@ -0,0 +1,41 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReplayProtectionListTest {
+
+    @Test
+    public void testReplayedMessages() {
+        final ReplayProtectionList rpl = new ReplayProtectionList();
+        assertFalse(rpl.isReplayed(0x0002, 10, 1));
+        assertTrue(rpl.update(0x0002, 10, 1, ReplayProtectionList.DEFAULT_SIZE));
+
+        assertTrue(rpl.isReplayed(0x0002, 10, 1));
+        assertTrue(rpl.isReplayed(0x0002, 9, 1));
+        assertFalse(rpl.isReplayed(0x0002, 11, 1));
+        // A lower sequence number with a newer IV Index is not a replay
+        assertFalse(rpl.isReplayed(0x0002, 0, 2));
+        assertTrue(rpl.isReplayed(0x0002, 0xFFFFFF, 0));
+        // Other sources are tracked separately
+        assertFalse(rpl.isReplayed(0x0003, 1, 1));
+    }
+
+    @Test
+    public void testSizeLimit() {
+        final ReplayProtectionList rpl = new ReplayProtectionList();
+        assertTrue(rpl.update(0x0002, 1, 5, 2));
+        assertTrue(rpl.update(0x0003, 1, 7, 2));
+        // Existing sources are always updated
+        assertTrue(rpl.update(0x0002, 2, 5, 2));
+        // The list is full, and no entry is old enough to be removed
+        assertFalse(rpl.update(0x0004, 1, 6, 2));
+        // Entries older than the previous IV Index are removed to make room
+        assertTrue(rpl.update(0x0004, 1, 7, 2));
+        assertEquals(2, rpl.size());
+        assertFalse(rpl.isReplayed(0x0002, 0, 7));
+    }
+}
@@ -0,0 +1,77 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+import no.nordicsemi.android.mesh.utils.SecureUtils;
+
+public class SubnetRoutingTableTest {
+
+    // Sample data from Mesh Profile specification 8.2.2
+    private static final byte[] NET_KEY = MeshParserUtils.toByteArray("7DD7364CD842AD18C17C2B820C84C3D6");
+    private static final int NID = 0x68;
+    private static final byte[] NEW_NET_KEY = MeshParserUtils.toByteArray("F7A2A44F8E8A8029064F173DDC1E2B00");
+
+    @Test
+    public void testLookupByNid() {
+        final NetworkKey networkKey = new NetworkKey(0, NET_KEY);
+        final SubnetRoutingTable table = new SubnetRoutingTable(Collections.singletonList(networkKey));
+
+        final List<SubnetRoutingTable.Subnet> subnets = table.getSubnets(NID);
+        assertEquals(1, subnets.size());
+        assertSame(networkKey, subnets.get(0).getNetworkKey());
+        assertSame(networkKey.getDerivatives(), subnets.get(0).getDerivatives());
+        assertTrue(table.getSubnets(NID ^ 0x01).isEmpty());
+    }
+
+    @Test
+    public void testKeyRefreshPhases() {
+        final NetworkKey networkKey = new NetworkKey(0, NET_KEY);
+        networkKey.distributeKey(NEW_NET_KEY);
+
+        // During key distribution the old key is used for transmitting and must be tried first
+        SubnetRoutingTable table = new SubnetRoutingTable(Collections.singletonList(networkKey));
+        assertSame(networkKey.getOldDerivatives(), table.getSubnets(NID).get(0).getDerivatives());
+        final int newNid = networkKey.getDerivatives().getNid();
+        assertSame(networkKey.getDerivatives(), table.getSubnets(newNid).get(0).getDerivatives());
+
+        networkKey.switchToNewKey();
+        table = new SubnetRoutingTable(Collections.singletonList(networkKey));
+        assertEquals(1, table.getSubnets(NID).size());
+        assertEquals(1, table.getSubnets(newNid).size());
+
+        // Once the old key is revoked, PDUs secured with it must no longer be accepted
+        networkKey.revokeOldKey();
+        table = new SubnetRoutingTable(Collections.singletonList(networkKey));
+        assertTrue(table.getSubnets(NID).isEmpty());
+        assertEquals(1, table.getSubnets(newNid).size());
+    }
+
+    @Test
+    public void testBeaconAuthentication() {
+        final NetworkKey networkKey = new NetworkKey(0, NET_KEY);
+        networkKey.distributeKey(NEW_NET_KEY);
+        final SubnetRoutingTable table = new SubnetRoutingTable(Collections.singletonList(networkKey));
+
+        // Beacons secured with either key are accepted during a Key Refresh Procedure
+        final SecureNetworkBeacon oldKeyBeacon = SecureUtils.createSecureNetworkBeacon(NET_KEY, 0x01, networkKey.getOldNetworkId(), 0x12345678);
+        assertSame(networkKey.getOldDerivatives(), table.authenticate(oldKeyBeacon).getDerivatives());
+        final SecureNetworkBeacon newKeyBeacon = SecureUtils.createSecureNetworkBeacon(NEW_NET_KEY, 0x01, networkKey.getNetworkId(), 0x12345678);
+        assertSame(networkKey.getDerivatives(), table.authenticate(newKeyBeacon).getDerivatives());
+        // A repeated beacon is served from the cache
+        assertSame(table.authenticate(newKeyBeacon), table.authenticate(new SecureNetworkBeacon(newKeyBeacon.beaconData.clone())));
+
+        // A beacon with a modified IV Index must not be authenticated
+        final byte[] forged = newKeyBeacon.beaconData.clone();
+        forged[13] ^= 0x01;
+        assertNull(table.authenticate(new SecureNetworkBeacon(forged)));
+    }
+}
@@ -0,0 +1,135 @@
+package no.nordicsemi.android.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.models.SigModelParser;
+import no.nordicsemi.android.mesh.transport.Element;
+import no.nordicsemi.android.mesh.transport.MeshModel;
+import no.nordicsemi.android.mesh.transport.ProvisionedMeshNode;
+import no.nordicsemi.android.mesh.transport.TestElements;
+
+public class SubscriptionIndexTest {
+
+    private static final UUID LABEL_UUID = UUID.fromString("0073E7E4-D8B9-440F-AF84-15DF4C56C0E1");
+    private static final UUID PUBLICATION_LABEL_UUID = UUID.fromString("F4A2D8C6-1B3E-4F5A-9C7D-8E6B5A4C3D2E");
+
+    private ProvisionedMeshNode node1;
+    private ProvisionedMeshNode node2;
+    private MeshModel onOffServer1;
+    private MeshModel levelServer1;
+    private MeshModel onOffServer2;
+    private MeshModel onOffClient2;
+    private Element primary1;
+    private Element secondary1;
+    private Element primary2;
+
+    private static ProvisionedMeshNode createNode(final int unicastAddress, final Element... elements) {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.setUuid(UUID.randomUUID().toString());
+        node.setUnicastAddress(unicastAddress);
+        node.setElements(TestElements.createElements(elements));
+        return node;
+    }
+
+    @Before
+    public void setUp() {
+        onOffServer1 = SigModelParser.getSigModel(SigModelParser.GENERIC_ON_OFF_SERVER);
+        levelServer1 = SigModelParser.getSigModel(SigModelParser.GENERIC_LEVEL_SERVER);
+        onOffServer2 = SigModelParser.getSigModel(SigModelParser.GENERIC_ON_OFF_SERVER);
+        onOffClient2 = SigModelParser.getSigModel(SigModelParser.GENERIC_ON_OFF_CLIENT);
+        primary1 = TestElements.createElement(0x0002, onOffServer1);
+        secondary1 = TestElements.createElement(0x0003, levelServer1);
+        primary2 = TestElements.createElement(0x0004, onOffServer2, onOffClient2);
+        node1 = createNode(0x0002, primary1, secondary1);
+        node2 = createNode(0x0004, primary2);
+    }
+
+    @Test
+    public void testLookupAcrossElementsAndModels() {
+        TestElements.subscribe(onOffServer1, 0xC000);
+        TestElements.subscribe(levelServer1, 0xC000);
+        TestElements.subscribe(onOffServer2, 0xC000);
+        TestElements.subscribe(onOffClient2, 0xC000);
+        TestElements.subscribe(onOffClient2, 0xC001);
+        final SubscriptionIndex index = new SubscriptionIndex(Arrays.asList(node1, node2));
+
+        assertEquals(Arrays.asList(primary1, secondary1, primary2), index.getElements(0xC000));
+        assertEquals(Arrays.asList(onOffServer1, levelServer1, onOffServer2, onOffClient2), index.getModels(0xC000));
+        // Two models of the same element subscribed to the same address only list the element once
+        assertEquals(Collections.singletonList(primary2), index.getElements(0xC001));
+        assertEquals(Collections.singletonList(onOffClient2), index.getModels(0xC001));
+        assertTrue(index.getElements(0xC002).isEmpty());
+        assertTrue(index.getModels(0xC002).isEmpty());
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        TestElements.subscribe(onOffServer1, 0xC000);
+        final SubscriptionIndex index = new SubscriptionIndex(Collections.singletonList(node1));
+        assertTrue(index.getModels(0xC001).isEmpty());
+
+        // Re-adding a node picks up the changes to its subscriptions
+        TestElements.unsubscribe(onOffServer1, 0xC000);
+        TestElements.subscribe(onOffServer1, 0xC001);
+        index.add(node1);
+        assertTrue(index.getModels(0xC000).isEmpty());
+        assertEquals(Collections.singletonList(onOffServer1), index.getModels(0xC001));
+
+        TestElements.subscribe(onOffServer2, 0xC001);
+        index.add(node2);
+        assertEquals(Arrays.asList(onOffServer1, onOffServer2), index.getModels(0xC001));
+
+        index.remove(node1);
+        assertEquals(Collections.singletonList(onOffServer2), index.getModels(0xC001));
+        index.remove(node2);
+        assertTrue(index.getModels(0xC001).isEmpty());
+        // Removing a node that is not indexed is a no-op
+        index.remove(node2);
+        assertTrue(index.getElements(0xC001).isEmpty());
+    }
+
+    @Test
+    public void testVirtualLabels() {
+        final int subscriptionAddress = TestElements.subscribe(onOffServer1, LABEL_UUID);
+        final int publicationAddress = TestElements.publish(onOffClient2, PUBLICATION_LABEL_UUID);
+        final SubscriptionIndex index = new SubscriptionIndex(Arrays.asList(node1, node2));
+
+        assertEquals(Collections.singletonList(onOffServer1), index.getModels(subscriptionAddress));
+        assertEquals(LABEL_UUID, index.getLabelUuid(subscriptionAddress));
+        // Publications are not subscriptions but their Label UUIDs are still known
+        assertTrue(index.getModels(publicationAddress).isEmpty());
+        assertEquals(PUBLICATION_LABEL_UUID, index.getLabelUuid(publicationAddress));
+
+        index.remove(node1);
+        assertNull(index.getLabelUuid(subscriptionAddress));
+        index.remove(node2);
+        assertNull(index.getLabelUuid(publicationAddress));
+    }
+
+    @Test
+    public void testNetworkRebuildsIndexAfterNodeRemoval() {
+        TestElements.subscribe(onOffServer1, 0xC000);
+        TestElements.subscribe(onOffServer2, 0xC000);
+        final MeshNetwork network = new MeshNetwork(UUID.randomUUID().toString());
+        network.setNodes(new ArrayList<>(Arrays.asList(node1, node2)));
+        assertEquals(Arrays.asList(onOffServer1, onOffServer2), network.getSubscribedModels(0xC000));
+
+        assertTrue(network.deleteNode(node1));
+        assertEquals(Collections.singletonList(primary2), network.getSubscribedElements(0xC000));
+
+        // Nodes removed from the list directly are dropped once the index is rebuilt
+        network.nodes.remove(node2);
+        network.invalidateNodeIndex();
+        assertTrue(network.getSubscribedModels(0xC000).isEmpty());
+    }
+}
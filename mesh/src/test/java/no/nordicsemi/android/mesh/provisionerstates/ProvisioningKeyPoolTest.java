@@ -0,0 +1,128 @@
+package no.nordicsemi.android.mesh.provisionerstates;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongycastle.jce.interfaces.ECPublicKey;
+import org.spongycastle.util.BigIntegers;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ProvisioningKeyPoolTest {
+
+    private ProvisioningKeyPool pool;
+
+    @Before
+    public void setUp() {
+        Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
+        pool = new ProvisioningKeyPool(2, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    private static byte[] getXY(final KeyPair keyPair) {
+        final ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+        return ByteBuffer.allocate(64)
+                .put(BigIntegers.asUnsignedByteArray(32, publicKey.getQ().getXCoord().toBigInteger()))
+                .put(BigIntegers.asUnsignedByteArray(32, publicKey.getQ().getYCoord().toBigInteger()))
+                .array();
+    }
+
+    private byte[] generateSecret(final KeyPair keyPair, final byte[] xy) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<byte[]> result = new AtomicReference<>();
+        pool.generateSecret(keyPair.getPrivate(), xy, secret -> {
+            result.set(secret);
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    @Test
+    public void testKeyPairsAreNotReused() throws Exception {
+        final KeyPair first = pool.take();
+        final KeyPair second = pool.take();
+        final KeyPair third = pool.take();
+        assertNotEquals(first.getPublic(), second.getPublic());
+        assertNotEquals(second.getPublic(), third.getPublic());
+        assertNotEquals(first.getPublic(), third.getPublic());
+    }
+
+    @Test
+    public void testSharedSecretMatches() throws Exception {
+        final KeyPair provisioner = pool.take();
+        final KeyPair provisionee = ProvisioningKeyPool.generateKeyPair();
+
+        final byte[] secret = generateSecret(provisioner, getXY(provisionee));
+        assertEquals(32, secret.length);
+        assertArrayEquals(ProvisioningKeyPool.generateSecret(provisionee.getPrivate(), getXY(provisioner)), secret);
+    }
+
+    @Test
+    public void testInvalidPublicKey() throws Exception {
+        assertNull(generateSecret(pool.take(), new byte[64]));
+    }
+
+    @Test
+    public void testGenerateSecretAfterClose() throws Exception {
+        final KeyPair provisioner = pool.take();
+        final KeyPair provisionee = ProvisioningKeyPool.generateKeyPair();
+        pool.close();
+
+        assertArrayEquals(ProvisioningKeyPool.generateSecret(provisionee.getPrivate(), getXY(provisioner)),
+                generateSecret(provisioner, getXY(provisionee)));
+    }
+
+    @Test
+    public void testSecretIsNotQueuedBehindKeyPairGeneration() throws Exception {
+        final KeyPair provisioner = ProvisioningKeyPool.generateKeyPair();
+        final KeyPair provisionee = ProvisioningKeyPool.generateKeyPair();
+        final ExecutorService keyPairExecutor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        // Keeps the key pair executor busy for the duration of the test
+        keyPairExecutor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        pool.close();
+        pool = new ProvisioningKeyPool(2, Runnable::run, keyPairExecutor, Executors.newSingleThreadExecutor());
+
+        try {
+            assertArrayEquals(ProvisioningKeyPool.generateSecret(provisionee.getPrivate(), getXY(provisioner)),
+                    generateSecret(provisioner, getXY(provisionee)));
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    @Test
+    public void testCloseStopsExecutors() {
+        final ExecutorService keyPairExecutor = Executors.newSingleThreadExecutor();
+        final ExecutorService secretExecutor = Executors.newSingleThreadExecutor();
+        pool.close();
+        pool = new ProvisioningKeyPool(2, Runnable::run, keyPairExecutor, secretExecutor);
+
+        pool.close();
+        assertTrue(keyPairExecutor.isShutdown());
+        assertTrue(secretExecutor.isShutdown());
+    }
+}
@@ -22,8 +22,6 @@
 
 package no.nordicsemi.android.mesh.transport;
 
-import android.content.Context;
-
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -32,6 +30,7 @@ import org.mockito.junit.MockitoRule;
 
 import java.util.Locale;
 
+import no.nordicsemi.android.mesh.MeshExecutor;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 
 import static org.junit.Assert.assertEquals;
@@ -47,7 +46,7 @@ public class AccessLayerTests {
     public MockitoRule rule = MockitoJUnit.rule();
 
     @Mock
-    Context context;
+    MeshExecutor executor;
 
     @Test
     public void create_access_message_isCorrect() {
@@ -55,7 +54,7 @@ public class AccessLayerTests {
         final String expectedAccessMessage = "800300563412";
 
         final ProvisionedMeshNode meshNode = new ProvisionedMeshNode();
-        final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
         final int opCode = 0x8003;
         final byte[] parameters = MeshParserUtils.toByteArray("00563412");
         final AccessMessage accessMessage = new AccessMessage();
@@ -78,7 +77,7 @@ public class AccessLayerTests {
         accessMessage.setParameters(parameters);
 
         final ProvisionedMeshNode meshNode = new ProvisionedMeshNode();
-        final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
         meshLayerTestBase.createAccessMessage(accessMessage);
         final byte[] actualAccessMessage = accessMessage.getAccessPdu();
         assertEquals(expectedAccessMessage, MeshParserUtils.bytesToHex(actualAccessMessage, false));
@@ -101,7 +100,7 @@ public class AccessLayerTests {
         accessMessage.setParameters(parameters);
         accessMessage.setCompanyIdentifier(companyIdentifier);
         accessMessage.setParameters(parameters);
-        final MeshTransport meshTransport = new MeshTransport(context, meshNode);
+        final MeshTransport meshTransport = new MeshTransport(executor, meshNode);
         meshTransport.createCustomAccessMessage(accessMessage);
         final byte[] actualAccessMessage = accessMessage.getAccessPdu();
         assertEquals(expectedAccessMessage, MeshParserUtils.bytesToHex(actualAccessMessage, false));
@@ -122,7 +121,7 @@ public class AccessLayerTests {
         accessMessage.setParameters(parameters);
 
         final ProvisionedMeshNode meshNode = new ProvisionedMeshNode();
-        final MeshTransport meshTransport = new MeshTransport(context, meshNode);
+        final MeshTransport meshTransport = new MeshTransport(executor, meshNode);
         meshTransport.createCustomAccessMessage(accessMessage);
         final byte[] actualAccessMessage = accessMessage.getAccessPdu();
         assertEquals(expectedAccessMessage, MeshParserUtils.bytesToHex(actualAccessMessage, false));
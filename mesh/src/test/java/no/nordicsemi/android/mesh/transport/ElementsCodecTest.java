@@ -0,0 +1,88 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.Features;
+import no.nordicsemi.android.mesh.models.ConfigurationServerModel;
+import no.nordicsemi.android.mesh.models.VendorModel;
+import no.nordicsemi.android.mesh.utils.HeartbeatPublication;
+import no.nordicsemi.android.mesh.utils.HeartbeatSubscription;
+
+public class ElementsCodecTest {
+
+    private static final UUID LABEL_UUID = TestElements.SAMPLE_LABEL_UUID;
+
+    @Test
+    public void testRoundTrip() {
+        final byte[] data = ElementsCodec.encode(TestElements.createSampleElements(0x7FFE));
+        final Map<Integer, Element> elements = ElementsCodec.decode(data);
+
+        assertEquals(Arrays.asList(0x7FFE, 0x7FFF), Arrays.asList(elements.keySet().toArray()));
+        final Element primary = elements.get(0x7FFE);
+        assertEquals(0x7FFE, primary.getElementAddress());
+        assertEquals(0x0100, primary.getLocationDescriptor());
+        assertEquals("Primary", primary.getName());
+        assertEquals("Élément ü", elements.get(0x7FFF).getName());
+        assertEquals(Arrays.asList(0x0000, 0x1000, 0x1203), Arrays.asList(primary.getMeshModels().keySet().toArray()));
+
+        final ConfigurationServerModel configurationServer = (ConfigurationServerModel) primary.getMeshModels().get(0x0000);
+        final HeartbeatPublication heartbeatPublication = configurationServer.getHeartbeatPublication();
+        assertEquals(0xC001, heartbeatPublication.getDst());
+        assertEquals(0x11, heartbeatPublication.getCountLog());
+        assertEquals(0x05, heartbeatPublication.getPeriodLog());
+        assertEquals(127, heartbeatPublication.getTtl());
+        assertEquals(0x0FFF, heartbeatPublication.getNetKeyIndex());
+        assertEquals(Features.UNSUPPORTED, heartbeatPublication.getFeatures().getLowPower());
+        assertEquals(Features.DISABLED, heartbeatPublication.getFeatures().getProxy());
+        final HeartbeatSubscription heartbeatSubscription = configurationServer.getHeartbeatSubscription();
+        assertEquals(0x7FFE, heartbeatSubscription.getSrc());
+        assertEquals(0xC002, heartbeatSubscription.getDst());
+        assertEquals(127, heartbeatSubscription.getMaxHops());
+
+        final MeshModel onOffServer = primary.getMeshModels().get(0x1000);
+        assertEquals(Arrays.asList(0, 0x0FFF), onOffServer.getBoundAppKeyIndexes());
+        assertEquals(Arrays.asList(0xC000, 0x8123), onOffServer.getSubscribedAddresses());
+        assertEquals(Collections.singletonList(LABEL_UUID), onOffServer.labelUuids);
+        final PublicationSettings publication = onOffServer.getPublicationSettings();
+        assertEquals(0x8123, publication.getPublishAddress());
+        assertEquals(LABEL_UUID, publication.getLabelUUID());
+        assertEquals(0x0FFF, publication.getAppKeyIndex());
+        assertTrue(publication.getCredentialFlag());
+        assertEquals(255, publication.getPublishTtl());
+        assertEquals(63, publication.getPublicationSteps());
+        assertEquals(3, publication.getPublicationResolution());
+        assertEquals(7, publication.getPublishRetransmitCount());
+        assertEquals(31, publication.getPublishRetransmitIntervalSteps());
+
+        final MeshModel sceneServer = primary.getMeshModels().get(0x1203);
+        assertEquals(Arrays.asList(1, 0xFFFF), sceneServer.sceneNumbers);
+        assertNull(sceneServer.getPublicationSettings().getLabelUUID());
+
+        final MeshModel vendorModel = elements.get(0x7FFF).getMeshModels().get(0x00590001);
+        assertTrue(vendorModel instanceof VendorModel);
+        assertEquals(0x00590001, vendorModel.getModelId());
+
+        assertArrayEquals(data, ElementsCodec.encode(elements));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedData() {
+        final byte[] data = ElementsCodec.encode(TestElements.createSampleElements(0x0001));
+        ElementsCodec.decode(Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedVersion() {
+        ElementsCodec.decode("{}".getBytes());
+    }
+}
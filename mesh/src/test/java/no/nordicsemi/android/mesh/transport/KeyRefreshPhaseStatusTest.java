@@ -0,0 +1,102 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import no.nordicsemi.android.mesh.ApplicationKey;
+import no.nordicsemi.android.mesh.InternalTransportCallbacks;
+import no.nordicsemi.android.mesh.MeshStatusCallbacks;
+import no.nordicsemi.android.mesh.NetworkKey;
+import no.nordicsemi.android.mesh.NodeKey;
+import no.nordicsemi.android.mesh.opcodes.ConfigMessageOpCodes;
+import no.nordicsemi.android.mesh.simulator.VirtualTimeExecutor;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+@RunWith(RobolectricTestRunner.class)
+public class KeyRefreshPhaseStatusTest {
+
+    private static final int NET_KEY_INDEX = 0;
+    private static final int APP_KEY_INDEX = 1;
+
+    private ProvisionedMeshNode node;
+    private DefaultNoOperationMessageState state;
+
+    @Before
+    public void setUp() {
+        node = new ProvisionedMeshNode();
+        node.setUnicastAddress(0x0002);
+        final List<NodeKey> netKeys = new ArrayList<>();
+        netKeys.add(new NodeKey(NET_KEY_INDEX, true));
+        node.setAddedNetKeys(netKeys);
+        final List<NodeKey> appKeys = new ArrayList<>();
+        appKeys.add(new NodeKey(APP_KEY_INDEX, true));
+        node.setAddedAppKeys(appKeys);
+        node.updateAddedNetKey(NET_KEY_INDEX);
+
+        final ApplicationKey appKey = new ApplicationKey(APP_KEY_INDEX, MeshParserUtils.toByteArray("63964771734FBD76E3B40519D1D94A48"));
+        appKey.setBoundNetKeyIndex(NET_KEY_INDEX);
+        final InternalTransportCallbacks transportCallbacks = mock(InternalTransportCallbacks.class);
+        when(transportCallbacks.getApplicationKeys(NET_KEY_INDEX)).thenReturn(Collections.singletonList(appKey));
+        state = new DefaultNoOperationMessageState(null, new MeshTransport(new VirtualTimeExecutor()),
+                mock(InternalMeshMsgHandlerCallbacks.class), transportCallbacks, mock(MeshStatusCallbacks.class));
+    }
+
+    /**
+     * Handles a Config Key Refresh Phase Status using the registry entry, the way a received status updates the node.
+     */
+    private void onPhaseStatus(final int phase) {
+        onPhaseStatus("0000000" + phase);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onPhaseStatus(final String parameters) {
+        final StatusMessageRegistry.Entry<ConfigKeyRefreshPhaseStatus> entry =
+                (StatusMessageRegistry.Entry<ConfigKeyRefreshPhaseStatus>) StatusMessageRegistry.get(ConfigMessageOpCodes.CONFIG_KEY_REFRESH_PHASE_STATUS);
+        assertNotNull(entry);
+        assertNotNull(entry.updater);
+        final AccessMessage message = new AccessMessage();
+        message.setParameters(MeshParserUtils.toByteArray(parameters));
+        final ConfigKeyRefreshPhaseStatus status = entry.factory.create(message, null);
+        assertNotNull(status);
+        entry.updater.update(state, node, status);
+    }
+
+    @Test
+    public void testUsingNewKeysKeepsKeysUpdated() {
+        onPhaseStatus(NetworkKey.USING_NEW_KEYS);
+        final NodeKey netKey = node.getAddedNetKeys().get(0);
+        assertEquals(NetworkKey.USING_NEW_KEYS, netKey.getPhase());
+        assertTrue(netKey.isUpdated());
+        assertTrue(node.getAddedAppKeys().get(0).isUpdated());
+    }
+
+    @Test
+    public void testNormalOperationClearsUpdatedKeys() {
+        onPhaseStatus(NetworkKey.USING_NEW_KEYS);
+        onPhaseStatus(NetworkKey.NORMAL_OPERATION);
+        final NodeKey netKey = node.getAddedNetKeys().get(0);
+        assertEquals(NetworkKey.NORMAL_OPERATION, netKey.getPhase());
+        assertFalse(netKey.isUpdated());
+        assertFalse(node.getAddedAppKeys().get(0).isUpdated());
+    }
+
+    @Test
+    public void testUnknownNetKeyIsIgnored() {
+        // Net key index 1 moved to phase 2
+        onPhaseStatus("00010002");
+        assertEquals(NetworkKey.KEY_DISTRIBUTION, node.getAddedNetKeys().get(0).getPhase());
+    }
+}
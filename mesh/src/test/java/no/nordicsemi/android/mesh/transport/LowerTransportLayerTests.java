@@ -22,7 +22,6 @@
 
 package no.nordicsemi.android.mesh.transport;
 
-import android.content.Context;
 import android.util.SparseArray;
 
 import org.junit.Assert;
@@ -34,6 +33,7 @@ import org.mockito.junit.MockitoRule;
 
 import java.util.Locale;
 
+import no.nordicsemi.android.mesh.MeshExecutor;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 
 import static org.junit.Assert.assertEquals;
@@ -50,7 +50,7 @@ public class LowerTransportLayerTests {
     public MockitoRule rule = MockitoJUnit.rule();
 
     @Mock
-    Context context;
+    MeshExecutor executor;
 
     @Test
     public void create_unsegmented_access_message_isCorrect() {
@@ -65,7 +65,7 @@ public class LowerTransportLayerTests {
         final int akf = 0;
         final byte[] upperTransportPdu = MeshParserUtils.toByteArray("89511bf1d1a81c11dcef".toUpperCase(Locale.US));
 
-        final MeshTransport meshLayerTestBase = new MeshTransport(context);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor);
         final AccessMessage accessMessage = new AccessMessage();
         accessMessage.setSrc(src);
         accessMessage.setDst(dst);
@@ -99,7 +99,7 @@ public class LowerTransportLayerTests {
         final int akf = 0;
         final byte[] upperTransportPdu = MeshParserUtils.toByteArray("ee9dddfd2169326d23f3afdfcfdc18c52fdef772e0e17308".toUpperCase(Locale.US));
 
-        final MeshTransport meshLayerTestBase = new MeshTransport(context);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor);
         final AccessMessage accessMessage = new AccessMessage();
         accessMessage.setSrc(src);
         accessMessage.setDst(dst);
@@ -138,7 +138,7 @@ public class LowerTransportLayerTests {
         final int akf = 0;
         final byte[] upperTransportPdu = MeshParserUtils.toByteArray("4b50057e400000010000".toUpperCase(Locale.US));
 
-        final MeshTransport meshLayerTestBase = new MeshTransport(context);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor);
         final ControlMessage controlMessage = new ControlMessage();
         controlMessage.setSrc(src);
         controlMessage.setDst(dst);
@@ -0,0 +1,165 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.nordicsemi.android.mesh.opcodes.ConfigMessageOpCodes;
+
+public class MeshMessageSchedulerTest {
+
+    private static final int SRC = 0x0001;
+    private static final int GROUP_ADDRESS = 0xC000;
+
+    private final List<MeshMessageScheduler.Transaction> sent = new ArrayList<>();
+    private final List<MeshMessageScheduler.Transaction> timedOut = new ArrayList<>();
+    private final Map<Runnable, Long> timers = new LinkedHashMap<>();
+    private MeshMessageScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        sent.clear();
+        timedOut.clear();
+        timers.clear();
+        scheduler = new MeshMessageScheduler(transaction -> sent.add(transaction), new MeshMessageScheduler.Timer() {
+            @Override
+            public void schedule(final Runnable task, final long delay) {
+                timers.put(task, delay);
+            }
+
+            @Override
+            public void cancel(final Runnable task) {
+                timers.remove(task);
+            }
+        }, timedOut::add);
+    }
+
+    private long expireTimer() {
+        final Runnable task = timers.keySet().iterator().next();
+        final long delay = timers.remove(task);
+        task.run();
+        return delay;
+    }
+
+    @Test
+    public void testAcknowledgedMessagesToSameNodeAreQueued() {
+        final MeshMessage first = new ConfigCompositionDataGet();
+        final MeshMessage second = new ConfigDefaultTtlGet();
+        scheduler.schedule(SRC, 0x0002, null, first);
+        scheduler.schedule(SRC, 0x0002, null, second);
+        assertEquals(1, sent.size());
+        assertEquals(1, scheduler.getQueuedCount(0x0002));
+
+        assertSame(first, scheduler.getPendingMessage(0x0002, ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_STATUS));
+        assertNull(scheduler.getPendingMessage(0x0002, ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_STATUS));
+        scheduler.onResponseReceived(0x0002, ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_STATUS);
+        assertEquals(2, sent.size());
+        assertSame(second, sent.get(1).meshMessage);
+    }
+
+    @Test
+    public void testMessagesWithSameResponseAreNotPipelined() {
+        scheduler.setMaxInFlight(2, 8);
+        scheduler.schedule(SRC, 0x0002, null, new ConfigCompositionDataGet());
+        scheduler.schedule(SRC, 0x0002, null, new ConfigCompositionDataGet());
+        scheduler.schedule(SRC, 0x0002, null, new ConfigDefaultTtlGet());
+        // The third message may not overtake the second one
+        assertEquals(1, sent.size());
+
+        scheduler.onResponseReceived(0x0002, ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_STATUS);
+        assertEquals(3, sent.size());
+        assertEquals(2, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void testGroupMessagesAreSentImmediately() {
+        scheduler.schedule(SRC, 0x0002, null, new ConfigCompositionDataGet());
+        scheduler.schedule(SRC, GROUP_ADDRESS, null, new ConfigCompositionDataGet());
+        assertEquals(2, sent.size());
+        assertEquals(1, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void testDestinationsTakeTurns() {
+        scheduler.setMaxInFlight(1, 2);
+        for (int i = 0; i < 3; i++) {
+            scheduler.schedule(SRC, 0x0002, null, new ConfigBeaconGet());
+            scheduler.schedule(SRC, 0x0003, null, new ConfigBeaconGet());
+            scheduler.schedule(SRC, 0x0004, null, new ConfigBeaconGet());
+        }
+        assertEquals(2, sent.size());
+        assertEquals(0x0002, sent.get(0).dst);
+        assertEquals(0x0003, sent.get(1).dst);
+
+        scheduler.onResponseReceived(0x0002, ConfigMessageOpCodes.CONFIG_BEACON_STATUS);
+        assertEquals(0x0004, sent.get(2).dst);
+        scheduler.onResponseReceived(0x0003, ConfigMessageOpCodes.CONFIG_BEACON_STATUS);
+        assertEquals(0x0002, sent.get(3).dst);
+    }
+
+    @Test
+    public void testFailedTransactionReleasesSlot() {
+        scheduler.schedule(SRC, 0x0002, null, new ConfigNetKeyGet());
+        scheduler.schedule(SRC, 0x0002, null, new ConfigRelayGet());
+        scheduler.onTransactionFailed(0x0002);
+        assertEquals(2, sent.size());
+
+        scheduler.reset(0x0002);
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void testMessageIsRetriedWithBackoff() {
+        scheduler.setResponseTimeout(1000, 2);
+        scheduler.schedule(SRC, 0x0002, null, new ConfigCompositionDataGet());
+        scheduler.schedule(SRC, 0x0002, null, new ConfigDefaultTtlGet());
+        assertEquals(1000, expireTimer());
+        assertEquals(2, sent.size());
+        assertEquals(2000, expireTimer());
+        assertEquals(3, sent.size());
+        assertSame(sent.get(0), sent.get(2));
+
+        assertEquals(4000, expireTimer());
+        assertEquals(1, timedOut.size());
+        // The next message is sent once the transaction has timed out
+        assertEquals(4, sent.size());
+        assertEquals(ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_GET, sent.get(3).meshMessage.getOpCode());
+    }
+
+    @Test
+    public void testResponseCancelsTimeout() {
+        scheduler.schedule(SRC, 0x0002, null, new ConfigBeaconGet());
+        assertEquals(1, timers.size());
+        scheduler.onResponseReceived(0x0002, ConfigMessageOpCodes.CONFIG_BEACON_STATUS);
+        assertTrue(timers.isEmpty());
+        assertTrue(timedOut.isEmpty());
+    }
+
+    @Test
+    public void testTimedOutTransactionKeepsOtherTransactionsInFlight() {
+        scheduler.setMaxInFlight(2, 8);
+        scheduler.setResponseTimeout(1000, 0);
+        scheduler.schedule(SRC, 0x0002, null, new ConfigCompositionDataGet());
+        scheduler.schedule(SRC, 0x0002, null, new ConfigDefaultTtlGet());
+        assertEquals(2, sent.size());
+
+        expireTimer();
+        assertEquals(1, timedOut.size());
+        assertTrue(scheduler.hasInFlight(0x0002));
+        assertSame(sent.get(1).meshMessage, scheduler.getPendingMessage(0x0002, ConfigMessageOpCodes.CONFIG_DEFAULT_TTL_STATUS));
+
+        expireTimer();
+        assertEquals(2, timedOut.size());
+        assertFalse(scheduler.hasInFlight(0x0002));
+    }
+}
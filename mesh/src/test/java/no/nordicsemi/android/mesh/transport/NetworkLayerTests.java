@@ -22,7 +22,6 @@
 
 package no.nordicsemi.android.mesh.transport;
 
-import android.content.Context;
 import android.util.SparseArray;
 
 
@@ -38,6 +37,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
+import no.nordicsemi.android.mesh.MeshExecutor;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 import no.nordicsemi.android.mesh.utils.SecureUtils;
 
@@ -55,7 +55,7 @@ public class NetworkLayerTests {
     public MockitoRule rule = MockitoJUnit.rule();
 
     @Mock
-    private Context context;
+    private MeshExecutor executor;
 
     @Test
     public void create_network_pdu_isCorrect() {
@@ -78,7 +78,7 @@ public class NetworkLayerTests {
 
         final ProvisionedMeshNode meshNode = new ProvisionedMeshNode();
 
-        final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
         final AccessMessage accessMessage = new AccessMessage();
         accessMessage.setTtl(ttl);
         accessMessage.setSrc(src);
@@ -126,7 +126,7 @@ public class NetworkLayerTests {
         final SecureUtils.K2Output k2Output = SecureUtils.calculateK2(netkey, SecureUtils.K2_MASTER_INPUT);
         final ProvisionedMeshNode meshNode = new ProvisionedMeshNode();
 
-        final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
         final AccessMessage accessMessage = new AccessMessage();
         accessMessage.setTtl(ttl);
         accessMessage.setSrc(src);
@@ -164,7 +164,7 @@ public class NetworkLayerTests {
         meshNode.setDeviceKey(MeshParserUtils.toByteArray("9d6dd0e96eb25dc19a40ed9914f8f03f"));
         final byte[] pdu = MeshParserUtils.toByteArray("0068e80e5da5af0e6b9be7f5a642f2f98680e61c3a8b47f228");
 
-        /*final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        /*final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
         try {
             final Message message = meshLayerTestBase.parsePdu(pdu);
             final String actualAccessPayload = MeshParserUtils.bytesToHex(((AccessMessage) message).getAccessPdu(), false);
@@ -188,7 +188,7 @@ public class NetworkLayerTests {
         final ArrayList<byte[]> segmentedPdu = new ArrayList<>();
         segmentedPdu.add(MeshParserUtils.toByteArray("0068cab5c5348a230afba8c63d4e686364979deaf4fd40961145939cda0e"));
         segmentedPdu.add(MeshParserUtils.toByteArray("00681615b5dd4a846cae0c032bf0746f44f1b8cc8ce5edc57e55beed49c0"));
-        final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
 
         /*try {
             for (byte[] pdu : segmentedPdu) {
@@ -224,7 +224,7 @@ public class NetworkLayerTests {
         final SecureUtils.K2Output k2Output = SecureUtils.calculateK2(netkey, SecureUtils.K2_MASTER_INPUT);
         final ProvisionedMeshNode meshNode = new ProvisionedMeshNode();
 
-        final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
         final AccessMessage accessMessage = new AccessMessage();
         accessMessage.setTtl(ttl);
         accessMessage.setSrc(src);
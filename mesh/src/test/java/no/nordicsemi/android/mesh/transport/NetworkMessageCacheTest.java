@@ -0,0 +1,39 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NetworkMessageCacheTest {
+
+    @Test
+    public void testContains() {
+        final NetworkMessageCache cache = new NetworkMessageCache(NetworkMessageCache.DEFAULT_SIZE);
+        assertFalse(cache.contains(0x0002, 100, 1));
+        cache.add(0x0002, 100, 1);
+        assertTrue(cache.contains(0x0002, 100, 1));
+        assertFalse(cache.contains(0x0002, 101, 1));
+        assertFalse(cache.contains(0x0003, 100, 1));
+        assertFalse(cache.contains(0x0002, 100, 2));
+    }
+
+    @Test
+    public void testOldestEntriesAreReplaced() {
+        final NetworkMessageCache cache = new NetworkMessageCache(4);
+        for (int seq = 0; seq < 4; seq++) {
+            cache.add(0x0002, seq, 0);
+        }
+        for (int seq = 0; seq < 4; seq++) {
+            assertTrue(cache.contains(0x0002, seq, 0));
+        }
+        cache.add(0x0002, 4, 0);
+        assertFalse(cache.contains(0x0002, 0, 0));
+        assertTrue(cache.contains(0x0002, 4, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new NetworkMessageCache(100);
+    }
+}
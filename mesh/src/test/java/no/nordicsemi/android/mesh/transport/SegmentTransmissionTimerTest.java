@@ -0,0 +1,161 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.util.SparseArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.mesh.simulator.VirtualTimeExecutor;
+
+@RunWith(RobolectricTestRunner.class)
+public class SegmentTransmissionTimerTest {
+
+    private static final int DST = 0x0002;
+    private static final int TTL = 5;
+    // 200 + 50 * TTL milliseconds
+    private static final long INTERVAL = 450;
+
+    private final VirtualTimeExecutor executor = new VirtualTimeExecutor();
+    private final List<Message> retransmittedMessages = new ArrayList<>();
+    private final List<List<Integer>> retransmittedSegments = new ArrayList<>();
+    private MeshTransport transport;
+
+    @Before
+    public void setUp() {
+        transport = new MeshTransport(executor);
+        transport.setLowerTransportLayerCallbacks(new LowerTransportLayerCallbacks() {
+            @Override
+            public void sendSegmentAcknowledgementMessage(final ControlMessage controlMessage) {
+            }
+
+            @Override
+            public void onIncompleteTimerExpired() {
+            }
+
+            @Override
+            public void retransmitSegments(@NonNull final Message message, @NonNull final List<Integer> segments) {
+                retransmittedMessages.add(message);
+                retransmittedSegments.add(segments);
+            }
+
+            @Override
+            public int getTtl() {
+                return TTL;
+            }
+        });
+    }
+
+    private static AccessMessage createSegmentedMessage(final int seqZero, final int segmentCount) {
+        final SparseArray<byte[]> segments = new SparseArray<>();
+        for (int segO = 0; segO < segmentCount; segO++) {
+            final byte[] segment = new byte[16];
+            segment[0] = (byte) 0x80;
+            segment[1] = (byte) ((seqZero >> 6) & 0x7F);
+            segment[2] = (byte) (((seqZero << 2) & 0xFC) | ((segO >> 3) & 0x03));
+            segment[3] = (byte) (((segO << 5) & 0xE0) | ((segmentCount - 1) & 0x1F));
+            segments.put(segO, segment);
+        }
+        final AccessMessage message = new AccessMessage();
+        message.setDst(DST);
+        message.setTtl(TTL);
+        message.setSegmented(true);
+        message.setLowerTransportAccessPdu(segments);
+        return message;
+    }
+
+    private static byte[] createBlockAcknowledgement(final int seqZero, final int blockAck) {
+        return ByteBuffer.allocate(6)
+                .put((byte) ((seqZero >> 6) & 0x7F))
+                .put((byte) ((seqZero << 2) & 0xFC))
+                .putInt(blockAck)
+                .array();
+    }
+
+    @Test
+    public void testExpiredTimerRetransmitsUnacknowledgedSegments() {
+        final AccessMessage message = createSegmentedMessage(0x0101, 3);
+        transport.startSegmentTransmissionTimer(message);
+
+        // The block acknowledgement reports the second segment missing, which is sent again immediately
+        transport.onSegmentsAcknowledged(createBlockAcknowledgement(0x0101, 0b101));
+        assertEquals(1, retransmittedSegments.size());
+        assertEquals(Arrays.asList(1), retransmittedSegments.get(0));
+
+        executor.advanceTimeBy(INTERVAL);
+        assertEquals(2, retransmittedSegments.size());
+        assertSame(message, retransmittedMessages.get(1));
+        assertEquals(Arrays.asList(1), retransmittedSegments.get(1));
+    }
+
+    @Test
+    public void testRetransmissionStopsAtLimit() {
+        transport.startSegmentTransmissionTimer(createSegmentedMessage(0x0101, 3));
+
+        executor.advanceTimeBy(10 * INTERVAL);
+        assertEquals(2, retransmittedSegments.size());
+        assertEquals(Arrays.asList(0, 1, 2), retransmittedSegments.get(0));
+        assertEquals(Arrays.asList(0, 1, 2), retransmittedSegments.get(1));
+        assertEquals(0, transport.getSegmentTransmissionCount());
+    }
+
+    @Test
+    public void testNewlyAcknowledgedSegmentsResetLimit() {
+        transport.startSegmentTransmissionTimer(createSegmentedMessage(0x0101, 3));
+        executor.advanceTimeBy(2 * INTERVAL);
+        assertEquals(2, retransmittedSegments.size());
+
+        transport.onSegmentsAcknowledged(createBlockAcknowledgement(0x0101, 0b001));
+        executor.advanceTimeBy(10 * INTERVAL);
+        // One retransmission for the acknowledgement and two more before giving up
+        assertEquals(5, retransmittedSegments.size());
+        assertEquals(Arrays.asList(1, 2), retransmittedSegments.get(4));
+    }
+
+    @Test
+    public void testBlockAcknowledgementOfAllSegmentsCancelsTimer() {
+        transport.startSegmentTransmissionTimer(createSegmentedMessage(0x0101, 3));
+        transport.onSegmentsAcknowledged(createBlockAcknowledgement(0x0101, 0b111));
+        assertEquals(0, transport.getSegmentTransmissionCount());
+
+        executor.advanceTimeBy(10 * INTERVAL);
+        assertTrue(retransmittedSegments.isEmpty());
+    }
+
+    @Test
+    public void testSegmentedMessagesInFlightHaveSeparateTimers() {
+        final AccessMessage first = createSegmentedMessage(0x0101, 2);
+        final AccessMessage second = createSegmentedMessage(0x0102, 3);
+        transport.startSegmentTransmissionTimer(first);
+        transport.startSegmentTransmissionTimer(second);
+        assertEquals(2, transport.getSegmentTransmissionCount());
+
+        // Acknowledging the first message neither cancels nor changes the timer of the second one
+        transport.onSegmentsAcknowledged(createBlockAcknowledgement(0x0101, 0b11));
+        transport.onSegmentsAcknowledged(createBlockAcknowledgement(0x0102, 0b001));
+        assertEquals(1, transport.getSegmentTransmissionCount());
+        assertEquals(1, retransmittedSegments.size());
+        assertSame(second, retransmittedMessages.get(0));
+        assertEquals(Arrays.asList(1, 2), retransmittedSegments.get(0));
+
+        executor.advanceTimeBy(INTERVAL);
+        assertEquals(2, retransmittedSegments.size());
+        assertSame(second, retransmittedMessages.get(1));
+        assertEquals(Arrays.asList(1, 2), retransmittedSegments.get(1));
+
+        transport.cancelSegmentTransmissionTimer(second);
+        executor.advanceTimeBy(10 * INTERVAL);
+        assertEquals(2, retransmittedSegments.size());
+    }
+}
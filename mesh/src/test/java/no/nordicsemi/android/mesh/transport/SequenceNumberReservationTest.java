@@ -0,0 +1,123 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.util.SparseArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import no.nordicsemi.android.mesh.NetworkKey;
+import no.nordicsemi.android.mesh.simulator.VirtualTimeExecutor;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+@RunWith(RobolectricTestRunner.class)
+public class SequenceNumberReservationTest {
+
+    private static final int BLOCK_SIZE = 256;
+    private static final int SRC = 0x0001;
+    private static final int DST = 0x0002;
+
+    @Test
+    public void testOneReservationPerHalfBlock() {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        int reservations = 0;
+        for (int i = 0; i < 10 * BLOCK_SIZE; i++) {
+            node.incrementSequenceNumber();
+            if (node.reserveSequenceNumbers(BLOCK_SIZE))
+                reservations++;
+            assertFalse(node.isSequenceNumberReservationExhausted());
+        }
+        assertEquals(20, reservations);
+    }
+
+    @Test
+    public void testFirstMessageExhaustsReservation() {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.incrementSequenceNumber();
+        assertTrue(node.isSequenceNumberReservationExhausted());
+        assertTrue(node.reserveSequenceNumbers(BLOCK_SIZE));
+        assertEquals(1 + BLOCK_SIZE, node.getReservedSequenceNumber());
+    }
+
+    @Test
+    public void testResumeFromReservation() {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        for (int i = 0; i < 100; i++) {
+            node.incrementSequenceNumber();
+            node.reserveSequenceNumbers(BLOCK_SIZE);
+        }
+
+        // Simulates loading the node from the database after the app was killed
+        final ProvisionedMeshNode loadedNode = new ProvisionedMeshNode();
+        loadedNode.setReservedSequenceNumber(node.getReservedSequenceNumber());
+        assertTrue(loadedNode.getSequenceNumber() >= node.getSequenceNumber());
+        assertTrue(loadedNode.incrementSequenceNumber() > node.getSequenceNumber());
+        assertTrue(loadedNode.isSequenceNumberReservationExhausted());
+    }
+
+    @Test
+    public void testResetSequenceNumber() {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.incrementSequenceNumber();
+        node.reserveSequenceNumbers(BLOCK_SIZE);
+        node.setSequenceNumber(0);
+        assertEquals(0, node.getReservedSequenceNumber());
+        node.incrementSequenceNumber();
+        assertTrue(node.isSequenceNumberReservationExhausted());
+    }
+
+    @Test
+    public void testReservationDoesNotExceedMaximum() {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.setSequenceNumber(0xFFFFFF - 10);
+        node.incrementSequenceNumber();
+        assertTrue(node.reserveSequenceNumbers(BLOCK_SIZE));
+        assertEquals(0xFFFFFF, node.getReservedSequenceNumber());
+        node.incrementSequenceNumber();
+        assertFalse(node.reserveSequenceNumbers(BLOCK_SIZE));
+    }
+
+    @Test
+    public void testSegmentedMessageKeepsReservation() {
+        final ProvisionedMeshNode node = new ProvisionedMeshNode();
+        node.incrementSequenceNumber();
+        assertTrue(node.reserveSequenceNumbers(BLOCK_SIZE));
+        final int reservedSequenceNumber = node.getReservedSequenceNumber();
+
+        final NetworkLayerCallbacks networkLayerCallbacks = mock(NetworkLayerCallbacks.class);
+        when(networkLayerCallbacks.getPrimaryNetworkKey())
+                .thenReturn(new NetworkKey(0, MeshParserUtils.toByteArray("7dd7364cd842ad18c17c2b820c84c3d6")));
+        final UpperTransportLayerCallbacks upperTransportLayerCallbacks = mock(UpperTransportLayerCallbacks.class);
+        when(upperTransportLayerCallbacks.getNode(SRC)).thenReturn(node);
+        final MeshTransport transport = new MeshTransport(new VirtualTimeExecutor(), node);
+        transport.setNetworkLayerCallbacks(networkLayerCallbacks);
+        transport.setUpperTransportLayerCallbacks(upperTransportLayerCallbacks);
+
+        final SparseArray<byte[]> segments = new SparseArray<>();
+        for (int segO = 0; segO < 3; segO++) {
+            segments.put(segO, new byte[16]);
+        }
+        final AccessMessage message = new AccessMessage();
+        message.setSrc(SRC);
+        message.setDst(DST);
+        message.setTtl(4);
+        message.setIvIndex(MeshParserUtils.toByteArray("12345678"));
+        message.setSequenceNumber(MeshParserUtils.getSequenceNumberBytes(node.incrementSequenceNumber()));
+        message.setLowerTransportAccessPdu(segments);
+
+        transport.createNetworkLayerPDU(message);
+        transport.createRetransmitNetworkLayerPDU(message, 1);
+
+        // One sequence number per segment and one for the retransmitted segment, all within the reservation
+        assertEquals(5, node.getSequenceNumber());
+        assertEquals(reservedSequenceNumber, node.getReservedSequenceNumber());
+        assertFalse(node.isSequenceNumberReservationExhausted());
+        assertFalse(node.reserveSequenceNumbers(BLOCK_SIZE));
+    }
+}
@@ -0,0 +1,60 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import no.nordicsemi.android.mesh.opcodes.ApplicationMessageOpCodes;
+import no.nordicsemi.android.mesh.opcodes.ConfigMessageOpCodes;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+
+public class StatusMessageRegistryTest {
+
+    @After
+    public void tearDown() {
+        StatusMessageRegistry.reset();
+    }
+
+    @Test
+    public void testDefaultStatusMessagesAreRegistered() {
+        assertTrue(StatusMessageRegistry.isRegistered(ConfigMessageOpCodes.CONFIG_COMPOSITION_DATA_STATUS));
+        assertTrue(StatusMessageRegistry.isRegistered(ConfigMessageOpCodes.CONFIG_APPKEY_STATUS));
+        assertTrue(StatusMessageRegistry.isRegistered(ApplicationMessageOpCodes.GENERIC_ON_OFF_STATUS));
+        assertTrue(StatusMessageRegistry.isRegistered(ApplicationMessageOpCodes.SCENE_REGISTER_STATUS));
+        assertNotNull(StatusMessageRegistry.get(ApplicationMessageOpCodes.SENSOR_STATUS));
+    }
+
+    @Test
+    public void testVendorOpCode() {
+        final byte[] opCode = MeshParserUtils.createVendorOpCode(0x01, 0x0059);
+        final int expected = (opCode[0] & 0xFF) << 16 | (opCode[1] & 0xFF) << 8 | opCode[2] & 0xFF;
+        assertEquals(expected, StatusMessageRegistry.getVendorOpCode(0x01, 0x0059));
+        assertEquals(0xC15900, StatusMessageRegistry.getVendorOpCode(0x01, 0x0059));
+    }
+
+    @Test
+    public void testRegisterVendorStatus() {
+        final int opCode = StatusMessageRegistry.getVendorOpCode(0x02, 0x0059);
+        assertFalse(StatusMessageRegistry.isRegistered(opCode));
+        StatusMessageRegistry.register(opCode, (message, sentMessage) -> new VendorModelMessageStatus(message, 0x00590001));
+        assertTrue(StatusMessageRegistry.isRegistered(opCode));
+        StatusMessageRegistry.unregister(opCode);
+        assertFalse(StatusMessageRegistry.isRegistered(opCode));
+    }
+
+    @Test
+    public void testResetRestoresDefaultStatusMessages() {
+        final int opCode = StatusMessageRegistry.getVendorOpCode(0x02, 0x0059);
+        StatusMessageRegistry.register(opCode, (message, sentMessage) -> new VendorModelMessageStatus(message, 0x00590001));
+        StatusMessageRegistry.unregister(ConfigMessageOpCodes.CONFIG_APPKEY_STATUS);
+        assertFalse(StatusMessageRegistry.isRegistered(ConfigMessageOpCodes.CONFIG_APPKEY_STATUS));
+
+        StatusMessageRegistry.reset();
+        assertFalse(StatusMessageRegistry.isRegistered(opCode));
+        assertTrue(StatusMessageRegistry.isRegistered(ConfigMessageOpCodes.CONFIG_APPKEY_STATUS));
+    }
+}
@@ -0,0 +1,114 @@
+package no.nordicsemi.android.mesh.transport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import no.nordicsemi.android.mesh.Features;
+import no.nordicsemi.android.mesh.models.ConfigurationServerModel;
+import no.nordicsemi.android.mesh.models.SigModelParser;
+import no.nordicsemi.android.mesh.models.VendorModel;
+import no.nordicsemi.android.mesh.utils.HeartbeatPublication;
+import no.nordicsemi.android.mesh.utils.HeartbeatSubscription;
+import no.nordicsemi.android.mesh.utils.MeshAddress;
+
+/**
+ * Builds elements and model configurations for tests outside of the transport package.
+ */
+public final class TestElements {
+
+    public static final UUID SAMPLE_LABEL_UUID = UUID.fromString("0073E7E4-D8B9-440F-AF84-15DF4C56C0E1");
+
+    private TestElements() {
+    }
+
+    /**
+     * Creates a primary element with a Configuration Server, a bound and subscribed Generic OnOff Server and a Scene
+     * Server, and a secondary element with a vendor model, covering every state the elements are stored with.
+     */
+    public static Map<Integer, Element> createSampleElements(final int unicastAddress) {
+        final ConfigurationServerModel configurationServer = new ConfigurationServerModel(0x0000);
+        configurationServer.setHeartbeatPublication(new HeartbeatPublication(0xC001, (byte) 0x11, (byte) 0x05, 127,
+                new Features(Features.ENABLED, Features.UNSUPPORTED, Features.DISABLED, Features.ENABLED), 0x0FFF));
+        configurationServer.setHeartbeatSubscription(new HeartbeatSubscription(unicastAddress, 0xC002,
+                (byte) 0x03, (byte) 0x04, 1, 127));
+
+        final MeshModel onOffServer = SigModelParser.getSigModel(0x1000);
+        onOffServer.mBoundAppKeyIndexes.add(0);
+        onOffServer.mBoundAppKeyIndexes.add(0x0FFF);
+        onOffServer.subscriptionAddresses.add(0xC000);
+        onOffServer.subscriptionAddresses.add(0x8123);
+        onOffServer.labelUuids.add(SAMPLE_LABEL_UUID);
+        onOffServer.mPublicationSettings = new PublicationSettings(0x8123, SAMPLE_LABEL_UUID, 0x0FFF, true,
+                255, 63, 3, 7, 31);
+
+        final MeshModel sceneServer = SigModelParser.getSigModel(0x1203);
+        sceneServer.sceneNumbers.add(1);
+        sceneServer.sceneNumbers.add(0xFFFF);
+        sceneServer.mPublicationSettings = new PublicationSettings(0xC000, null, 0, false, 5, 1, 1, 0, 0);
+
+        final Map<Integer, MeshModel> primaryModels = new LinkedHashMap<>();
+        primaryModels.put(configurationServer.getModelId(), configurationServer);
+        primaryModels.put(onOffServer.getModelId(), onOffServer);
+        primaryModels.put(sceneServer.getModelId(), sceneServer);
+
+        final VendorModel vendorModel = new VendorModel(0x00590001);
+        final Map<Integer, MeshModel> secondaryModels = new LinkedHashMap<>();
+        secondaryModels.put(vendorModel.getModelId(), vendorModel);
+
+        final Map<Integer, Element> elements = new LinkedHashMap<>();
+        elements.put(unicastAddress, new Element(unicastAddress, 0x0100, primaryModels, "Primary"));
+        elements.put(unicastAddress + 1, new Element(unicastAddress + 1, 0, secondaryModels, "Élément ü"));
+        return elements;
+    }
+
+    public static Element createElement(final int elementAddress, final MeshModel... models) {
+        final Map<Integer, MeshModel> meshModels = new LinkedHashMap<>();
+        for (MeshModel model : models) {
+            meshModels.put(model.getModelId(), model);
+        }
+        return new Element(elementAddress, 0, meshModels);
+    }
+
+    public static Map<Integer, Element> createElements(final Element... elements) {
+        final Map<Integer, Element> map = new LinkedHashMap<>();
+        for (Element element : elements) {
+            map.put(element.getElementAddress(), element);
+        }
+        return map;
+    }
+
+    public static void bind(final MeshModel model, final int appKeyIndex) {
+        model.setBoundAppKeyIndex(appKeyIndex);
+    }
+
+    public static void subscribe(final MeshModel model, final int address) {
+        model.addSubscriptionAddress(address);
+    }
+
+    /**
+     * Subscribes a model to the virtual address of the given Label UUID.
+     *
+     * @return the virtual address
+     */
+    public static int subscribe(final MeshModel model, final UUID labelUuid) {
+        final int address = MeshAddress.generateVirtualAddress(labelUuid);
+        model.addSubscriptionAddress(labelUuid, address);
+        return address;
+    }
+
+    public static void unsubscribe(final MeshModel model, final int address) {
+        model.removeSubscriptionAddress(address);
+    }
+
+    /**
+     * Sets the publication of a model to the virtual address of the given Label UUID.
+     *
+     * @return the virtual address
+     */
+    public static int publish(final MeshModel model, final UUID labelUuid) {
+        final int address = MeshAddress.generateVirtualAddress(labelUuid);
+        model.setPublicationSettings(new PublicationSettings(address, labelUuid, 0, false, 5, 0, 0, 0, 0));
+        return address;
+    }
+}
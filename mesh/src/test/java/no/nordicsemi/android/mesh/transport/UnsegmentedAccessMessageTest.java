@@ -0,0 +1,98 @@
+package no.nordicsemi.android.mesh.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+
+import no.nordicsemi.android.mesh.MeshExecutor;
+import no.nordicsemi.android.mesh.NetworkKey;
+import no.nordicsemi.android.mesh.core.NetworkCrypto;
+import no.nordicsemi.android.mesh.utils.MeshParserUtils;
+import no.nordicsemi.android.mesh.utils.SecureUtils;
+
+/**
+ * Decodes Mesh Profile sample message #16, a Config AppKey Status sent unsegmented with the device key, through the
+ * network, lower transport, upper transport and access layers.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UnsegmentedAccessMessageTest {
+
+    private static final byte[] NETWORK_KEY = MeshParserUtils.toByteArray("7dd7364cd842ad18c17c2b820c84c3d6");
+    private static final byte[] DEVICE_KEY = MeshParserUtils.toByteArray("9d6dd0e96eb25dc19a40ed9914f8f03f");
+    private static final int IV_INDEX = 0x12345678;
+    // Proxy pdu type followed by the network pdu
+    private static final byte[] PDU = MeshParserUtils.toByteArray("0068e80e5da5af0e6b9be7f5a642f2f98680e61c3a8b47f228");
+
+    private NetworkKey networkKey;
+    private ProvisionedMeshNode node;
+    private MeshTransport transport;
+
+    @Before
+    public void setUp() {
+        networkKey = new NetworkKey(0, NETWORK_KEY);
+        node = new ProvisionedMeshNode();
+        node.setDeviceKey(DEVICE_KEY);
+        transport = new MeshTransport(mock(MeshExecutor.class), node);
+        transport.setNetworkLayerCallbacks(mock(NetworkLayerCallbacks.class));
+        transport.setUpperTransportLayerCallbacks(mock(UpperTransportLayerCallbacks.class));
+    }
+
+    private AccessMessage decode(final byte[] pdu) throws Exception {
+        final SecureUtils.K2Output k2Output = SecureUtils.calculateK2(NETWORK_KEY, SecureUtils.K2_MASTER_INPUT);
+        final byte[] networkHeader = NetworkCrypto.deObfuscateNetworkHeader(pdu, IV_INDEX, k2Output.getPrivacyCipher());
+        final int sequenceNumber = MeshParserUtils.convert24BitsToInt(networkHeader, 1);
+        final int src = MeshParserUtils.unsignedBytesToInt(networkHeader[5], networkHeader[4]);
+        final byte[] nonce = NetworkCrypto.createNetworkNonce(networkHeader[0], sequenceNumber, src, IV_INDEX);
+        final int ctl = (networkHeader[0] >> 7) & 0x01;
+        final byte[] decryptedNetworkPayload = k2Output.getEncryptionCipher()
+                .decryptCCM(pdu, 8, pdu.length - 8, nonce, null, SecureUtils.getNetMicLength(ctl));
+        return (AccessMessage) transport.parseMeshMessage(networkKey, node, pdu, networkHeader, decryptedNetworkPayload,
+                IV_INDEX, Arrays.copyOfRange(networkHeader, 1, 4));
+    }
+
+    @Test
+    public void testDecodeSampleMessage() throws Exception {
+        final AccessMessage message = decode(PDU);
+        assertNotNull(message);
+
+        assertEquals(0x1201, message.getSrc());
+        assertEquals(0x0003, message.getDst());
+        assertEquals(0x0B, message.getTtl());
+        assertArrayEquals(MeshParserUtils.toByteArray("000006"), message.getSequenceNumber());
+        assertArrayEquals(MeshParserUtils.toByteArray("12345678"), message.getIvIndex());
+        assertSame(networkKey, message.getNetworkKey());
+        assertFalse(message.isSegmented());
+        assertEquals(0, message.getAkf());
+        assertEquals(0, message.getAszmic());
+
+        // Config AppKey Status, status 0x00, NetKeyIndex 0x456 and AppKeyIndex 0x123
+        assertArrayEquals(MeshParserUtils.toByteArray("800300563412"), message.getAccessPdu());
+        assertEquals(0x8003, message.getOpCode());
+        assertArrayEquals(MeshParserUtils.toByteArray("00563412"), message.getParameters());
+
+        // The transport pdus are set as for segmented messages
+        assertEquals(1, message.getLowerTransportAccessPdu().size());
+        assertArrayEquals(MeshParserUtils.toByteArray("0089511bf1d1a81c11dcef"), message.getLowerTransportAccessPdu().get(0));
+        assertArrayEquals(MeshParserUtils.toByteArray("89511bf1d1a81c11dcef"), message.getUpperTransportPdu());
+        assertEquals(1, message.getNetworkLayerPdu().size());
+        assertArrayEquals(PDU, message.getNetworkLayerPdu().get(0));
+    }
+
+    @Test
+    public void testReplayedMessageIsDropped() throws Exception {
+        assertNotNull(decode(PDU));
+        assertEquals(Integer.valueOf((IV_INDEX << 24) | 0x000006), node.getSeqAuth(0x1201));
+        assertNull(decode(PDU));
+    }
+}
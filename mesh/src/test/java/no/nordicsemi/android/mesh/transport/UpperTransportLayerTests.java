@@ -22,7 +22,6 @@
 
 package no.nordicsemi.android.mesh.transport;
 
-import android.content.Context;
 import android.util.Log;
 
 import org.junit.Rule;
@@ -34,6 +33,7 @@ import org.mockito.junit.MockitoRule;
 
 import java.util.Locale;
 
+import no.nordicsemi.android.mesh.MeshExecutor;
 import no.nordicsemi.android.mesh.utils.MeshParserUtils;
 
 import static org.junit.Assert.assertEquals;
@@ -50,7 +50,7 @@ public class UpperTransportLayerTests {
     public MockitoRule rule = MockitoJUnit.rule();
 
     @Mock
-    Context context;
+    MeshExecutor executor;
 
     @Test
     public void create_upper_transport_pdu_access_message_isCorrect() {
@@ -67,7 +67,7 @@ public class UpperTransportLayerTests {
         final byte[] accessPdu = MeshParserUtils.toByteArray("800300563412");
 
         final ProvisionedMeshNode meshNode = new ProvisionedMeshNode();
-        final MeshTransport meshLayerTestBase = new MeshTransport(context, meshNode);
+        final MeshTransport meshLayerTestBase = new MeshTransport(executor, meshNode);
         final AccessMessage accessMessage = new AccessMessage();
         accessMessage.setSrc(src);
         accessMessage.setDst(dst);
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.mesh.utils;
+
+import org.junit.Test;
+import org.spongycastle.crypto.InvalidCipherTextException;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class CipherContextTest {
+
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void encryptWithAES_matchesSecureUtils() {
+        final Random random = new Random(0);
+        final byte[] key = new byte[16];
+        final byte[] data = new byte[16];
+        for (int i = 0; i < ITERATIONS; i++) {
+            random.nextBytes(key);
+            random.nextBytes(data);
+            assertArrayEquals(SecureUtils.encryptWithAES(data, key), new CipherContext(key).encryptWithAES(data));
+        }
+    }
+
+    @Test
+    public void encryptCCM_matchesSecureUtils() throws InvalidCipherTextException {
+        final Random random = new Random(1);
+        final byte[] key = new byte[16];
+        final byte[] nonce = new byte[13];
+        final byte[] label = new byte[16];
+        for (int i = 0; i < ITERATIONS; i++) {
+            random.nextBytes(key);
+            random.nextBytes(nonce);
+            random.nextBytes(label);
+            final byte[] data = new byte[random.nextInt(380)];
+            random.nextBytes(data);
+            final int micSize = random.nextBoolean() ? 4 : 8;
+            final CipherContext cipher = new CipherContext(key);
+
+            final byte[] expected = SecureUtils.encryptCCM(data, key, nonce, micSize);
+            assertArrayEquals(expected, cipher.encryptCCM(data, nonce, micSize));
+            assertArrayEquals(data, cipher.decryptCCM(expected, nonce, micSize));
+
+            final byte[] expectedVirtual = SecureUtils.encryptCCM(data, key, nonce, label, micSize);
+            assertArrayEquals(expectedVirtual, cipher.encryptCCM(data, nonce, label, micSize));
+            assertArrayEquals(data, cipher.decryptCCM(expectedVirtual, nonce, label, micSize));
+        }
+    }
+
+    @Test
+    public void networkPdu_reusedContext_matchesSecureUtils() {
+        // Mesh Profile sample data, message #1
+        final byte[] encryptionKey = MeshParserUtils.toByteArray("0953fa93e7caac9638f58820220a398e");
+        final byte[] privacyKey = MeshParserUtils.toByteArray("8b84eedec100067d670971dd2aa700cf");
+        final byte[] nonce = MeshParserUtils.toByteArray("00800000011201000012345678");
+        final byte[] payload = MeshParserUtils.toByteArray("fffd034b50057e400000010000");
+        final byte[] pecbInput = MeshParserUtils.toByteArray("0000000000123456782c4e5a6b7d8e9f");
+        final CipherContext encryptionCipher = new CipherContext(encryptionKey);
+        final CipherContext privacyCipher = new CipherContext(privacyKey);
+
+        final byte[] expectedPayload = SecureUtils.encryptCCM(payload, encryptionKey, nonce, 8);
+        final byte[] expectedPecb = SecureUtils.encryptWithAES(pecbInput, privacyKey);
+        // The contexts are reused for every PDU, so repeated calls must not depend on the previous ones
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(expectedPayload, encryptionCipher.encryptCCM(payload, nonce, 8));
+            assertArrayEquals(expectedPecb, privacyCipher.encryptWithAES(pecbInput));
+        }
+        assertArrayEquals(MeshParserUtils.toByteArray("b5e5bfdacbaf6cb7fb6bff871f035444ce83a670df"), expectedPayload);
+    }
+
+    @Test
+    public void decryptCCM_offset_isCorrect() throws InvalidCipherTextException {
+        final byte[] key = MeshParserUtils.toByteArray("0953fa93e7caac9638f58820220a398e");
+        final byte[] nonce = MeshParserUtils.toByteArray("00800000011201000012345678");
+        final byte[] data = MeshParserUtils.toByteArray("fffd034b50057e400000010000");
+        final CipherContext cipher = new CipherContext(key);
+        final byte[] encrypted = cipher.encryptCCM(data, nonce, 8);
+        final byte[] pdu = new byte[encrypted.length + 8];
+        System.arraycopy(encrypted, 0, pdu, 8, encrypted.length);
+        assertArrayEquals(data, cipher.decryptCCM(pdu, 8, encrypted.length, nonce, null, 8));
+    }
+
+    @Test
+    public void decryptCCM_invalidMic_throws() {
+        final byte[] key = MeshParserUtils.toByteArray("0953fa93e7caac9638f58820220a398e");
+        final byte[] nonce = MeshParserUtils.toByteArray("00800000011201000012345678");
+        final byte[] data = MeshParserUtils.toByteArray("fffd034b50057e400000010000");
+        final CipherContext cipher = new CipherContext(key);
+        final byte[] encrypted = cipher.encryptCCM(data, nonce, 4);
+        encrypted[encrypted.length - 1] ^= 0x01;
+        try {
+            cipher.decryptCCM(encrypted, nonce, 4);
+            fail("MIC check should have failed");
+        } catch (InvalidCipherTextException expected) {
+            // Expected
+        }
+    }
+}